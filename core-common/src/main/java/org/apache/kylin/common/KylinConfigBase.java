@@ -258,6 +258,16 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.forest-trie-max-mb", "500"));
     }
 
+    // threads to build the trees of a forest trie dictionary, the result is the same as a single thread
+    public int getTrieDictionaryForestBuildThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.forest-build-threads", "1"));
+    }
+
+    // max entries of each lookup cache of a dictionary, value to ID and ID to value
+    public int getCachedDictLookupMaxEntries() {
+        return Integer.parseInt(getOptional("kylin.dictionary.lookup-cache-max-entries", "1000000"));
+    }
+
     public int getCachedDictMaxEntrySize() {
         return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "3000"));
     }
@@ -278,6 +288,42 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.append-version-ttl", "259200000"));
     }
 
+    // partitions to build a global dictionary by MR tasks, 0 or 1 to build it in the dictionary step
+    public int getGlobalDictDistributedBuildPartitions() {
+        return Integer.parseInt(getOptional("kylin.dictionary.global-distributed-build-partitions", "0"));
+    }
+
+    // slices of global dictionaries are cached on local disk of each node, and verified by checksum
+    public boolean isGlobalDictSliceLocalCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.dictionary.global-slice-local-cache-enabled", "false"));
+    }
+
+    public String getGlobalDictSliceLocalCacheDir() {
+        return getOptional("kylin.dictionary.global-slice-local-cache-dir", System.getProperty("java.io.tmpdir") + File.separator + "kylin_global_dict_cache");
+    }
+
+    // threads to prefetch the slices to local disk in background, 0 to fetch a slice only when used
+    public int getGlobalDictSlicePrefetchThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.global-slice-prefetch-threads", "2"));
+    }
+
+    // dictionaries are loaded via a local file cache, and the large ones memory-mapped instead of read to heap
+    public boolean isDictionaryMmapEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.dictionary.mmap-enabled", "false"));
+    }
+
+    public int getDictionaryMmapThresholdMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.mmap-threshold-mb", "64"));
+    }
+
+    public String getDictionaryMmapCacheDir() {
+        return getOptional("kylin.dictionary.mmap-cache-dir", System.getProperty("java.io.tmpdir") + File.separator + "kylin_dict_cache");
+    }
+
+    public int getDictionaryMmapCacheMaxMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.mmap-cache-max-mb", "10240"));
+    }
+
     public int getCachedSnapshotMaxEntrySize() {
         return Integer.parseInt(getOptional("kylin.snapshot.max-cache-entry", "500"));
     }
@@ -286,6 +332,11 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.snapshot.max-mb", "300"));
     }
 
+    // new snapshots are stored by column with a primary key index, not readable by the versions before
+    public boolean isSnapshotColumnarFormatEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.snapshot.columnar-format-enabled", "false"));
+    }
+
     // ============================================================================
     // CUBE
     // ============================================================================
@@ -873,6 +924,16 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.derived-filter-translation-threshold", "20"));
     }
 
+    // max keys in the filter pushed down to fact table from a predicate on lookup table, or loosened to a range
+    public int getQueryRuntimeFilterInThreshold() {
+        return Integer.parseInt(getOptional("kylin.query.runtime-filter-in-threshold", "1000"));
+    }
+
+    // IN filters with at least as many constants are translated by a batch lookup of the dictionary
+    public int getQueryInListBatchTranslationThreshold() {
+        return Integer.parseInt(getOptional("kylin.query.in-list-batch-translation-threshold", "100"));
+    }
+
     public int getBadQueryStackTraceDepth() {
         return Integer.parseInt(getOptional("kylin.query.badquery-stacktrace-depth", "10"));
     }
@@ -917,6 +978,44 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.query.cache-enabled", "true"));
     }
 
+    // identical queries in flight at the same time run once and share the response, effective with query cache
+    public boolean isQueryCoalesceEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.coalesce-enabled", "true"));
+    }
+
+    // caches the storage result of each segment, so that only new segments are scanned after an incremental build
+    public boolean isQuerySegmentCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.segment-cache-enabled", "false"));
+    }
+
+    public int getQuerySegmentCacheMaxMB() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-cache-max-mb", "256"));
+    }
+
+    public int getQuerySegmentCacheMaxEntryMB() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-cache-max-entry-mb", "8"));
+    }
+
+    // fraction of storage shards scanned by an approximate query, unless the query hint gives one
+    public double getQueryApproximateSampleRatio() {
+        return Double.parseDouble(this.getOptional("kylin.query.approximate-sample-ratio", "0.1"));
+    }
+
+    // max OLAP contexts of a query, e.g. the sides of a join or union, whose storage scans run concurrently; 1 runs them one by one
+    public int getQueryParallelContextsMax() {
+        return Integer.parseInt(this.getOptional("kylin.query.parallel-contexts-max", "1"));
+    }
+
+    // rows of a context scanned ahead are buffered up to this, the rest are read when the context is enumerated
+    public int getQueryParallelContextsBufferRows() {
+        return Integer.parseInt(this.getOptional("kylin.query.parallel-contexts-buffer-rows", "50000"));
+    }
+
+    // the member realizations of a hybrid are read in parallel, with rows returned as they arrive
+    public boolean isQueryHybridParallelScanEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.hybrid-parallel-scan-enabled", "true"));
+    }
+
     public boolean isQueryIgnoreUnknownFunction() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.ignore-unknown-function", "false"));
     }
@@ -925,6 +1024,15 @@ abstract public class KylinConfigBase implements Serializable {
         return getOptional("kylin.query.access-controller", null);
     }
 
+    // choose among capable realizations by the rows to scan estimated from cuboid statistics, before the static cost
+    public boolean isQueryRouteByScanRowsEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.route-by-scan-rows-enabled", "false"));
+    }
+
+    public String getCuboidStatisticsProvider() {
+        return getOptional("kylin.query.cuboid-statistics-provider", "org.apache.kylin.engine.mr.common.CuboidStatisticsProvider");
+    }
+
     public int getDimCountDistinctMaxCardinality() {
         return Integer.parseInt(getOptional("kylin.query.max-dimension-count-distinct", "5000000"));
     }
@@ -938,6 +1046,57 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(this.getOptional("kylin.query.timeout-seconds", "0"));
     }
 
+    public boolean isQueryPlanCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.plan-cache-enabled", "false"));
+    }
+
+    public int getQueryPlanCacheMaxEntries() {
+        return Integer.parseInt(this.getOptional("kylin.query.plan-cache-max-entries", "1000"));
+    }
+
+    // a cached plan can only serve one query at a time, this is the number of idle copies kept per SQL template
+    public int getQueryPlanCacheMaxIdlePerEntry() {
+        return Integer.parseInt(this.getOptional("kylin.query.plan-cache-max-idle-per-entry", "4"));
+    }
+
+    // each idle plan holds an open calcite connection and statement, this bounds them across all SQL templates
+    public int getQueryPlanCacheMaxIdle() {
+        return Integer.parseInt(this.getOptional("kylin.query.plan-cache-max-idle", "200"));
+    }
+
+    public int getQueryPlanCacheExpireSeconds() {
+        return Integer.parseInt(this.getOptional("kylin.query.plan-cache-expire-seconds", "600"));
+    }
+
+    public boolean isQueryAdmissionEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.admission-enabled", "false"));
+    }
+
+    public int getQueryAdmissionGlobalSlots() {
+        return Integer.parseInt(this.getOptional("kylin.query.admission-global-slots", "64"));
+    }
+
+    public int getQueryAdmissionProjectSlots() {
+        return Integer.parseInt(this.getOptional("kylin.query.admission-project-slots", "16"));
+    }
+
+    public int getQueryAdmissionQueueSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.admission-queue-size", "100"));
+    }
+
+    public long getQueryAdmissionMaxWaitMillis() {
+        return Long.parseLong(this.getOptional("kylin.query.admission-max-wait-millis", "30000"));
+    }
+
+    // a query takes one slot plus one per this number of estimated scanned rows, up to the max weight
+    public long getQueryAdmissionRowsPerWeight() {
+        return Long.parseLong(this.getOptional("kylin.query.admission-rows-per-weight", "10000000"));
+    }
+
+    public int getQueryAdmissionMaxWeight() {
+        return Integer.parseInt(this.getOptional("kylin.query.admission-max-weight", "4"));
+    }
+
     // ============================================================================
     // SERVER
     // ============================================================================
@@ -18,14 +18,22 @@
 
 package org.apache.kylin.common;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.kylin.common.exceptions.QueryStoppedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Holds per query information and statistics.
  */
 public class QueryContext {
 
+    private static final Logger logger = LoggerFactory.getLogger(QueryContext.class);
+
     private static final ThreadLocal<QueryContext> contexts = new ThreadLocal<QueryContext>() {
         @Override
         protected QueryContext initialValue() {
@@ -37,6 +45,9 @@ public class QueryContext {
     private AtomicLong scannedRows = new AtomicLong();
     private AtomicLong scannedBytes = new AtomicLong();
 
+    private volatile String stopReason;
+    private List<QueryStopListener> stopListeners = new CopyOnWriteArrayList<>();
+
     private QueryContext() {
         // use QueryContext.current() instead
         
@@ -51,6 +62,14 @@ public class QueryContext {
         contexts.remove();
     }
 
+    /**
+     * Binds an existing query context to the current thread, for a worker thread doing part of the query.
+     * Call reset() when the work is done.
+     */
+    public static void bind(QueryContext context) {
+        contexts.set(context);
+    }
+
     public String getQueryId() {
         return queryId == null ? "" : queryId;
     }
@@ -74,4 +93,74 @@ public class QueryContext {
     public long addAndGetScannedBytes(long deltaBytes) {
         return scannedBytes.addAndGet(deltaBytes);
     }
+
+    /**
+     * Stops the query, the storage work still in flight is cancelled by the stop listeners.
+     * Only the first call takes effect.
+     */
+    public void stopQuery(String reason) {
+        if (setStopReason(reason)) {
+            logger.info("Stopping query {}: {}", queryId, reason);
+            notifyStopListeners();
+        }
+    }
+
+    /**
+     * Cleans up when the query is done, the storage work still in flight (e.g. other segments on
+     * exception or timeout) is cancelled the same way as {@link #stopQuery(String)}, but quietly.
+     */
+    public void endQuery() {
+        if (setStopReason("query ended")) {
+            if (!stopListeners.isEmpty()) {
+                logger.debug("Ending query {}, cancelling the storage work in flight", queryId);
+            }
+            notifyStopListeners();
+        }
+    }
+
+    private synchronized boolean setStopReason(String reason) {
+        if (stopReason != null) {
+            return false;
+        }
+        stopReason = reason;
+        return true;
+    }
+
+    private void notifyStopListeners() {
+        for (QueryStopListener listener : stopListeners) {
+            try {
+                listener.stop(this);
+            } catch (Exception e) {
+                logger.error("Error when stopping query " + queryId, e);
+            }
+        }
+    }
+
+    public boolean isStopped() {
+        return stopReason != null;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    public void checkStopped() {
+        if (stopReason != null) {
+            throw new QueryStoppedException("Query " + queryId + " is stopped: " + stopReason);
+        }
+    }
+
+    /**
+     * Registers a listener to cancel storage work, it's called at once if the query is already stopped.
+     */
+    public void addQueryStopListener(QueryStopListener listener) {
+        stopListeners.add(listener);
+        if (isStopped()) {
+            listener.stop(this);
+        }
+    }
+
+    public interface QueryStopListener {
+        void stop(QueryContext query);
+    }
 }
@@ -40,6 +40,10 @@ public class BackdoorToggles {
         _backdoorToggles.set(toggles);
     }
 
+    public static Map<String, String> getToggles() {
+        return _backdoorToggles.get();
+    }
+
     public static void addToggles(Map<String, String> toggles) {
         Map<String, String> map = _backdoorToggles.get();
         if (map == null) {
@@ -64,6 +64,15 @@ public class BytesUtil {
         return integer;
     }
 
+    public static int readUnsigned(ByteBuffer bytes, int offset, int size) {
+        int integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (int) bytes.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
     public static void writeUnsigned(int num, int size, ByteBuffer out) {
         int mask = 0xff << ((size - 1) * 8);
         for (int i = size; i > 0; i--) {
@@ -112,6 +121,15 @@ public class BytesUtil {
         return integer;
     }
 
+    public static long readLong(ByteBuffer bytes, int offset, int size) {
+        long integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (long) bytes.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
     public static void writeLong(long num, ByteBuffer out) {
         for (int i = 0; i < 8; i++) {
             out.put((byte) num);
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.util.BitSet;
+import java.util.Collection;
 
 import org.apache.kylin.common.KylinConfig;
 
@@ -116,6 +118,30 @@ abstract public class Dictionary<T> implements Serializable {
         }
     }
 
+    /**
+     * Looks up the IDs of a batch of values, e.g. the constants of an IN filter. Nulls and the values
+     * not found are skipped. The implementation may sort the values to share the lookup of common prefixes.
+     *
+     * @return the IDs found, as a bitset indexed by ID
+     */
+    public BitSet getIdsFromValues(Collection<T> values) {
+        BitSet ids = new BitSet();
+        for (T value : values) {
+            if (isNullObjectForm(value))
+                continue;
+
+            int id;
+            try {
+                id = getIdFromValueImpl(value, 0);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (id != -1)
+                ids.set(id);
+        }
+        return ids;
+    }
+
     protected boolean isNullObjectForm(T value) {
         return value == null;
     }
@@ -72,6 +72,14 @@ public class CubeCapabilityChecker {
             if (!unmatchedAggregations.isEmpty()) {
                 tryDimensionAsMeasures(unmatchedAggregations, result, cube.getDescriptor().listDimensionColumnsIncludingDerived());
             }
+
+            //2. filter on lookup columns that are not dimensions, by looking up the snapshot
+            for (Iterator<TblColRef> it = unmatchedDimensions.iterator(); it.hasNext();) {
+                TblColRef col = it.next();
+                if (cube.getDescriptor().isLookupOnlyColumn(col) && !digest.groupbyColumns.contains(col)) {
+                    it.remove();
+                }
+            }
         } else {
             //for non query-on-facttable 
             if (cube.getSegments().get(0).getSnapshots().containsKey(digest.factTable)) {
@@ -55,6 +55,7 @@ import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.cachesync.CaseInsensitiveStringCache;
 import org.apache.kylin.metadata.model.JoinDesc;
+import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.SegmentStatusEnum;
 import org.apache.kylin.metadata.model.Segments;
 import org.apache.kylin.metadata.model.TableDesc;
@@ -281,8 +282,17 @@ public class CubeManager implements IRealizationProvider {
             tableDesc.setName(tableName);
         }
 
+        // index the primary key of the first join on the table, the other joins index on load
+        String[] keyColumns = null;
+        for (JoinTableDesc join : cubeSeg.getModel().getJoinTables()) {
+            if (join.getTableRef().getTableIdentity().equals(lookupTable)) {
+                keyColumns = join.getJoin().getPrimaryKey();
+                break;
+            }
+        }
+
         IReadableTable hiveTable = SourceFactory.createReadableTable(tableDesc);
-        SnapshotTable snapshot = snapshotMgr.buildSnapshot(hiveTable, tableDesc);
+        SnapshotTable snapshot = snapshotMgr.buildSnapshot(hiveTable, tableDesc, keyColumns);
 
         cubeSeg.putSnapshotResPath(lookupTable, snapshot.getResourcePath());
         CubeUpdate cubeBuilder = new CubeUpdate(cubeSeg.getCubeInstance());
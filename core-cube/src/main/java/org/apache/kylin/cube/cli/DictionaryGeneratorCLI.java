@@ -27,6 +27,7 @@ import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.DimensionDesc;
+import org.apache.kylin.dict.DictionaryInfo;
 import org.apache.kylin.dict.DictionaryManager;
 import org.apache.kylin.dict.DictionaryProvider;
 import org.apache.kylin.dict.DistinctColumnValuesProvider;
@@ -68,11 +69,11 @@ public class DictionaryGeneratorCLI {
                     cubeMgr.saveDictionary(cubeSeg, col, inpTable, dict);
                 } else {
                     logger.debug("Dict for '" + col.getName() + "' not pre-built, build it from " + inpTable.toString());
-                    cubeMgr.buildDictionary(cubeSeg, col, inpTable);
+                    buildDictionary(cubeMgr, cubeSeg, col, inpTable);
                 }
             } else {
                 logger.debug("Dict for '" + col.getName() + "' not pre-built, build it from " + inpTable.toString());
-                cubeMgr.buildDictionary(cubeSeg, col, inpTable);
+                buildDictionary(cubeMgr, cubeSeg, col, inpTable);
             }
         }
 
@@ -99,6 +100,14 @@ public class DictionaryGeneratorCLI {
         }
     }
 
+    private static void buildDictionary(CubeManager cubeMgr, CubeSegment cubeSeg, TblColRef col, IReadableTable inpTable) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DictionaryInfo dictInfo = cubeMgr.buildDictionary(cubeSeg, col, inpTable);
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        int size = dictInfo == null || dictInfo.getDictionaryObject() == null ? 0 : dictInfo.getDictionaryObject().getSize();
+        logger.info("Built dictionary for " + col + " of " + size + " values in " + millis + " ms, " + (size * 1000L / millis) + " values/s");
+    }
+
     private static IReadableTable decideInputTable(DataModelDesc model, TblColRef col, DistinctColumnValuesProvider factTableValueProvider) {
         KylinConfig config = model.getConfig();
         DictionaryManager dictMgr = DictionaryManager.getInstance(config);
@@ -178,6 +178,7 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
 
     private Map<TblColRef, DeriveInfo> derivedToHostMap = Maps.newHashMap();
     private Map<Array<TblColRef>, List<DeriveInfo>> hostToDerivedMap = Maps.newHashMap();
+    private Map<TblColRef, DeriveInfo> lookupOnlyToHostMap = Maps.newHashMap();
 
     private Map<TblColRef, DeriveInfo> extendedColumnToHosts = Maps.newHashMap();
 
@@ -260,7 +261,7 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
     }
 
     public boolean hasHostColumn(TblColRef col) {
-        return isDerived(col) || isExtendedColumn(col);
+        return isDerived(col) || isExtendedColumn(col) || isLookupOnlyColumn(col);
     }
 
     public boolean isDerived(TblColRef col) {
@@ -271,11 +272,21 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
         return extendedColumnToHosts.containsKey(col);
     }
 
+    /**
+     * A column of a snapshot lookup table that is not on the cube otherwise, neither dimension, derived nor measure.
+     * It is derived at query time from the foreign key dimensions by looking up the snapshot, and so can be filtered on.
+     */
+    public boolean isLookupOnlyColumn(TblColRef col) {
+        return lookupOnlyToHostMap.containsKey(col);
+    }
+
     public DeriveInfo getHostInfo(TblColRef derived) {
         if (isDerived(derived)) {
             return derivedToHostMap.get(derived);
         } else if (isExtendedColumn(derived)) {
             return extendedColumnToHosts.get(derived);
+        } else if (isLookupOnlyColumn(derived)) {
+            return lookupOnlyToHostMap.get(derived);
         }
         throw new RuntimeException("Cannot get host info for " + derived);
     }
@@ -553,6 +564,7 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
         dimensionColumns = new LinkedHashSet<>();
         derivedToHostMap = Maps.newHashMap();
         hostToDerivedMap = Maps.newHashMap();
+        lookupOnlyToHostMap = Maps.newHashMap();
         extendedColumnToHosts = Maps.newHashMap();
     }
 
@@ -586,6 +598,7 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
 
         initDimensionColumns();
         initMeasureColumns();
+        initLookupOnlyColumns();
 
         rowkey.init(this);
 
@@ -835,6 +848,35 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
         }
     }
 
+    // the rest columns of a snapshot lookup table, derived from the foreign key at query time
+    private void initLookupOnlyColumns() {
+        Set<TblColRef> realDimensions = new HashSet<>(listDimensionColumnsExcludingDerived(true));
+        Set<TableRef> snapshotTables = new HashSet<>();
+        for (DimensionDesc dim : dimensions) {
+            if (dim.getTableRef() != null && model.isLookupTable(dim.getTableRef()))
+                snapshotTables.add(dim.getTableRef());
+        }
+        for (JoinTableDesc joinTable : model.getJoinTables()) {
+            JoinDesc join = joinTable.getJoin();
+            TblColRef[] fkCols = join.getForeignKeyColumns();
+            if (!snapshotTables.contains(joinTable.getTableRef()) || !realDimensions.containsAll(Arrays.asList(fkCols)))
+                continue;
+
+            List<TblColRef> lookupOnlyCols = Lists.newArrayList();
+            for (TblColRef col : joinTable.getTableRef().getColumns()) {
+                if (!allColumns.contains(col))
+                    lookupOnlyCols.add(col);
+            }
+            if (lookupOnlyCols.isEmpty())
+                continue;
+
+            for (TblColRef col : lookupOnlyCols) {
+                lookupOnlyToHostMap.put(col, new DeriveInfo(DeriveType.LOOKUP, join, fkCols, false));
+            }
+            initHostToDerivedMap(fkCols, DeriveType.LOOKUP, join, lookupOnlyCols.toArray(new TblColRef[lookupOnlyCols.size()]));
+        }
+    }
+
     private String[][] splitDerivedColumnAndExtra(String[] derived) {
         String[] cols = new String[derived.length];
         String[] extra = new String[derived.length];
@@ -877,6 +919,10 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
             derivedToHostMap.put(derivedCol, new DeriveInfo(type, join, hostCols, isOneToOne));
         }
 
+        initHostToDerivedMap(hostCols, type, join, derivedCols);
+    }
+
+    private void initHostToDerivedMap(TblColRef[] hostCols, DeriveType type, JoinDesc join, TblColRef[] derivedCols) {
         Array<TblColRef> hostColArray = new Array<TblColRef>(hostCols);
         List<DeriveInfo> infoList = hostToDerivedMap.get(hostColArray);
         if (infoList == null) {
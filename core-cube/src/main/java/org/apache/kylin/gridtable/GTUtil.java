@@ -25,8 +25,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dimension.DictionaryDimEnc;
+import org.apache.kylin.dimension.DimensionEncoding;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
@@ -200,12 +204,7 @@ public class GTUtil {
             switch (newCompareFilter.getOperator()) {
             case EQ:
             case IN:
-                Set newValues = Sets.newHashSet();
-                for (Object value : constValues) {
-                    code = translate(col, value, 0);
-                    if (code != null)
-                        newValues.add(code);
-                }
+                Set newValues = translateAll(col, constValues);
                 if (newValues.isEmpty()) {
                     result = ConstantTupleFilter.FALSE;
                 } else {
@@ -214,12 +213,7 @@ public class GTUtil {
                 }
                 break;
             case NOTIN:
-                Set notInValues = Sets.newHashSet();
-                for (Object value : constValues) {
-                    code = translate(col, value, 0);
-                    if (code != null)
-                        notInValues.add(code);
-                }
+                Set notInValues = translateAll(col, constValues);
                 if (notInValues.isEmpty()) {
                     result = ConstantTupleFilter.TRUE;
                 } else {
@@ -280,6 +274,34 @@ public class GTUtil {
 
         transient ByteBuffer buf;
 
+        // translates the constants of an IN filter, a long list on a dictionary column by a batch lookup
+        protected Set<ByteArray> translateAll(int col, Collection<?> values) {
+            Set<ByteArray> result = Sets.newHashSet();
+            DictionaryDimEnc dictEnc = getDictionaryDimEnc(col);
+            if (dictEnc != null && values.size() >= KylinConfig.getInstanceFromEnv().getQueryInListBatchTranslationThreshold()) {
+                for (byte[] code : dictEnc.encodeAll(values)) {
+                    result.add(new ByteArray(code));
+                }
+                return result;
+            }
+
+            for (Object value : values) {
+                ByteArray code = translate(col, value, 0);
+                if (code != null)
+                    result.add(code);
+            }
+            return result;
+        }
+
+        private DictionaryDimEnc getDictionaryDimEnc(int col) {
+            if (info.codeSystem instanceof CubeCodeSystem) {
+                DimensionEncoding dimEnc = ((CubeCodeSystem) info.codeSystem).getDimEnc(col);
+                if (dimEnc instanceof DictionaryDimEnc)
+                    return (DictionaryDimEnc) dimEnc;
+            }
+            return null;
+        }
+
         protected ByteArray translate(int col, Object value, int roundingFlag) {
             try {
                 buf.clear();
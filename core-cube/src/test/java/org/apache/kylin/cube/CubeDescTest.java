@@ -20,6 +20,7 @@ package org.apache.kylin.cube;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -385,6 +386,29 @@ public class CubeDescTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testLookupOnlyColumn() {
+        CubeDesc cube = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_without_slr_desc");
+        TblColRef lvl4Name = cube.findColumnRef("TEST_CATEGORY_GROUPINGS", "CATEG_LVL4_NAME");
+        assertTrue(cube.isLookupOnlyColumn(lvl4Name));
+        assertTrue(cube.hasHostColumn(lvl4Name));
+
+        DeriveInfo hostInfo = cube.getHostInfo(lvl4Name);
+        assertEquals(DeriveType.LOOKUP, hostInfo.type);
+        assertFalse(hostInfo.isOneToOne);
+        assertArrayEquals(hostInfo.join.getForeignKeyColumns(), hostInfo.columns);
+
+        // filled into tuples like the derived columns
+        List<TblColRef> hostCols = Arrays.asList(hostInfo.columns);
+        Map<Array<TblColRef>, List<DeriveInfo>> hostToDerivedInfo = cube.getHostToDerivedInfo(hostCols, Arrays.asList(lvl4Name));
+        assertEquals(1, hostToDerivedInfo.size());
+
+        // dimensions, derived and fact columns are not
+        assertFalse(cube.isLookupOnlyColumn(cube.findColumnRef("TEST_CATEGORY_GROUPINGS", "META_CATEG_NAME")));
+        assertFalse(cube.isLookupOnlyColumn(cube.findColumnRef("TEST_CATEGORY_GROUPINGS", "USER_DEFINED_FIELD1")));
+        assertFalse(cube.isLookupOnlyColumn(cube.findColumnRef("TEST_KYLIN_FACT", "TRANS_ID")));
+    }
+
     private Pair<Integer, Integer> countDerivedInfo(Map<Array<TblColRef>, List<DeriveInfo>> hostToDerivedInfo) {
         int pkfkCount = 0;
         int lookupCount = 0;
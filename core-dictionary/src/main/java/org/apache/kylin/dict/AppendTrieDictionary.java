@@ -29,16 +29,19 @@ import org.apache.kylin.dict.global.AppendDictSlice;
 import org.apache.kylin.dict.global.AppendDictSliceKey;
 import org.apache.kylin.dict.global.GlobalDictHDFSStore;
 import org.apache.kylin.dict.global.GlobalDictMetadata;
+import org.apache.kylin.dict.global.GlobalDictSliceCache;
 import org.apache.kylin.dict.global.GlobalDictStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import static com.google.common.base.Preconditions.checkState;
 
 /**
@@ -67,6 +70,9 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
     transient private String baseDir;
     transient private GlobalDictMetadata metadata;
     transient private LoadingCache<AppendDictSliceKey, AppendDictSlice> dictCache;
+    transient private GlobalDictSliceCache localCache; // slices read from local disk if not null
+    transient private AtomicLong sliceLoads;
+    transient private AtomicLong sliceLoadNanos;
 
     public void init(String baseDir) throws IOException {
         this.baseDir = baseDir;
@@ -77,6 +83,15 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         final Path latestVersionPath = globalDictStore.getVersionDir(latestVersion);
         this.metadata = globalDictStore.getMetadata(latestVersion);
         this.bytesConvert = metadata.bytesConverter;
+        this.sliceLoads = new AtomicLong();
+        this.sliceLoadNanos = new AtomicLong();
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        if (config.isGlobalDictSliceLocalCacheEnabled()) {
+            this.localCache = new GlobalDictSliceCache(globalDictStore, latestVersionPath.toString(), metadata, new File(config.getGlobalDictSliceLocalCacheDir()), config.getGlobalDictSlicePrefetchThreads());
+            localCache.prefetch();
+        }
+
         this.dictCache = CacheBuilder.newBuilder().softValues().removalListener(new RemovalListener<AppendDictSliceKey, AppendDictSlice>() {
             @Override
             public void onRemoval(RemovalNotification<AppendDictSliceKey, AppendDictSlice> notification) {
@@ -85,8 +100,13 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         }).build(new CacheLoader<AppendDictSliceKey, AppendDictSlice>() {
             @Override
             public AppendDictSlice load(AppendDictSliceKey key) throws Exception {
-                AppendDictSlice slice = globalDictStore.readSlice(latestVersionPath.toString(), metadata.sliceFileMap.get(key));
-                logger.info("Load slice with key {} and value {}", key, slice);
+                long startTime = System.nanoTime();
+                String sliceFile = metadata.sliceFileMap.get(key);
+                AppendDictSlice slice = localCache != null ? localCache.load(sliceFile) : globalDictStore.readSlice(latestVersionPath.toString(), sliceFile);
+                long nanos = System.nanoTime() - startTime;
+                sliceLoads.incrementAndGet();
+                sliceLoadNanos.addAndGet(nanos);
+                logger.info("Load slice with key {} and value {} in {} ms, {}", key, slice, nanos / 1000000, getSliceLoadStats());
                 return slice;
             }
         });
@@ -108,6 +128,27 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         return slice.getIdFromValueBytesImpl(value, offset, len, roundingFlag);
     }
 
+    public long getSliceLoads() {
+        return sliceLoads.get();
+    }
+
+    public long getSliceLoadMillis() {
+        return sliceLoadNanos.get() / 1000000;
+    }
+
+    public GlobalDictSliceCache getLocalCache() {
+        return localCache;
+    }
+
+    public String getSliceLoadStats() {
+        long loads = sliceLoads.get();
+        String stats = String.format("slice loads %d, avg %.1f ms", loads, loads == 0 ? 0.0 : sliceLoadNanos.get() / 1e6 / loads);
+        if (localCache != null) {
+            stats += String.format(", local hits %d, remote fetches %d, prefetched %d, checksum mismatches %d", localCache.getLocalHits(), localCache.getRemoteFetches(), localCache.getPrefetches(), localCache.getChecksumMismatches());
+        }
+        return stats;
+    }
+
     @Override
     public int getMinId() {
         return metadata.baseId;
@@ -18,20 +18,37 @@
 
 package org.apache.kylin.dict;
 
-import org.apache.kylin.common.util.Dictionary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import java.lang.ref.SoftReference;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.Dictionary;
 
 /**
+ * A dictionary with bounded caches of value to ID and ID to value lookups.
+ * <p>
+ * Each cache has at most kylin.dictionary.lookup-cache-max-entries slots and no more than the dictionary size.
+ * An entry goes to the slot by its key, and replaces the old entry there. So the memory is bounded regardless of
+ * the lookups, and no lock is needed. The slots start small and double as entries are put, up to the bound. ID to
+ * value slots are indexed by the sequence no of the ID, a dictionary no larger than the cache is cached completely.
+ * Value to ID slots are indexed by the hash of the value bytes, shared by the lookups of values and value bytes.
  */
+@SuppressWarnings("unchecked")
 public abstract class CacheDictionary<T> extends Dictionary<T> {
     private static final long serialVersionUID = 1L;
 
-    private transient SoftReference<ConcurrentHashMap> valueToIdCache;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 1000000;
+
+    private transient ValueToIdCache valueToIdCache;
 
-    private transient SoftReference<Object[]> idToValueCache;
+    private transient IdToValueCache idToValueCache;
 
     protected transient int baseId;
 
@@ -44,42 +61,68 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     //value --> id
     @Override
     protected final int getIdFromValueImpl(T value, int roundingFlag) {
-        if (this.valueToIdCache != null && roundingFlag == 0) {
-            Map cache = valueToIdCache.get(); // SoftReference to skip cache gracefully when short of memory
-            if (cache != null) {
-                Integer id;
-                id = (Integer) cache.get(value);
-                if (id != null)
-                    return id.intValue();
-                byte[] valueBytes = bytesConvert.convertToBytes(value);
-                id = getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
-                cache.put(value, id);
+        byte[] valueBytes = bytesConvert.convertToBytes(value);
+        return getIdFromValueBytes(valueBytes, 0, valueBytes.length, roundingFlag);
+    }
+
+    /**
+     * Same as getIdFromValue() on the value bytes, the value to ID cache is keyed by the bytes.
+     */
+    public final int getIdFromValueBytes(byte[] value, int offset, int len, int roundingFlag) {
+        ValueToIdCache cache = this.valueToIdCache;
+        if (cache != null && roundingFlag == 0) {
+            int id = cache.get(value, offset, len);
+            if (id != ValueToIdCache.NOT_FOUND)
                 return id;
-            }
+            id = getIdFromValueBytesWithoutCache(value, offset, len, roundingFlag);
+            cache.put(value, offset, len, id);
+            return id;
         }
-        byte[] valueBytes = bytesConvert.convertToBytes(value);
-        return getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
+        return getIdFromValueBytesWithoutCache(value, offset, len, roundingFlag);
     }
 
     //id --> value
     @Override
     protected final T getValueFromIdImpl(int id) {
-        if (this.idToValueCache != null) {
-            Object[] cache = idToValueCache.get();
-            if (cache != null) {
-                int seq = calcSeqNoFromId(id);
-                if (cache[seq] != null)
-                    return (T) cache[seq];
-                byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
-                T value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
-                cache[seq] = value;
-                return value;
-            }
+        IdToValueCache cache = this.idToValueCache;
+        if (cache != null) {
+            int seq = calcSeqNoFromId(id);
+            Object value = cache.get(seq);
+            if (value != null)
+                return (T) value;
+            byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
+            T result = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
+            if (result != null)
+                cache.put(seq, result);
+            return result;
         }
         byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
         return bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
     }
 
+    // the bytes of the values in unsigned order, i.e. the order of the trie, nulls and invalid values left out
+    final List<byte[]> toSortedValueBytes(Collection<T> values) {
+        List<byte[]> result = new ArrayList<>(values.size());
+        for (T value : values) {
+            if (isNullObjectForm(value))
+                continue;
+            try {
+                result.add(bytesConvert.convertToBytes(value));
+            } catch (IllegalArgumentException e) {
+                // not a valid value, thus not in the dictionary
+            }
+        }
+        Collections.sort(result, UNSIGNED_BYTES_COMPARATOR);
+        return result;
+    }
+
+    private static final Comparator<byte[]> UNSIGNED_BYTES_COMPARATOR = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            return Bytes.compareTo(a, b);
+        }
+    };
+
     protected final int calcSeqNoFromId(int id) {
         int seq = id - baseId;
         if (seq < 0 || seq >= getSize()) {
@@ -89,10 +132,15 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     }
 
     public final void enableCache() {
+        enableCache(getCacheMaxEntries());
+    }
+
+    public final void enableCache(int maxEntries) {
+        int slots = cacheSlots(Math.min(getSize(), maxEntries));
         if (this.valueToIdCache == null)
-            this.valueToIdCache = new SoftReference<>(new ConcurrentHashMap());
+            this.valueToIdCache = new ValueToIdCache(slots);
         if (this.idToValueCache == null)
-            this.idToValueCache = new SoftReference<>(new Object[getSize()]);
+            this.idToValueCache = new IdToValueCache(slots);
     }
 
     public final void disableCache() {
@@ -100,8 +148,211 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
         this.idToValueCache = null;
     }
 
+    /**
+     * @return hit rate of the value to ID cache, or -1 if not cached
+     */
+    public double getValueToIdCacheHitRate() {
+        ValueToIdCache cache = this.valueToIdCache;
+        return cache == null ? -1 : hitRate(cache.hits.sum(), cache.misses.sum());
+    }
+
+    /**
+     * @return hit rate of the ID to value cache, or -1 if not cached
+     */
+    public double getIdToValueCacheHitRate() {
+        IdToValueCache cache = this.idToValueCache;
+        return cache == null ? -1 : hitRate(cache.hits.sum(), cache.misses.sum());
+    }
+
+    public String getCacheStats() {
+        StringBuilder buf = new StringBuilder();
+        ValueToIdCache v2i = this.valueToIdCache;
+        IdToValueCache i2v = this.idToValueCache;
+        if (v2i != null)
+            buf.append("value to ID hits ").append(v2i.hits.sum()).append(", misses ").append(v2i.misses.sum()).append("; ");
+        if (i2v != null)
+            buf.append("ID to value hits ").append(i2v.hits.sum()).append(", misses ").append(i2v.misses.sum());
+        return buf.length() == 0 ? "not cached" : buf.toString();
+    }
+
+    private static double hitRate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    // a power of 2, at least 1
+    private static int cacheSlots(int maxEntries) {
+        return maxEntries <= 1 ? 1 : Integer.highestOneBit(maxEntries - 1) << 1;
+    }
+
+    private static int getCacheMaxEntries() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getCachedDictLookupMaxEntries();
+        } catch (RuntimeException e) {
+            return DEFAULT_CACHE_MAX_ENTRIES;
+        }
+    }
+
     abstract protected byte[] getValueBytesFromIdWithoutCache(int id);
 
     abstract protected int getIdFromValueBytesWithoutCache(byte[] valueBytes, int offset, int length, int roundingFlag);
 
+    /**
+     * Slots of cache entries, which start small and double as entries are put, up to the max slots.
+     */
+    abstract static class SlotCache<E> {
+        private static final int INITIAL_SLOTS = 1024;
+
+        private final int maxSlots;
+        private volatile AtomicReferenceArray<E> slots;
+        private int puts; // not thread safe, only to tell when to grow, i.e. more puts than slots
+        final StripedCounter hits = new StripedCounter();
+        final StripedCounter misses = new StripedCounter();
+
+        SlotCache(int maxSlots) {
+            this.maxSlots = maxSlots;
+            this.slots = new AtomicReferenceArray<>(Math.min(maxSlots, INITIAL_SLOTS));
+        }
+
+        E getSlot(int key) {
+            AtomicReferenceArray<E> s = slots;
+            return s.get(key & (s.length() - 1));
+        }
+
+        void putSlot(int key, E entry) {
+            AtomicReferenceArray<E> s = slots;
+            if (++puts > s.length() && s.length() < maxSlots)
+                s = grow(s);
+            s.lazySet(key & (s.length() - 1), entry);
+        }
+
+        private synchronized AtomicReferenceArray<E> grow(AtomicReferenceArray<E> old) {
+            if (slots != old)
+                return slots;
+            AtomicReferenceArray<E> s = new AtomicReferenceArray<>(old.length() * 2);
+            int mask = s.length() - 1;
+            for (int i = 0; i < old.length(); i++) {
+                E entry = old.get(i);
+                if (entry != null)
+                    s.lazySet(keyOf(entry) & mask, entry);
+            }
+            slots = s;
+            return s;
+        }
+
+        int getSlotCount() {
+            return slots.length();
+        }
+
+        abstract int keyOf(E entry);
+    }
+
+    /**
+     * A counter of cache hits or misses, striped by thread so that concurrent lookups don't contend on one cache line.
+     */
+    static class StripedCounter {
+        private static final int STRIPES = 16;
+        private static final int PAD = 8; // longs per cache line
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+        void increment() {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            cells.getAndIncrement(stripe * PAD);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++)
+                sum += cells.get(i * PAD);
+            return sum;
+        }
+    }
+
+    /**
+     * ID to value, by sequence no of the ID.
+     */
+    static class IdToValueCache extends SlotCache<IdEntry> {
+
+        IdToValueCache(int size) {
+            super(size);
+        }
+
+        Object get(int seq) {
+            IdEntry entry = getSlot(seq);
+            if (entry != null && entry.seq == seq) {
+                hits.increment();
+                return entry.value;
+            }
+            misses.increment();
+            return null;
+        }
+
+        void put(int seq, Object value) {
+            putSlot(seq, new IdEntry(seq, value));
+        }
+
+        @Override
+        int keyOf(IdEntry entry) {
+            return entry.seq;
+        }
+    }
+
+    private static class IdEntry {
+        final int seq;
+        final Object value;
+
+        IdEntry(int seq, Object value) {
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Value to ID, by hash of the value bytes.
+     */
+    static class ValueToIdCache extends SlotCache<ValueEntry> {
+        static final int NOT_FOUND = Integer.MIN_VALUE;
+
+        ValueToIdCache(int size) {
+            super(size);
+        }
+
+        int get(byte[] value, int offset, int len) {
+            int hash = spread(Bytes.hashCode(value, offset, len));
+            ValueEntry entry = getSlot(hash);
+            if (entry != null && entry.hash == hash && Bytes.equals(entry.value, 0, entry.value.length, value, offset, len)) {
+                hits.increment();
+                return entry.id;
+            }
+            misses.increment();
+            return NOT_FOUND;
+        }
+
+        void put(byte[] value, int offset, int len, int id) {
+            int hash = spread(Bytes.hashCode(value, offset, len));
+            putSlot(hash, new ValueEntry(hash, Arrays.copyOfRange(value, offset, offset + len), id));
+        }
+
+        @Override
+        int keyOf(ValueEntry entry) {
+            return entry.hash;
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 20) ^ (h >>> 12);
+            return h ^ (h >>> 7) ^ (h >>> 4);
+        }
+    }
+
+    private static class ValueEntry {
+        final int hash;
+        final byte[] value;
+        final int id;
+
+        ValueEntry(int hash, byte[] value, int id) {
+            this.hash = hash;
+            this.value = value;
+            this.id = id;
+        }
+    }
 }
@@ -101,6 +101,12 @@ public class DictionaryGenerator {
     }
 
     public static Dictionary mergeDictionaries(DataType dataType, List<DictionaryInfo> sourceDicts) throws IOException {
+        if (dataType.isDateTimeFamily() == false && SortedMultipleDictionaryValueEnumerator.isSortedByIds(sourceDicts)) {
+            // the trie dictionaries are sorted by ID, merge them in the order of the new dictionary
+            BytesConverter converter = dataType.isNumberFamily() ? new Number2BytesConverter() : new StringBytesConverter();
+            logger.info("Merge " + sourceDicts.size() + " sorted dictionaries by k-way merge");
+            return buildDictionary(dataType, new SortedMultipleDictionaryValueEnumerator(sourceDicts, converter));
+        }
         return buildDictionary(dataType, new MultipleDictionaryValueEnumerator(sourceDicts));
     }
 
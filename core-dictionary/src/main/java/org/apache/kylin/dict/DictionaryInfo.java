@@ -46,6 +46,8 @@ public class DictionaryInfo extends RootPersistentEntity {
     private String dictionaryClass;
     @JsonProperty("cardinality")
     private int cardinality;
+    @JsonProperty("content_digest")
+    private String contentDigest; // digest of the serialized dictionary, null for legacy dictionaries
 
     transient Dictionary<String> dictionaryObject;
 
@@ -88,6 +90,16 @@ public class DictionaryInfo extends RootPersistentEntity {
         return ResourceStore.DICT_RESOURCE_ROOT + "/" + sourceTable + "/" + sourceColumn;
     }
 
+    // the index from content digest to the dictionary path
+    public String getDigestIndexPath() {
+        return ResourceStore.DICT_DIGEST_RESOURCE_ROOT + "/" + sourceTable + "/" + sourceColumn + "/" + contentDigest;
+    }
+
+    // the legacy dictionaries of the column saved without a digest, listed once beside the digest index
+    public String getLegacyIndexPath() {
+        return ResourceStore.DICT_DIGEST_RESOURCE_ROOT + "/" + sourceTable + "/" + sourceColumn + "/legacy";
+    }
+
     // ----------------------------------------------------------------------------
 
     // to decide if two dictionaries are built on the same table/column,
@@ -160,4 +172,12 @@ public class DictionaryInfo extends RootPersistentEntity {
         this.cardinality = cardinality;
     }
 
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
 }
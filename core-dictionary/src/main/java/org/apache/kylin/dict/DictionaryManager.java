@@ -21,7 +21,14 @@ package org.apache.kylin.dict;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,9 +36,14 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.StringEntity;
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.JsonUtil;
@@ -87,15 +99,23 @@ public class DictionaryManager {
 
     private KylinConfig config;
     private LoadingCache<String, DictionaryInfo> dictCache; // resource
+    private MappedDictionaryLoader mappedLoader;
 
     private DictionaryManager(KylinConfig config) {
         this.config = config;
+        if (config.isDictionaryMmapEnabled()) {
+            this.mappedLoader = new MappedDictionaryLoader(new File(config.getDictionaryMmapCacheDir()), config.getDictionaryMmapThresholdMB() * 1024L * 1024L, config.getDictionaryMmapCacheMaxMB() * 1024L * 1024L);
+        }
         this.dictCache = CacheBuilder.newBuilder()//
                 .softValues()//
                 .removalListener(new RemovalListener<String, DictionaryInfo>() {
                     @Override
                     public void onRemoval(RemovalNotification<String, DictionaryInfo> notification) {
                         DictionaryManager.logger.info("Dict with resource path " + notification.getKey() + " is removed due to " + notification.getCause());
+                        DictionaryInfo info = notification.getValue();
+                        if (info != null && info.getDictionaryObject() instanceof CacheDictionary) {
+                            DictionaryManager.logger.info("Lookup cache of " + notification.getKey() + ": " + ((CacheDictionary) info.getDictionaryObject()).getCacheStats());
+                        }
                     }
                 })//
                 .maximumSize(config.getCachedDictMaxEntrySize())//
@@ -169,7 +189,10 @@ public class DictionaryManager {
                 return saveNewDict(newDictInfo);
             }
         } else {
-            String dupDict = checkDupByContent(newDictInfo, newDict);
+            String dupDict = checkDupByDigest(newDictInfo);
+            if (dupDict == null) {
+                dupDict = checkDupByContent(newDictInfo, newDict);
+            }
             if (dupDict != null) {
                 logger.info("Identical dictionary content, reuse existing dictionary at " + dupDict);
                 return getDictionaryInfo(dupDict);
@@ -179,41 +202,131 @@ public class DictionaryManager {
         }
     }
 
-    private String checkDupByContent(DictionaryInfo dictInfo, Dictionary<String> dict) throws IOException {
+    /**
+     * Looks up the digest index for a dictionary of identical content, with a single metadata read.
+     */
+    private String checkDupByDigest(DictionaryInfo dictInfo) throws IOException {
         ResourceStore store = MetadataManager.getInstance(config).getStore();
-        NavigableSet<String> existings = store.listResources(dictInfo.getResourceDir());
-        if (existings == null)
+        StringEntity indexed = store.getResource(dictInfo.getDigestIndexPath(), StringEntity.class, StringEntity.serializer);
+        if (indexed == null)
             return null;
 
-        logger.info("{} existing dictionaries of the same column", existings.size());
-        if (existings.size() > 100) {
-            logger.warn("Too many dictionaries under {}, dict count: {}", dictInfo.getResourceDir(), existings.size());
+        // the index entry outlives a removed dictionary, check it still points to the same content
+        String existing = indexed.toString();
+        DictionaryInfo existingInfo = store.exists(existing) ? load(existing, false) : null;
+        if (existingInfo != null && dictInfo.getContentDigest().equals(existingInfo.getContentDigest()) //
+                && dictInfo.getDictionaryClass().equals(existingInfo.getDictionaryClass()) && dictInfo.getCardinality() == existingInfo.getCardinality()) {
+            return existing;
         }
+        return null;
+    }
+
+    /**
+     * Compares the content with the legacy dictionaries saved without a digest, which are not in the digest index.
+     */
+    private String checkDupByContent(DictionaryInfo dictInfo, Dictionary<String> dict) throws IOException {
+        ResourceStore store = MetadataManager.getInstance(config).getStore();
+        for (String legacy : getLegacyDicts(dictInfo)) {
+            // "cardinality path"
+            int cut = legacy.indexOf(' ');
+            if (Integer.parseInt(legacy.substring(0, cut)) != dictInfo.getCardinality())
+                continue;
 
-        for (String existing : existings) {
-            DictionaryInfo existingInfo = getDictionaryInfo(existing);
+            String path = legacy.substring(cut + 1);
+            DictionaryInfo existingInfo = store.exists(path) ? getDictionaryInfo(path) : null;
             if (existingInfo != null && dict.equals(existingInfo.getDictionaryObject())) {
-                return existing;
+                return path;
             }
         }
 
         return null;
     }
 
-    private void initDictInfo(Dictionary<String> newDict, DictionaryInfo newDictInfo) {
+    /**
+     * Lists the legacy dictionaries of the column by reading all the dictionary infos once. The list is then kept
+     * in the digest index and does not grow, since new dictionaries are all saved with a digest.
+     */
+    private List<String> getLegacyDicts(DictionaryInfo dictInfo) throws IOException {
+        ResourceStore store = MetadataManager.getInstance(config).getStore();
+        RawResource listed = store.getResource(dictInfo.getLegacyIndexPath());
+        if (listed != null) {
+            String str;
+            try {
+                str = IOUtils.toString(listed.inputStream, "UTF-8");
+            } finally {
+                IOUtils.closeQuietly(listed.inputStream);
+            }
+            return str.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(str.split("\n"));
+        }
+
+        List<DictionaryInfo> existings = store.getAllResources(dictInfo.getResourceDir(), DictionaryInfo.class, DictionaryInfoSerializer.INFO_SERIALIZER);
+        List<String> legacies = Lists.newArrayList();
+        for (DictionaryInfo existing : existings) {
+            if (existing.getContentDigest() == null) {
+                legacies.add(existing.getCardinality() + " " + existing.getResourcePath());
+            }
+        }
+        logger.info("{} legacy dictionaries among {} existing dictionaries under {}", legacies.size(), existings.size(), dictInfo.getResourceDir());
+
+        byte[] bytes = StringUtils.join(legacies, "\n").getBytes("UTF-8");
+        store.putResource(dictInfo.getLegacyIndexPath(), new ByteArrayInputStream(bytes), System.currentTimeMillis());
+        return legacies;
+    }
+
+    private void initDictInfo(Dictionary<String> newDict, DictionaryInfo newDictInfo) throws IOException {
         newDictInfo.setCardinality(newDict.getSize());
         newDictInfo.setDictionaryObject(newDict);
         newDictInfo.setDictionaryClass(newDict.getClass().getName());
+        newDictInfo.setContentDigest(calculateDigest(newDict));
+    }
+
+    // MD5 of the serialized dictionary, streamed without buffering the dictionary bytes
+    static String calculateDigest(Dictionary<String> dict) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to calculate dictionary digest", e);
+        }
+
+        DataOutputStream dout = new DataOutputStream(new DigestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, md));
+        dout.writeUTF(dict.getClass().getName());
+        dict.write(dout);
+        dout.close();
+        return Bytes.toHex(md.digest());
     }
 
     private DictionaryInfo saveNewDict(DictionaryInfo newDictInfo) throws IOException {
 
         save(newDictInfo);
         dictCache.put(newDictInfo.getResourcePath(), newDictInfo);
+        saveDigestIndex(newDictInfo);
 
         return newDictInfo;
     }
 
+    private void saveDigestIndex(DictionaryInfo dictInfo) throws IOException {
+        if (dictInfo.getContentDigest() == null)
+            return;
+
+        ResourceStore store = MetadataManager.getInstance(config).getStore();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream dout = new DataOutputStream(buf);
+        StringEntity.serializer.serialize(new StringEntity(dictInfo.getResourcePath()), dout);
+        dout.close();
+
+        // overwrites a stale entry, if any
+        store.putResource(dictInfo.getDigestIndexPath(), new ByteArrayInputStream(buf.toByteArray()), System.currentTimeMillis());
+    }
+
     public DictionaryInfo mergeDictionary(List<DictionaryInfo> dicts) throws IOException {
 
         if (dicts.size() == 0)
@@ -266,12 +379,36 @@ public class DictionaryManager {
         if (identicalSourceDicts) {
             logger.info("Use one of the merging dictionaries directly");
             return dicts.get(0);
+        }
+
+        //check for cases where the largest merging dict contains all the others, e.g. segments of an incremental column
+        DictionaryInfo supersetDict = findSupersetDict(dicts);
+        if (supersetDict != null) {
+            logger.info("Use the merging dictionary " + supersetDict.getResourcePath() + " directly, which contains all the others");
+            return supersetDict;
         } else {
             Dictionary<String> newDict = DictionaryGenerator.mergeDictionaries(DataType.getType(newDictInfo.getDataType()), dicts);
             return trySaveNewDict(newDict, newDictInfo);
         }
     }
 
+    private DictionaryInfo findSupersetDict(List<DictionaryInfo> dicts) {
+        DictionaryInfo largest = dicts.get(0);
+        for (DictionaryInfo info : dicts) {
+            if (info.getDictionaryObject().getSize() > largest.getDictionaryObject().getSize()) {
+                largest = info;
+            }
+        }
+
+        Dictionary<String> largestDict = largest.getDictionaryObject();
+        for (DictionaryInfo info : dicts) {
+            if (info != largest && !largestDict.contains(info.getDictionaryObject())) {
+                return null;
+            }
+        }
+        return largest;
+    }
+
     public DictionaryInfo buildDictionary(DataModelDesc model, TblColRef col, IReadableTable inpTable) throws IOException {
         return buildDictionary(model, col, inpTable, null);
     }
@@ -407,8 +544,18 @@ public class DictionaryManager {
     public void removeDictionary(String resourcePath) throws IOException {
         logger.info("Remvoing dict: " + resourcePath);
         ResourceStore store = MetadataManager.getInstance(config).getStore();
+        DictionaryInfo info = store.exists(resourcePath) ? load(resourcePath, false) : null;
+        if (info != null && info.getContentDigest() != null) {
+            StringEntity indexed = store.getResource(info.getDigestIndexPath(), StringEntity.class, StringEntity.serializer);
+            if (indexed != null && resourcePath.equals(indexed.toString())) {
+                store.deleteResource(info.getDigestIndexPath());
+            }
+        }
         store.deleteResource(resourcePath);
         dictCache.invalidate(resourcePath);
+        if (mappedLoader != null) {
+            mappedLoader.remove(resourcePath);
+        }
     }
 
     public void removeDictionaries(String srcTable, String srcCol) throws IOException {
@@ -445,6 +592,9 @@ public class DictionaryManager {
         ResourceStore store = MetadataManager.getInstance(config).getStore();
 
         logger.info("DictionaryManager(" + System.identityHashCode(this) + ") loading DictionaryInfo(loadDictObj:" + loadDictObj + ") at " + resourcePath);
+        if (loadDictObj && mappedLoader != null) {
+            return mappedLoader.load(store, resourcePath);
+        }
         DictionaryInfo info = store.getResource(resourcePath, DictionaryInfo.class, loadDictObj ? DictionaryInfoSerializer.FULL_SERIALIZER : DictionaryInfoSerializer.INFO_SERIALIZER);
         return info;
     }
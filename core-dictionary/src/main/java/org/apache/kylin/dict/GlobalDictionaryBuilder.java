@@ -48,7 +48,7 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
             throw new IllegalArgumentException("GlobalDictinaryBuilder must used with an existing DictionaryInfo");
         }
 
-        sourceColumn = dictInfo.getSourceTable() + "_" + dictInfo.getSourceColumn();
+        sourceColumn = getSourceColumn(dictInfo);
         lock = KylinConfig.getInstanceFromEnv().getDistributedLockFactory().lockForCurrentThread();
         lock.lock(getLockPath(sourceColumn), Long.MAX_VALUE);
 
@@ -93,7 +93,16 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         return new AppendTrieDictionary<>();
     }
 
-    private String getLockPath(String pathName) {
+    // the lock of the global dictionary on a source column, also held by a distributed build
+    public static String getLockPath(DictionaryInfo dictInfo) {
+        return getLockPath(getSourceColumn(dictInfo));
+    }
+
+    private static String getSourceColumn(DictionaryInfo dictInfo) {
+        return dictInfo.getSourceTable() + "_" + dictInfo.getSourceColumn();
+    }
+
+    private static String getLockPath(String pathName) {
         return "/dict/" + pathName + "/lock";
     }
 
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
+
+/**
+ * A DataInput over a memory-mapped file, from which a dictionary can take slices of the file instead of
+ * reading its bytes to heap, see TrieDictionary.readFields().
+ */
+public class MappedDataInput extends DataInputStream {
+
+    private final ByteBuffer buffer;
+
+    public MappedDataInput(ByteBuffer buffer) {
+        super(new ByteBufferBackedInputStream(buffer));
+        this.buffer = buffer;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public void seek(int position) {
+        buffer.position(position);
+    }
+
+    /**
+     * @return the bytes of [start, start + length) as a buffer sharing the mapped file, with position 0
+     */
+    public ByteBuffer slice(int start, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.limit(start + length);
+        dup.position(start);
+        return dup.slice();
+    }
+}
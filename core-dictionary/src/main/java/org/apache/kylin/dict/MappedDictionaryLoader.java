@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads dictionaries from a local file cache, and memory-maps the large ones so that tries are looked up in
+ * the mapped file instead of Java heap, and paged by the OS.
+ *
+ * A dictionary resource is fetched from resource store once into the cache dir, named by its path and
+ * timestamp. A local copy smaller than the threshold is read to heap as usual.
+ *
+ * Fetching a newer timestamp deletes the copies of older ones. The copies of dictionaries deleted through
+ * other nodes are not known here, so the least recently used files are deleted once the dir exceeds its max size.
+ */
+public class MappedDictionaryLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedDictionaryLoader.class);
+
+    private static final long TMP_FILE_TTL_MS = 3600 * 1000L;
+
+    private final File cacheDir;
+    private final long thresholdBytes;
+    private final long maxCacheBytes;
+
+    public MappedDictionaryLoader(File cacheDir, long thresholdBytes, long maxCacheBytes) {
+        this.cacheDir = cacheDir;
+        this.thresholdBytes = thresholdBytes;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * @return the dictionary info with dictionary object, or null if the resource does not exist
+     */
+    public DictionaryInfo load(ResourceStore store, String resourcePath) throws IOException {
+        long timestamp = store.getResourceTimestamp(resourcePath);
+        if (timestamp == 0) {
+            return null;
+        }
+
+        File local = localFile(resourcePath, timestamp);
+        if (local.exists()) {
+            local.setLastModified(System.currentTimeMillis()); // recently used, see evict()
+        } else {
+            if (!fetch(store, resourcePath, local)) {
+                return null;
+            }
+            removeCopies(resourcePath, local);
+            evict(local);
+        }
+
+        DictionaryInfo info;
+        if (local.length() < thresholdBytes) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(local)))) {
+                info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(in);
+            }
+        } else {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile file = new RandomAccessFile(local, "r")) {
+                // the mapping stays valid after the file is closed
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            }
+            info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(new MappedDataInput(buffer));
+            logger.info("Memory-mapped dictionary of {} bytes from {}", local.length(), local);
+        }
+        info.setLastModified(timestamp);
+        return info;
+    }
+
+    private boolean fetch(ResourceStore store, String resourcePath, File local) throws IOException {
+        RawResource res = store.getResource(resourcePath);
+        if (res == null) {
+            return false;
+        }
+
+        cacheDir.mkdirs();
+        File tmp = File.createTempFile(local.getName(), ".tmp", cacheDir);
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                IOUtils.copyLarge(res.inputStream, out);
+            } finally {
+                IOUtils.closeQuietly(res.inputStream);
+            }
+            // another thread may have fetched the same resource, either copy is good
+            if (!tmp.renameTo(local) && !local.exists()) {
+                throw new IOException("Failed to move " + tmp + " to " + local);
+            }
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+        logger.info("Fetched dictionary {} to local cache {}", resourcePath, local);
+        return true;
+    }
+
+    /**
+     * Deletes the local copies of a dictionary resource.
+     */
+    public void remove(String resourcePath) {
+        removeCopies(resourcePath, null);
+    }
+
+    // a mapped file can be deleted, the mapping stays valid
+    private void removeCopies(String resourcePath, File keep) {
+        String prefix = localName(resourcePath) + ".";
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && isTimestamp(name.substring(prefix.length())) && !file.equals(keep)) {
+                file.delete();
+            }
+        }
+    }
+
+    private static boolean isTimestamp(String str) {
+        if (str.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isDigit(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the least recently used files until the cache dir is within its max size.
+     */
+    private void evict(File keep) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxCacheBytes) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (total <= maxCacheBytes) {
+                break;
+            }
+            // skip the temp files being fetched by other threads
+            if (file.equals(keep) || (file.getName().endsWith(".tmp") && now - file.lastModified() < TMP_FILE_TTL_MS)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                logger.info("Evicted {} from local dictionary cache", file);
+            }
+        }
+    }
+
+    File localFile(String resourcePath, long timestamp) {
+        return new File(cacheDir, localName(resourcePath) + "." + timestamp);
+    }
+
+    private static String localName(String resourcePath) {
+        return resourcePath.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+}
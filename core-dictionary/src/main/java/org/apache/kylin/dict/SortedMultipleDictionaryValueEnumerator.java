@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.Dictionary;
+
+/**
+ * Enumerates the distinct values of multiple dictionaries in sorted order, by a k-way merge of the dictionaries.
+ *
+ * Each source dictionary must give its values in sorted order by ID, like TrieDictionary and TrieDictionaryForest.
+ * Values are ordered by their bytes from the given converter, which should be the converter of the dictionary
+ * to build, so that a forest builder receives the values in order and needs not to sort or buffer them.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class SortedMultipleDictionaryValueEnumerator implements IDictionaryValueEnumerator {
+
+    private final BytesConverter<String> converter;
+    private final PriorityQueue<Cursor> queue;
+    private String curValue = null;
+
+    public SortedMultipleDictionaryValueEnumerator(List<DictionaryInfo> dictionaryInfoList, BytesConverter<String> converter) {
+        this.converter = converter;
+        this.queue = new PriorityQueue<Cursor>(Math.max(dictionaryInfoList.size(), 1), new Comparator<Cursor>() {
+            @Override
+            public int compare(Cursor c1, Cursor c2) {
+                return Bytes.compareTo(c1.bytes, c2.bytes);
+            }
+        });
+
+        for (DictionaryInfo dictInfo : dictionaryInfoList) {
+            Cursor cursor = new Cursor((Dictionary<String>) dictInfo.getDictionaryObject());
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    /**
+     * @return whether the dictionaries give values in sorted order by ID, so that they can be merged in sorted order
+     */
+    public static boolean isSortedByIds(List<DictionaryInfo> dictionaryInfoList) {
+        for (DictionaryInfo dictInfo : dictionaryInfoList) {
+            Dictionary dict = dictInfo.getDictionaryObject();
+            if (!(dict instanceof TrieDictionary) && !(dict instanceof TrieDictionaryForest)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String current() throws IOException {
+        return curValue;
+    }
+
+    @Override
+    public boolean moveNext() throws IOException {
+        Cursor head = queue.poll();
+        if (head == null) {
+            curValue = null;
+            return false;
+        }
+        curValue = head.value;
+
+        // skip the same value in other dictionaries
+        byte[] bytes = head.bytes;
+        while (!queue.isEmpty() && Bytes.equals(queue.peek().bytes, bytes)) {
+            Cursor other = queue.poll();
+            if (other.advance()) {
+                queue.add(other);
+            }
+        }
+        if (head.advance()) {
+            queue.add(head);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    private class Cursor {
+        private final Dictionary<String> dict;
+        private int nextId;
+        private String value;
+        private byte[] bytes;
+
+        Cursor(Dictionary<String> dict) {
+            this.dict = dict;
+            this.nextId = dict.getMinId();
+        }
+
+        boolean advance() {
+            while (nextId <= dict.getMaxId()) {
+                value = dict.getValueFromId(nextId++);
+                if (value != null) {
+                    bytes = converter.convertToBytes(value);
+                    return true;
+                }
+            }
+            value = null;
+            bytes = null;
+            return false;
+        }
+    }
+}
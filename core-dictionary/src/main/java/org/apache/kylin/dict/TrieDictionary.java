@@ -27,9 +27,13 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 
-
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ClassUtil;
@@ -64,7 +68,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(TrieDictionary.class);
 
-    private byte[] trieBytes;
+    // the trie on heap, or mapped from a local file by MappedDictionaryLoader
+    transient private ByteBuffer trie;
 
     // non-persistent part
     transient private int headSize;
@@ -87,14 +92,25 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         init(trieBytes);
     }
 
+    public TrieDictionary(ByteBuffer trie) {
+        init(trie);
+    }
+
     private void init(byte[] trieBytes) {
-        this.trieBytes = trieBytes;
-        if (BytesUtil.compareBytes(MAGIC, 0, trieBytes, 0, MAGIC.length) != 0)
-            throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        init(ByteBuffer.wrap(trieBytes));
+    }
+
+    private void init(ByteBuffer trie) {
+        this.trie = trie;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (trie.get(i) != MAGIC[i])
+                throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        }
 
         try {
-            DataInputStream headIn = new DataInputStream(//
-                    new ByteArrayInputStream(trieBytes, MAGIC_SIZE_I, trieBytes.length - MAGIC_SIZE_I));
+            ByteBuffer head = trie.duplicate();
+            head.position(MAGIC_SIZE_I);
+            DataInputStream headIn = new DataInputStream(new ByteBufferBackedInputStream(head));
             this.headSize = headIn.readShort();
             this.bodyLen = headIn.readInt();
             this.sizeChildOffset = headIn.read();
@@ -106,7 +122,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             if (converterName.isEmpty() == false)
                 setConverterByName(converterName);
 
-            this.nValues = BytesUtil.readUnsigned(trieBytes, headSize + sizeChildOffset, sizeNoValuesBeneath);
+            this.nValues = BytesUtil.readUnsigned(trie, headSize + sizeChildOffset, sizeNoValuesBeneath);
             this.sizeOfId = BytesUtil.sizeForValue(baseId + nValues + 1L); // note baseId could raise 1 byte in ID space, +1 to reserve all 0xFF for NULL case
             this.childOffsetMask = ~((long) (BIT_IS_LAST_CHILD | BIT_IS_END_OF_VALUE) << ((sizeChildOffset - 1) * 8));
             this.firstByteOffset = sizeChildOffset + sizeNoValuesBeneath + 1; // the offset from begin of node to its first value byte
@@ -174,12 +190,12 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             // match the current node, note [0] of node's value has been matched
             // when this node is selected by its parent
             int p = n + firstByteOffset; // start of node's value
-            int end = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1); // end of node's value
+            int end = p + BytesUtil.readUnsigned(trie, p - 1, 1); // end of node's value
             for (p++; p < end && o < inpEnd; p++, o++) { // note matching start from [1]
-                if (trieBytes[p] != inp[o]) {
-                    int comp = BytesUtil.compareByteUnsigned(trieBytes[p], inp[o]);
+                if (trie.get(p) != inp[o]) {
+                    int comp = BytesUtil.compareByteUnsigned(trie.get(p), inp[o]);
                     if (comp < 0) {
-                        seq += BytesUtil.readUnsigned(trieBytes, n + sizeChildOffset, sizeNoValuesBeneath);
+                        seq += BytesUtil.readUnsigned(trie, n + sizeChildOffset, sizeNoValuesBeneath);
                     }
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // mismatch
                 }
@@ -201,16 +217,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             int comp;
             while (true) {
                 p = c + firstByteOffset;
-                comp = BytesUtil.compareByteUnsigned(trieBytes[p], inpByte);
+                comp = BytesUtil.compareByteUnsigned(trie.get(p), inpByte);
                 if (comp == 0) { // continue in the matching child, reset n and loop again
                     n = c;
                     o++;
                     break;
                 } else if (comp < 0) { // try next child
-                    seq += BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                    seq += BytesUtil.readUnsigned(trie, c + sizeChildOffset, sizeNoValuesBeneath);
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + BytesUtil.readUnsigned(trie, p - 1, 1);
                 } else { // children are ordered by their first value byte
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
                 }
@@ -218,9 +234,134 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         }
     }
 
+    /**
+     * Probes the values in sorted order, so that a value resumes from the deepest node matched by
+     * the previous value within their common prefix, instead of walking the trie from the root.
+     */
+    @Override
+    public BitSet getIdsFromValues(Collection<T> values) {
+        List<byte[]> probes = toSortedValueBytes(values);
+        BitSet ids = new BitSet();
+        probeIds(probes, 0, probes.size(), ids, 0);
+        return ids;
+    }
+
+    /**
+     * Looks up the sorted value bytes in [from, to), and sets the IDs found plus the offset.
+     */
+    void probeIds(List<byte[]> sortedProbes, int from, int to, BitSet ids, int idOffset) {
+        ProbePath path = new ProbePath(headSize);
+        byte[] prev = null;
+        for (int i = from; i < to; i++) {
+            byte[] probe = sortedProbes.get(i);
+            int seq;
+            if (probe.length == 0) {
+                seq = lookupSeqNoFromValue(headSize, probe, 0, 0, 0);
+            } else {
+                seq = probeSeqNo(probe, prev == null ? 0 : commonPrefix(prev, probe), path);
+            }
+
+            int id = calcIdFromSeqNo(seq);
+            if (id >= 0)
+                ids.set(id + idOffset);
+            prev = probe;
+        }
+    }
+
+    /**
+     * Same as lookupSeqNoFromValue() with roundingFlag=0, but starts from the deepest node on the path
+     * that the common prefix with the previous probe reaches, and records the nodes it enters.
+     */
+    private int probeSeqNo(byte[] inp, int common, ProbePath path) {
+        path.truncate(common);
+        int n = path.nodes[path.depth - 1];
+        int o = path.offsets[path.depth - 1];
+        int seq = path.seqs[path.depth - 1];
+        int inpEnd = inp.length;
+
+        while (true) {
+            int p = n + firstByteOffset;
+            int end = p + BytesUtil.readUnsigned(trie, p - 1, 1);
+            for (p++; p < end && o < inpEnd; p++, o++) {
+                if (trie.get(p) != inp[o])
+                    return -1;
+            }
+
+            boolean isEndOfValue = checkFlag(n, BIT_IS_END_OF_VALUE);
+            if (o == inpEnd) {
+                return p == end && isEndOfValue ? seq : -1;
+            }
+            if (isEndOfValue)
+                seq++;
+
+            int c = getChildOffset(n);
+            if (c == headSize)
+                return -1;
+            byte inpByte = inp[o];
+            while (true) {
+                p = c + firstByteOffset;
+                int comp = BytesUtil.compareByteUnsigned(trie.get(p), inpByte);
+                if (comp == 0) {
+                    n = c;
+                    o++;
+                    path.push(n, o, seq);
+                    break;
+                } else if (comp < 0) {
+                    seq += BytesUtil.readUnsigned(trie, c + sizeChildOffset, sizeNoValuesBeneath);
+                    if (checkFlag(c, BIT_IS_LAST_CHILD))
+                        return -1;
+                    c = p + BytesUtil.readUnsigned(trie, p - 1, 1);
+                } else {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i])
+            i++;
+        return i;
+    }
+
+    /**
+     * The nodes entered by the last probe, with the input offset and sequence no. when entering each.
+     * The state of a node depends only on the input bytes before its offset.
+     */
+    private static class ProbePath {
+        int[] nodes = new int[16];
+        int[] offsets = new int[16];
+        int[] seqs = new int[16];
+        int depth = 0;
+
+        ProbePath(int root) {
+            push(root, 0, 0);
+        }
+
+        void push(int n, int o, int seq) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                offsets = Arrays.copyOf(offsets, depth * 2);
+                seqs = Arrays.copyOf(seqs, depth * 2);
+            }
+            nodes[depth] = n;
+            offsets[depth] = o;
+            seqs[depth] = seq;
+            depth++;
+        }
+
+        // keep the root and the nodes reached within the common prefix
+        void truncate(int common) {
+            while (depth > 1 && offsets[depth - 1] > common)
+                depth--;
+        }
+    }
+
     private int getChildOffset(int n) {
-        long offset = headSize + (BytesUtil.readLong(trieBytes, n, sizeChildOffset) & childOffsetMask);
-        assert offset < trieBytes.length;
+        long offset = headSize + (BytesUtil.readLong(trie, n, sizeChildOffset) & childOffsetMask);
+        assert offset < trie.limit();
         return (int) offset;
     }
 
@@ -266,8 +407,10 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while (true) {
             // write current node value
             int p = n + firstByteOffset;
-            int len = BytesUtil.readUnsigned(trieBytes, p - 1, 1);
-            System.arraycopy(trieBytes, p, returnValue, o, len);
+            int len = BytesUtil.readUnsigned(trie, p - 1, 1);
+            for (int i = 0; i < len; i++) {
+                returnValue[o + i] = trie.get(p + i);
+            }
             o += len;
 
             // if the value is ended
@@ -284,7 +427,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                 return -1; // no child? corrupted dictionary!
             int nValuesBeneath;
             while (true) {
-                nValuesBeneath = BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                nValuesBeneath = BytesUtil.readUnsigned(trie, c + sizeChildOffset, sizeNoValuesBeneath);
                 if (seq - nValuesBeneath < 0) { // value is under this child, reset n and loop again
                     n = c;
                     break;
@@ -293,14 +436,14 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return -1; // no more child? corrupted dictionary!
                     p = c + firstByteOffset;
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + BytesUtil.readUnsigned(trie, p - 1, 1);
                 }
             }
         }
     }
 
     private boolean checkFlag(int offset, int bit) {
-        return (trieBytes[offset] & bit) > 0;
+        return (trie.get(offset) & bit) > 0;
     }
 
     private int calcIdFromSeqNo(int seq) {
@@ -312,11 +455,23 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.write(trieBytes);
+        if (trie.hasArray()) {
+            out.write(trie.array(), trie.arrayOffset(), trie.limit());
+        } else {
+            ByteBuffer src = trie.duplicate();
+            src.clear();
+            byte[] buf = new byte[8192];
+            while (src.hasRemaining()) {
+                int len = Math.min(buf.length, src.remaining());
+                src.get(buf, 0, len);
+                out.write(buf, 0, len);
+            }
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
+        int start = in instanceof MappedDataInput ? ((MappedDataInput) in).position() : -1;
         byte[] headPartial = new byte[MAGIC.length + Short.SIZE + Integer.SIZE];
         in.readFully(headPartial);
 
@@ -329,6 +484,15 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         int bodyLen = headIn.readInt();
         headIn.close();
 
+        if (start >= 0) {
+            // look up in the mapped file directly instead of copying to heap
+            MappedDataInput mapped = (MappedDataInput) in;
+            ByteBuffer slice = mapped.slice(start, headSize + bodyLen);
+            mapped.seek(start + headSize + bodyLen);
+            init(slice);
+            return;
+        }
+
         byte[] all = new byte[headSize + bodyLen];
         System.arraycopy(headPartial, 0, all, 0, headPartial.length);
         in.readFully(all, headPartial.length, all.length - headPartial.length);
@@ -337,8 +501,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
-        stream.writeInt(trieBytes.length);
-        stream.write(trieBytes);
+        stream.writeInt(trie.limit());
+        write(stream);
     }
 
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -364,7 +528,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(trieBytes);
+        return trie.hashCode();
     }
 
     @Override
@@ -374,7 +538,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             return false;
         }
         TrieDictionary that = (TrieDictionary) o;
-        return Arrays.equals(this.trieBytes, that.trieBytes);
+        return this.trie.equals(that.trie);
     }
 
     @Override
@@ -24,6 +24,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -130,6 +132,38 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
         return id;
     }
 
+    /**
+     * Sorts the values once and splits them by the value divides, each run is looked up in batch by its tree.
+     */
+    @Override
+    public BitSet getIdsFromValues(Collection<T> values) {
+        List<byte[]> probes = toSortedValueBytes(values);
+        BitSet ids = new BitSet();
+        int from = 0;
+        if (trees.size() > 1) {
+            // smaller than the first tree
+            while (from < probes.size() && compare(probes.get(from), valueDivide.get(0)) < 0)
+                from++;
+        }
+        for (int i = 0; i < trees.size() && from < probes.size(); i++) {
+            int to = from;
+            if (i == trees.size() - 1) {
+                to = probes.size();
+            } else {
+                ByteArray nextDivide = valueDivide.get(i + 1);
+                while (to < probes.size() && compare(probes.get(to), nextDivide) < 0)
+                    to++;
+            }
+            trees.get(i).probeIds(probes, from, to, ids, baseId + accuOffset.get(i));
+            from = to;
+        }
+        return ids;
+    }
+
+    private static int compare(byte[] value, ByteArray divide) {
+        return Bytes.compareTo(value, 0, value.length, divide.array(), divide.offset(), divide.length());
+    }
+
     @Override
     protected byte[] getValueBytesFromIdWithoutCache(int id) throws IllegalArgumentException {
         int index = (trees.size() == 1) ? 0 : findIndexById(id);
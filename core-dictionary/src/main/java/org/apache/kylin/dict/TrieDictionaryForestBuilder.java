@@ -22,10 +22,24 @@ import org.apache.kylin.common.util.ByteArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Build a trie dictionary forest if the input values is ordered, or the forest falls back to a single trie.
+ * <p>
+ * With more than one build thread, the values of each tree are collected as they stream in and the tree is
+ * built by a pool, while the values of the next tree are collected. Tree boundaries are decided the same way,
+ * so the forest is identical to the one built by a single thread.
  */
 public class TrieDictionaryForestBuilder<T> {
 
@@ -55,6 +69,16 @@ public class TrieDictionaryForestBuilder<T> {
 
     private boolean isOrdered = true;
 
+    private int treeCount = 0;
+
+    private int buildThreads;
+
+    private ThreadPoolExecutor buildPool; // created on the first tree if built in parallel
+
+    private ArrayList<byte[]> curValues; // values of current tree, if built in parallel
+
+    private LinkedList<Future<TrieDictionary<T>>> pendingTrees = new LinkedList<>();
+
     public TrieDictionaryForestBuilder(BytesConverter<T> bytesConverter) {
         this(bytesConverter, 0);
     }
@@ -69,6 +93,22 @@ public class TrieDictionaryForestBuilder<T> {
         this.baseId = baseId;
         this.curOffset = 0;
         this.maxTrieTreeSize = maxTrieTreeSizeMB * 1024 * 1024;
+        setBuildThreads(getBuildThreadsFromConfig());
+    }
+
+    /**
+     * Sets the threads to build trees, must be called before any value is added.
+     */
+    public void setBuildThreads(int buildThreads) {
+        if (treeCount > 0 || trieBuilder.isHasValue() || (curValues != null && !curValues.isEmpty()))
+            throw new IllegalStateException("Build threads must be set before adding values");
+
+        this.buildThreads = buildThreads;
+        this.curValues = isParallel() ? new ArrayList<byte[]>() : null;
+    }
+
+    private boolean isParallel() {
+        return buildThreads > 1;
     }
 
     public void addValue(T value) {
@@ -79,6 +119,15 @@ public class TrieDictionaryForestBuilder<T> {
     }
 
     private void addValue(byte[] valueBytes) {
+        try {
+            doAddValue(valueBytes);
+        } catch (RuntimeException e) {
+            shutdownPool();
+            throw e;
+        }
+    }
+
+    private void doAddValue(byte[] valueBytes) {
         ByteArray valueByteArray = new ByteArray(valueBytes);
         if (previousValue != null && isOrdered) {
             int comp = previousValue.compareTo(valueByteArray);
@@ -88,27 +137,34 @@ public class TrieDictionaryForestBuilder<T> {
             if (comp > 0) {
                 logger.info("values not in ascending order, previous '{}', current '{}'", previousValue, valueByteArray);
                 isOrdered = false;
-                if (trees.size() > 0) {
+                if (treeCount > 0) {
                     throw new IllegalStateException("Invalid input data. Unordered data cannot be split into multi trees");
                 }
             }
         }
         previousValue = valueByteArray;
-        trieBuilder.addValue(valueBytes);
+        if (isParallel()) {
+            curValues.add(valueBytes);
+        } else {
+            trieBuilder.addValue(valueBytes);
+        }
         curTreeSize += valueBytes.length;
 
         if (curTreeSize >= maxTrieTreeSize && isOrdered) {
-            TrieDictionary<T> tree = trieBuilder.build(0);
-            addTree(tree);
-            reset();
+            cutTree();
         }
     }
 
     public TrieDictionaryForest<T> build() {
-        if (trieBuilder.isHasValue()) { //last tree
-            TrieDictionary<T> tree = trieBuilder.build(0);
-            addTree(tree);
-            reset();
+        try {
+            if (isParallel() ? !curValues.isEmpty() : trieBuilder.isHasValue()) { //last tree
+                cutTree();
+            }
+            while (!pendingTrees.isEmpty()) {
+                addPendingTree();
+            }
+        } finally {
+            shutdownPool();
         }
         TrieDictionaryForest<T> forest = new TrieDictionaryForest<T>(this.trees, this.valueDivide, this.accuOffset, this.bytesConverter, baseId);
         // if input values are not in ascending order and tree num>1,TrieDictionaryForest can not work correctly.
@@ -127,6 +183,62 @@ public class TrieDictionaryForestBuilder<T> {
         logger.info("maxTrieSize is set to:" + maxTrieTreeSize + "B");
     }
 
+    private void cutTree() {
+        treeCount++;
+        if (!isParallel()) {
+            TrieDictionary<T> tree = trieBuilder.build(0);
+            addTree(tree);
+        } else {
+            // bound the trees in memory, the values of each are held until it is built
+            if (pendingTrees.size() >= buildThreads) {
+                addPendingTree();
+            }
+            final ArrayList<byte[]> values = curValues;
+            curValues = new ArrayList<>();
+            pendingTrees.add(getBuildPool().submit(new Callable<TrieDictionary<T>>() {
+                @Override
+                public TrieDictionary<T> call() throws Exception {
+                    TrieDictionaryBuilder<T> builder = new TrieDictionaryBuilder<T>(bytesConverter);
+                    for (byte[] value : values) {
+                        builder.addValue(value);
+                    }
+                    return builder.build(0);
+                }
+            }));
+        }
+        reset();
+    }
+
+    private void addPendingTree() {
+        try {
+            addTree(pendingTrees.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when building trie forest", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private ExecutorService getBuildPool() {
+        if (buildPool == null) {
+            // idle threads time out, in case the builder is dropped without build()
+            buildPool = new ThreadPoolExecutor(buildThreads, buildThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), //
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("trie-forest-builder-%d").build());
+            buildPool.allowCoreThreadTimeOut(true);
+        }
+        return buildPool;
+    }
+
+    private void shutdownPool() {
+        if (buildPool != null) {
+            buildPool.shutdownNow();
+            buildPool = null;
+        }
+    }
+
     private void addTree(TrieDictionary<T> tree) {
         trees.add(tree);
         int minId = tree.getMinId();
@@ -138,7 +250,17 @@ public class TrieDictionaryForestBuilder<T> {
 
     private void reset() {
         curTreeSize = 0;
-        trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
+        if (!isParallel())
+            trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
+    }
+
+    private static int getBuildThreadsFromConfig() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getTrieDictionaryForestBuildThreads();
+        } catch (RuntimeException e) {
+            logger.warn("Cannot get KylinConfig from env, build trie forest by 1 thread: " + e.getMessage());
+            return 1;
+        }
     }
 
     public static int getMaxTrieSizeInMB() {
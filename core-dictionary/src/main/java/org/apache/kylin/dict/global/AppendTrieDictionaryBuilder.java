@@ -25,7 +25,11 @@ import org.apache.kylin.dict.BytesConverter;
 import org.apache.kylin.dict.StringBytesConverter;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -36,26 +40,66 @@ public class AppendTrieDictionaryBuilder {
     private final String workingDir;
     private final int maxEntriesPerSlice;
 
+    // in partition mode, only the slices of the partition are built, see GlobalDictPartitions
+    private final GlobalDictPartitions partitions;
+    private final int partition;
+    private String sourceDir; // where the slices not written by this builder are read
+    private final Set<String> writtenSlices = new HashSet<>();
+
     private GlobalDictStore store;
     private int maxId;
     private int maxValueLength;
     private int nValues;
     private BytesConverter bytesConverter;
     private TreeMap<AppendDictSliceKey, String> sliceFileMap = new TreeMap<>(); // slice key -> slice file name
+    private Map<String, Long> sliceChecksums = new HashMap<>(); // checksums of the slices from last version
 
     private AppendDictSliceKey curKey;
     private AppendDictNode curNode;
+    private boolean curNodeChanged; // unchanged slices need not be written again
 
     public AppendTrieDictionaryBuilder(String resourceDir, int maxEntriesPerSlice) throws IOException {
-        this.baseDir = KylinConfig.getInstanceFromEnv().getHdfsWorkingDirectory() + "resources/GlobalDict" + resourceDir + "/";
+        this.baseDir = getBaseDir(resourceDir);
         this.workingDir = this.baseDir + "/working";
         this.maxEntriesPerSlice = maxEntriesPerSlice;
+        this.partitions = null;
+        this.partition = -1;
         init();
     }
 
+    /**
+     * Builds a partition in a distributed build, the new values of the partition are assigned IDs from firstId on.
+     * The slices of the partition are read from the base version, and the changed ones are written to the partition
+     * directory, see {@link #buildPartition()}.
+     */
+    public AppendTrieDictionaryBuilder(String resourceDir, int maxEntriesPerSlice, GlobalDictPartitions partitions, int partition, int firstId) throws IOException {
+        this.baseDir = getBaseDir(resourceDir);
+        this.maxEntriesPerSlice = maxEntriesPerSlice;
+        this.partitions = partitions;
+        this.partition = partition;
+
+        this.store = new GlobalDictHDFSStore(baseDir);
+        this.workingDir = store.getPartitionDir(partitions.getBaseVersion(), partition);
+        store.preparePartitionForWrite(workingDir);
+        this.sourceDir = store.getVersionDir(partitions.getBaseVersion()).toString();
+
+        GlobalDictMetadata metadata = store.getMetadata(partitions.getBaseVersion());
+        this.maxId = firstId - 1;
+        this.maxValueLength = metadata.maxValueLength;
+        this.nValues = 0; // new values of the partition
+        this.bytesConverter = metadata.bytesConverter;
+        this.sliceFileMap = new TreeMap<>(partitions.slicesOf(partition, metadata));
+        this.sliceChecksums = new HashMap<>(metadata.sliceChecksums);
+    }
+
+    public static String getBaseDir(String resourceDir) {
+        return KylinConfig.getInstanceFromEnv().getHdfsWorkingDirectory() + "resources/GlobalDict" + resourceDir + "/";
+    }
+
     public synchronized void init() throws IOException {
         this.store = new GlobalDictHDFSStore(baseDir);
         store.prepareForWrite(workingDir);
+        this.sourceDir = workingDir;
 
         Long[] versions = store.listAllVersions();
 
@@ -72,6 +116,7 @@ public class AppendTrieDictionaryBuilder {
             this.nValues = metadata.nValues;
             this.bytesConverter = metadata.bytesConverter;
             this.sliceFileMap = new TreeMap<>(metadata.sliceFileMap);
+            this.sliceChecksums = new HashMap<>(metadata.sliceChecksums);
         }
     }
 
@@ -81,9 +126,14 @@ public class AppendTrieDictionaryBuilder {
 
         if (sliceFileMap.isEmpty()) {
             curNode = new AppendDictNode(new byte[0], false);
+            curNodeChanged = true;
             sliceFileMap.put(AppendDictSliceKey.START_KEY, null);
         }
-        checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
+        if (partitions == null) {
+            checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
+        } else if (partitions.partitionOf(valueBytes) != partition) {
+            throw new IllegalArgumentException("Value '" + value + "' does not belong to partition " + partition);
+        }
 
         AppendDictSliceKey nextKey = sliceFileMap.floorKey(AppendDictSliceKey.wrap(valueBytes));
 
@@ -97,18 +147,25 @@ public class AppendTrieDictionaryBuilder {
             curNode = null;
         }
         if (curNode == null) { // read next slice
-            AppendDictSlice slice = store.readSlice(workingDir, sliceFileMap.get(nextKey));
+            String sliceFile = sliceFileMap.get(nextKey);
+            AppendDictSlice slice = store.readSlice(writtenSlices.contains(sliceFile) ? workingDir : sourceDir, sliceFile);
             curNode = slice.rebuildTrieTree();
+            curNodeChanged = false;
         }
         curKey = nextKey;
 
+        int nValuesBefore = nValues;
         addValueR(curNode, valueBytes, 0);
+        if (nValues != nValuesBefore) {
+            curNodeChanged = true;
+        }
 
         // split slice if it's too large
         if (curNode.childrenCount > maxEntriesPerSlice) {
             AppendDictNode newRoot = splitNodeTree(curNode);
             flushCurrentNode();
             curNode = newRoot;
+            curNodeChanged = true;
             curKey = AppendDictSliceKey.wrap(newRoot.firstValue());
             sliceFileMap.put(curKey, null);
         }
@@ -117,11 +174,12 @@ public class AppendTrieDictionaryBuilder {
     }
 
     public AppendTrieDictionary build(int baseId) throws IOException {
+        checkState(partitions == null, "a partition should be built by buildPartition()");
         if (curNode != null) {
             flushCurrentNode();
         }
 
-        GlobalDictMetadata metadata = new GlobalDictMetadata(baseId, this.maxId, this.maxValueLength, this.nValues, this.bytesConverter, sliceFileMap);
+        GlobalDictMetadata metadata = new GlobalDictMetadata(baseId, this.maxId, this.maxValueLength, this.nValues, this.bytesConverter, sliceFileMap, sliceChecksums);
         store.commit(workingDir, metadata);
 
         AppendTrieDictionary dict = new AppendTrieDictionary();
@@ -129,10 +187,28 @@ public class AppendTrieDictionaryBuilder {
         return dict;
     }
 
+    /**
+     * Writes the changed slices and the metadata of the partition to the partition directory.
+     */
+    public void buildPartition() throws IOException {
+        checkState(partitions != null, "not in partition mode");
+        if (curNode != null) {
+            flushCurrentNode();
+        }
+
+        GlobalDictMetadata metadata = new GlobalDictMetadata(0, this.maxId, this.maxValueLength, this.nValues, this.bytesConverter, sliceFileMap, sliceChecksums);
+        store.commitPartition(workingDir, metadata);
+    }
+
     private void flushCurrentNode() throws IOException {
+        if (!curNodeChanged) {
+            return;
+        }
         String newSliceFile = store.writeSlice(workingDir, curKey, curNode);
+        writtenSlices.add(newSliceFile);
         String oldSliceFile = sliceFileMap.put(curKey, newSliceFile);
-        if (oldSliceFile != null) {
+        // the slices of the base version are kept in partition mode
+        if (oldSliceFile != null && !oldSliceFile.equals(newSliceFile) && (sourceDir.equals(workingDir) || writtenSlices.contains(oldSliceFile))) {
             store.deleteSlice(workingDir, oldSliceFile);
         }
     }
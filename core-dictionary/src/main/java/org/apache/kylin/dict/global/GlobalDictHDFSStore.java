@@ -33,9 +33,13 @@ import org.apache.kylin.dict.BytesConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -48,11 +52,14 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
     static final String V1_INDEX_NAME = ".index";
     static final String V2_INDEX_NAME = ".index_v2";
     static final String VERSION_PREFIX = "version_";
+    static final String PARTITIONS_PREFIX = "partitions_";
+    static final String PARTITION_PREFIX = "partition_";
     static final int BUFFER_SIZE = 8 * 1024 * 1024;
 
     private final Path basePath;
     private final Configuration conf;
     private final FileSystem fileSystem;
+    private final Map<String, Long> writtenSliceChecksums = new HashMap<>(); // checksums of the slices written by this store
 
     public GlobalDictHDFSStore(String baseDir) throws IOException {
         super(baseDir);
@@ -95,7 +102,7 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
                     FileUtil.copy(fileSystem, sliceFile.getPath(), fileSystem, tempDir, false, conf);
                 }
                 // rename
-                fileSystem.rename(tempDir, versionDir);
+                rename(tempDir, versionDir);
                 // delete index and slices files in base dir
                 fileSystem.delete(indexFile, false);
                 for (FileStatus sliceFile : sliceFiles) {
@@ -184,6 +191,17 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
         }
     }
 
+    @Override
+    public byte[] readSliceBytes(String directory, String sliceFileName) throws IOException {
+        Path path = new Path(directory, sliceFileName);
+        logger.info("read slice bytes from {}", path);
+        try (FSDataInputStream input = fileSystem.open(path, BUFFER_SIZE)) {
+            byte[] bytes = new byte[(int) fileSystem.getFileStatus(path).getLen()];
+            input.readFully(bytes);
+            return bytes;
+        }
+    }
+
     @Override
     public String writeSlice(String workingDir, AppendDictSliceKey key, AppendDictNode slice) throws IOException {
         //write new slice
@@ -194,6 +212,7 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
         try (FSDataOutputStream out = fileSystem.create(path, true, BUFFER_SIZE)) {
             byte[] bytes = slice.buildTrieBytes();
             out.write(bytes);
+            writtenSliceChecksums.put(sliceFile, checksum(bytes));
         }
         return sliceFile;
     }
@@ -216,6 +235,8 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
         if (fileSystem.exists(oldIndexFile)) {
             fileSystem.delete(oldIndexFile, false);
         }
+        metadata = withWrittenChecksums(metadata);
+
         // write v2 index file
         IndexFormat index = new IndexFormatV2(fileSystem, conf);
         index.writeIndexFile(workingPath, metadata);
@@ -223,11 +244,115 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
 
         // copy working dir to newVersion dir
         Path newVersionPath = new Path(basePath, VERSION_PREFIX + System.currentTimeMillis());
-        fileSystem.rename(workingPath, newVersionPath);
+        rename(workingPath, newVersionPath);
 
         cleanUp();
     }
 
+    // a failed rename must not be followed by an index pointing at the missing files
+    private void rename(Path src, Path dst) throws IOException {
+        if (!fileSystem.rename(src, dst)) {
+            throw new IOException("Failed to rename " + src + " to " + dst);
+        }
+    }
+
+    // the slices kept from the previous version come with their checksums, add the ones written here
+    private GlobalDictMetadata withWrittenChecksums(GlobalDictMetadata metadata) {
+        Map<String, Long> sliceChecksums = new HashMap<>();
+        for (String sliceFile : metadata.sliceFileMap.values()) {
+            Long checksum = writtenSliceChecksums.containsKey(sliceFile) ? writtenSliceChecksums.get(sliceFile) : metadata.sliceChecksums.get(sliceFile);
+            if (checksum != null) {
+                sliceChecksums.put(sliceFile, checksum);
+            }
+        }
+        return new GlobalDictMetadata(metadata.baseId, metadata.maxId, metadata.maxValueLength, metadata.nValues, metadata.bytesConverter, metadata.sliceFileMap, sliceChecksums);
+    }
+
+    @Override
+    public String getPartitionDir(long baseVersion, int partition) {
+        return new Path(getPartitionsDir(baseVersion), PARTITION_PREFIX + partition).toString();
+    }
+
+    private Path getPartitionsDir(long baseVersion) {
+        return new Path(basePath, PARTITIONS_PREFIX + baseVersion);
+    }
+
+    @Override
+    void preparePartitionForWrite(String partitionDir) throws IOException {
+        Path partitionPath = new Path(partitionDir);
+        if (fileSystem.exists(partitionPath)) {
+            // left by a failed task attempt
+            fileSystem.delete(partitionPath, true);
+            logger.info("Partition directory {} exits, delete it first", partitionPath);
+        }
+        fileSystem.mkdirs(partitionPath);
+    }
+
+    @Override
+    public void commitPartition(String partitionDir, GlobalDictMetadata partitionMetadata) throws IOException {
+        Path partitionPath = new Path(partitionDir);
+        partitionMetadata = withWrittenChecksums(partitionMetadata);
+        IndexFormat index = new IndexFormatV2(fileSystem, conf);
+        index.writeIndexFile(partitionPath, partitionMetadata);
+        logger.info("Partition {} built with {} new values and {} slices", partitionPath, partitionMetadata.nValues, partitionMetadata.sliceFileMap.size());
+    }
+
+    @Override
+    public void commitPartitions(String workingDir, GlobalDictPartitions partitions) throws IOException {
+        long baseVersion = partitions.getBaseVersion();
+        Long[] versions = listAllVersions();
+        checkState(versions.length > 0 && versions[versions.length - 1] == baseVersion, "Global dict at %s is changed since version %s of the partitions", basePath, baseVersion);
+
+        GlobalDictMetadata base = getMetadata(baseVersion);
+        prepareForWrite(workingDir);
+        Path workingPath = new Path(workingDir);
+
+        TreeMap<AppendDictSliceKey, String> sliceFileMap = new TreeMap<>(base.sliceFileMap);
+        Map<String, Long> sliceChecksums = new HashMap<>(base.sliceChecksums);
+        int nValues = base.nValues;
+        int maxValueLength = base.maxValueLength;
+        int nextId = base.maxId + 1;
+
+        IndexFormat index = new IndexFormatV2(fileSystem, conf);
+        for (int i = 0; i < partitions.size(); i++) {
+            Path partitionPath = new Path(getPartitionDir(baseVersion, i));
+            if (!fileSystem.exists(new Path(partitionPath, V2_INDEX_NAME))) {
+                logger.info("No new values in partition {}", partitionPath);
+                continue;
+            }
+            GlobalDictMetadata partition = index.readIndexFile(partitionPath);
+            checkState(partition.maxId - partition.nValues + 1 == nextId, "IDs of partition %s are not contiguous, expect first ID %s but got %s", partitionPath, nextId, partition.maxId - partition.nValues + 1);
+
+            // replace the slices of the partition range by the ones of the partition
+            sliceFileMap.keySet().removeAll(partitions.slicesOf(i, base).keySet());
+            for (Map.Entry<AppendDictSliceKey, String> entry : partition.sliceFileMap.entrySet()) {
+                String sliceFile = entry.getValue();
+                Path written = new Path(partitionPath, sliceFile);
+                if (fileSystem.exists(written)) {
+                    rename(written, new Path(workingPath, sliceFile));
+                }
+                sliceFileMap.put(entry.getKey(), sliceFile);
+            }
+            sliceChecksums.putAll(partition.sliceChecksums);
+
+            nValues += partition.nValues;
+            maxValueLength = Math.max(maxValueLength, partition.maxValueLength);
+            nextId += partition.nValues;
+        }
+
+        // the slices of the base version replaced by the partitions
+        Set<String> sliceFiles = new HashSet<>(sliceFileMap.values());
+        for (String sliceFile : base.sliceFileMap.values()) {
+            if (!sliceFiles.contains(sliceFile)) {
+                deleteSlice(workingDir, sliceFile);
+            }
+        }
+
+        sliceChecksums.keySet().retainAll(sliceFiles);
+        commit(workingDir, new GlobalDictMetadata(base.baseId, nextId - 1, maxValueLength, nValues, base.bytesConverter, sliceFileMap, sliceChecksums));
+        fileSystem.delete(getPartitionsDir(baseVersion), true);
+    }
+
     // Check versions count, delete expired versions
     private void cleanUp() throws IOException {
         Long[] versions = listAllVersions();
@@ -375,7 +500,19 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
                     sliceFileMap.put(key, sliceFileName);
                 }
 
-                return new GlobalDictMetadata(baseId, maxId, maxValueLength, nValues, converter, sliceFileMap);
+                // slice checksums are appended after the slices, absent in the index files written before them
+                Map<String, Long> sliceChecksums = new HashMap<>();
+                try {
+                    int nChecksums = in.readInt();
+                    for (int i = 0; i < nChecksums; i++) {
+                        String sliceFileName = in.readUTF();
+                        sliceChecksums.put(sliceFileName, in.readLong());
+                    }
+                } catch (EOFException e) {
+                    sliceChecksums.clear();
+                }
+
+                return new GlobalDictMetadata(baseId, maxId, maxValueLength, nValues, converter, sliceFileMap, sliceChecksums);
             }
         }
 
@@ -394,6 +531,12 @@ public class GlobalDictHDFSStore extends GlobalDictStore {
                     entry.getKey().write(out);
                     out.writeUTF(entry.getValue());
                 }
+                // appended so that the readers of minor version 1 without checksums just ignore them
+                out.writeInt(metadata.sliceChecksums.size());
+                for (Map.Entry<String, Long> entry : metadata.sliceChecksums.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
             }
         }
 
@@ -21,6 +21,9 @@ package org.apache.kylin.dict.global;
 import com.google.common.base.Preconditions;
 import org.apache.kylin.dict.BytesConverter;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
@@ -35,11 +38,17 @@ public class GlobalDictMetadata {
     public final int nValues;
     public final BytesConverter bytesConverter;
     public final TreeMap<AppendDictSliceKey, String> sliceFileMap; // slice key -> slice file name
+    public final Map<String, Long> sliceChecksums; // slice file name -> checksum, absent for slices written by older versions
 
     public GlobalDictMetadata(int baseId, int maxId, int maxValueLength, int nValues, BytesConverter bytesConverter, NavigableMap<AppendDictSliceKey, String> sliceFileMap) {
+        this(baseId, maxId, maxValueLength, nValues, bytesConverter, sliceFileMap, Collections.<String, Long> emptyMap());
+    }
+
+    public GlobalDictMetadata(int baseId, int maxId, int maxValueLength, int nValues, BytesConverter bytesConverter, NavigableMap<AppendDictSliceKey, String> sliceFileMap, Map<String, Long> sliceChecksums) {
 
         Preconditions.checkNotNull(bytesConverter, "bytesConverter");
         Preconditions.checkNotNull(sliceFileMap, "sliceFileMap");
+        Preconditions.checkNotNull(sliceChecksums, "sliceChecksums");
 
         this.baseId = baseId;
         this.maxId = maxId;
@@ -47,5 +56,6 @@ public class GlobalDictMetadata {
         this.nValues = nValues;
         this.bytesConverter = bytesConverter;
         this.sliceFileMap = new TreeMap<>(sliceFileMap);
+        this.sliceChecksums = Collections.unmodifiableMap(new HashMap<>(sliceChecksums));
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.dict.global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.apache.kylin.dict.BytesConverter;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Range partitions of a global dictionary version for a distributed build. The partitions are split at the
+ * slice keys of the base version, so each covers whole slices, and are derived from the base version only,
+ * so that all tasks of a build compute the same partitions.
+ * <p>
+ * Each partition is built by {@link AppendTrieDictionaryBuilder} in partition mode and assigned a contiguous
+ * range of new IDs after the ones of the partitions before, so that existing IDs never change. The partitions
+ * are then committed together as a new version by {@link GlobalDictStore#commitPartitions}.
+ */
+public class GlobalDictPartitions {
+
+    private final long baseVersion;
+    private final BytesConverter bytesConverter;
+    private final AppendDictSliceKey[] lowerBounds; // lower bound of each partition, the first is START_KEY
+
+    private GlobalDictPartitions(long baseVersion, BytesConverter bytesConverter, AppendDictSliceKey[] lowerBounds) {
+        this.baseVersion = baseVersion;
+        this.bytesConverter = bytesConverter;
+        this.lowerBounds = lowerBounds;
+    }
+
+    /**
+     * Splits the slices of the base version into at most maxPartitions partitions of similar slice count.
+     */
+    public static GlobalDictPartitions create(long baseVersion, GlobalDictMetadata metadata, int maxPartitions) {
+        Preconditions.checkArgument(maxPartitions > 0, "maxPartitions should be positive");
+
+        List<AppendDictSliceKey> sliceKeys = new ArrayList<>(metadata.sliceFileMap.keySet());
+        if (sliceKeys.isEmpty()) {
+            return new GlobalDictPartitions(baseVersion, metadata.bytesConverter, new AppendDictSliceKey[] { AppendDictSliceKey.START_KEY });
+        }
+
+        int n = Math.min(maxPartitions, sliceKeys.size());
+        AppendDictSliceKey[] lowerBounds = new AppendDictSliceKey[n];
+        for (int i = 0; i < n; i++) {
+            lowerBounds[i] = sliceKeys.get((int) ((long) i * sliceKeys.size() / n));
+        }
+        return new GlobalDictPartitions(baseVersion, metadata.bytesConverter, lowerBounds);
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public int size() {
+        return lowerBounds.length;
+    }
+
+    public int partitionOf(String value) {
+        return partitionOf(bytesConverter.convertToBytes(value));
+    }
+
+    /**
+     * @return the partition of a value, in bytes converted by the bytes converter of the dictionary
+     */
+    public int partitionOf(byte[] valueBytes) {
+        return partitionOf(AppendDictSliceKey.wrap(valueBytes));
+    }
+
+    int partitionOf(AppendDictSliceKey key) {
+        int i = Arrays.binarySearch(lowerBounds, key);
+        return i >= 0 ? i : -i - 2; // the last lower bound not greater than the key
+    }
+
+    /**
+     * @return the slices of the base version in a partition
+     */
+    NavigableMap<AppendDictSliceKey, String> slicesOf(int partition, GlobalDictMetadata metadata) {
+        if (partition == lowerBounds.length - 1) {
+            return metadata.sliceFileMap.tailMap(lowerBounds[partition], true);
+        }
+        return metadata.sliceFileMap.subMap(lowerBounds[partition], true, lowerBounds[partition + 1], false);
+    }
+
+    AppendDictSliceKey lowerBound(int partition) {
+        return lowerBounds[partition];
+    }
+}
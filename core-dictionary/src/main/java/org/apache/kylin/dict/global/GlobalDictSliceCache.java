@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.dict.global;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A node-local disk cache of the slice files of a global dictionary version, so that the tasks on a node fetch
+ * each slice from HDFS once, and a slice evicted from memory is read back from local disk.
+ * <p>
+ * Slice files are never changed once written and are shared by versions, so the local copies are named by
+ * slice file and checksum and reused across versions. A local copy is verified against the checksum in
+ * {@link GlobalDictMetadata} before use, and fetched again if it does not match. Slices written before the
+ * checksums were added are cached per version.
+ * <p>
+ * The slices can be prefetched to local disk in background, see {@link #prefetch()}.
+ */
+public class GlobalDictSliceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalDictSliceCache.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static volatile ExecutorService prefetchPool;
+
+    // the fetches in flight by local file, shared by the dictionaries in the same JVM
+    private static final ConcurrentMap<File, Future<Void>> fetching = new ConcurrentHashMap<>();
+
+    private final GlobalDictStore store;
+    private final String versionDir;
+    private final GlobalDictMetadata metadata;
+    private final File localDir;
+    private final int prefetchThreads;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong remoteFetches = new AtomicLong();
+    private final AtomicLong checksumMismatches = new AtomicLong();
+    private final AtomicLong prefetches = new AtomicLong();
+
+    public GlobalDictSliceCache(GlobalDictStore store, String versionDir, GlobalDictMetadata metadata, File cacheDir, int prefetchThreads) {
+        this.store = store;
+        this.versionDir = versionDir;
+        this.metadata = metadata;
+        this.localDir = new File(cacheDir, localName(new Path(store.baseDir).toString())); // the same dict may be opened by paths with redundant slashes
+        this.prefetchThreads = prefetchThreads;
+        localDir.mkdirs();
+        cleanUp();
+    }
+
+    /**
+     * Reads a slice from the local copy, which is fetched first if not there.
+     */
+    public AppendDictSlice load(String sliceFile) throws IOException {
+        File local = localFile(sliceFile);
+        if (local.exists()) {
+            byte[] bytes = FileUtils.readFileToByteArray(local);
+            if (verify(sliceFile, bytes)) {
+                localHits.incrementAndGet();
+                return new AppendDictSlice(bytes);
+            }
+            checksumMismatches.incrementAndGet();
+            logger.warn("Local copy {} of slice {} does not match checksum, fetch it again", local, sliceFile);
+            local.delete();
+        }
+
+        await(fetch(sliceFile, local), sliceFile);
+        return new AppendDictSlice(FileUtils.readFileToByteArray(local));
+    }
+
+    /**
+     * Fetches the slices not on local disk in background, by at most prefetchThreads in the JVM.
+     */
+    public void prefetch() {
+        if (prefetchThreads <= 0) {
+            return;
+        }
+
+        int submitted = 0;
+        for (final String sliceFile : metadata.sliceFileMap.values()) {
+            final File local = localFile(sliceFile);
+            if (local.exists() || fetching.containsKey(local)) {
+                continue;
+            }
+            getPrefetchPool(prefetchThreads).submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!local.exists()) {
+                            await(fetch(sliceFile, local), sliceFile);
+                            prefetches.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        logger.warn("Failed to prefetch slice " + sliceFile + " to local disk, it is fetched when used", e);
+                    }
+                }
+            });
+            submitted++;
+        }
+        logger.info("Prefetch {} of {} slices of {} to {}", submitted, metadata.sliceFileMap.size(), versionDir, localDir);
+    }
+
+    // copies the slice to local disk, or joins the copy in flight by another thread
+    private Future<Void> fetch(final String sliceFile, final File local) {
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                byte[] bytes = store.readSliceBytes(versionDir, sliceFile);
+                if (!verify(sliceFile, bytes)) {
+                    throw new IOException("Slice " + sliceFile + " in " + versionDir + " does not match checksum");
+                }
+                remoteFetches.incrementAndGet();
+
+                File tmp = File.createTempFile(local.getName(), TMP_SUFFIX, localDir);
+                try {
+                    try (OutputStream out = new FileOutputStream(tmp)) {
+                        out.write(bytes);
+                    }
+                    // another process may have fetched the same slice, either copy is good
+                    if (!tmp.renameTo(local) && !local.exists()) {
+                        throw new IOException("Failed to move " + tmp + " to " + local);
+                    }
+                } finally {
+                    if (tmp.exists()) {
+                        tmp.delete();
+                    }
+                }
+                return null;
+            }
+        });
+
+        Future<Void> existing = fetching.putIfAbsent(local, task);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            task.run();
+        } finally {
+            fetching.remove(local, task);
+        }
+        return task;
+    }
+
+    private void await(Future<Void> future, String sliceFile) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when fetching slice " + sliceFile, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to fetch slice " + sliceFile, e.getCause());
+        }
+    }
+
+    private boolean verify(String sliceFile, byte[] bytes) {
+        Long checksum = metadata.sliceChecksums.get(sliceFile);
+        return checksum == null || checksum == GlobalDictStore.checksum(bytes);
+    }
+
+    // deletes the local copies not used by current version and not touched within the version TTL
+    private void cleanUp() {
+        Set<String> inUse = new HashSet<>();
+        for (String sliceFile : metadata.sliceFileMap.values()) {
+            inUse.add(localFile(sliceFile).getName());
+        }
+
+        File[] files = localDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long expireTime = System.currentTimeMillis() - store.versionTTL;
+        for (File file : files) {
+            if (!inUse.contains(file.getName()) && file.lastModified() < expireTime) {
+                file.delete();
+            }
+        }
+    }
+
+    File localFile(String sliceFile) {
+        Long checksum = metadata.sliceChecksums.get(sliceFile);
+        String version = new File(versionDir).getName();
+        String name = checksum != null ? sliceFile + "." + Long.toHexString(checksum) : version + "." + sliceFile;
+        // slice file names contain the key with arbitrary chars, the hash keeps sanitized names apart
+        return new File(localDir, localName(name) + "." + Integer.toHexString(name.hashCode()));
+    }
+
+    public long getLocalHits() {
+        return localHits.get();
+    }
+
+    public long getRemoteFetches() {
+        return remoteFetches.get();
+    }
+
+    public long getChecksumMismatches() {
+        return checksumMismatches.get();
+    }
+
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+
+    private static String localName(String path) {
+        return path.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    private static ExecutorService getPrefetchPool(int threads) {
+        if (prefetchPool == null) {
+            synchronized (GlobalDictSliceCache.class) {
+                if (prefetchPool == null) {
+                    prefetchPool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("global-dict-slice-prefetch-%d").build());
+                }
+            }
+        }
+        return prefetchPool;
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 
 import java.io.IOException;
+import java.util.zip.CRC32;
 
 public abstract class GlobalDictStore {
 
@@ -65,6 +66,15 @@ public abstract class GlobalDictStore {
      */
     public abstract AppendDictSlice readSlice(String workingDir, String sliceFileName) throws IOException;
 
+    /**
+     * Read the raw bytes of a slice file.
+     * @param workingDir directory of the slice file
+     * @param sliceFileName file name of the slice
+     * @return the slice file content
+     * @throws IOException on I/O error
+     */
+    public abstract byte[] readSliceBytes(String workingDir, String sliceFileName) throws IOException;
+
     /**
      * Write a slice with the given key to the specified directory.
      * @param workingDir where to write the slice, should exist
@@ -91,6 +101,35 @@ public abstract class GlobalDictStore {
      */
     public abstract void commit(String workingDir, GlobalDictMetadata globalDictMetadata) throws IOException;
 
+    /**
+     * Get the directory of a partition in a distributed build.
+     * @param baseVersion version the partitions are built on
+     * @param partition partition index
+     * @return the partition directory
+     */
+    public abstract String getPartitionDir(long baseVersion, int partition);
+
+    // partitionDir should be an absolute path, will create if not exists, or empty it if exists
+    abstract void preparePartitionForWrite(String partitionDir) throws IOException;
+
+    /**
+     * commit the <i>DictSlice</i> and <i>GlobalDictMetadata</i> of a partition in partitionDir, to be committed
+     * with the other partitions by {@link #commitPartitions}
+     * @param partitionDir where store the slices written for the partition
+     * @param partitionMetadata the slices of the partition and the IDs assigned to its new values
+     * @throws IOException on I/O error
+     */
+    public abstract void commitPartition(String partitionDir, GlobalDictMetadata partitionMetadata) throws IOException;
+
+    /**
+     * commit the partitions built on the latest version to new versionDir, fails if the latest version is not the base
+     * version of the partitions or the IDs of the partitions are not contiguous
+     * @param workingDir where store the tmp slice and index
+     * @param partitions the partitions of the build
+     * @throws IOException on I/O error
+     */
+    public abstract void commitPartitions(String workingDir, GlobalDictPartitions partitions) throws IOException;
+
     /**
      * Copy the latest version of this dict to another meta. The source is unchanged.
      * @param srcConfig config of source meta
@@ -99,4 +138,11 @@ public abstract class GlobalDictStore {
      * @throws IOException on I/O error
      */
     public abstract String copyToAnotherMeta(KylinConfig srcConfig, KylinConfig dstConfig) throws IOException;
+
+    // checksum of a slice file, kept in the metadata to verify copies of the slice
+    public static long checksum(byte[] sliceBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(sliceBytes, 0, sliceBytes.length);
+        return crc.getValue();
+    }
 }
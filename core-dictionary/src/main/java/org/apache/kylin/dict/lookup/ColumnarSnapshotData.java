@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.dict.TrieDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The rows of a snapshot table stored by column in a single buffer, read in place without materializing the rows.
+ *
+ * Each column holds the dictionary ids of its cells, bit packed to the width of the largest id in the column,
+ * with 0 for null and id + 1 otherwise. An optional primary key index is an open addressing hash table of
+ * row numbers on the ids of the key columns, built with the snapshot so a loaded table needs no indexing.
+ *
+ * Layout of the buffer:
+ * <pre>
+ * rowCount, columnCount, dictLength, dict
+ * for each column: bits, offset of the packed ids
+ * keyColumnCount, key columns, slotCount, slots (row + 1, or 0 for empty)
+ * packed ids of each column, padded by 8 bytes
+ * </pre>
+ */
+class ColumnarSnapshotData {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarSnapshotData.class);
+
+    private static final int PADDING = 8; // a packed id is read by a long from its first byte
+
+    private final ByteBuffer buf;
+    private final int rowCount;
+    private final int columnCount;
+    private final Dictionary<String> dict;
+    private final int[] bits;
+    private final int[] offsets;
+    private final int[] keyColumns;
+    private final int slotCount;
+    private final int slotsOffset;
+
+    ColumnarSnapshotData(ByteBuffer buf) {
+        this.buf = buf;
+        int p = 0;
+        this.rowCount = buf.getInt(p);
+        this.columnCount = buf.getInt(p + 4);
+        int dictLength = buf.getInt(p + 8);
+        p += 12;
+
+        ByteBuffer dictBuf = buf.duplicate();
+        dictBuf.position(p);
+        dictBuf.limit(p + dictLength);
+        this.dict = new TrieDictionary<>(dictBuf.slice());
+        p += dictLength;
+
+        this.bits = new int[columnCount];
+        this.offsets = new int[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            bits[c] = buf.get(p);
+            offsets[c] = buf.getInt(p + 1);
+            p += 5;
+        }
+
+        this.keyColumns = new int[buf.getInt(p)];
+        p += 4;
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i] = buf.getInt(p);
+            p += 4;
+        }
+        this.slotCount = buf.getInt(p);
+        this.slotsOffset = p + 4;
+    }
+
+    /**
+     * @param rows the dictionary ids of the rows
+     * @param keyColumns the primary key columns to index, or null for no index
+     */
+    static ColumnarSnapshotData build(TrieDictionary<String> dict, List<int[]> rows, int columnCount, int[] keyColumns) throws IOException {
+        int rowCount = rows.size();
+        int[] bits = new int[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            int max = 0;
+            for (int[] row : rows) {
+                max = Math.max(max, toStored(dict, row[c]));
+            }
+            bits[c] = 32 - Integer.numberOfLeadingZeros(max);
+        }
+
+        int[] slots = keyColumns == null ? new int[0] : buildIndex(dict, rows, keyColumns);
+        if (slots == null) {
+            keyColumns = null;
+            slots = new int[0];
+        }
+
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+        try (DataOutputStream dictOut = new DataOutputStream(dictBytes)) {
+            dict.write(dictOut);
+        }
+
+        int headerLength = 12 + dictBytes.size() + 5 * columnCount + 4 + 4 * (keyColumns == null ? 0 : keyColumns.length) + 4 + 4 * slots.length;
+        int[] offsets = new int[columnCount];
+        long length = headerLength;
+        for (int c = 0; c < columnCount; c++) {
+            offsets[c] = (int) length;
+            length += ((long) rowCount * bits[c] + 7) / 8 + PADDING;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot of " + rowCount + " rows is too large for the columnar format");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) length);
+        buf.putInt(rowCount);
+        buf.putInt(columnCount);
+        buf.putInt(dictBytes.size());
+        buf.put(dictBytes.toByteArray());
+        for (int c = 0; c < columnCount; c++) {
+            buf.put((byte) bits[c]);
+            buf.putInt(offsets[c]);
+        }
+        if (keyColumns == null) {
+            buf.putInt(0);
+        } else {
+            buf.putInt(keyColumns.length);
+            for (int k : keyColumns) {
+                buf.putInt(k);
+            }
+        }
+        buf.putInt(slots.length);
+        for (int s : slots) {
+            buf.putInt(s);
+        }
+
+        for (int c = 0; c < columnCount; c++) {
+            if (bits[c] == 0)
+                continue;
+            for (int r = 0; r < rowCount; r++) {
+                long bitPos = (long) r * bits[c];
+                int index = offsets[c] + (int) (bitPos >>> 3);
+                int shift = 64 - (int) (bitPos & 7) - bits[c];
+                buf.putLong(index, buf.getLong(index) | ((long) toStored(dict, rows.get(r)[c]) << shift));
+            }
+        }
+
+        buf.clear();
+        return new ColumnarSnapshotData(buf);
+    }
+
+    // returns null if the key is not unique
+    private static int[] buildIndex(Dictionary<String> dict, List<int[]> rows, int[] keyColumns) {
+        int slotCount = Integer.highestOneBit(Math.max(rows.size(), 1) * 2 - 1) << 1;
+        int mask = slotCount - 1;
+        int[] slots = new int[slotCount];
+        int[] keyIds = new int[keyColumns.length];
+        for (int r = 0; r < rows.size(); r++) {
+            int[] row = rows.get(r);
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyIds[i] = toStored(dict, row[keyColumns[i]]);
+            }
+
+            int s = hash(keyIds) & mask;
+            while (slots[s] != 0) {
+                int[] other = rows.get(slots[s] - 1);
+                boolean same = true;
+                for (int i = 0; i < keyColumns.length && same; i++) {
+                    same = keyIds[i] == toStored(dict, other[keyColumns[i]]);
+                }
+                if (same) {
+                    logger.warn("Duplicated primary key in snapshot at row {}, no index built on columns {}", r, Arrays.toString(keyColumns));
+                    return null;
+                }
+                s = (s + 1) & mask;
+            }
+            slots[s] = r + 1;
+        }
+        return slots;
+    }
+
+    private static int toStored(Dictionary<String> dict, int id) {
+        return dict.isNullId(id) ? 0 : id + 1;
+    }
+
+    private static int hash(int[] keyIds) {
+        int h = 1;
+        for (int id : keyIds) {
+            h = 31 * h + id;
+        }
+        // the finalizer of murmur3, spreads the sequential ids
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static ColumnarSnapshotData read(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new ColumnarSnapshotData(ByteBuffer.wrap(bytes));
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(buf.limit());
+        if (buf.hasArray()) {
+            out.write(buf.array(), buf.arrayOffset(), buf.limit());
+        } else {
+            byte[] bytes = new byte[buf.limit()];
+            buf.duplicate().get(bytes);
+            out.write(bytes);
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    Dictionary<String> getDictionary() {
+        return dict;
+    }
+
+    String getValue(int row, int column) {
+        int stored = getStored(row, column);
+        return stored == 0 ? null : dict.getValueFromId(stored - 1);
+    }
+
+    String[] getRow(int row) {
+        String[] result = new String[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            result[c] = getValue(row, c);
+        }
+        return result;
+    }
+
+    private int getStored(int row, int column) {
+        int b = bits[column];
+        if (b == 0)
+            return 0;
+        long bitPos = (long) row * b;
+        long word = buf.getLong(offsets[column] + (int) (bitPos >>> 3));
+        return (int) ((word >>> (64 - (int) (bitPos & 7) - b)) & ((1L << b) - 1));
+    }
+
+    boolean isIndexedOn(int[] columns) {
+        return slotCount > 0 && Arrays.equals(keyColumns, columns);
+    }
+
+    /**
+     * @return the row of the primary key, or -1 if not found
+     */
+    int findRow(String[] key) {
+        if (key.length != keyColumns.length)
+            throw new IllegalArgumentException("Expect a key of " + keyColumns.length + " columns, but got " + key.length);
+
+        int[] keyIds = new int[key.length];
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == null) {
+                keyIds[i] = 0;
+            } else {
+                try {
+                    keyIds[i] = toStored(dict, dict.getIdFromValue(key[i]));
+                } catch (IllegalArgumentException e) {
+                    return -1; // not in the table
+                }
+            }
+        }
+
+        int mask = slotCount - 1;
+        int s = hash(keyIds) & mask;
+        while (true) {
+            int row = buf.getInt(slotsOffset + 4 * s) - 1;
+            if (row < 0)
+                return -1;
+
+            boolean same = true;
+            for (int i = 0; i < keyIds.length && same; i++) {
+                same = keyIds[i] == getStored(row, keyColumns[i]);
+            }
+            if (same)
+                return row;
+            s = (s + 1) & mask;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return buf.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ColumnarSnapshotData && buf.equals(((ColumnarSnapshotData) o).buf);
+    }
+}
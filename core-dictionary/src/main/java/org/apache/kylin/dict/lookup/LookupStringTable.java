@@ -90,6 +90,15 @@ public class LookupStringTable extends LookupTable<String> {
         return cols;
     }
 
+    @Override
+    protected boolean canLookupByIndex(int[] keyIndex) {
+        for (int i : keyIndex) {
+            if (colIsDateTime[i])
+                return false;
+        }
+        return true;
+    }
+
     @Override
     protected Comparator<String> getComparator(int idx) {
         if (colIsDateTime[idx])
@@ -19,9 +19,11 @@
 package org.apache.kylin.dict.lookup;
 
 import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +42,9 @@ import com.google.common.collect.Sets;
  * An in-memory lookup table, in which each cell is an object of type T. The
  * table is indexed by specified PK for fast lookup.
  *
+ * A columnar snapshot with an index on the PK is looked up in place, without
+ * loading the rows into the map.
+ *
  * @author yangli9
  */
 abstract public class LookupTable<T> {
@@ -48,6 +53,7 @@ abstract public class LookupTable<T> {
     protected String[] keyColumns;
     protected IReadableTable table;
     protected Map<Array<T>, T[]> data;
+    protected SnapshotTable indexedSnapshot;
 
     public LookupTable(TableDesc tableDesc, String[] keyColumns, IReadableTable table) throws IOException {
         this.tableDesc = tableDesc;
@@ -63,6 +69,11 @@ abstract public class LookupTable<T> {
             keyIndex[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
         }
 
+        if (table instanceof SnapshotTable && ((SnapshotTable) table).isIndexedOn(keyIndex) && canLookupByIndex(keyIndex)) {
+            indexedSnapshot = (SnapshotTable) table;
+            return;
+        }
+
         TableReader reader = table.getReader();
         try {
             while (reader.next()) {
@@ -90,11 +101,54 @@ abstract public class LookupTable<T> {
 
     abstract protected T[] convertRow(String[] cols);
 
+    // whether the key values are the same as in the snapshot, i.e. not changed by convertRow()
+    protected boolean canLookupByIndex(int[] keyIndex) {
+        return true;
+    }
+
     public T[] getRow(Array<T> key) {
+        if (indexedSnapshot != null) {
+            String[] keyStrs = new String[key.data.length];
+            for (int i = 0; i < keyStrs.length; i++) {
+                keyStrs[i] = key.data[i] == null ? null : toString(key.data[i]);
+            }
+            String[] row = indexedSnapshot.getRowByKey(keyStrs);
+            return row == null ? null : convertRow(row);
+        }
         return data.get(key);
     }
 
     public Collection<T[]> getAllRows() {
+        if (indexedSnapshot != null) {
+            return new AbstractCollection<T[]>() {
+                @Override
+                public Iterator<T[]> iterator() {
+                    return new Iterator<T[]>() {
+                        int i = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < indexedSnapshot.getRowCount();
+                        }
+
+                        @Override
+                        public T[] next() {
+                            return convertRow(indexedSnapshot.getRow(i++));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return indexedSnapshot.getRowCount();
+                }
+            };
+        }
         return data.values();
     }
 
@@ -102,7 +156,7 @@ abstract public class LookupTable<T> {
         ArrayList<T> result = new ArrayList<T>();
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (values.contains(row[colIdx]))
                 result.add(row[returnIdx]);
         }
@@ -117,7 +171,7 @@ abstract public class LookupTable<T> {
 
         T returnBegin = null;
         T returnEnd = null;
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (between(beginValue, row[colIdx], endValue, colComp)) {
                 T returnValue = row[returnIdx];
                 if (returnBegin == null || returnComp.compare(returnValue, returnBegin) < 0) {
@@ -138,7 +192,7 @@ abstract public class LookupTable<T> {
         int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
         int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
         Set<T> result = Sets.newHashSetWithExpectedSize(values.size());
-        for (T[] row : data.values()) {
+        for (T[] row : getAllRows()) {
             if (values.contains(row[colIdx])) {
                 result.add(row[returnIdx]);
             }
@@ -173,6 +227,12 @@ abstract public class LookupTable<T> {
     abstract public Class<?> getType();
 
     public void dump() {
+        if (indexedSnapshot != null) {
+            for (T[] row : getAllRows()) {
+                System.out.println(toString(row));
+            }
+            return;
+        }
         for (Array<T> key : data.keySet()) {
             System.out.println(toString(key.data) + " => " + toString(data.get(key)));
         }
@@ -22,6 +22,8 @@ import java.io.IOException;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.metadata.MetadataManager;
+import org.apache.kylin.metadata.model.DataModelDesc;
+import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.source.SourceFactory;
 
@@ -41,7 +43,20 @@ public class SnapshotCLI {
         if (tableDesc == null)
             throw new IllegalArgumentException("Not table found by " + table);
 
-        SnapshotTable snapshot = snapshotMgr.rebuildSnapshot(SourceFactory.createReadableTable(tableDesc), tableDesc, overwriteUUID);
+        String[] keyColumns = findKeyColumns(metaMgr, tableDesc.getIdentity());
+        SnapshotTable snapshot = snapshotMgr.rebuildSnapshot(SourceFactory.createReadableTable(tableDesc), tableDesc, overwriteUUID, keyColumns);
         System.out.println("resource path updated: " + snapshot.getResourcePath());
     }
+
+    // index the primary key of the first join on the table, as a snapshot built for a cube segment does
+    private static String[] findKeyColumns(MetadataManager metaMgr, String tableIdentity) {
+        for (DataModelDesc model : metaMgr.listDataModels()) {
+            for (JoinTableDesc join : model.getJoinTables()) {
+                if (join.getTableRef().getTableIdentity().equals(tableIdentity)) {
+                    return join.getJoin().getPrimaryKey();
+                }
+            }
+        }
+        return null;
+    }
 }
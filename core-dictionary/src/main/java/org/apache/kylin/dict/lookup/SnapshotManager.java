@@ -122,7 +122,15 @@ public class SnapshotManager {
     }
 
     public SnapshotTable buildSnapshot(IReadableTable table, TableDesc tableDesc) throws IOException {
+        return buildSnapshot(table, tableDesc, null);
+    }
+
+    /**
+     * @param keyColumns the primary key to index in a columnar snapshot, or null
+     */
+    public SnapshotTable buildSnapshot(IReadableTable table, TableDesc tableDesc, String[] keyColumns) throws IOException {
         SnapshotTable snapshot = new SnapshotTable(table, tableDesc.getIdentity());
+        snapshot.setColumnar(config.isSnapshotColumnarFormatEnabled());
         snapshot.updateRandomUuid();
 
         String dup = checkDupByInfo(snapshot);
@@ -136,16 +144,20 @@ public class SnapshotManager {
                     + " MB, but " + tableDesc + " size is " + snapshot.getSignature().getSize());
         }
 
-        snapshot.takeSnapshot(table, tableDesc);
+        snapshot.takeSnapshot(table, tableDesc, keyColumns);
 
         return trySaveNewSnapshot(snapshot);
     }
 
-    public SnapshotTable rebuildSnapshot(IReadableTable table, TableDesc tableDesc, String overwriteUUID) throws IOException {
+    /**
+     * @param keyColumns the primary key to index in a columnar snapshot, or null
+     */
+    public SnapshotTable rebuildSnapshot(IReadableTable table, TableDesc tableDesc, String overwriteUUID, String[] keyColumns) throws IOException {
         SnapshotTable snapshot = new SnapshotTable(table, tableDesc.getIdentity());
+        snapshot.setColumnar(config.isSnapshotColumnarFormatEnabled());
         snapshot.setUuid(overwriteUUID);
 
-        snapshot.takeSnapshot(table, tableDesc);
+        snapshot.takeSnapshot(table, tableDesc, keyColumns);
 
         SnapshotTable existing = getSnapshotTable(snapshot.getResourcePath());
         snapshot.setLastModified(existing.getLastModified());
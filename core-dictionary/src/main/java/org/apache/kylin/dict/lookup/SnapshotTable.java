@@ -57,10 +57,15 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     private TableSignature signature;
     @JsonProperty("useDictionary")
     private boolean useDictionary;
+    @JsonProperty("columnar")
+    private boolean columnar;
 
     private ArrayList<int[]> rowIndices;
     private Dictionary<String> dict;
 
+    // the rows of a columnar snapshot, in place of rowIndices and dict
+    private ColumnarSnapshotData columnarData;
+
     // default constructor for JSON serialization
     public SnapshotTable() {
     }
@@ -71,7 +76,22 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         this.useDictionary = true;
     }
 
+    void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
     public void takeSnapshot(IReadableTable table, TableDesc tableDesc) throws IOException {
+        takeSnapshot(table, tableDesc, null);
+    }
+
+    /**
+     * @param keyColumns the primary key to index in a columnar snapshot, or null
+     */
+    public void takeSnapshot(IReadableTable table, TableDesc tableDesc, String[] keyColumns) throws IOException {
         this.signature = table.getSignature();
 
         int maxIndex = tableDesc.getMaxColumnIndex();
@@ -113,6 +133,55 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         }
 
         this.rowIndices = allRowIndices;
+
+        if (columnar) {
+            int[] keyIndex = null;
+            if (keyColumns != null) {
+                keyIndex = new int[keyColumns.length];
+                for (int i = 0; i < keyColumns.length; i++) {
+                    keyIndex[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
+                }
+            }
+            this.columnarData = ColumnarSnapshotData.build((TrieDictionary<String>) dict, rowIndices, tableDesc.getColumnCount(), keyIndex);
+            this.rowIndices = null;
+            this.dict = null;
+        }
+    }
+
+    public int getRowCount() {
+        return columnar ? columnarData.getRowCount() : rowIndices.size();
+    }
+
+    /**
+     * @return the row at the position, decoded from the snapshot
+     */
+    public String[] getRow(int i) {
+        if (columnar)
+            return columnarData.getRow(i);
+
+        int[] rowIndex = rowIndices.get(i);
+        String[] row = new String[rowIndex.length];
+        for (int x = 0; x < row.length; x++) {
+            row[x] = dict.getValueFromId(rowIndex[x]);
+        }
+        return row;
+    }
+
+    /**
+     * @return true if the snapshot has a primary key index on the columns, by zero based index
+     */
+    public boolean isIndexedOn(int[] keyIndex) {
+        return columnar && columnarData.isIndexedOn(keyIndex);
+    }
+
+    /**
+     * Finds a row by the primary key index, see {@link #isIndexedOn(int[])}.
+     *
+     * @return the row of the key, or null if not found
+     */
+    public String[] getRowByKey(String[] key) {
+        int row = columnarData.findRow(key);
+        return row < 0 ? null : columnarData.getRow(row);
     }
 
     public String getResourcePath() {
@@ -140,17 +209,12 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             @Override
             public boolean next() throws IOException {
                 i++;
-                return i < rowIndices.size();
+                return i < getRowCount();
             }
 
             @Override
             public String[] getRow() {
-                int[] rowIndex = rowIndices.get(i);
-                String[] row = new String[rowIndex.length];
-                for (int x = 0; x < row.length; x++) {
-                    row[x] = dict.getValueFromId(rowIndex[x]);
-                }
-                return row;
+                return SnapshotTable.this.getRow(i);
             }
 
             @Override
@@ -176,6 +240,9 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
      */
     @Override
     public int hashCode() {
+        if (columnar)
+            return columnarData.hashCode();
+
         int[] parts = new int[this.rowIndices.size()];
         for (int i = 0; i < parts.length; ++i)
             parts[i] = Arrays.hashCode(this.rowIndices.get(i));
@@ -188,6 +255,9 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             return false;
         SnapshotTable that = (SnapshotTable) o;
 
+        if (this.columnar || that.columnar)
+            return this.columnar == that.columnar && this.columnarData.equals(that.columnarData);
+
         if (this.dict.equals(that.dict) == false)
             return false;
 
@@ -213,6 +283,11 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     }
 
     void writeData(DataOutput out) throws IOException {
+        if (columnar) {
+            columnarData.write(out);
+            return;
+        }
+
         out.writeInt(rowIndices.size());
         if (rowIndices.size() > 0) {
             int n = rowIndices.get(0).length;
@@ -240,6 +315,11 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     }
 
     void readData(DataInput in) throws IOException {
+        if (columnar) {
+            columnarData = ColumnarSnapshotData.read(in);
+            return;
+        }
+
         int rowNum = in.readInt();
         if (rowNum > 0) {
             int n = in.readInt();
@@ -19,11 +19,15 @@
 package org.apache.kylin.dict;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.metadata.MetadataManager;
@@ -33,6 +37,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class DictionaryManagerTest extends LocalFileMetadataTestCase {
 
     @Before
@@ -101,4 +107,83 @@ public class DictionaryManagerTest extends LocalFileMetadataTestCase {
         DictionaryInfo info5 = dictMgr.saveDictionary(model, col, MockupReadableTable.newNonExistTable("/a/path"), dict2);
         assertTrue(info1 != info5);
     }
+
+    @Test
+    public void testMergeDictionary() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        MetadataManager metaMgr = MetadataManager.getInstance(config);
+        DataModelDesc model = metaMgr.getDataModelDesc("test_kylin_inner_join_model_desc");
+        TblColRef col = model.findColumn("lstg_format_name");
+
+        DictionaryInfo info1 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/path1", "b", "d", "f"));
+        DictionaryInfo info2 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/path2", "a", "d", "g"));
+        DictionaryInfo info3 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/path3", "a", "b", "d", "f", "g"));
+
+        // values from k-way merge of the sorted dictionaries
+        DictionaryInfo merged = dictMgr.mergeDictionary(Lists.newArrayList(info1, info2));
+        Dictionary<String> mergedDict = merged.getDictionaryObject();
+        assertEquals(5, mergedDict.getSize());
+        String[] expected = new String[] { "a", "b", "d", "f", "g" };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], mergedDict.getValueFromId(mergedDict.getMinId() + i));
+        }
+
+        // the dictionary containing all the others is reused
+        assertTrue(info3 == dictMgr.mergeDictionary(Lists.newArrayList(info1, info3, info2)));
+    }
+
+    @Test
+    public void testContentDigest() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        MetadataManager metaMgr = MetadataManager.getInstance(config);
+        ResourceStore store = metaMgr.getStore();
+        DataModelDesc model = metaMgr.getDataModelDesc("test_kylin_inner_join_model_desc");
+        TblColRef col = model.findColumn("lstg_format_name");
+
+        DictionaryInfo info1 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/path", "x", "y", "z"));
+        assertNotNull(info1.getContentDigest());
+        assertTrue(store.exists(info1.getDigestIndexPath()));
+
+        // same content from another input is found by the digest
+        DictionaryInfo info2 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/other/path", "x", "y", "z"));
+        assertTrue(info1 == info2);
+
+        // different content has a different digest
+        DictionaryInfo info3 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/other/path", "x", "y"));
+        assertNotEquals(info1.getContentDigest(), info3.getContentDigest());
+
+        // the index entry goes with the dictionary
+        dictMgr.removeDictionary(info1.getResourcePath());
+        assertFalse(store.exists(info1.getDigestIndexPath()));
+        assertTrue(store.exists(info3.getDigestIndexPath()));
+    }
+
+    @Test
+    public void testLegacyDictionary() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        MetadataManager metaMgr = MetadataManager.getInstance(config);
+        ResourceStore store = metaMgr.getStore();
+        DataModelDesc model = metaMgr.getDataModelDesc("test_kylin_inner_join_model_desc");
+        TblColRef col = model.findColumn("lstg_format_name");
+
+        // a dictionary saved before the digest index
+        DictionaryInfo legacy = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/path", "x", "y", "z"));
+        store.deleteResource(legacy.getDigestIndexPath());
+        store.deleteResource(legacy.getLegacyIndexPath());
+        legacy.setContentDigest(null);
+        legacy.setLastModified(store.getResourceTimestamp(legacy.getResourcePath()));
+        store.putResource(legacy.getResourcePath(), legacy, DictionaryInfoSerializer.FULL_SERIALIZER);
+
+        // same content is found among the legacy dictionaries, listed once for the column
+        DictionaryInfo info1 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/other/path", "x", "y", "z"));
+        assertEquals(legacy.getResourcePath(), info1.getResourcePath());
+        assertTrue(store.exists(legacy.getLegacyIndexPath()));
+
+        DictionaryInfo info2 = dictMgr.buildDictionary(model, col, MockupReadableTable.newSingleColumnTable("/a/other/path", "x", "y"));
+        assertNotEquals(legacy.getResourcePath(), info2.getResourcePath());
+        assertNotNull(info2.getContentDigest());
+    }
 }
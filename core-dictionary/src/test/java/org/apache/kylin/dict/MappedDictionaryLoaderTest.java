@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class MappedDictionaryLoaderTest extends LocalFileMetadataTestCase {
+
+    private static final String DICT_PATH = "/dict/TEST/MAPPED/test.dict";
+
+    private File cacheDir;
+    private ResourceStore store;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        cacheDir = Files.createTempDir();
+        store = ResourceStore.getStore(KylinConfig.getInstanceFromEnv());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteQuietly(cacheDir);
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMappedTrieDictionary() throws IOException {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<>(new StringBytesConverter());
+        for (String value : newValues()) {
+            builder.addValue(value);
+        }
+        testLoad(builder.build(0));
+    }
+
+    @Test
+    public void testMappedTrieDictionaryForest() throws IOException {
+        TrieDictionaryForestBuilder<String> builder = new TrieDictionaryForestBuilder<>(new StringBytesConverter());
+        for (String value : newValues()) {
+            builder.addValue(value);
+        }
+        testLoad(builder.build());
+    }
+
+    private void testLoad(Dictionary<String> dict) throws IOException {
+        DictionaryInfo info = new DictionaryInfo("TEST", "MAPPED", 0, "varchar", null);
+        info.setDictionaryClass(dict.getClass().getName());
+        info.setDictionaryObject(dict);
+        store.putResource(DICT_PATH, info, DictionaryInfoSerializer.FULL_SERIALIZER);
+
+        // mapped, and read to heap below the threshold
+        for (long threshold : new long[] { 0, Long.MAX_VALUE }) {
+            MappedDictionaryLoader loader = new MappedDictionaryLoader(cacheDir, threshold, Long.MAX_VALUE);
+            Dictionary<String> loaded = loader.load(store, DICT_PATH).getDictionaryObject();
+            Assert.assertEquals(dict, loaded);
+            for (String value : newValues()) {
+                int id = dict.getIdFromValue(value);
+                Assert.assertEquals(id, loaded.getIdFromValue(value));
+                Assert.assertEquals(value, loaded.getValueFromId(id));
+            }
+            Assert.assertEquals(1, cacheDir.listFiles().length);
+        }
+
+        new MappedDictionaryLoader(cacheDir, 0, Long.MAX_VALUE).remove(DICT_PATH);
+        Assert.assertEquals(0, cacheDir.listFiles().length);
+        Assert.assertNull(new MappedDictionaryLoader(cacheDir, 0, Long.MAX_VALUE).load(store, "/dict/TEST/MAPPED/not_exist.dict"));
+    }
+
+    @Test
+    public void testCleanUp() throws Exception {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<>(new StringBytesConverter());
+        for (String value : newValues()) {
+            builder.addValue(value);
+        }
+        DictionaryInfo info = new DictionaryInfo("TEST", "MAPPED", 0, "varchar", null);
+        info.setDictionaryClass(TrieDictionary.class.getName());
+        info.setDictionaryObject(builder.build(0));
+
+        MappedDictionaryLoader loader = new MappedDictionaryLoader(cacheDir, 0, Long.MAX_VALUE);
+        store.putResource(DICT_PATH, info, DictionaryInfoSerializer.FULL_SERIALIZER);
+        loader.load(store, DICT_PATH);
+        File first = cacheDir.listFiles()[0];
+
+        // a newer timestamp replaces the older copy
+        Thread.sleep(10);
+        store.putResource(DICT_PATH, info, DictionaryInfoSerializer.FULL_SERIALIZER);
+        loader.load(store, DICT_PATH);
+        Assert.assertEquals(1, cacheDir.listFiles().length);
+        Assert.assertNotEquals(first, cacheDir.listFiles()[0]);
+
+        // over the max size, the least recently used is evicted
+        String otherPath = "/dict/TEST/MAPPED/other.dict";
+        info.setLastModified(0);
+        store.putResource(otherPath, info, DictionaryInfoSerializer.FULL_SERIALIZER);
+        loader = new MappedDictionaryLoader(cacheDir, 0, 1);
+        loader.load(store, otherPath);
+        Assert.assertEquals(1, cacheDir.listFiles().length);
+        Assert.assertEquals(loader.localFile(otherPath, store.getResourceTimestamp(otherPath)), cacheDir.listFiles()[0]);
+    }
+
+    private static ArrayList<String> newValues() {
+        ArrayList<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add("value_" + (i * 7919 % 1000));
+        }
+        return values;
+    }
+}
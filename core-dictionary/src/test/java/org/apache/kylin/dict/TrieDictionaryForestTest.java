@@ -33,6 +33,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -110,6 +112,43 @@ public class TrieDictionaryForestTest {
         assertSameBehaviorAsTrie(dict, strs, baseId);
     }
 
+    @Test
+    public void testIdsFromValues() {
+        Random rand = new Random(1);
+        TreeSet<String> set = new TreeSet<String>(new ByteComparator<String>(new StringBytesConverter()));
+        for (int i = 0; i < 1000; i++) {
+            set.add("p" + rand.nextInt(100000));
+        }
+        ArrayList<String> strs = new ArrayList<String>(set);
+        int baseId = 3;
+        TrieDictionaryForest<String> dict = newDictBuilder(strs, baseId, 500).build();
+        assertTrue(dict.getTrees().size() > 1);
+
+        ArrayList<String> probes = new ArrayList<String>(strs);
+        probes.add("");
+        probes.add("a");
+        probes.add("p");
+        probes.add("z");
+        probes.add(null);
+        for (int i = 0; i < 1000; i++) {
+            probes.add("p" + rand.nextInt(100000));
+        }
+        Collections.shuffle(probes, rand);
+
+        BitSet expected = new BitSet();
+        for (String probe : probes) {
+            if (probe == null)
+                continue;
+            try {
+                expected.set(dict.getIdFromValue(probe));
+            } catch (IllegalArgumentException e) {
+                // not found
+            }
+        }
+        assertEquals(strs.size(), expected.cardinality());
+        assertEquals(expected, dict.getIdsFromValues(probes));
+    }
+
     @Test
     public void testNullValue() {
         //encounter null value when building dictionary
@@ -293,6 +332,66 @@ public class TrieDictionaryForestTest {
         }
     }
 
+    @Test
+    public void parallelBuildTest() throws IOException {
+        TreeSet<String> set = new TreeSet<String>();
+        for (int i = 0; i < 10000; i++) {
+            set.add("value_" + i);
+        }
+
+        ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[2];
+        int[] treeNums = new int[2];
+        for (int k = 0; k < 2; k++) {
+            TrieDictionaryForestBuilder<String> b = new TrieDictionaryForestBuilder<String>(new StringBytesConverter(), 10);
+            b.setBuildThreads(k == 0 ? 1 : 4);
+            b.setMaxTrieTreeSize(1000);
+            for (String str : set) {
+                b.addValue(str);
+            }
+            TrieDictionaryForest<String> dict = b.build();
+            treeNums[k] = dict.getTrees().size();
+            outputs[k] = new ByteArrayOutputStream();
+            dict.write(new DataOutputStream(outputs[k]));
+        }
+
+        // identical to the forest built by a single thread
+        assertTrue(treeNums[0] > 1);
+        assertEquals(treeNums[0], treeNums[1]);
+        assertTrue(Arrays.equals(outputs[0].toByteArray(), outputs[1].toByteArray()));
+    }
+
+    @Test
+    public void parallelBuildFailureTest() throws InterruptedException {
+        TrieDictionaryForestBuilder<String> b = new TrieDictionaryForestBuilder<String>(new StringBytesConverter(), 0);
+        b.setBuildThreads(4);
+        b.setMaxTrieTreeSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            b.addValue("value_" + (10000 + i));
+        }
+        assertTrue(countBuildThreads() > 0);
+        try {
+            b.addValue("value_0"); // out of order after trees were cut
+            fail("unordered input should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the pool is shut down on failure
+        for (int i = 0; i < 100 && countBuildThreads() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, countBuildThreads());
+    }
+
+    private static int countBuildThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("trie-forest-builder-"))
+                count++;
+        }
+        return count;
+    }
+
     @Test
     public void emptyDictTest() throws Exception {
         TrieDictionaryForestBuilder<String> b = new TrieDictionaryForestBuilder<String>(new StringBytesConverter());
@@ -19,6 +19,7 @@
 package org.apache.kylin.dict;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -33,12 +34,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.TreeSet;
 
+import org.apache.kylin.common.util.Bytes;
 import org.junit.Test;
 
 public class TrieDictionaryTest {
@@ -417,6 +420,113 @@ public class TrieDictionaryTest {
         dict.dump(System.out);
     }
 
+    @Test
+    public void testBoundedCache() {
+        ArrayList<String> strs = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            strs.add("value_" + i);
+        }
+        TrieDictionary<String> dict = newDictBuilder(strs).build(0);
+        dict.disableCache();
+        assertEquals(-1, dict.getIdToValueCacheHitRate(), 0);
+
+        // far fewer slots than values, entries replace each other
+        dict.enableCache(8);
+        for (int round = 0; round < 2; round++) {
+            for (String str : strs) {
+                int id = dict.getIdFromValue(str);
+                assertEquals(str, dict.getValueFromId(id));
+            }
+        }
+        assertTrue(dict.getValueToIdCacheHitRate() < 0.5);
+
+        // repeated lookups of a few values hit
+        int id3 = dict.getIdFromValue(strs.get(3));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(id3, dict.getIdFromValue(strs.get(3)));
+            assertEquals(strs.get(3), dict.getValueFromId(id3));
+        }
+        assertTrue(dict.getValueToIdCacheHitRate() > 0.3);
+        assertTrue(dict.getIdToValueCacheHitRate() > 0.3);
+    }
+
+    @Test
+    public void testCacheGrows() {
+        ArrayList<String> strs = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            strs.add("value_" + i);
+        }
+        TrieDictionary<String> dict = newDictBuilder(strs).build(0);
+        dict.disableCache();
+        dict.enableCache();
+
+        // the slots grow from a small start, keeping the cached entries, until all IDs fit
+        for (int round = 0; round < 2; round++) {
+            for (int id = dict.getMinId(); id <= dict.getMaxId(); id++) {
+                assertNotNull(dict.getValueFromId(id));
+            }
+        }
+        assertEquals(0.5, dict.getIdToValueCacheHitRate(), 0);
+    }
+
+    @Test
+    public void testCacheByValueBytes() {
+        ArrayList<String> strs = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            strs.add("value_" + i);
+        }
+        TrieDictionary<String> dict = newDictBuilder(strs).build(0);
+        dict.disableCache();
+        dict.enableCache();
+
+        // value and byte lookups share the cache, keyed by the value bytes
+        int id = dict.getIdFromValue("value_7");
+        byte[] bytes = Bytes.toBytes("xvalue_7x");
+        assertEquals(id, dict.getIdFromValueBytes(bytes, 1, bytes.length - 2, 0));
+        assertEquals(0.5, dict.getValueToIdCacheHitRate(), 0);
+    }
+
+    @Test
+    public void testIdsFromValues() {
+        ArrayList<String> str = new ArrayList<String>();
+        str.add("");
+        str.add("part");
+        str.add("par");
+        str.add("partition");
+        str.add("party");
+        str.add("parties");
+        str.add("paint");
+        Random rand = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            str.add("p" + rand.nextInt(100000));
+        }
+        TrieDictionary<String> dict = newDictBuilder(str).build(1);
+
+        ArrayList<String> probes = new ArrayList<String>(str);
+        probes.add("p");
+        probes.add("pa");
+        probes.add("pb");
+        probes.add("parti");
+        probes.add("partz");
+        probes.add("partyz");
+        probes.add(null);
+        for (int i = 0; i < 1000; i++) {
+            probes.add("p" + rand.nextInt(100000));
+        }
+
+        BitSet expected = new BitSet();
+        for (String probe : probes) {
+            if (probe == null)
+                continue;
+            try {
+                expected.set(dict.getIdFromValue(probe));
+            } catch (IllegalArgumentException e) {
+                // not found
+            }
+        }
+        assertEquals(expected, dict.getIdsFromValues(probes));
+    }
+
     @Test
     public void testRounding() {
         // see NumberDictionaryTest.testRounding();
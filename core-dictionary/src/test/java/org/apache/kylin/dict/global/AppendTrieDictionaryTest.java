@@ -44,6 +44,7 @@ import java.util.Random;
 import java.util.TreeMap;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
@@ -521,4 +522,163 @@ public class AppendTrieDictionaryTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testSliceChecksums() throws IOException {
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-entry-size", "4");
+
+        AppendTrieDictionaryBuilder builder = createBuilder(RESOURCE_DIR);
+        for (String value : new String[] { "a", "b", "c", "d", "e", "f" }) {
+            builder.addValue(value);
+        }
+        builder.build(0);
+
+        // append to a new version, the checksums of the kept slices are carried over
+        builder = createBuilder(RESOURCE_DIR);
+        builder.addValue("g");
+        builder.build(0);
+
+        GlobalDictHDFSStore store = new GlobalDictHDFSStore(BASE_DIR);
+        Long[] versions = store.listAllVersions();
+        String versionDir = store.getVersionDir(versions[versions.length - 1]).toString();
+        GlobalDictMetadata metadata = store.getMetadata(versions[versions.length - 1]);
+        assertEquals(metadata.sliceFileMap.size(), metadata.sliceChecksums.size());
+        for (String sliceFile : metadata.sliceFileMap.values()) {
+            assertEquals(metadata.sliceChecksums.get(sliceFile).longValue(), GlobalDictStore.checksum(store.readSliceBytes(versionDir, sliceFile)));
+        }
+    }
+
+    @Test
+    public void testLocalSliceCache() throws IOException {
+        File cacheDir = new File(getLocalWorkingDirectory(), "global_dict_cache_" + UUID.randomUUID());
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-entry-size", "4");
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.global-slice-local-cache-enabled", "true");
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.global-slice-local-cache-dir", cacheDir.getAbsolutePath());
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.global-slice-prefetch-threads", "0");
+
+        AppendTrieDictionaryBuilder builder = createBuilder(RESOURCE_DIR);
+        String[] values = new String[] { "a", "b", "c", "d", "e", "f" };
+        for (String value : values) {
+            builder.addValue(value);
+        }
+        AppendTrieDictionary<String> dict = builder.build(0);
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i + 1, dict.getIdFromValue(values[i]));
+        }
+        GlobalDictSliceCache localCache = dict.getLocalCache();
+        int nSlices = (int) localCache.getRemoteFetches();
+        assertEquals(0, localCache.getLocalHits());
+        assertEquals(nSlices, dict.getSliceLoads());
+
+        // another task on the node reads the slices from local disk
+        AppendTrieDictionary<String> another = new AppendTrieDictionary<>();
+        another.init(BASE_DIR);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i + 1, another.getIdFromValue(values[i]));
+        }
+        assertEquals(nSlices, another.getLocalCache().getLocalHits());
+        assertEquals(0, another.getLocalCache().getRemoteFetches());
+
+        // a corrupted local copy is fetched again
+        GlobalDictHDFSStore store = new GlobalDictHDFSStore(BASE_DIR);
+        Long[] versions = store.listAllVersions();
+        GlobalDictMetadata metadata = store.getMetadata(versions[versions.length - 1]);
+        File local = another.getLocalCache().localFile(metadata.sliceFileMap.firstEntry().getValue());
+        byte[] bytes = FileUtils.readFileToByteArray(local);
+        bytes[bytes.length - 1]++;
+        FileUtils.writeByteArrayToFile(local, bytes);
+
+        another = new AppendTrieDictionary<>();
+        another.init(BASE_DIR);
+        assertEquals(1, another.getIdFromValue("a"));
+        assertEquals(1, another.getLocalCache().getChecksumMismatches());
+        assertEquals(1, another.getLocalCache().getRemoteFetches());
+
+        FileUtils.deleteQuietly(cacheDir);
+    }
+
+    @Test
+    public void testPartitionedBuild() throws IOException {
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-entry-size", "4");
+
+        AppendTrieDictionaryBuilder builder = createBuilder(RESOURCE_DIR);
+        String[] baseValues = new String[] { "b", "d", "f", "h", "j", "l", "n", "p", "r", "t" };
+        for (String value : baseValues) {
+            builder.addValue(value);
+        }
+        AppendTrieDictionary<String> baseDict = builder.build(0);
+
+        GlobalDictHDFSStore store = new GlobalDictHDFSStore(BASE_DIR);
+        Long[] versions = store.listAllVersions();
+        long baseVersion = versions[versions.length - 1];
+        GlobalDictMetadata baseMetadata = store.getMetadata(baseVersion);
+        GlobalDictPartitions partitions = GlobalDictPartitions.create(baseVersion, baseMetadata, 3);
+        assertEquals(3, partitions.size());
+
+        // partition the values, existing ones included, and count the new values of each partition
+        String[] values = new String[] { "a", "b", "c", "e", "g", "h", "i", "k", "m", "o", "q", "s", "u", "v", "w" };
+        List<List<String>> partitionValues = new ArrayList<>();
+        int[] newValueCounts = new int[partitions.size()];
+        for (int i = 0; i < partitions.size(); i++) {
+            partitionValues.add(new ArrayList<String>());
+        }
+        for (String value : values) {
+            int partition = partitions.partitionOf(value.getBytes("UTF-8"));
+            partitionValues.get(partition).add(value);
+            if (!contains(baseDict, value)) {
+                newValueCounts[partition]++;
+            }
+        }
+
+        // build the partitions in reverse order, IDs depend only on the counts of the partitions before
+        int maxEntriesPerSlice = KylinConfig.getInstanceFromEnv().getAppendDictEntrySize();
+        for (int i = partitions.size() - 1; i >= 0; i--) {
+            int firstId = baseMetadata.maxId + 1;
+            for (int j = 0; j < i; j++) {
+                firstId += newValueCounts[j];
+            }
+            AppendTrieDictionaryBuilder partitionBuilder = new AppendTrieDictionaryBuilder(RESOURCE_DIR, maxEntriesPerSlice, partitions, i, firstId);
+            for (String value : partitionValues.get(i)) {
+                partitionBuilder.addValue(value);
+            }
+            partitionBuilder.buildPartition();
+        }
+        store.commitPartitions(BASE_DIR + "/working", partitions);
+
+        AppendTrieDictionary<String> dict = new AppendTrieDictionary<>();
+        dict.init(BASE_DIR);
+        for (String value : baseValues) {
+            assertEquals(baseDict.getIdFromValue(value), dict.getIdFromValue(value));
+        }
+        int nextId = baseMetadata.maxId + 1;
+        for (List<String> partition : partitionValues) {
+            for (String value : partition) {
+                if (!contains(baseDict, value)) {
+                    assertEquals(nextId++, dict.getIdFromValue(value));
+                }
+            }
+        }
+        assertEquals(nextId - 1, dict.getMaxId());
+
+        GlobalDictMetadata metadata = store.getMetadata(store.listAllVersions()[store.listAllVersions().length - 1]);
+        assertEquals(baseValues.length + values.length - 2, metadata.nValues);
+        assertEquals(metadata.sliceFileMap.size(), metadata.sliceChecksums.size());
+
+        // partitions of an outdated version are not committed
+        try {
+            store.commitPartitions(BASE_DIR + "/working", partitions);
+            fail("the partitions are built on an outdated version");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    private static boolean contains(AppendTrieDictionary<String> dict, String value) {
+        try {
+            dict.getIdFromValue(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
 }
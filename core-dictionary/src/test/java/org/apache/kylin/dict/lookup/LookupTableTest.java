@@ -18,12 +18,17 @@
 
 package org.apache.kylin.dict.lookup;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
 import org.apache.kylin.common.util.DateFormat;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.common.util.Pair;
@@ -108,6 +113,58 @@ public class LookupTableTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testColumnarSnapshot() throws Exception {
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc("EDW.TEST_SELLER_TYPE_DIM");
+        SnapshotTable rowSnapshot = getSnapshotManager().getSnapshotTable("/table_snapshot/TEST_SELLER_TYPE_DIM.csv/4fe75ccd-9b24-4cdf-ac9d-b4038e947f89.snapshot");
+        String[] pkCols = new String[] { "SELLER_TYPE_CD" };
+        SnapshotTable snapshot = toColumnar(rowSnapshot, tableDesc, pkCols);
+
+        Assert.assertTrue(snapshot.isColumnar());
+        Assert.assertEquals(rowSnapshot.getRowCount(), snapshot.getRowCount());
+        for (int i = 0; i < rowSnapshot.getRowCount(); i++) {
+            Assert.assertArrayEquals(rowSnapshot.getRow(i), snapshot.getRow(i));
+        }
+
+        // looked up by the index of the snapshot
+        LookupStringTable rowTable = new LookupStringTable(tableDesc, pkCols, rowSnapshot);
+        LookupStringTable columnarTable = new LookupStringTable(tableDesc, pkCols, snapshot);
+        Assert.assertNotNull(columnarTable.indexedSnapshot);
+        Assert.assertTrue(columnarTable.data.isEmpty());
+        for (String[] row : rowTable.getAllRows()) {
+            Array<String> key = new Array<String>(new String[] { row[0] });
+            Assert.assertArrayEquals(row, columnarTable.getRow(key));
+        }
+        Assert.assertNull(columnarTable.getRow(new Array<String>(new String[] { "-1" })));
+        Assert.assertEquals(rowTable.getAllRows().size(), columnarTable.getAllRows().size());
+    }
+
+    @Test
+    public void testColumnarSnapshotOnDateKey() throws Exception {
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc("EDW.TEST_CAL_DT");
+        SnapshotTable rowSnapshot = getSnapshotManager().getSnapshotTable("/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot");
+        String[] pkCols = new String[] { "CAL_DT" };
+        SnapshotTable snapshot = toColumnar(rowSnapshot, tableDesc, pkCols);
+
+        // date keys are converted by the lookup table, so indexed on load
+        LookupStringTable columnarTable = new LookupStringTable(tableDesc, pkCols, snapshot);
+        Assert.assertNull(columnarTable.indexedSnapshot);
+        Assert.assertEquals(lookupTable.mapRange("CAL_DT", millis("2012-01-24"), millis("2012-12-30"), "QTR_BEG_DT"), //
+                columnarTable.mapRange("CAL_DT", millis("2012-01-24"), millis("2012-12-30"), "QTR_BEG_DT"));
+    }
+
+    private SnapshotTable toColumnar(SnapshotTable rowSnapshot, TableDesc tableDesc, String[] pkCols) throws Exception {
+        SnapshotTable snapshot = new SnapshotTable(rowSnapshot, tableDesc.getIdentity());
+        snapshot.setColumnar(true);
+        snapshot.takeSnapshot(rowSnapshot, tableDesc, pkCols);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotTableSerializer.FULL_SERIALIZER.serialize(snapshot, new DataOutputStream(bytes));
+        SnapshotTable loaded = SnapshotTableSerializer.FULL_SERIALIZER.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(snapshot, loaded);
+        return loaded;
+    }
+
     @Test
     public void testGetClassName(){
         String name = TrieDictionaryForest.class.getName();
@@ -23,6 +23,10 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Dictionary;
@@ -104,6 +108,40 @@ public class DictionaryDimEnc extends DimensionEncoding implements Serializable
         }
     }
 
+    /**
+     * Encodes a batch of values by exact match, with a batch lookup of the dictionary, e.g. the constants
+     * of a large IN filter. The values not in the dictionary are skipped.
+     */
+    public List<byte[]> encodeAll(Collection<?> values) {
+        List<String> probes = new ArrayList<>(values.size());
+        List<byte[]> result = new ArrayList<>();
+        for (Object value : values) {
+            String valueStr = value == null ? null : value.toString();
+            if (valueStr == null || valueStr.isEmpty()) {
+                // the null forms differ by dictionary, look them up one by one
+                try {
+                    result.add(idToBytes(dict.getIdFromValue(valueStr)));
+                } catch (IllegalArgumentException ex) {
+                    // not in dictionary
+                }
+            } else {
+                probes.add(valueStr);
+            }
+        }
+
+        BitSet ids = dict.getIdsFromValues(probes);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(idToBytes(id));
+        }
+        return result;
+    }
+
+    private byte[] idToBytes(int id) {
+        byte[] bytes = new byte[fixedLen];
+        BytesUtil.writeUnsigned(id, bytes, 0, fixedLen);
+        return bytes;
+    }
+
     @Override
     public String decode(byte[] bytes, int offset, int len) {
         int id = BytesUtil.readUnsigned(bytes, offset, len);
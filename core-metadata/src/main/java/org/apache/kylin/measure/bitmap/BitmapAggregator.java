@@ -18,16 +18,31 @@
 
 package org.apache.kylin.measure.bitmap;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.kylin.measure.MeasureAggregator;
 
+/**
+ * Collects the bitmaps of a group and unions them lazily, in batches over all the collected inputs.
+ * The inputs are usually immutable bitmaps over their serialized buffers, they are read but never
+ * converted to mutable bitmaps nor modified.
+ */
 public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
     private static final BitmapCounterFactory bitmapFactory = RoaringBitmapCounterFactory.INSTANCE;
 
+    // union the collected inputs once there are so many, to bound the references kept
+    static final int MAX_PENDING_INPUTS = 1024;
+
     private BitmapCounter sum;
+    private final List<RoaringBitmapCounter> pending = new ArrayList<>();
+    private long pendingMemBytes;
 
     @Override
     public void reset() {
         sum = null;
+        pending.clear();
+        pendingMemBytes = 0;
     }
 
     @Override
@@ -40,11 +55,41 @@ public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
             return;
         }
 
-        sum.orWith(value);
+        if (!(value instanceof RoaringBitmapCounter) || !(sum instanceof RoaringBitmapCounter)) {
+            mergePending();
+            sum.orWith(value);
+            return;
+        }
+
+        pending.add((RoaringBitmapCounter) value);
+        pendingMemBytes += value.getMemBytes();
+        if (pending.size() >= MAX_PENDING_INPUTS) {
+            mergePending();
+        }
+    }
+
+    private void mergePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<RoaringBitmapCounter> inputs = new ArrayList<>(pending.size() + 1);
+        inputs.add((RoaringBitmapCounter) sum);
+        inputs.addAll(pending);
+        sum = RoaringBitmapCounter.or(inputs);
+        pending.clear();
+        pendingMemBytes = 0;
     }
 
     @Override
     public BitmapCounter aggregate(BitmapCounter value1, BitmapCounter value2) {
+        if (value1 instanceof RoaringBitmapCounter && value2 instanceof RoaringBitmapCounter) {
+            List<RoaringBitmapCounter> inputs = new ArrayList<>(2);
+            inputs.add((RoaringBitmapCounter) value1);
+            inputs.add((RoaringBitmapCounter) value2);
+            return RoaringBitmapCounter.or(inputs);
+        }
+
         BitmapCounter merged = bitmapFactory.newBitmap();
         if (value1 != null) {
             merged.orWith(value1);
@@ -57,11 +102,15 @@ public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
 
     @Override
     public BitmapCounter getState() {
+        mergePending();
         return sum;
     }
 
     @Override
     public int getMemBytesEstimate() {
-        return sum == null ? 0 : sum.getMemBytes();
+        if (sum == null) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, sum.getMemBytes() + pendingMemBytes);
     }
 }
@@ -19,6 +19,7 @@
 package org.apache.kylin.measure.bitmap;
 
 import org.apache.kylin.common.util.ByteBufferOutputStream;
+import org.roaringbitmap.buffer.BufferFastAggregation;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
@@ -28,6 +29,7 @@ import java.io.Serializable;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A {@link BitmapCounter} based on roaring bitmap.
@@ -36,6 +38,9 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
 
     private ImmutableRoaringBitmap bitmap;
 
+    // the serialized form that the immutable bitmap maps, written as it is until the bitmap is mutated
+    private byte[] serialized;
+
     RoaringBitmapCounter() {
         bitmap = new MutableRoaringBitmap();
     }
@@ -51,9 +56,22 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
         // convert to mutable bitmap
         MutableRoaringBitmap result = bitmap.toMutableRoaringBitmap();
         bitmap = result;
+        serialized = null;
         return result;
     }
 
+    /**
+     * Unions the counters in one pass over all the inputs. The inputs are read as they are, an immutable
+     * bitmap over a buffer is not converted to a mutable one.
+     */
+    static RoaringBitmapCounter or(List<RoaringBitmapCounter> counters) {
+        ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[counters.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = counters.get(i).bitmap;
+        }
+        return new RoaringBitmapCounter(BufferFastAggregation.or(bitmaps));
+    }
+
     @Override
     public void add(int value) {
         getMutableBitmap().add(value);
@@ -82,6 +100,7 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
     @Override
     public void clear() {
         bitmap = new MutableRoaringBitmap();
+        serialized = null;
     }
 
     @Override
@@ -101,6 +120,15 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
 
     @Override
     public void write(ByteBuffer out) throws IOException {
+        if (serialized != null) {
+            // not mutated since read, no need to serialize again
+            if (out.remaining() < serialized.length) {
+                throw new BufferOverflowException();
+            }
+            out.put(serialized);
+            return;
+        }
+
         if (bitmap instanceof MutableRoaringBitmap) {
             getMutableBitmap().runOptimize();
         }
@@ -123,6 +151,7 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
         // ImmutableRoaringBitmap only maps the buffer, thus faster than constructing a MutableRoaringBitmap.
         // we'll convert to MutableRoaringBitmap later when mutate is needed
         bitmap = new ImmutableRoaringBitmap(ByteBuffer.wrap(dst));
+        serialized = dst;
     }
 
     @Override
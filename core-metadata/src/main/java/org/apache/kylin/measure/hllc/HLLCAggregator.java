@@ -28,6 +28,10 @@ public class HLLCAggregator extends MeasureAggregator<HLLCounter> {
     final int precision;
     HLLCounter sum = null;
 
+    // once dense, the inputs are merged into packed registers and the state is built on demand
+    HLLCUnion union = null;
+    boolean unionDirty = false;
+
     public HLLCAggregator(int precision) {
         this.precision = precision;
     }
@@ -35,14 +39,27 @@ public class HLLCAggregator extends MeasureAggregator<HLLCounter> {
     @Override
     public void reset() {
         sum = null;
+        union = null;
+        unionDirty = false;
     }
 
     @Override
     public void aggregate(HLLCounter value) {
-        if (sum == null)
+        if (union != null) {
+            union.add(value);
+            unionDirty = true;
+            sum = null;
+        } else if (sum == null) {
             sum = new HLLCounter(value);
-        else
+        } else if (precision >= 3 && sum.getPrecision() == precision && value.getPrecision() == precision && (sum.getRegisterType() == RegisterType.DENSE || value.getRegisterType() == RegisterType.DENSE)) {
+            union = new HLLCUnion(precision);
+            union.add(sum);
+            union.add(value);
+            sum = null;
+            unionDirty = true;
+        } else {
             sum.merge(value);
+        }
     }
 
     @Override
@@ -54,17 +71,29 @@ public class HLLCAggregator extends MeasureAggregator<HLLCounter> {
 
     @Override
     public HLLCounter getState() {
+        if (unionDirty) {
+            sum = union.toCounter();
+            unionDirty = false;
+        }
         return sum;
     }
 
     @Override
     public int getMemBytesEstimate() {
         // 1024 + 60 returned by AggregationCacheMemSizeTest
-        return 8 // aggregator obj shell
+        int bytes = 8 // aggregator obj shell
                 + 4 // precision
                 + 8 // ref to HLLC
                 + 8 // HLLC obj shell
                 + 32 + (1 << precision); // HLLC internal
+        if (union != null) {
+            // the union goes along with the HLLC built from it on demand
+            bytes += 8 // ref to union
+                    + 1 // dirty flag
+                    + 16 // union obj shell
+                    + 16 + (1 << precision); // packed words, one byte per register
+        }
+        return bytes;
     }
 
 }
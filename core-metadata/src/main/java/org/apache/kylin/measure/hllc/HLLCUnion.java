@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.hllc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.kylin.common.util.BytesUtil;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Union of many HLL counters of the same precision, e.g. the cells of a group across segments.
+ *
+ * The registers are kept dense and packed 8 per long, so that a dense input is merged a word at a time.
+ * A serialized counter is merged straight from its buffer, in the format of {@link HLLCounter#writeRegisters},
+ * without building a counter for it. The cardinality is estimated once at the end.
+ */
+public class HLLCUnion {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final int p;
+    private final int m;
+    private final long[] words; // register i at byte (i & 7) of words[i >>> 3], counted from the most significant
+
+    public HLLCUnion(int p) {
+        Preconditions.checkArgument(p >= 3, "precision too small for HLLCUnion: " + p);
+        this.p = p;
+        this.m = 1 << p;
+        this.words = new long[m >>> 3];
+    }
+
+    public int getPrecision() {
+        return p;
+    }
+
+    public void add(HLLCounter counter) {
+        Preconditions.checkArgument(counter.getPrecision() == p, "precision mismatch");
+        Register register = counter.getRegister();
+        switch (register.getRegisterType()) {
+        case DENSE:
+            byte[] registers = ((DenseRegister) register).getRawRegister();
+            for (int w = 0, i = 0; w < words.length; w++, i += 8) {
+                long word = 0;
+                for (int j = 0; j < 8; j++) {
+                    word = (word << 8) | (registers[i + j] & 0xFF);
+                }
+                words[w] = maxBytes(words[w], word);
+            }
+            break;
+        case SPARSE:
+            for (Map.Entry<Integer, Byte> entry : ((SparseRegister) register).getAllValue()) {
+                setIfBigger(entry.getKey(), entry.getValue());
+            }
+            break;
+        default:
+            SingleValueRegister sr = (SingleValueRegister) register;
+            if (sr.getSize() > 0) {
+                setIfBigger(sr.getSingleValuePos(), sr.getValue());
+            }
+            break;
+        }
+    }
+
+    /**
+     * Merges the counter serialized at the position of the buffer, and moves the position to the end of it.
+     */
+    public void add(ByteBuffer in) {
+        byte scheme = in.get();
+        if (scheme == 0) { // map scheme
+            int size = BytesUtil.readVInt(in);
+            if (size > m)
+                throw new IllegalArgumentException("register size (" + size + ") cannot be larger than m (" + m + ")");
+            int indexLen = (p - 1) / 8 + 1;
+            for (int i = 0; i < size; i++) {
+                int key = HLLCounter.readUnsigned(in, indexLen);
+                if (key >= m)
+                    throw new IllegalArgumentException("register index (" + key + ") out of m (" + m + ")");
+                setIfBigger(key, in.get());
+            }
+        } else if (scheme == 1) { // array scheme
+            boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+            for (int w = 0; w < words.length; w++) {
+                long word = in.getLong();
+                words[w] = maxBytes(words[w], bigEndian ? word : Long.reverseBytes(word));
+            }
+        } else
+            throw new IllegalStateException();
+    }
+
+    public void add(HLLCUnion another) {
+        Preconditions.checkArgument(another.p == p, "precision mismatch");
+        for (int w = 0; w < words.length; w++) {
+            words[w] = maxBytes(words[w], another.words[w]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    private void setIfBigger(int pos, byte value) {
+        int w = pos >>> 3;
+        int shift = (7 - (pos & 7)) << 3;
+        if (value > ((words[w] >>> shift) & 0xFF)) {
+            words[w] = (words[w] & ~(0xFFL << shift)) | ((long) value << shift);
+        }
+    }
+
+    // byte-wise max of two words; register values are below 128, so (a | 0x80) - b never borrows across bytes
+    static long maxBytes(long a, long b) {
+        long aNotLess = ((a | HIGH_BITS) - b) & HIGH_BITS;
+        long mask = (aNotLess >>> 7) * 0xFF;
+        return (a & mask) | (b & ~mask);
+    }
+
+    public long getCountEstimate() {
+        double registerSum = 0;
+        int zeroBuckets = 0;
+        for (long word : words) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                int r = (int) ((word >>> shift) & 0xFF);
+                if (r == 0) {
+                    registerSum++;
+                    zeroBuckets++;
+                } else {
+                    registerSum += 1.0 / (1L << r);
+                }
+            }
+        }
+        return new HLLCounter.HLLCSnapshot((byte) p, registerSum, zeroBuckets).getCountEstimate();
+    }
+
+    /**
+     * @return a dense counter of the union
+     */
+    public HLLCounter toCounter() {
+        HLLCounter counter = new HLLCounter(p, RegisterType.DENSE);
+        byte[] registers = ((DenseRegister) counter.getRegister()).getRawRegister();
+        for (int w = 0, i = 0; w < words.length; w++, i += 8) {
+            long word = words[w];
+            for (int j = 7; j >= 0; j--) {
+                registers[i + j] = (byte) word;
+                word >>>= 8;
+            }
+        }
+        return counter;
+    }
+}
@@ -176,6 +176,17 @@ public class HLLCounter implements Serializable, Comparable<HLLCounter> {
         toDenseIfNeeded();
     }
 
+    /**
+     * Unions counters serialized in the buffers, without deserializing each of them, see {@link HLLCUnion}.
+     */
+    public static HLLCounter union(int p, Iterable<ByteBuffer> serializedCounters) {
+        HLLCUnion union = new HLLCUnion(p);
+        for (ByteBuffer buf : serializedCounters) {
+            union.add(buf.duplicate());
+        }
+        return union.toCounter();
+    }
+
     public long getCountEstimate() {
         return new HLLCSnapshot(this).getCountEstimate();
     }
@@ -225,6 +236,12 @@ public class HLLCounter implements Serializable, Comparable<HLLCounter> {
             }
         }
 
+        HLLCSnapshot(byte p, double registerSum, int zeroBuckets) {
+            this.p = p;
+            this.registerSum = registerSum;
+            this.zeroBuckets = zeroBuckets;
+        }
+
         public long getCountEstimate() {
             int m = 1 << p;
             double alpha = 0.7213 / (1 + 1.079 / m);
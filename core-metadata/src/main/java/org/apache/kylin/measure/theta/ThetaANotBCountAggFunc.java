@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.util.List;
+
+import org.apache.kylin.measure.ParamAsMeasureCount;
+
+/**
+ * ThetaANotBCountAggFunc is an UDAF calculating the approximate difference (A not B) of the theta sketches of two or more keys
+ * Usage:   theta_a_not_b_count(columnToCount, columnToFilter, filterList)
+ * Example: theta_a_not_b_count(uuid, event, array['A', 'B', 'C']), meaning find the count of uuid in A but in neither B nor C
+ *          requires a theta count distinct measure of uuid, and a dimension of event
+ */
+public class ThetaANotBCountAggFunc implements ParamAsMeasureCount {
+
+    @Override
+    public int getParamAsMeasureCount() {
+        return -2;
+    }
+
+    public static ThetaSetOperationResult init() {
+        return new ThetaSetOperationResult(ThetaSetOperationResult.Operation.A_NOT_B);
+    }
+
+    public static ThetaSetOperationResult add(ThetaSetOperationResult result, Object value, Object key, List keyList) {
+        result.add(key, keyList, value);
+        return result;
+    }
+
+    public static ThetaSetOperationResult merge(ThetaSetOperationResult result, Object value, Object key, List keyList) {
+        return add(result, value, key, keyList);
+    }
+
+    public static long result(ThetaSetOperationResult result) {
+        return result.result();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The partial result of the theta set operation UDAFs, a sketch of each key in the key list, e.g. the
+ * users of each event. The key list comes from the query, and the sketches of the same key are unioned.
+ */
+public class ThetaSetOperationResult {
+
+    public enum Operation {
+        UNION, INTERSECT, A_NOT_B
+    }
+
+    private final Operation operation;
+    private final Map<Object, ThetaSketch> map = new LinkedHashMap<>();
+    private List keyList;
+
+    public ThetaSetOperationResult(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void add(Object key, List keyList, Object value) {
+        if (this.keyList == null) {
+            this.keyList = keyList;
+        }
+        if (this.keyList != null && this.keyList.contains(key)) {
+            ThetaSketch sketch = map.get(key);
+            if (sketch == null) {
+                map.put(key, new ThetaSketch((ThetaSketch) value));
+            } else {
+                sketch.merge((ThetaSketch) value);
+            }
+        }
+    }
+
+    public long result() {
+        if (keyList == null || keyList.isEmpty()) {
+            return 0;
+        }
+
+        switch (operation) {
+        case UNION:
+            ThetaSketch union = null;
+            for (Object key : keyList) {
+                ThetaSketch s = map.get(key);
+                if (s == null) {
+                    continue;
+                }
+                if (union == null) {
+                    union = new ThetaSketch(s);
+                } else {
+                    union.merge(s);
+                }
+            }
+            return union == null ? 0 : union.getCountEstimate();
+        case INTERSECT:
+            // if any specified key not in map, the intersection must be 0
+            for (Object key : keyList) {
+                if (!map.containsKey(key)) {
+                    return 0;
+                }
+            }
+            ThetaSketch intersection = new ThetaSketch(map.get(keyList.get(0)));
+            for (int i = 1; i < keyList.size(); i++) {
+                intersection.intersect(map.get(keyList.get(i)));
+            }
+            return intersection.getCountEstimate();
+        case A_NOT_B:
+            // the first key minus all the others
+            ThetaSketch first = map.get(keyList.get(0));
+            if (first == null) {
+                return 0;
+            }
+            ThetaSketch difference = new ThetaSketch(first);
+            for (int i = 1; i < keyList.size(); i++) {
+                ThetaSketch s = map.get(keyList.get(i));
+                if (s != null) {
+                    difference.andNot(s);
+                }
+            }
+            return difference.getCountEstimate();
+        default:
+            throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.kylin.common.util.BytesUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A theta sketch (KMV, K minimum values) for approximate distinct count. Unlike HLL, the retained hashes
+ * are a uniform sample of the hash space below theta, so besides union, the sketches support intersection
+ * and difference (A not B) with bounded error.
+ *
+ * The sketch keeps the distinct hashes below theta in a hash table, and when more than 2k are retained,
+ * lowers theta to the (k+1)-th smallest hash and drops the rest. The estimate is count / (theta / 2^63),
+ * and the relative standard error is about 1 / sqrt(k).
+ */
+@SuppressWarnings("serial")
+public class ThetaSketch implements Serializable {
+
+    public static final long MAX_THETA = Long.MAX_VALUE;
+
+    // seeded, since murmur3 with the zero seed hashes the empty input to zero
+    private static final HashFunction HASH_FUNC = Hashing.murmur3_128(9001);
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private final int lgK;
+    private final int k;
+    private long theta = MAX_THETA;
+    private long[] table; // open addressing, 0 for empty slot; hashes are positive
+    private int count;
+
+    public ThetaSketch(int lgK) {
+        if (lgK < 4 || lgK > 20)
+            throw new IllegalArgumentException("lgK should be in [4, 20], got " + lgK);
+        this.lgK = lgK;
+        this.k = 1 << lgK;
+        this.table = new long[MIN_TABLE_SIZE];
+    }
+
+    public ThetaSketch(ThetaSketch another) {
+        this.lgK = another.lgK;
+        this.k = another.k;
+        this.theta = another.theta;
+        this.table = another.table.clone();
+        this.count = another.count;
+    }
+
+    public void update(String value) {
+        updateHash(HASH_FUNC.hashString(value, Charsets.UTF_8).asLong());
+    }
+
+    public void update(byte[] value) {
+        updateHash(HASH_FUNC.hashBytes(value).asLong());
+    }
+
+    public void update(long value) {
+        updateHash(HASH_FUNC.hashLong(value).asLong());
+    }
+
+    protected void updateHash(long hash) {
+        hash >>>= 1; // into [0, 2^63)
+        if (hash == 0)
+            hash = 1; // zero marks the empty slot
+        if (hash >= theta)
+            return;
+        if (insert(hash))
+            compactIfNeeded();
+    }
+
+    /**
+     * Union with another sketch, in place.
+     */
+    public void merge(ThetaSketch another) {
+        checkCompatible(another);
+        if (another.theta < theta) {
+            theta = another.theta;
+            retainBelowTheta();
+        }
+        long[] t = another.table;
+        for (int i = 0; i < t.length; i++) {
+            if (t[i] != 0 && t[i] < theta)
+                insert(t[i]);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Intersection with another sketch, in place.
+     */
+    public void intersect(ThetaSketch another) {
+        checkCompatible(another);
+        filter(another, true);
+    }
+
+    /**
+     * Difference with another sketch, i.e. keeps what is in this but not in another, in place.
+     */
+    public void andNot(ThetaSketch another) {
+        checkCompatible(another);
+        filter(another, false);
+    }
+
+    private void filter(ThetaSketch another, boolean keepContained) {
+        long newTheta = Math.min(theta, another.theta);
+        long[] kept = new long[count];
+        int n = 0;
+        for (int i = 0; i < table.length; i++) {
+            long h = table[i];
+            if (h != 0 && h < newTheta && another.contains(h) == keepContained)
+                kept[n++] = h;
+        }
+        theta = newTheta;
+        rebuild(kept, n);
+    }
+
+    private void checkCompatible(ThetaSketch another) {
+        if (lgK != another.lgK)
+            throw new IllegalArgumentException("lgK mismatch: " + lgK + " vs " + another.lgK);
+    }
+
+    public long getCountEstimate() {
+        if (theta == MAX_THETA)
+            return count;
+        return Math.round(count * ((double) MAX_THETA / theta));
+    }
+
+    public double getErrorRate() {
+        return 1.0 / Math.sqrt(k);
+    }
+
+    public boolean isEstimationMode() {
+        return theta < MAX_THETA;
+    }
+
+    public int getLgK() {
+        return lgK;
+    }
+
+    public long getTheta() {
+        return theta;
+    }
+
+    public int getRetainedEntries() {
+        return count;
+    }
+
+    public int getMemBytes() {
+        return 40 + 16 + table.length * 8;
+    }
+
+    public void clear() {
+        theta = MAX_THETA;
+        count = 0;
+        if (table.length > MIN_TABLE_SIZE)
+            table = new long[MIN_TABLE_SIZE];
+        else
+            Arrays.fill(table, 0L);
+    }
+
+    // ============================================================================
+
+    private static int slot(long hash, int mask) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private boolean contains(long hash) {
+        int mask = table.length - 1;
+        for (int i = slot(hash, mask);; i = (i + 1) & mask) {
+            long h = table[i];
+            if (h == hash)
+                return true;
+            if (h == 0)
+                return false;
+        }
+    }
+
+    // returns true if the hash is new
+    private boolean insert(long hash) {
+        if ((count + 1) * 2 > table.length)
+            resize(table.length * 2);
+        int mask = table.length - 1;
+        for (int i = slot(hash, mask);; i = (i + 1) & mask) {
+            long h = table[i];
+            if (h == hash)
+                return false;
+            if (h == 0) {
+                table[i] = hash;
+                count++;
+                return true;
+            }
+        }
+    }
+
+    private void resize(int size) {
+        long[] old = table;
+        table = new long[size];
+        int mask = size - 1;
+        for (int j = 0; j < old.length; j++) {
+            long hash = old[j];
+            if (hash != 0) {
+                int i = slot(hash, mask);
+                while (table[i] != 0)
+                    i = (i + 1) & mask;
+                table[i] = hash;
+            }
+        }
+    }
+
+    private void rebuild(long[] hashes, int n) {
+        int size = MIN_TABLE_SIZE;
+        while (size < n * 2)
+            size <<= 1;
+        table = new long[size];
+        count = 0;
+        for (int i = 0; i < n; i++)
+            insert(hashes[i]);
+    }
+
+    private void retainBelowTheta() {
+        long[] kept = new long[count];
+        int n = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != 0 && table[i] < theta)
+                kept[n++] = table[i];
+        }
+        if (n < count)
+            rebuild(kept, n);
+    }
+
+    private void compactIfNeeded() {
+        if (count > 2 * k) {
+            long[] sorted = getSortedHashes();
+            theta = sorted[k];
+            rebuild(sorted, k);
+        }
+    }
+
+    private long[] getSortedHashes() {
+        long[] hashes = new long[count];
+        int n = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != 0)
+                hashes[n++] = table[i];
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    // ============================================================================
+
+    /**
+     * Writes theta and the retained hashes in ascending order, compacted to at most k hashes.
+     */
+    public void writeRegisters(ByteBuffer out) {
+        long[] hashes = getSortedHashes();
+        long t = theta;
+        int n = hashes.length;
+        if (n > k) {
+            t = hashes[k];
+            n = k;
+        }
+        out.putLong(t);
+        BytesUtil.writeVInt(n, out);
+        for (int i = 0; i < n; i++)
+            out.putLong(hashes[i]);
+    }
+
+    public void readRegisters(ByteBuffer in) {
+        long t = in.getLong();
+        int n = BytesUtil.readVInt(in);
+        if (n > k)
+            throw new IllegalArgumentException("retained entries (" + n + ") cannot be larger than k (" + k + ")");
+        theta = t;
+        count = 0;
+        int size = MIN_TABLE_SIZE;
+        while (size < n * 2)
+            size <<= 1;
+        if (table.length == size)
+            Arrays.fill(table, 0L);
+        else
+            table = new long[size];
+        for (int i = 0; i < n; i++)
+            insert(in.getLong());
+    }
+
+    public int peekLength(ByteBuffer in) {
+        int mark = in.position();
+        in.position(mark + 8);
+        int n = BytesUtil.readVInt(in);
+        int len = in.position() - mark + n * 8;
+        in.position(mark);
+        return len;
+    }
+
+    public int maxLength() {
+        return 8 + 5 + k * 8;
+    }
+
+    @Override
+    public int hashCode() {
+        long[] hashes = getSortedHashes();
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + lgK;
+        result = prime * result + (int) (theta ^ (theta >>> 32));
+        result = prime * result + Arrays.hashCode(hashes);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ThetaSketch other = (ThetaSketch) obj;
+        if (lgK != other.lgK || theta != other.theta || count != other.count)
+            return false;
+        return Arrays.equals(getSortedHashes(), other.getSortedHashes());
+    }
+
+    @Override
+    public String toString() {
+        return "" + getCountEstimate();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import org.apache.kylin.measure.MeasureAggregator;
+
+@SuppressWarnings("serial")
+public class ThetaSketchAggregator extends MeasureAggregator<ThetaSketch> {
+
+    final int lgK;
+    ThetaSketch sum = null;
+
+    public ThetaSketchAggregator(int lgK) {
+        this.lgK = lgK;
+    }
+
+    @Override
+    public void reset() {
+        sum = null;
+    }
+
+    @Override
+    public void aggregate(ThetaSketch value) {
+        if (sum == null)
+            sum = new ThetaSketch(value);
+        else
+            sum.merge(value);
+    }
+
+    @Override
+    public ThetaSketch aggregate(ThetaSketch value1, ThetaSketch value2) {
+        ThetaSketch result = new ThetaSketch(value1);
+        result.merge(value2);
+        return result;
+    }
+
+    @Override
+    public ThetaSketch getState() {
+        return sum;
+    }
+
+    @Override
+    public int getMemBytesEstimate() {
+        return 8 // aggregator obj shell
+                + 4 // lgK
+                + 8 // ref to sketch
+                + (sum == null ? 0 : sum.getMemBytes());
+    }
+
+}
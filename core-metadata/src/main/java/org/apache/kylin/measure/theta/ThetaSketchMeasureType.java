@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.MeasureIngester;
+import org.apache.kylin.measure.MeasureType;
+import org.apache.kylin.measure.MeasureTypeFactory;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.realization.SQLDigest;
+import org.apache.kylin.metadata.realization.SQLDigest.SQLCall;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Approximate count distinct by theta sketch, e.g. theta(12) keeps 2^12 hashes for about 1.6% error.
+ * Besides count distinct, the sketches of different dimension values can be unioned, intersected
+ * and differenced at query time, see the UDAFs.
+ */
+public class ThetaSketchMeasureType extends MeasureType<ThetaSketch> {
+    private static final long serialVersionUID = 1L;
+
+    public static final String FUNC_COUNT_DISTINCT = FunctionDesc.FUNC_COUNT_DISTINCT;
+    public static final String FUNC_THETA_UNION_COUNT = "THETA_UNION_COUNT";
+    public static final String FUNC_THETA_INTERSECT_COUNT = "THETA_INTERSECT_COUNT";
+    public static final String FUNC_THETA_A_NOT_B_COUNT = "THETA_A_NOT_B_COUNT";
+    public static final String DATATYPE_THETA = "theta";
+
+    public static class Factory extends MeasureTypeFactory<ThetaSketch> {
+
+        @Override
+        public MeasureType<ThetaSketch> createMeasureType(String funcName, DataType dataType) {
+            return new ThetaSketchMeasureType(funcName, dataType);
+        }
+
+        @Override
+        public String getAggrFunctionName() {
+            return FUNC_COUNT_DISTINCT;
+        }
+
+        @Override
+        public String getAggrDataTypeName() {
+            return DATATYPE_THETA;
+        }
+
+        @Override
+        public Class<? extends DataTypeSerializer<ThetaSketch>> getAggrDataTypeSerializer() {
+            return ThetaSketchSerializer.class;
+        }
+    }
+
+    // ============================================================================
+
+    private final DataType dataType;
+
+    public ThetaSketchMeasureType(String funcName, DataType dataType) {
+        // note at query parsing phase, the data type may be null, because only function and parameters are known
+        this.dataType = dataType;
+    }
+
+    @Override
+    public void validate(FunctionDesc functionDesc) throws IllegalArgumentException {
+        if (FUNC_COUNT_DISTINCT.equals(functionDesc.getExpression()) == false)
+            throw new IllegalArgumentException("ThetaSketchMeasureType only support function " + FUNC_COUNT_DISTINCT + ", got " + functionDesc.getExpression());
+
+        DataType returnType = functionDesc.getReturnDataType();
+        if (DATATYPE_THETA.equals(returnType.getName()) == false)
+            throw new IllegalArgumentException("ThetaSketchMeasureType's return type must be " + DATATYPE_THETA + ", got " + returnType);
+
+        if (returnType.getPrecision() < 4 || returnType.getPrecision() > 20)
+            throw new IllegalArgumentException("ThetaSketchMeasureType's precision (log2 of k) must be in [4, 20], got " + returnType.getPrecision());
+    }
+
+    @Override
+    public boolean isMemoryHungry() {
+        return true;
+    }
+
+    @Override
+    public MeasureIngester<ThetaSketch> newIngester() {
+        return new MeasureIngester<ThetaSketch>() {
+            private static final long serialVersionUID = 1L;
+
+            ThetaSketch current = new ThetaSketch(dataType.getPrecision());
+
+            @Override
+            public ThetaSketch valueOf(String[] values, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+                ThetaSketch sketch = current;
+                sketch.clear();
+                if (values.length == 1) {
+                    if (values[0] != null)
+                        sketch.update(values[0]);
+                } else {
+                    boolean allNull = true;
+                    StringBuilder buf = new StringBuilder();
+                    for (String v : values) {
+                        allNull = (allNull && v == null);
+                        buf.append(v);
+                    }
+                    if (!allNull)
+                        sketch.update(buf.toString());
+                }
+                return sketch;
+            }
+
+            @Override
+            public void reset() {
+                current = new ThetaSketch(dataType.getPrecision());
+            }
+        };
+    }
+
+    @Override
+    public MeasureAggregator<ThetaSketch> newAggregator() {
+        return new ThetaSketchAggregator(dataType.getPrecision());
+    }
+
+    @Override
+    public boolean needRewrite() {
+        return true;
+    }
+
+    static final Map<String, Class<?>> UDAF_MAP = ImmutableMap.<String, Class<?>> of(
+            FUNC_COUNT_DISTINCT, ThetaDistinctCountAggFunc.class,
+            FUNC_THETA_UNION_COUNT, ThetaUnionCountAggFunc.class,
+            FUNC_THETA_INTERSECT_COUNT, ThetaIntersectCountAggFunc.class,
+            FUNC_THETA_A_NOT_B_COUNT, ThetaANotBCountAggFunc.class);
+
+    @Override
+    public Map<String, Class<?>> getRewriteCalciteAggrFunctions() {
+        return UDAF_MAP;
+    }
+
+    @Override
+    public void adjustSqlDigest(List<MeasureDesc> measureDescs, SQLDigest sqlDigest) {
+        // the sketch of each filter value is needed, so the filter column joins the group by
+        for (SQLCall call : sqlDigest.aggrSqlCalls) {
+            if (UDAF_MAP.containsKey(call.function) && !FUNC_COUNT_DISTINCT.equals(call.function)) {
+                TblColRef col = (TblColRef) call.args.get(1);
+                if (!sqlDigest.groupbyColumns.contains(col))
+                    sqlDigest.groupbyColumns.add(col);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+
+public class ThetaSketchSerializer extends DataTypeSerializer<ThetaSketch> {
+
+    private int lgK;
+
+    public ThetaSketchSerializer(DataType type) {
+        this.lgK = type.getPrecision();
+    }
+
+    @Override
+    public void serialize(ThetaSketch value, ByteBuffer out) {
+        value.writeRegisters(out);
+    }
+
+    private ThetaSketch current() {
+        ThetaSketch sketch = (ThetaSketch) current.get();
+        if (sketch == null) {
+            sketch = new ThetaSketch(lgK);
+            current.set(sketch);
+        }
+        return sketch;
+    }
+
+    @Override
+    public ThetaSketch deserialize(ByteBuffer in) {
+        ThetaSketch sketch = current();
+        sketch.readRegisters(in);
+        return sketch;
+    }
+
+    @Override
+    public int peekLength(ByteBuffer in) {
+        return current().peekLength(in);
+    }
+
+    @Override
+    public int maxLength() {
+        return current().maxLength();
+    }
+
+    @Override
+    public int getStorageBytesEstimate() {
+        return current().maxLength();
+    }
+
+}
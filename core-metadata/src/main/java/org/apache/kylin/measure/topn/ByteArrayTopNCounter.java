@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.topn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+
+/**
+ * A {@link TopNCounter} for the fixed length keys of TopN measure, i.e. the encoded literal columns.
+ *
+ * The keys and counts are kept in parallel primitive arrays, looked up by an open addressing index on the key bytes,
+ * so offering and merging allocate no object per entry. A merge keeps the top entries by partial selection
+ * (nth-element) and leaves them unsorted; entries are sorted only when read in order, e.g. on serialization.
+ *
+ * Key bytes once written are never changed, the items returned by the iterators may refer to them.
+ */
+@SuppressWarnings("serial")
+public class ByteArrayTopNCounter extends TopNCounter<ByteArray> {
+
+    private static final int INITIAL_ENTRIES = 4;
+
+    private int keyLength = -1;
+    private int size = 0;
+    private byte[] keys = null; // the key of entry i at i * keyLength
+    private double[] counts = null;
+    private int[] slots = null; // entry index + 1 of the keys by hash, 0 for empty slot
+    private boolean sorted = true; // whether entries are in ascending order of count
+
+    public ByteArrayTopNCounter(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public LinkedList<Counter<ByteArray>> getCounterList() {
+        LinkedList<Counter<ByteArray>> list = new LinkedList<>();
+        Iterator<Counter<ByteArray>> iterator = iterator();
+        while (iterator.hasNext()) {
+            list.addFirst(iterator.next());
+        }
+        return list;
+    }
+
+    @Override
+    public void offer(ByteArray item, double incrementCount) {
+        int index = indexOf(item);
+        if (index < 0) {
+            add(item.array(), item.offset(), item.length(), incrementCount);
+        } else {
+            counts[index] += incrementCount;
+        }
+        sorted = false;
+    }
+
+    @Override
+    public void sortAndRetain() {
+        retainTop(capacity);
+        sort();
+    }
+
+    @Override
+    public List<Counter<ByteArray>> topK(int k) {
+        if (sorted == false) {
+            sortAndRetain();
+        }
+        int n = Math.min(k, size);
+        List<Counter<ByteArray>> topK = new ArrayList<>(n);
+        for (int i = size - 1; i >= size - n; i--) {
+            topK.add(newCounter(i));
+        }
+        return topK;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        sort();
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = size - 1; i >= 0; i--) {
+            sb.append(newItem(i));
+            sb.append(':');
+            sb.append(counts[i]);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    @Override
+    public void offerToHead(ByteArray item, double count) {
+        if (size > 0 && count < counts[size - 1]) {
+            sorted = false;
+        }
+        add(item.array(), item.offset(), item.length(), count);
+    }
+
+    @Override
+    public TopNCounter<ByteArray> merge(TopNCounter<ByteArray> another) {
+        boolean thisFull = this.size() >= this.capacity;
+        boolean anotherFull = another.size() >= another.capacity;
+        double m1 = thisFull ? this.minCount() : 0.0;
+
+        if (another instanceof ByteArrayTopNCounter) {
+            ByteArrayTopNCounter that = (ByteArrayTopNCounter) another;
+            double m2 = anotherFull ? that.minCount() : 0.0;
+            if (anotherFull) {
+                addToAll(m2);
+            }
+            for (int i = 0; i < that.size; i++) {
+                int offset = i * that.keyLength;
+                int index = indexOf(that.keys, offset, that.keyLength);
+                if (index < 0) {
+                    add(that.keys, offset, that.keyLength, that.counts[i] + m1);
+                } else {
+                    counts[index] += that.counts[i] - m2;
+                }
+            }
+        } else {
+            double m2 = 0.0;
+            if (anotherFull) {
+                m2 = Double.MAX_VALUE;
+                for (Counter<ByteArray> c : another) {
+                    m2 = Math.min(m2, c.getCount());
+                }
+                addToAll(m2);
+            }
+            for (Counter<ByteArray> c : another) {
+                ByteArray item = c.getItem();
+                int index = indexOf(item);
+                if (index < 0) {
+                    add(item.array(), item.offset(), item.length(), c.getCount() + m1);
+                } else {
+                    counts[index] += c.getCount() - m2;
+                }
+            }
+        }
+
+        sorted = false;
+        retainTop(capacity);
+        return this;
+    }
+
+    @Override
+    public void retain(int newCapacity) {
+        this.capacity = newCapacity;
+        retainTop(newCapacity);
+    }
+
+    @Override
+    public double[] getCounters() {
+        sort();
+        return Arrays.copyOf(counts == null ? new double[0] : counts, size);
+    }
+
+    @Override
+    public Iterator<Counter<ByteArray>> iterator() {
+        sort();
+        return new Iterator<Counter<ByteArray>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Counter<ByteArray> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return newCounter(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // ============================================================================
+
+    private Counter<ByteArray> newCounter(int index) {
+        return new Counter<>(newItem(index), counts[index]);
+    }
+
+    private ByteArray newItem(int index) {
+        return new ByteArray(keys, index * keyLength, keyLength);
+    }
+
+    private double minCount() {
+        if (sorted) {
+            return size == 0 ? 0.0 : counts[0];
+        }
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, counts[i]);
+        }
+        return min;
+    }
+
+    private void addToAll(double delta) {
+        for (int i = 0; i < size; i++) {
+            counts[i] += delta;
+        }
+    }
+
+    private int indexOf(ByteArray item) {
+        return indexOf(item.array(), item.offset(), item.length());
+    }
+
+    private int indexOf(byte[] key, int offset, int length) {
+        if (size == 0) {
+            return -1;
+        }
+        checkKeyLength(length);
+
+        int mask = slots.length - 1;
+        for (int slot = hash(key, offset, length) & mask;; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (Bytes.equals(keys, index * keyLength, keyLength, key, offset, length)) {
+                return index;
+            }
+        }
+    }
+
+    private void add(byte[] key, int offset, int length, double count) {
+        if (keyLength < 0) {
+            keyLength = length;
+        }
+        checkKeyLength(length);
+
+        if (counts == null || size == counts.length) {
+            // new arrays, the items given out still refer to the old key bytes
+            int newEntries = counts == null ? INITIAL_ENTRIES : counts.length * 2;
+            keys = keys == null ? new byte[newEntries * keyLength] : Arrays.copyOf(keys, newEntries * keyLength);
+            counts = counts == null ? new double[newEntries] : Arrays.copyOf(counts, newEntries);
+            rebuildSlots();
+        }
+
+        System.arraycopy(key, offset, keys, size * keyLength, length);
+        counts[size] = count;
+        putSlot(size);
+        size++;
+    }
+
+    private void checkKeyLength(int length) {
+        if (length != keyLength) {
+            throw new IllegalArgumentException("TopN key length " + length + " differs from " + keyLength);
+        }
+    }
+
+    private void rebuildSlots() {
+        int n = Integer.highestOneBit(Math.max(counts.length, 1) * 2 - 1) << 1; // at least twice of the entries
+        if (slots == null || slots.length != n) {
+            slots = new int[n];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        for (int i = 0; i < size; i++) {
+            putSlot(i);
+        }
+    }
+
+    private void putSlot(int index) {
+        int mask = slots.length - 1;
+        int slot = hash(keys, index * keyLength, keyLength) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private static int hash(byte[] key, int offset, int length) {
+        int h = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + key[i];
+        }
+        // spread the bits of nearby ids
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Keeps the n entries of largest counts, by partial selection when the entries are not sorted.
+     */
+    private void retainTop(int n) {
+        if (size <= n) {
+            return;
+        }
+
+        int[] order = identity(size);
+        if (!sorted) {
+            // the last n of order become the largest, in no particular order
+            select(order, 0, size - 1, size - n);
+        }
+        reorder(order, size - n, n);
+    }
+
+    /**
+     * Sorts the entries in ascending order of count.
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        int[] order = identity(size);
+        quickSort(order, 0, size - 1);
+        reorder(order, 0, size);
+        sorted = true;
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    // rewrites the entries as order[from, from + n), into new arrays so that the given out items are not changed
+    private void reorder(int[] order, int from, int n) {
+        byte[] newKeys = new byte[Math.max(n, INITIAL_ENTRIES) * keyLength];
+        double[] newCounts = new double[Math.max(n, INITIAL_ENTRIES)];
+        for (int i = 0; i < n; i++) {
+            int index = order[from + i];
+            System.arraycopy(keys, index * keyLength, newKeys, i * keyLength, keyLength);
+            newCounts[i] = counts[index];
+        }
+        keys = newKeys;
+        counts = newCounts;
+        size = n;
+        rebuildSlots();
+    }
+
+    // quickselect, puts the k-th smallest at k with smaller ones before and larger ones after
+    private void select(int[] order, int left, int right, int k) {
+        while (right > left) {
+            long range = partition(order, left, right);
+            int lt = (int) (range >>> 32);
+            int gt = (int) range;
+            if (k < lt) {
+                right = lt - 1;
+            } else if (k > gt) {
+                left = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void quickSort(int[] order, int left, int right) {
+        while (right - left > 16) {
+            long range = partition(order, left, right);
+            int lt = (int) (range >>> 32);
+            int gt = (int) range;
+            // recurse on the smaller side
+            if (lt - left < right - gt) {
+                quickSort(order, left, lt - 1);
+                left = gt + 1;
+            } else {
+                quickSort(order, gt + 1, right);
+                right = lt - 1;
+            }
+        }
+        for (int i = left + 1; i <= right; i++) {
+            int v = order[i];
+            int j = i - 1;
+            while (j >= left && counts[order[j]] > counts[v]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = v;
+        }
+    }
+
+    // three-way partition by the median of three, as counts often repeat;
+    // returns the range [lt, gt] equal to the pivot, packed as lt << 32 | gt
+    private long partition(int[] order, int left, int right) {
+        int mid = (left + right) >>> 1;
+        if (counts[order[mid]] < counts[order[left]])
+            swap(order, left, mid);
+        if (counts[order[right]] < counts[order[left]])
+            swap(order, left, right);
+        if (counts[order[right]] < counts[order[mid]])
+            swap(order, mid, right);
+
+        double pivot = counts[order[mid]];
+        int lt = left;
+        int gt = right;
+        int i = left;
+        while (i <= gt) {
+            double c = counts[order[i]];
+            if (c < pivot) {
+                swap(order, lt++, i++);
+            } else if (c > pivot) {
+                swap(order, i, gt--);
+            } else {
+                i++;
+            }
+        }
+        return ((long) lt << 32) | gt;
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+}
@@ -39,7 +39,7 @@ public class TopNAggregator extends MeasureAggregator<TopNCounter<ByteArray>> {
     public void aggregate(TopNCounter<ByteArray> value) {
         if (sum == null) {
             capacity = value.getCapacity();
-            sum = new TopNCounter<>(capacity * 10);
+            sum = new ByteArrayTopNCounter(capacity * 10);
         }
         sum.merge(value);
     }
@@ -47,7 +47,7 @@ public class TopNAggregator extends MeasureAggregator<TopNCounter<ByteArray>> {
     @Override
     public TopNCounter<ByteArray> aggregate(TopNCounter<ByteArray> value1, TopNCounter<ByteArray> value2) {
         int thisCapacity = value1.getCapacity();
-        TopNCounter<ByteArray> aggregated = new TopNCounter<>(thisCapacity * 2);
+        TopNCounter<ByteArray> aggregated = new ByteArrayTopNCounter(thisCapacity * 2);
         aggregated.merge(value1);
         aggregated.merge(value2);
         aggregated.retain(thisCapacity);
@@ -153,7 +153,7 @@ public class TopNMeasureType extends MeasureType<TopNCounter<ByteArray>> {
                     offset += dimensionEncodings[i].getLengthOfEncoding();
                 }
 
-                TopNCounter<ByteArray> topNCounter = new TopNCounter<ByteArray>(dataType.getPrecision() * TopNCounter.EXTRA_SPACE_RATE);
+                TopNCounter<ByteArray> topNCounter = new ByteArrayTopNCounter(dataType.getPrecision() * TopNCounter.EXTRA_SPACE_RATE);
                 topNCounter.offer(key, counter);
                 return topNCounter;
             }
@@ -191,6 +191,8 @@ public class TopNMeasureType extends MeasureType<TopNCounter<ByteArray>> {
                 int topNSize = topNCounter.size();
                 byte[] newIdBuf = new byte[topNSize * newKeyLength];
 
+                // the counter may not keep the given out items, put the re-encoded keys to a new counter
+                TopNCounter<ByteArray> newCounter = new ByteArrayTopNCounter(topNCounter.getCapacity());
                 int bufOffset = 0;
                 for (Counter<ByteArray> c : topNCounter) {
                     int offset = c.getItem().offset();
@@ -202,10 +204,10 @@ public class TopNMeasureType extends MeasureType<TopNCounter<ByteArray>> {
                         offset += dimensionEncodings[i].getLengthOfEncoding();
                     }
 
-                    c.getItem().set(newIdBuf, bufOffset, newKeyLength);
+                    newCounter.offerToHead(new ByteArray(newIdBuf, bufOffset, newKeyLength), c.getCount());
                     bufOffset += newKeyLength;
                 }
-                return topNCounter;
+                return newCounter;
             }
         };
     }
@@ -87,4 +87,32 @@ public class BitmapAggregatorTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAggregatorManyDeserializedCounters() throws IOException {
+        int count = BitmapAggregator.MAX_PENDING_INPUTS * 2 + 10;
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        for (int i = 0; i < count; i++) {
+            factory.newBitmap(i, i + 1, 100000 + i).write(buffer);
+        }
+        buffer.flip();
+
+        BitmapAggregator aggregator = new BitmapAggregator();
+        BitmapCounter first = null;
+        for (int i = 0; i < count; i++) {
+            BitmapCounter next = factory.newBitmap(buffer);
+            if (first == null) {
+                first = next;
+            }
+            aggregator.aggregate(next);
+        }
+        assertEquals(count + 1 + count, aggregator.getState().getCount());
+
+        // the inputs are not modified
+        assertEquals(factory.newBitmap(0, 1, 100000), first);
+
+        // the merged state keeps aggregating
+        aggregator.aggregate(factory.newBitmap(-1));
+        assertEquals(count + 1 + count + 1, aggregator.getState().getCount());
+    }
+}
@@ -66,6 +66,13 @@ public class BitmapSerializerTest extends LocalFileMetadataTestCase {
         }
         assertEquals(4, counter2.getCount());
 
+        // a deserialized counter writes its serialized form as it is
+        ByteBuffer buffer2 = ByteBuffer.allocate(size);
+        serializer.serialize(counter2, buffer2);
+        assertEquals(size, buffer2.position());
+        buffer2.flip();
+        assertEquals(counter, serializer.deserialize(buffer2));
+
         buffer = ByteBuffer.allocate(size - 1);
         try {
             serializer.serialize(counter, buffer);
@@ -22,7 +22,9 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
@@ -248,6 +250,84 @@ public class HLLCounterTest {
         checkSerialize(counter);
     }
 
+    @Test
+    public void testUnion() throws IOException {
+        int p = 14;
+        Random rand = new Random(7);
+        List<HLLCounter> counters = new ArrayList<HLLCounter>();
+        for (int i = 0; i < 30; i++) {
+            HLLCounter counter = new HLLCounter(p);
+            int n = i % 3 == 0 ? 1 : (i % 3 == 1 ? 100 : 20000); // single, sparse and dense
+            for (int k = 0; k < n; k++)
+                counter.add(rand.nextInt());
+            counters.add(counter);
+        }
+        counters.add(new HLLCounter(p)); // empty
+
+        HLLCounter merged = new HLLCounter(p);
+        List<ByteBuffer> serialized = new ArrayList<ByteBuffer>();
+        for (HLLCounter counter : counters) {
+            merged.merge(counter);
+            ByteBuffer out = ByteBuffer.allocate(counter.maxLength());
+            counter.writeRegisters(out);
+            out.flip();
+            serialized.add(out);
+        }
+
+        HLLCUnion fromBuffers = new HLLCUnion(p);
+        HLLCUnion fromCounters = new HLLCUnion(p);
+        for (int i = 0; i < counters.size(); i++) {
+            fromBuffers.add(serialized.get(i));
+            assertEquals(0, serialized.get(i).remaining());
+            fromCounters.add(counters.get(i));
+        }
+        assertEquals(merged.getCountEstimate(), fromBuffers.getCountEstimate());
+        assertEquals(merged.getCountEstimate(), fromCounters.getCountEstimate());
+        assertEquals(merged, fromBuffers.toCounter());
+        assertEquals(merged, fromCounters.toCounter());
+
+        for (ByteBuffer buffer : serialized)
+            buffer.rewind();
+        assertEquals(merged, HLLCounter.union(p, serialized));
+    }
+
+    @Test
+    public void testUnionMaxBytes() {
+        Random rand = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            long a = 0, b = 0, expected = 0;
+            for (int j = 0; j < 8; j++) {
+                int x = rand.nextInt(128), y = rand.nextInt(128);
+                a = (a << 8) | x;
+                b = (b << 8) | y;
+                expected = (expected << 8) | Math.max(x, y);
+            }
+            assertEquals(expected, HLLCUnion.maxBytes(a, b));
+        }
+    }
+
+    @Test
+    public void testAggregatorUnion() {
+        int p = 12;
+        HLLCAggregator aggregator = new HLLCAggregator(p);
+        HLLCounter merged = new HLLCounter(p);
+        for (int i = 0; i < 20; i++) {
+            HLLCounter counter = new HLLCounter(p);
+            for (int k = 0; k < (i % 2 == 0 ? 5 : 5000); k++)
+                counter.add(i * 10000 + k);
+            aggregator.aggregate(counter);
+            merged.merge(counter);
+            assertEquals(merged.getCountEstimate(), aggregator.getState().getCountEstimate());
+        }
+        assertEquals(merged, aggregator.getState());
+        // the union and the counter built from it
+        assertTrue(aggregator.getMemBytesEstimate() > 2 * (1 << p));
+
+        aggregator.reset();
+        assertEquals(null, aggregator.getState());
+        assertTrue(aggregator.getMemBytesEstimate() < 2 * (1 << p));
+    }
+
     private Set<String> generateTestData(int n) {
         Set<String> testData = new HashSet<String>();
         for (int i = 0; i < n; i++) {
@@ -78,6 +78,57 @@ public class NewHyperLogLogBenchmarkTest {
         HLLCounter.OVERFLOW_FACTOR = oldFactor;
     }
 
+    @Test
+    public void denseUnionBenchmark() throws Exception {
+        final int p = 15;
+        final int m = 1 << p;
+        final int n = 1000;
+        System.out.println("denseUnionBenchmark(), m : " + m + ", counters : " + n);
+        for (int cardinality : new int[] { m / 10, m, m * 10 }) {
+            final ByteBuffer[] serialized = new ByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                HLLCounter counter = new HLLCounter(p);
+                for (int k = 0; k < cardinality; k++)
+                    counter.add(rand.nextInt());
+                assertEquals(RegisterType.DENSE, counter.getRegisterType());
+                serialized[i] = ByteBuffer.allocate(counter.maxLength());
+                counter.writeRegisters(serialized[i]);
+                serialized[i].flip();
+            }
+            final long[] estimates = new long[2];
+            long mergeTime = 0, unionTime = 0;
+            for (int round = 0; round < 5; round++) { // the first rounds warm up
+                mergeTime = runTestCase(new TestCase() {
+                    @Override
+                    public void run() throws Exception {
+                        HLLCounter sum = new HLLCounter(p);
+                        HLLCounter counter = new HLLCounter(p);
+                        for (ByteBuffer buf : serialized) {
+                            counter.readRegisters(buf.duplicate());
+                            sum.merge(counter);
+                        }
+                        estimates[0] = sum.getCountEstimate();
+                    }
+                });
+                unionTime = runTestCase(new TestCase() {
+                    @Override
+                    public void run() throws Exception {
+                        HLLCUnion union = new HLLCUnion(p);
+                        for (ByteBuffer buf : serialized) {
+                            union.add(buf.duplicate());
+                        }
+                        estimates[1] = union.getCountEstimate();
+                    }
+                });
+            }
+            assertEquals(estimates[0], estimates[1]);
+            System.out.println("----------------------------");
+            System.out.println("cardinality : " + cardinality);
+            System.out.println("merge time : " + mergeTime);
+            System.out.println("union time : " + unionTime);
+        }
+    }
+
     @Test
     public void sparseToSparseMergeBenchmark() throws Exception {
         final int p = 15;
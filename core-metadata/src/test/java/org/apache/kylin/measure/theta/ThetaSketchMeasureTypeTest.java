@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.MeasureIngester;
+import org.apache.kylin.measure.MeasureType;
+import org.apache.kylin.measure.MeasureTypeFactory;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThetaSketchMeasureTypeTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testIngestAndAggregate() {
+        DataType dataType = DataType.getType("theta(10)");
+        MeasureType<ThetaSketch> mtype = (MeasureType<ThetaSketch>) MeasureTypeFactory.create(ThetaSketchMeasureType.FUNC_COUNT_DISTINCT, dataType);
+        assertEquals(ThetaSketchMeasureType.class, mtype.getClass());
+
+        MeasureIngester<ThetaSketch> ingester = mtype.newIngester();
+        assertEquals(0, ingester.valueOf(new String[] { null }, null, null).getCountEstimate());
+        assertEquals(0, ingester.valueOf(new String[] { null, null }, null, null).getCountEstimate());
+        assertEquals(1, ingester.valueOf(new String[] { "" }, null, null).getCountEstimate());
+        assertEquals(1, ingester.valueOf(new String[] { "abc", null }, null, null).getCountEstimate());
+
+        MeasureAggregator<ThetaSketch> aggregator = mtype.newAggregator();
+        DataTypeSerializer<ThetaSketch> serializer = (DataTypeSerializer<ThetaSketch>) DataTypeSerializer.create(dataType);
+        ByteBuffer buf = ByteBuffer.allocate(serializer.maxLength());
+        for (int i = 0; i < 100; i++) {
+            buf.clear();
+            serializer.serialize(ingester.valueOf(new String[] { "" + (i % 50) }, null, null), buf);
+            buf.flip();
+            aggregator.aggregate(serializer.deserialize(buf));
+        }
+        assertEquals(50, aggregator.getState().getCountEstimate());
+    }
+
+    @Test
+    public void testSetOperations() {
+        ThetaSketch a = newSketch(0, 100);
+        ThetaSketch b = newSketch(50, 300);
+        ThetaSketch c = newSketch(80, 90);
+        List<String> keys = Arrays.asList("A", "B", "C");
+
+        ThetaSetOperationResult union = ThetaUnionCountAggFunc.init();
+        ThetaSetOperationResult intersect = ThetaIntersectCountAggFunc.init();
+        ThetaSetOperationResult aNotB = ThetaANotBCountAggFunc.init();
+        for (ThetaSetOperationResult result : Arrays.asList(union, intersect, aNotB)) {
+            result.add("A", keys, a);
+            result.add("B", keys, b);
+            result.add("C", keys, c);
+            result.add("D", keys, newSketch(1000, 2000)); // not in the key list
+        }
+        assertEquals(300, ThetaUnionCountAggFunc.result(union));
+        assertEquals(10, ThetaIntersectCountAggFunc.result(intersect));
+        assertEquals(50, ThetaANotBCountAggFunc.result(aNotB));
+
+        // a missing key makes the intersection empty
+        ThetaSetOperationResult missing = ThetaIntersectCountAggFunc.init();
+        missing.add("A", keys, a);
+        assertEquals(0, ThetaIntersectCountAggFunc.result(missing));
+    }
+
+    private ThetaSketch newSketch(int from, int to) {
+        ThetaSketch sketch = new ThetaSketch(10);
+        for (int i = from; i < to; i++) {
+            sketch.update(i);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ThetaSketchTest {
+
+    @Test
+    public void testExactMode() {
+        ThetaSketch sketch = new ThetaSketch(10);
+        for (int i = 0; i < 1000; i++) {
+            sketch.update(i);
+            sketch.update(i); // duplicates
+        }
+        assertFalse(sketch.isEstimationMode());
+        assertEquals(1000, sketch.getCountEstimate());
+
+        sketch.clear();
+        assertEquals(0, sketch.getCountEstimate());
+        sketch.update("abc");
+        assertEquals(1, sketch.getCountEstimate());
+    }
+
+    @Test
+    public void testEstimate() {
+        ThetaSketch sketch = new ThetaSketch(12);
+        int n = 1000000;
+        for (int i = 0; i < n; i++) {
+            sketch.update(i);
+        }
+        assertTrue(sketch.isEstimationMode());
+        assertTrue(sketch.getRetainedEntries() <= 2 * 4096);
+        assertError(n, sketch);
+    }
+
+    @Test
+    public void testUnion() {
+        ThetaSketch a = newSketch(0, 600000);
+        ThetaSketch b = newSketch(400000, 1000000);
+        ThetaSketch c = new ThetaSketch(12);
+
+        a.merge(b);
+        a.merge(c);
+        assertError(1000000, a);
+
+        // union is order independent
+        ThetaSketch b2 = newSketch(400000, 1000000);
+        b2.merge(newSketch(0, 600000));
+        assertEquals(a.getCountEstimate(), b2.getCountEstimate(), 1000000 * 3 * a.getErrorRate());
+    }
+
+    @Test
+    public void testIntersect() {
+        ThetaSketch a = newSketch(0, 600000);
+        ThetaSketch b = newSketch(400000, 1000000);
+        a.intersect(b);
+        assertError(200000, a);
+
+        // exact mode
+        ThetaSketch x = newSketch(0, 100);
+        x.intersect(newSketch(50, 300));
+        assertEquals(50, x.getCountEstimate());
+
+        x.intersect(new ThetaSketch(12));
+        assertEquals(0, x.getCountEstimate());
+    }
+
+    @Test
+    public void testAndNot() {
+        ThetaSketch a = newSketch(0, 600000);
+        ThetaSketch b = newSketch(400000, 1000000);
+        a.andNot(b);
+        assertError(400000, a);
+
+        ThetaSketch x = newSketch(0, 100);
+        x.andNot(newSketch(50, 300));
+        assertEquals(50, x.getCountEstimate());
+
+        x.andNot(new ThetaSketch(12));
+        assertEquals(50, x.getCountEstimate());
+    }
+
+    @Test
+    public void testSerialize() {
+        ByteBuffer buf = ByteBuffer.allocate(1024 * 1024);
+        for (int n : new int[] { 0, 1, 100, 10000, 1000000 }) {
+            ThetaSketch sketch = newSketch(0, n);
+            buf.clear();
+            sketch.writeRegisters(buf);
+            int len = buf.position();
+            assertTrue(len <= sketch.maxLength());
+            buf.flip();
+            assertEquals(len, sketch.peekLength(buf));
+
+            ThetaSketch read = new ThetaSketch(12);
+            read.readRegisters(buf);
+            assertEquals(len, buf.position());
+            assertTrue(read.getRetainedEntries() <= 4096);
+            if (sketch.getRetainedEntries() <= 4096) {
+                assertEquals(sketch, read);
+            }
+            assertEquals(sketch.getCountEstimate(), read.getCountEstimate(), n * 3 * sketch.getErrorRate());
+        }
+    }
+
+    private ThetaSketch newSketch(int from, int to) {
+        ThetaSketch sketch = new ThetaSketch(12);
+        for (int i = from; i < to; i++) {
+            sketch.update(i);
+        }
+        return sketch;
+    }
+
+    private void assertError(long expected, ThetaSketch sketch) {
+        double error = Math.abs((double) (sketch.getCountEstimate() - expected) / expected);
+        assertTrue("estimate " + sketch.getCountEstimate() + " of " + expected, error < 3 * sketch.getErrorRate());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.topn;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.Test;
+
+public class ByteArrayTopNCounterTest {
+
+    @Test
+    public void testOfferAndTopK() {
+        TopNCounter<ByteArray> expected = new TopNCounter<>(3);
+        TopNCounter<ByteArray> actual = new ByteArrayTopNCounter(3);
+        int[] stream = { 1, 1, 2, 9, 1, 2, 3, 7, 7, 1, 3, 1, 1, 7 };
+        for (int i : stream) {
+            expected.offer(key(i));
+            actual.offer(key(i));
+        }
+
+        assertSameTopK(expected, actual, 3);
+        assertEquals(3, actual.size());
+    }
+
+    @Test
+    public void testMergeSameAsTopNCounter() {
+        Random rand = new Random(1);
+        int capacity = 100;
+        TopNCounter<ByteArray> expected = new TopNCounter<>(capacity * 10);
+        TopNCounter<ByteArray> actual = new ByteArrayTopNCounter(capacity * 10);
+
+        for (int round = 0; round < 50; round++) {
+            TopNCounter<ByteArray> expectedPart = new TopNCounter<>(capacity);
+            TopNCounter<ByteArray> actualPart = new ByteArrayTopNCounter(capacity);
+            for (int i = 0; i < 500; i++) {
+                int k = rand.nextInt(1000);
+                // distinct counts, so that the retained entries are decided
+                double count = k * 1000.0 + round;
+                expectedPart.offer(key(k), count);
+                actualPart.offer(key(k), count);
+            }
+            expectedPart.sortAndRetain();
+            actualPart.sortAndRetain();
+            assertSameTopK(expectedPart, actualPart, capacity);
+
+            expected.merge(expectedPart);
+            actual.merge(actualPart);
+        }
+
+        expected.retain(capacity);
+        actual.retain(capacity);
+        assertSameTopK(expected, actual, capacity);
+    }
+
+    @Test
+    public void testSerialization() {
+        TopNCounter<ByteArray> counter = new ByteArrayTopNCounter(10);
+        for (int i = 0; i < 20; i++) {
+            counter.offer(key(i), i % 7);
+        }
+
+        TopNCounterSerializer serializer = new TopNCounterSerializer(new DataType("topn", 10, 4));
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        serializer.serialize(counter, buffer);
+        buffer.flip();
+        TopNCounter<ByteArray> counter2 = serializer.deserialize(buffer);
+
+        assertEquals(counter.toString(), counter2.toString());
+        Iterator<Counter<ByteArray>> it1 = counter.iterator();
+        Iterator<Counter<ByteArray>> it2 = counter2.iterator();
+        while (it1.hasNext()) {
+            Counter<ByteArray> c1 = it1.next();
+            Counter<ByteArray> c2 = it2.next();
+            assertEquals(c1.getItem(), c2.getItem());
+            assertEquals(c1.getCount(), c2.getCount(), 0.0);
+        }
+    }
+
+    private static ByteArray key(int i) {
+        return new ByteArray(Bytes.toBytes(i));
+    }
+
+    private static void assertSameTopK(TopNCounter<ByteArray> expected, TopNCounter<ByteArray> actual, int k) {
+        List<Counter<ByteArray>> expectedTopK = expected.topK(k);
+        List<Counter<ByteArray>> actualTopK = actual.topK(k);
+        assertEquals(expectedTopK.size(), actualTopK.size());
+        for (int i = 0; i < expectedTopK.size(); i++) {
+            assertEquals(expectedTopK.get(i).getCount(), actualTopK.get(i).getCount(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.topn;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Merge throughput of TopN cells, as TopNAggregator does when merging segments or aggregating in storage.
+ */
+@Ignore("Save UT time")
+public class TopNCounterMergeBenchmark {
+
+    private static final int TOP_N = 100;
+    private static final int CAPACITY = TOP_N * TopNCounter.EXTRA_SPACE_RATE;
+    private static final int KEY_LENGTH = 4;
+    private static final int KEY_SPACE = 200000;
+    private static final int CELLS = 2000;
+
+    @Test
+    public void benchmarkMerge() {
+        List<byte[]> cells = genSerializedCells(new Random(1));
+        TopNCounterSerializer serializer = new TopNCounterSerializer(new DataType("topn", TOP_N, KEY_LENGTH));
+
+        for (int round = 0; round < 3; round++) {
+            long oldTime = runMerge(cells, serializer, false);
+            long newTime = runMerge(cells, serializer, true);
+            System.out.println("----------------------------");
+            System.out.println("merge " + CELLS + " cells of " + CAPACITY + " entries");
+            System.out.println("TopNCounter time : " + oldTime + " ms");
+            System.out.println("ByteArrayTopNCounter time : " + newTime + " ms");
+        }
+    }
+
+    private long runMerge(List<byte[]> cells, TopNCounterSerializer serializer, boolean primitive) {
+        long start = System.currentTimeMillis();
+        TopNCounter<ByteArray> sum = primitive ? new ByteArrayTopNCounter(TOP_N * 10) : new TopNCounter<ByteArray>(TOP_N * 10);
+        for (byte[] cell : cells) {
+            TopNCounter<ByteArray> value = serializer.deserialize(ByteBuffer.wrap(cell));
+            if (!primitive) {
+                value = toTopNCounter(value);
+            }
+            sum.merge(value);
+        }
+        sum.retain(TOP_N);
+        return System.currentTimeMillis() - start;
+    }
+
+    // the legacy counter, as deserialized before
+    private static TopNCounter<ByteArray> toTopNCounter(TopNCounter<ByteArray> value) {
+        TopNCounter<ByteArray> counter = new TopNCounter<>(value.getCapacity());
+        for (Counter<ByteArray> c : value) {
+            counter.offerToHead(c.getItem(), c.getCount());
+        }
+        return counter;
+    }
+
+    private static List<byte[]> genSerializedCells(Random rand) {
+        TopNCounterSerializer serializer = new TopNCounterSerializer(new DataType("topn", TOP_N, KEY_LENGTH));
+        ByteBuffer buffer = ByteBuffer.allocate(serializer.maxLength());
+        List<byte[]> cells = new ArrayList<>(CELLS);
+        for (int i = 0; i < CELLS; i++) {
+            TopNCounter<ByteArray> counter = new ByteArrayTopNCounter(CAPACITY);
+            for (int j = 0; j < CAPACITY * 2; j++) {
+                ByteArray key = new ByteArray(KEY_LENGTH);
+                // skewed keys, like the literal values of a TopN measure
+                BytesUtil.writeUnsigned((int) (Math.pow(rand.nextDouble(), 3) * KEY_SPACE), key.array(), 0, KEY_LENGTH);
+                counter.offer(key, rand.nextInt(1000));
+            }
+            counter.sortAndRetain();
+
+            buffer.clear();
+            serializer.serialize(counter, buffer);
+            byte[] cell = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, cell, 0, cell.length);
+            cells.add(cell);
+        }
+        return cells;
+    }
+}
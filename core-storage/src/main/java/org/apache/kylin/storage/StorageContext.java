@@ -18,6 +18,12 @@
 
 package org.apache.kylin.storage;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.kylin.common.StorageURL;
@@ -28,6 +34,8 @@ import org.apache.kylin.storage.gtrecord.GTCubeStorageQueryBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 
 /**
@@ -57,6 +65,16 @@ public class StorageContext {
 
     private Range<Long> reusedPeriod;
 
+    // fraction of the storage shards to scan for an approximate query, 1 to scan all
+    private double sampleRatio = 1;
+    // segment uuid -> the shards sampled, for the segments scanned by sample
+    private final ConcurrentMap<String, SegmentSample> segmentSamples = Maps.newConcurrentMap();
+    // segments fully scanned under the sample ratio, as they have too few shards to sample
+    private final Set<String> unsampledSegments = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // realization name -> milliseconds to scan it, for the members of a hybrid
+    private final ConcurrentMap<String, Long> realizationScanTimes = Maps.newConcurrentMap();
+
     public StorageURL getConnUrl() {
         return connUrl;
     }
@@ -232,6 +250,143 @@ public class StorageContext {
         this.storageQuery = storageQuery;
     }
 
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    public void setSampleRatio(double sampleRatio) {
+        this.sampleRatio = sampleRatio;
+    }
+
+    /**
+     * Decides how many of the shards of a segment are scanned under the sample ratio. Rows are distributed to shards
+     * by the hash of row key, so the shards are a cluster sample of the segment. At least two shards are scanned to
+     * estimate the variance between shards, a segment with fewer shards than that is scanned fully.
+     *
+     * @return the number of shards to scan, starting from the base shard
+     */
+    public short sampleShards(String segmentUuid, short shardNum) {
+        if (sampleRatio >= 1) {
+            return shardNum;
+        }
+        short sampled = (short) Math.max(2, Math.ceil(shardNum * sampleRatio));
+        if (sampled < shardNum) {
+            segmentSamples.put(segmentUuid, new SegmentSample(shardNum, sampled));
+            logger.info("Sampling {} of {} shards for segment {}", sampled, shardNum, segmentUuid);
+            return sampled;
+        } else {
+            unsampledSegments.add(segmentUuid);
+            logger.info("Scanning all {} shards for segment {}, too few to sample", shardNum, segmentUuid);
+            return shardNum;
+        }
+    }
+
+    /**
+     * @return the factor to scale up additive measures of the segment, 1 if the segment is fully scanned
+     */
+    public double getSampleScale(String segmentUuid) {
+        SegmentSample sample = segmentSamples.get(segmentUuid);
+        return sample == null ? 1 : (double) sample.shardNum / sample.sampled;
+    }
+
+    public boolean isSampled() {
+        return !segmentSamples.isEmpty();
+    }
+
+    /**
+     * @return the number of segments scanned fully though the query asks for a sample
+     */
+    public int getUnsampledSegmentCount() {
+        return unsampledSegments.size();
+    }
+
+    /**
+     * Records the storage records scanned in one shard of a segment, ignored if the segment is not sampled.
+     */
+    public void addSampledShardRows(String segmentUuid, long rows) {
+        SegmentSample sample = segmentSamples.get(segmentUuid);
+        if (sample != null) {
+            synchronized (sample) {
+                sample.shardRows.add(rows);
+            }
+        }
+    }
+
+    /**
+     * @return the fraction of the estimated records actually scanned, 1 if not sampled
+     */
+    public double getEffectiveSampleRatio() {
+        long scanned = 0;
+        double estimated = 0;
+        for (SegmentSample sample : segmentSamples.values()) {
+            synchronized (sample) {
+                scanned += sample.getScannedRows();
+                estimated += sample.getEstimatedRows();
+            }
+        }
+        return estimated == 0 ? 1 : scanned / estimated;
+    }
+
+    /**
+     * Estimates the error of the scaled record count of the sampled segments. The count of a segment is estimated
+     * from n of its N shards as N * mean(y), where y are the records scanned per shard, whose variance is
+     * N^2 * (1 - n / N) * var(y) / n by the variance between shards. It doesn't bound the error of the scaled
+     * SUM and COUNT measures, which vary with the measure values as well.
+     *
+     * @return the half width of the 95% confidence interval of the scaled record count, relative to the estimate,
+     * 0 if not sampled, or -1 if unknown as less than two shards of a segment have reported
+     */
+    public double getSampleRowCountErrorBound() {
+        double estimated = 0;
+        double variance = 0;
+        for (SegmentSample sample : segmentSamples.values()) {
+            synchronized (sample) {
+                if (sample.shardRows.size() < 2) {
+                    return -1;
+                }
+                estimated += sample.getEstimatedRows();
+                variance += sample.getVariance();
+            }
+        }
+        return estimated == 0 ? 0 : 1.96 * Math.sqrt(variance) / estimated;
+    }
+
+    private static class SegmentSample {
+        final short shardNum;
+        final short sampled;
+        final List<Long> shardRows = Lists.newArrayList();
+
+        SegmentSample(short shardNum, short sampled) {
+            this.shardNum = shardNum;
+            this.sampled = sampled;
+        }
+
+        long getScannedRows() {
+            long sum = 0;
+            for (long rows : shardRows) {
+                sum += rows;
+            }
+            return sum;
+        }
+
+        double getEstimatedRows() {
+            return shardRows.isEmpty() ? 0 : (double) shardNum * getScannedRows() / shardRows.size();
+        }
+
+        double getVariance() {
+            int n = shardRows.size();
+            if (n < 2 || n >= shardNum) {
+                return 0;
+            }
+            double mean = (double) getScannedRows() / n;
+            double squares = 0;
+            for (long rows : shardRows) {
+                squares += (rows - mean) * (rows - mean);
+            }
+            return (double) shardNum * shardNum * (1 - (double) n / shardNum) * squares / (n - 1) / n;
+        }
+    }
+
     public boolean isStreamAggregateEnabled() {
         return enableStreamAggregate;
     }
@@ -239,4 +394,33 @@ public class StorageContext {
     public void enableStreamAggregate() {
         this.enableStreamAggregate = true;
     }
+
+    public void addRealizationScanTime(String realization, long millis) {
+        realizationScanTimes.put(realization, millis);
+    }
+
+    public Map<String, Long> getRealizationScanTimes() {
+        return realizationScanTimes;
+    }
+
+    /**
+     * Clears what the storage query has decided and counted during the last execution,
+     * while keeping the limit, offset and sort flags set by the query plan.
+     */
+    public void resetRuntimeState() {
+        this.finalPushDownLimit = Integer.MAX_VALUE;
+        this.deadline = 0;
+        this.exactAggregation = false;
+        this.needStorageAggregation = false;
+        this.enableCoprocessor = false;
+        this.enableStreamAggregate = false;
+        this.storageQuery = null;
+        this.processedRowCount.set(0);
+        this.cuboid = null;
+        this.partialResultReturned = false;
+        this.reusedPeriod = null;
+        this.segmentSamples.clear();
+        this.unsampledSegments.clear();
+        this.realizationScanTimes.clear();
+    }
 }
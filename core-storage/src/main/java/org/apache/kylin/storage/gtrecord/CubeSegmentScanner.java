@@ -49,6 +49,12 @@ public class CubeSegmentScanner implements IGTScanner {
     final Cuboid cuboid;
 
     final GTScanRequest scanRequest;
+    final StorageContext context;
+
+    // key of the storage result in SegmentResultCache, null if not cacheable
+    private String resultKey;
+    private SegmentResultCache.CachedResult cachedResult;
+    private boolean hasMultiplePartitions;
 
     public CubeSegmentScanner(CubeSegment cubeSeg, Cuboid cuboid, Set<TblColRef> dimensions, Set<TblColRef> groups, //
             Collection<FunctionDesc> metrics, TupleFilter originalfilter, TupleFilter havingFilter, StorageContext context) {
@@ -57,6 +63,7 @@ public class CubeSegmentScanner implements IGTScanner {
         
         this.cuboid = cuboid;
         this.cubeSeg = cubeSeg;
+        this.context = context;
 
         //the filter might be changed later in this CubeSegmentScanner (In ITupleFilterTransformer)
         //to avoid issues like in https://issues.apache.org/jira/browse/KYLIN-1954, make sure each CubeSegmentScanner
@@ -79,22 +86,51 @@ public class CubeSegmentScanner implements IGTScanner {
         
         scanRequest = scanRangePlanner.planScanRequest();
         
-        String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
-        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage, context);
+        // a sampled result is not complete, thus not cached
+        if (scanRequest != null && cubeSeg.getConfig().isQuerySegmentCacheEnabled() && context.getSampleRatio() >= 1) {
+            boolean sorted = context.getFinalPushDownLimit() != Integer.MAX_VALUE || context.isStreamAggregateEnabled();
+            resultKey = SegmentResultCache.getResultKey(cubeSeg, cuboid, scanRequest, sorted);
+            cachedResult = SegmentResultCache.getInstance(cubeSeg.getConfig()).get(resultKey);
+        }
+
+        if (cachedResult != null) {
+            logger.info("Using cached storage result of {} bytes for segment {}", cachedResult.getSizeInBytes(), cubeSeg.getName());
+            scanner = null;
+        } else {
+            String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
+            scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage, context);
+        }
     }
     
     public boolean isSegmentSkipped() {
-        return scanner.isSegmentSkipped();
+        return scanner != null && scanner.isSegmentSkipped();
     }
 
     @Override
     public Iterator<GTRecord> iterator() {
-        return scanner.iterator();
+        if (cachedResult != null) {
+            hasMultiplePartitions = cachedResult.isSortMerged();
+            return cachedResult.iterator(scanRequest.getInfo(), scanRequest.getColumns());
+        }
+
+        Iterator<GTRecord> records = scanner.iterator();
+        hasMultiplePartitions = records instanceof SortMergedPartitionResultIterator;
+        if (resultKey != null) {
+            records = SegmentResultCache.getInstance(cubeSeg.getConfig()).capture(resultKey, records, scanRequest.getColumns(), hasMultiplePartitions, context);
+        }
+        return records;
+    }
+
+    /** whether the records returned by iterator() are sort merged from multiple storage partitions */
+    public boolean hasMultiplePartitions() {
+        return hasMultiplePartitions;
     }
 
     @Override
     public void close() throws IOException {
-        scanner.close();
+        if (scanner != null) {
+            scanner.close();
+        }
     }
 
     @Override
@@ -34,6 +34,7 @@ import org.apache.kylin.cube.RawQueryLastHacker;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.cube.model.CubeDesc.DeriveType;
 import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.measure.MeasureType;
 import org.apache.kylin.metadata.filter.CaseTupleFilter;
@@ -233,7 +234,7 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
             if (cubeDesc.isExtendedColumn(col)) {
                 throw new CubeDesc.CannotFilterExtendedColumnException(col);
             }
-            if (cubeDesc.isDerived(col)) {
+            if (cubeDesc.isDerived(col) || cubeDesc.isLookupOnlyColumn(col)) {
                 DeriveInfo hostInfo = cubeDesc.getHostInfo(col);
                 if (hostInfo.isOneToOne) {
                     for (TblColRef hostCol : hostInfo.columns) {
@@ -270,6 +271,12 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
             return translateDerivedInCompare((CompareTupleFilter) filter, collector);
         }
 
+        if (filter instanceof LogicalTupleFilter) {
+            TupleFilter translated = translateDerivedInLookupPredicate(filter, collector);
+            if (translated != null)
+                return translated;
+        }
+
         List<TupleFilter> children = (List<TupleFilter>) filter.getChildren();
         List<TupleFilter> newChildren = Lists.newArrayListWithCapacity(children.size());
         boolean modified = false;
@@ -307,7 +314,7 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         if (cubeDesc.isExtendedColumn(derived)) {
             throw new CubeDesc.CannotFilterExtendedColumnException(derived);
         }
-        if (cubeDesc.isDerived(derived) == false)
+        if (cubeDesc.isDerived(derived) == false && cubeDesc.isLookupOnlyColumn(derived) == false)
             return compf;
 
         DeriveInfo hostInfo = cubeDesc.getHostInfo(derived);
@@ -323,6 +330,44 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         return translatedFilter;
     }
 
+    /**
+     * Evaluates a predicate on the derived (or lookup only) columns of one lookup table as a whole against the snapshot, and pushes
+     * the satisfying keys down to fact scan as a filter on host columns, instead of translating each compare on its
+     * own. E.g. "A = 'x' OR B = 'y'" becomes a single IN on the foreign key, rather than an OR of two INs that are
+     * both more likely to exceed the threshold and be loosened.
+     *
+     * @return null if the filter is not such a predicate
+     */
+    private TupleFilter translateDerivedInLookupPredicate(TupleFilter filter, Set<TblColRef> collector) {
+        if (!DerivedFilterTranslator.isLookupPredicate(filter))
+            return null;
+
+        Set<TblColRef> columns = Sets.newHashSet();
+        TupleFilter.collectColumns(filter, columns);
+        DeriveInfo hostInfo = null;
+        for (TblColRef col : columns) {
+            if (!cubeDesc.isDerived(col) && !cubeDesc.isLookupOnlyColumn(col))
+                return null;
+            DeriveInfo info = cubeDesc.getHostInfo(col);
+            if (info.type != DeriveType.LOOKUP || (hostInfo != null && !hostInfo.join.equals(info.join)))
+                return null;
+            hostInfo = info;
+        }
+        if (hostInfo == null)
+            return null;
+
+        CubeManager cubeMgr = CubeManager.getInstance(this.cubeInstance.getConfig());
+        CubeSegment seg = cubeInstance.getLatestReadySegment();
+        LookupStringTable lookup = cubeMgr.getLookupTable(seg, hostInfo.join);
+        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, filter, cubeInstance.getConfig().getQueryRuntimeFilterInThreshold());
+        TupleFilter translatedFilter = translated.getFirst();
+        boolean loosened = translated.getSecond();
+        if (loosened) {
+            collectColumnsRecursively(translatedFilter, collector);
+        }
+        return translatedFilter;
+    }
+
     private void collectColumnsRecursively(TupleFilter filter, Set<TblColRef> collector) {
         if (filter == null)
             return;
@@ -19,6 +19,7 @@
 package org.apache.kylin.storage.gtrecord;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -59,6 +60,9 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
     protected ITupleConverter cubeTupleConverter;
     protected Tuple next;
 
+    // scale of additive measures if the segment is scanned by sample, see StorageContext.sampleShards()
+    private final double sampleScale;
+
     private List<IAdvMeasureFiller> advMeasureFillers;
     private int advMeasureRowsRemaining;
     private int advMeasureRowIndex;
@@ -82,6 +86,10 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
         System.arraycopy(gtMetricsIdx, 0, gtColIdx, gtDimsIdx.length, gtMetricsIdx.length);
 
         this.gtValues = getGTValuesIterator(scanner.iterator(), scanner.getScanRequest(), gtDimsIdx, gtMetricsIdx);
+        this.sampleScale = context.getSampleScale(scanner.cubeSeg.getUuid());
+        if (sampleScale > 1) {
+            this.gtValues = scaleAdditiveMeasures(gtValues, gtDimsIdx.length);
+        }
         this.cubeTupleConverter = ((GTCubeStorageQueryBase) context.getStorageQuery()).newCubeTupleConverter(
                 scanner.cubeSeg, cuboid, selectedDimensions, selectedMetrics, gtColIdx, tupleInfo);
     }
@@ -90,8 +98,7 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
             final Iterator<GTRecord> records, final GTScanRequest scanRequest,
             final int[] gtDimsIdx, final int[] gtMetricsIdx) {
 
-        boolean hasMultiplePartitions = records instanceof SortMergedPartitionResultIterator;
-        if (hasMultiplePartitions && context.isStreamAggregateEnabled()) {
+        if (scanner.hasMultiplePartitions() && context.isStreamAggregateEnabled()) {
             // input records are ordered, leverage stream aggregator to produce possibly fewer records
             IGTScanner inputScanner = new IGTScanner() {
                 public GTInfo getInfo() {
@@ -129,6 +136,51 @@ public class SegmentCubeTupleIterator implements ITupleIterator {
         };
     }
 
+    /**
+     * Scales up SUM and COUNT by the sample scale. Other measures, like MIN, MAX and the count distinct sketches,
+     * are taken from the sample as is.
+     */
+    private Iterator<Object[]> scaleAdditiveMeasures(final Iterator<Object[]> values, final int metricsOffset) {
+        final boolean[] additive = new boolean[selectedMetrics.size()];
+        int i = 0;
+        for (FunctionDesc metric : selectedMetrics) {
+            additive[i++] = metric.isSum() || metric.isCount();
+        }
+
+        return new UnmodifiableIterator<Object[]>() {
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            public Object[] next() {
+                Object[] result = values.next();
+                for (int i = 0; i < additive.length; i++) {
+                    if (additive[i]) {
+                        result[metricsOffset + i] = scale(result[metricsOffset + i], sampleScale);
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    static Object scale(Object value, double scale) {
+        if (value instanceof Long) {
+            return Math.round((Long) value * scale);
+        } else if (value instanceof Integer) {
+            return (int) Math.round((Integer) value * scale);
+        } else if (value instanceof Double) {
+            return (Double) value * scale;
+        } else if (value instanceof Float) {
+            return (float) ((Float) value * scale);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.multiply(BigDecimal.valueOf(scale)).setScale(decimal.scale(), BigDecimal.ROUND_HALF_UP);
+        } else {
+            return value;
+        }
+    }
+
     @Override
     public boolean hasNext() {
         if (next != null)
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Caches the storage result of a segment, i.e. the records aggregated by storage before converted to tuples,
+ * by (segment, cuboid, scan request). Results of the old segments are reused across queries, and only the new
+ * segments are scanned after an incremental build.
+ *
+ * A segment is immutable once built, so the key includes the segment UUID and its last build time instead of
+ * invalidating on change. A refreshed or merged segment gets a new key, and the stale entries age out by LRU.
+ */
+public class SegmentResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentResultCache.class);
+
+    // static cached instances
+    private static final ConcurrentMap<KylinConfig, SegmentResultCache> CACHE = new ConcurrentHashMap<KylinConfig, SegmentResultCache>();
+
+    public static SegmentResultCache getInstance(KylinConfig config) {
+        SegmentResultCache r = CACHE.get(config);
+        if (r == null) {
+            synchronized (SegmentResultCache.class) {
+                r = CACHE.get(config);
+                if (r == null) {
+                    r = new SegmentResultCache(config.getQuerySegmentCacheMaxMB() * 1024L * 1024L, config.getQuerySegmentCacheMaxEntryMB() * 1024 * 1024);
+                    CACHE.put(config, r);
+                    if (CACHE.size() > 1) {
+                        logger.warn("More than one singleton exist");
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    public static void clearCache() {
+        synchronized (SegmentResultCache.class) {
+            for (SegmentResultCache r : CACHE.values()) {
+                r.results.invalidateAll();
+            }
+            CACHE.clear();
+        }
+    }
+
+    private final Cache<String, CachedResult> results;
+    private final int maxEntryBytes;
+
+    SegmentResultCache(long maxBytes, int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.results = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String, CachedResult>() {
+            @Override
+            public int weigh(String key, CachedResult value) {
+                return key.length() + value.data.length;
+            }
+        }).build();
+    }
+
+    /**
+     * @param sorted whether the query needs the records sorted by group by dimensions, like in StorageResponseGTScatter
+     */
+    public static String getResultKey(CubeSegment segment, Cuboid cuboid, GTScanRequest scanRequest, boolean sorted) {
+        return segment.getUuid() + "@" + segment.getLastBuildTime() + "/" + cuboid.getId() + "/" + getRequestDigest(scanRequest) + (sorted ? "/sorted" : "");
+    }
+
+    // digest of the scan request, leaving out the start time and timeout which differ by query
+    static String getRequestDigest(GTScanRequest scanRequest) {
+        GTScanRequest stripped = new GTScanRequestBuilder().setInfo(scanRequest.getInfo()).setRanges(scanRequest.getGTScanRanges()).setDimensions(scanRequest.getColumns()).//
+                setAggrGroupBy(scanRequest.getAggrGroupBy()).setAggrMetrics(scanRequest.getAggrMetrics()).setAggrMetricsFuncs(scanRequest.getAggrMetricsFuncs()).//
+                setFilterPushDown(scanRequest.getFilterPushDown()).setHavingFilterPushDown(scanRequest.getHavingFilterPushDown()).//
+                setAllowStorageAggregation(scanRequest.isAllowStorageAggregation()).setAggCacheMemThreshold(scanRequest.getAggCacheMemThreshold()).//
+                setStorageScanRowNumThreshold(scanRequest.getStorageScanRowNumThreshold()).setStoragePushDownLimit(scanRequest.getStoragePushDownLimit()).//
+                setStorageBehavior(scanRequest.getStorageBehavior()).setStartTime(0).setTimeout(0).createGTScanRequest();
+        try {
+            return BytesUtil.toHex(MessageDigest.getInstance("MD5").digest(stripped.toByteArray()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public CachedResult get(String key) {
+        return results.getIfPresent(key);
+    }
+
+    /**
+     * Wraps the storage records of a segment, and caches them once all are consumed. The result is not cached
+     * if the consumer stops early, e.g. on limit, if it is larger than the max entry size, or if the storage
+     * returned a partial result, e.g. cut short by the scan row threshold or timeout under acceptPartial.
+     */
+    public Iterator<GTRecord> capture(final String key, final Iterator<GTRecord> records, final ImmutableBitSet columns, final boolean sortMerged, final StorageContext context) {
+        return new UnmodifiableIterator<GTRecord>() {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = records.hasNext();
+                if (!hasNext && buf != null) {
+                    if (context.isPartialResultReturned()) {
+                        logger.info("Storage result is partial, not cached for {}", key);
+                    } else {
+                        results.put(key, new CachedResult(buf.toByteArray(), sortMerged));
+                        logger.info("Cached storage result of {} bytes for {}", buf.size(), key);
+                    }
+                    buf = null;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public GTRecord next() {
+                GTRecord record = records.next();
+                if (buf != null) {
+                    ByteArray bytes = record.exportColumns(columns);
+                    buf.write(bytes.array(), bytes.offset(), bytes.length());
+                    if (buf.size() > maxEntryBytes) {
+                        logger.info("Storage result is too large to cache for {}", key);
+                        buf = null;
+                    }
+                }
+                return record;
+            }
+        };
+    }
+
+    public long size() {
+        return results.size();
+    }
+
+    public static class CachedResult {
+        private final byte[] data;
+        private final boolean sortMerged;
+
+        CachedResult(byte[] data, boolean sortMerged) {
+            this.data = data;
+            this.sortMerged = sortMerged;
+        }
+
+        public Iterator<GTRecord> iterator(GTInfo info, ImmutableBitSet columns) {
+            return new PartitionResultIterator(data, info, columns);
+        }
+
+        /** whether the records are sort merged from multiple partitions, and need aggregation again */
+        public boolean isSortMerged() {
+            return sortMerged;
+        }
+
+        public int getSizeInBytes() {
+            return data.length;
+        }
+    }
+}
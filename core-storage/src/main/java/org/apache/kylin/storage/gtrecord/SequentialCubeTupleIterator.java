@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.metadata.model.FunctionDesc;
@@ -131,8 +132,11 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
 
     @Override
     public ITuple next() {
-        if (scanCount++ % 100 == 1 && System.currentTimeMillis() > context.getDeadline()) {
-            throw new KylinTimeoutException("Query timeout after \"kylin.query.timeout-seconds\" seconds");
+        if (scanCount++ % 100 == 1) {
+            if (System.currentTimeMillis() > context.getDeadline()) {
+                throw new KylinTimeoutException("Query timeout after \"kylin.query.timeout-seconds\" seconds");
+            }
+            QueryContext.current().checkStopped();
         }
 
         if (++scanCountDelta >= 1000)
@@ -36,8 +36,10 @@ public class HybridStorageQuery implements IStorageQuery {
 
     private IRealization[] realizations;
     private IStorageQuery[] storageEngines;
+    private boolean parallelScan;
 
     public HybridStorageQuery(HybridInstance hybridInstance) {
+        this.parallelScan = hybridInstance.getConfig().isQueryHybridParallelScanEnabled();
         this.realizations = hybridInstance.getRealizations();
         storageEngines = new IStorageQuery[realizations.length];
         for (int i = 0; i < realizations.length; i++) {
@@ -47,13 +49,20 @@ public class HybridStorageQuery implements IStorageQuery {
 
     @Override
     public ITupleIterator search(final StorageContext context, final SQLDigest sqlDigest, final TupleInfo returnTupleInfo) {
+        List<String> names = Lists.newArrayList();
         List<ITupleIterator> tupleIterators = Lists.newArrayList();
         for (int i = 0; i < realizations.length; i++) {
             if (realizations[i].isReady() && realizations[i].isCapable(sqlDigest).capable) {
+                // the storage scans are submitted on search, only reading the results is left to the iterator
                 ITupleIterator dataIterator = storageEngines[i].search(context, sqlDigest, returnTupleInfo);
+                names.add(realizations[i].getName());
                 tupleIterators.add(dataIterator);
             }
         }
+
+        if (parallelScan && tupleIterators.size() > 1) {
+            return new ParallelHybridTupleIterator(names, tupleIterators, context);
+        }
         // combine tuple iterator
         return new CompoundTupleIterator(tupleIterators);
     }
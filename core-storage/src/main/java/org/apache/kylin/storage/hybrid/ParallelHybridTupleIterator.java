@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hybrid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.LoggableCachedThreadPool;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads the tuple iterators of the hybrid members in parallel, and returns the tuples as they arrive from
+ * any member. Each member is read by a worker into a shared bounded queue, and its scan time is recorded
+ * in the storage context by member name.
+ */
+public class ParallelHybridTupleIterator implements ITupleIterator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelHybridTupleIterator.class);
+
+    private static final ExecutorService executorService = new LoggableCachedThreadPool();
+
+    static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private static final Object MEMBER_END = new Object();
+
+    private final int memberCount;
+    private final BlockingQueue<Object> queue;
+    private volatile boolean closed = false;
+
+    private int endedMembers = 0;
+    private ITuple next = null;
+
+    public ParallelHybridTupleIterator(List<String> names, List<ITupleIterator> members, StorageContext context) {
+        this(names, members, context, DEFAULT_QUEUE_SIZE);
+    }
+
+    ParallelHybridTupleIterator(List<String> names, List<ITupleIterator> members, StorageContext context, int queueSize) {
+        Preconditions.checkArgument(names.size() == members.size(), "a name for each member");
+        this.memberCount = members.size();
+        // once closed, each worker puts at most a pending tuple and its end mark, see close()
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 2 * memberCount));
+
+        Map<String, String> toggles = BackdoorToggles.getToggles();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        for (int i = 0; i < memberCount; i++) {
+            executorService.submit(new MemberReader(names.get(i), members.get(i), context, QueryContext.current(), toggles, config));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+
+        while (endedMembers < memberCount) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted when reading hybrid members", e);
+            }
+
+            if (item == MEMBER_END) {
+                endedMembers++;
+            } else if (item instanceof MemberFailure) {
+                endedMembers++;
+                Throwable cause = ((MemberFailure) item).cause;
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            } else {
+                next = (ITuple) item;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ITuple next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ITuple result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        // workers check the flag after each tuple and close their members, clearing the queue unblocks them
+        closed = true;
+        queue.clear();
+    }
+
+    private static class MemberFailure {
+        final Throwable cause;
+
+        MemberFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    private class MemberReader implements Runnable {
+        private final String name;
+        private final ITupleIterator member;
+        private final StorageContext context;
+        private final QueryContext queryContext;
+        private final Map<String, String> toggles;
+        private final KylinConfig config;
+
+        MemberReader(String name, ITupleIterator member, StorageContext context, QueryContext queryContext, Map<String, String> toggles, KylinConfig config) {
+            this.name = name;
+            this.member = member;
+            this.context = context;
+            this.queryContext = queryContext;
+            this.toggles = toggles;
+            this.config = config;
+        }
+
+        @Override
+        public void run() {
+            QueryContext.bind(queryContext);
+            BackdoorToggles.setToggles(toggles);
+            KylinConfig.setKylinConfigThreadLocal(config);
+
+            long startTime = System.currentTimeMillis();
+            long rows = 0;
+            Object end = MEMBER_END;
+            try {
+                while (!closed && member.hasNext()) {
+                    // the storage tuple is reused, give the consumer a copy
+                    queue.put(member.next().makeCopy());
+                    rows++;
+                }
+            } catch (Throwable e) {
+                logger.error("Error when reading hybrid member " + name, e);
+                end = new MemberFailure(e);
+            } finally {
+                try {
+                    member.close();
+                } catch (Exception e) {
+                    logger.warn("Error when closing hybrid member " + name, e);
+                }
+
+                long millis = System.currentTimeMillis() - startTime;
+                context.addRealizationScanTime(name, millis);
+                logger.info("Hybrid member {} returned {} rows in {} ms", name, rows, millis);
+
+                try {
+                    queue.put(end);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                KylinConfig.setKylinConfigThreadLocal(null);
+                BackdoorToggles.cleanToggles();
+                QueryContext.reset();
+            }
+        }
+    }
+}
@@ -64,10 +64,23 @@ public class DerivedFilterTranslator {
             return new Pair<TupleFilter, Boolean>(newComp, false);
         }
 
+        return translate(lookup, hostInfo, compf, KylinConfig.getInstanceFromEnv().getDerivedInThreshold());
+    }
+
+    /**
+     * Translates a predicate on the derived columns of a lookup table, like "A = 'x' OR B LIKE 'y%'", into a filter on
+     * the host columns. The predicate is evaluated against each row of the lookup snapshot, and the host values of the
+     * satisfying rows make an IN filter. If the satisfying rows are more than inThreshold, it is loosened to a range.
+     *
+     * @param filter AND, OR, NOT of compare filters on the derived columns of hostInfo, see isLookupPredicate()
+     */
+    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, TupleFilter filter, int inThreshold) {
         assert hostInfo.type == DeriveType.LOOKUP;
+
+        TblColRef[] hostCols = hostInfo.columns;
+        TblColRef[] pkCols = hostInfo.join.getPrimaryKeyColumns();
         assert hostCols.length == pkCols.length;
 
-        int di = derivedCol.getColumnDesc().getZeroBasedIndex();
         int[] pi = new int[pkCols.length];
         int hn = hostCols.length;
         for (int i = 0; i < hn; i++) {
@@ -75,19 +88,19 @@ public class DerivedFilterTranslator {
         }
 
         Set<Array<String>> satisfyingHostRecords = Sets.newHashSet();
-        SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
+        LookupRowTuple tuple = new LookupRowTuple();
         for (String[] row : lookup.getAllRows()) {
-            tuple.value = row[di];
-            if (compf.evaluate(tuple, FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType()))) {
+            tuple.row = row;
+            if (evaluate(filter, tuple)) {
                 collect(row, pi, satisfyingHostRecords);
             }
         }
 
         TupleFilter translated;
         boolean loosened;
-        if (satisfyingHostRecords.size() > KylinConfig.getInstanceFromEnv().getDerivedInThreshold()) {
+        if (satisfyingHostRecords.size() > inThreshold) {
             logger.info("Deciding to loosen filter on derived filter as host candidates number {} exceeds threshold {}", //
-                    satisfyingHostRecords.size(), KylinConfig.getInstanceFromEnv().getDerivedInThreshold()
+                    satisfyingHostRecords.size(), inThreshold
             );
             translated = buildRangeFilter(hostCols, satisfyingHostRecords);
             loosened = true;
@@ -99,6 +112,51 @@ public class DerivedFilterTranslator {
         return new Pair<TupleFilter, Boolean>(translated, loosened);
     }
 
+    /**
+     * @return whether the filter is made of AND, OR, NOT and compare filters on a column with constant values,
+     * which can be evaluated against the rows of a lookup table
+     */
+    public static boolean isLookupPredicate(TupleFilter filter) {
+        if (filter instanceof CompareTupleFilter) {
+            CompareTupleFilter compf = (CompareTupleFilter) filter;
+            return compf.getColumn() != null && !compf.getValues().isEmpty() && compf.getFunction() == null;
+        }
+        if (filter instanceof LogicalTupleFilter) {
+            for (TupleFilter child : filter.getChildren()) {
+                if (!isLookupPredicate(child))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean evaluate(TupleFilter filter, LookupRowTuple tuple) {
+        if (filter instanceof CompareTupleFilter) {
+            TblColRef col = ((CompareTupleFilter) filter).getColumn();
+            return filter.evaluate(tuple, FilterCodeSystemFactory.getFilterCodeSystem(col.getColumnDesc().getType()));
+        }
+
+        switch (filter.getOperator()) {
+        case AND:
+            for (TupleFilter child : filter.getChildren()) {
+                if (!evaluate(child, tuple))
+                    return false;
+            }
+            return true;
+        case OR:
+            for (TupleFilter child : filter.getChildren()) {
+                if (evaluate(child, tuple))
+                    return true;
+            }
+            return false;
+        case NOT:
+            return !evaluate(filter.getChildren().get(0), tuple);
+        default:
+            throw new IllegalStateException("Unsupported filter " + filter);
+        }
+    }
+
     private static void collect(String[] row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
         // TODO when go beyond IN_THRESHOLD, only keep min/max is enough
         String[] rec = new String[pi.length];
@@ -178,21 +236,13 @@ public class DerivedFilterTranslator {
         }
     }
 
-    private static class SingleColumnTuple implements IEvaluatableTuple {
+    private static class LookupRowTuple implements IEvaluatableTuple {
 
-        private TblColRef col;
-        private String value;
-
-        SingleColumnTuple(TblColRef col) {
-            this.col = col;
-        }
+        private String[] row;
 
         @Override
         public Object getValue(TblColRef col) {
-            if (this.col.equals(col))
-                return value;
-            else
-                throw new IllegalArgumentException("unexpected column " + col);
+            return row[col.getColumnDesc().getZeroBasedIndex()];
         }
 
     }
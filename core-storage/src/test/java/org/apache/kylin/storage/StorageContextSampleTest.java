@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StorageContextSampleTest {
+
+    @Test
+    public void testSampleShards() {
+        StorageContext context = new StorageContext();
+        assertEquals(10, context.sampleShards("seg1", (short) 10));
+        assertFalse(context.isSampled());
+        assertEquals(0, context.getUnsampledSegmentCount());
+
+        context.setSampleRatio(0.25);
+        assertEquals(3, context.sampleShards("seg1", (short) 10));
+        // at least two shards are scanned
+        assertEquals(2, context.sampleShards("seg2", (short) 4));
+        // too few shards to sample
+        assertEquals(2, context.sampleShards("seg3", (short) 2));
+        assertEquals(1, context.sampleShards("seg4", (short) 1));
+
+        assertTrue(context.isSampled());
+        assertEquals(10.0 / 3, context.getSampleScale("seg1"), 1e-9);
+        assertEquals(2.0, context.getSampleScale("seg2"), 1e-9);
+        assertEquals(1.0, context.getSampleScale("seg3"), 1e-9);
+        assertEquals(1.0, context.getSampleScale("seg4"), 1e-9);
+        assertEquals(2, context.getUnsampledSegmentCount());
+
+        context.resetRuntimeState();
+        assertFalse(context.isSampled());
+        assertEquals(0, context.getUnsampledSegmentCount());
+        assertEquals(0.25, context.getSampleRatio(), 1e-9);
+    }
+
+    @Test
+    public void testErrorBound() {
+        StorageContext context = new StorageContext();
+        assertEquals(1.0, context.getEffectiveSampleRatio(), 1e-9);
+        assertEquals(0.0, context.getSampleRowCountErrorBound(), 1e-9);
+
+        context.setSampleRatio(0.5);
+        context.sampleShards("seg1", (short) 4);
+        // shards of a segment not sampled are ignored
+        context.addSampledShardRows("seg2", 100);
+        context.addSampledShardRows("seg1", 90);
+        // unknown until two shards have reported
+        assertEquals(-1, context.getSampleRowCountErrorBound(), 1e-9);
+
+        // 2 of 4 shards with 90 and 110 records, the estimate is 400 with variance 16 * (1 - 0.5) * 200 / 2
+        context.addSampledShardRows("seg1", 110);
+        assertEquals(0.5, context.getEffectiveSampleRatio(), 1e-9);
+        assertEquals(1.96 * Math.sqrt(800) / 400, context.getSampleRowCountErrorBound(), 1e-9);
+
+        // even shards give no variance
+        StorageContext even = new StorageContext();
+        even.setSampleRatio(0.5);
+        even.sampleShards("seg1", (short) 4);
+        even.addSampledShardRows("seg1", 100);
+        even.addSampledShardRows("seg1", 100);
+        assertEquals(0.0, even.getSampleRowCountErrorBound(), 1e-9);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.apache.kylin.storage.gtrecord.DictGridTableTest.compare;
+import static org.apache.kylin.storage.gtrecord.DictGridTableTest.enc;
+import static org.apache.kylin.storage.gtrecord.DictGridTableTest.setOf;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SegmentResultCacheTest extends LocalFileMetadataTestCase {
+
+    private GridTable table;
+    private GTInfo info;
+
+    @Before
+    public void setup() throws IOException {
+        this.createTestMetadata();
+        table = DictGridTableTest.newTestTable();
+        info = table.getInfo();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRequestDigest() {
+        TupleFilter filter = compare(info.colRef(0), FilterOperatorEnum.GT, enc(info, 0, "2015-01-14"));
+        GTScanRequest req1 = newRequest(filter, 1000L);
+        GTScanRequest req2 = newRequest(filter, 2000L);
+        GTScanRequest req3 = newRequest(compare(info.colRef(0), FilterOperatorEnum.GT, enc(info, 0, "2015-01-15")), 1000L);
+
+        Assert.assertEquals(SegmentResultCache.getRequestDigest(req1), SegmentResultCache.getRequestDigest(req2));
+        Assert.assertNotEquals(SegmentResultCache.getRequestDigest(req1), SegmentResultCache.getRequestDigest(req3));
+    }
+
+    @Test
+    public void testCaptureAndReplay() throws IOException {
+        GTScanRequest req = newRequest(compare(info.colRef(0), FilterOperatorEnum.GT, enc(info, 0, "2015-01-14")), 1000L);
+        SegmentResultCache cache = new SegmentResultCache(1024 * 1024, 1024);
+
+        IGTScanner scanner = table.scan(req);
+        List<String> scanned = toStrings(cache.capture("seg", scanner.iterator(), req.getColumns(), false, new StorageContext()));
+        scanner.close();
+        Assert.assertEquals(5, scanned.size());
+
+        SegmentResultCache.CachedResult cached = cache.get("seg");
+        Assert.assertNotNull(cached);
+        Assert.assertFalse(cached.isSortMerged());
+        Assert.assertEquals(scanned, toStrings(cached.iterator(info, req.getColumns())));
+    }
+
+    @Test
+    public void testNotCached() throws IOException {
+        GTScanRequest req = newRequest(null, 1000L);
+
+        // consumer stops early
+        SegmentResultCache cache = new SegmentResultCache(1024 * 1024, 1024);
+        IGTScanner scanner = table.scan(req);
+        Iterator<GTRecord> iterator = cache.capture("seg", scanner.iterator(), req.getColumns(), false, new StorageContext());
+        Assert.assertTrue(iterator.hasNext());
+        iterator.next();
+        scanner.close();
+        Assert.assertNull(cache.get("seg"));
+
+        // larger than max entry size
+        cache = new SegmentResultCache(1024 * 1024, 8);
+        scanner = table.scan(req);
+        toStrings(cache.capture("seg", scanner.iterator(), req.getColumns(), false, new StorageContext()));
+        scanner.close();
+        Assert.assertNull(cache.get("seg"));
+
+        // partial result returned by storage
+        cache = new SegmentResultCache(1024 * 1024, 1024);
+        StorageContext context = new StorageContext();
+        context.setPartialResultReturned(true);
+        scanner = table.scan(req);
+        toStrings(cache.capture("seg", scanner.iterator(), req.getColumns(), false, context));
+        scanner.close();
+        Assert.assertNull(cache.get("seg"));
+    }
+
+    private GTScanRequest newRequest(TupleFilter filter, long startTime) {
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(0, 1)).setAggrMetrics(setOf(3)).setAggrMetricsFuncs(new String[] { "sum" }).setFilterPushDown(filter).setStartTime(startTime).createGTScanRequest();
+    }
+
+    private static List<String> toStrings(Iterator<GTRecord> records) {
+        List<String> result = Lists.newArrayList();
+        while (records.hasNext()) {
+            result.add(records.next().toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hybrid;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ParallelHybridTupleIteratorTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testReadAll() throws InterruptedException {
+        StorageContext context = new StorageContext();
+        TestTupleIterator old = new TestTupleIterator(100, null);
+        TestTupleIterator current = new TestTupleIterator(50, null);
+
+        ITupleIterator iterator = new ParallelHybridTupleIterator(Lists.newArrayList("old", "new"), Lists.<ITupleIterator> newArrayList(old, current), context, 10);
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertNotNull(iterator.next());
+            count++;
+        }
+        iterator.close();
+
+        Assert.assertEquals(150, count);
+        Assert.assertTrue(old.awaitClosed());
+        Assert.assertTrue(current.awaitClosed());
+        Assert.assertTrue(context.getRealizationScanTimes().containsKey("old"));
+        Assert.assertTrue(context.getRealizationScanTimes().containsKey("new"));
+    }
+
+    @Test
+    public void testMemberFailure() {
+        StorageContext context = new StorageContext();
+        TestTupleIterator old = new TestTupleIterator(100, null);
+        TestTupleIterator current = new TestTupleIterator(50, new IllegalStateException("scan failed"));
+
+        ITupleIterator iterator = new ParallelHybridTupleIterator(Lists.newArrayList("old", "new"), Lists.<ITupleIterator> newArrayList(old, current), context, 10);
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            Assert.fail("the member failure should be thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("scan failed", e.getMessage());
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test
+    public void testCloseEarly() throws InterruptedException {
+        StorageContext context = new StorageContext();
+        TestTupleIterator old = new TestTupleIterator(100000, null);
+        TestTupleIterator current = new TestTupleIterator(100000, null);
+
+        ITupleIterator iterator = new ParallelHybridTupleIterator(Lists.newArrayList("old", "new"), Lists.<ITupleIterator> newArrayList(old, current), context, 10);
+        Assert.assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+
+        // the workers blocked on the full queue stop and close their members
+        Assert.assertTrue(old.awaitClosed());
+        Assert.assertTrue(current.awaitClosed());
+    }
+
+    private static class TestTupleIterator implements ITupleIterator {
+        private final int rows;
+        private final RuntimeException failure;
+        private final ITuple tuple = new Tuple(new TupleInfo());
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private int index = 0;
+
+        TestTupleIterator(int rows, RuntimeException failure) {
+            this.rows = rows;
+            this.failure = failure;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index == rows / 2 && failure != null) {
+                throw failure;
+            }
+            return index < rows;
+        }
+
+        @Override
+        public ITuple next() {
+            index++;
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        boolean awaitClosed() throws InterruptedException {
+            return closed.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.translate;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.source.IReadableTable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DerivedFilterTranslatorTest extends LocalFileMetadataTestCase {
+
+    private DeriveInfo hostInfo;
+    private TblColRef udf1;
+    private TblColRef udf3;
+    private LookupStringTable lookup;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        CubeDesc cubeDesc = CubeDescManager.getInstance(KylinConfig.getInstanceFromEnv()).getCubeDesc("test_kylin_cube_without_slr_desc");
+        udf1 = cubeDesc.getModel().findColumn("TEST_CATEGORY_GROUPINGS.USER_DEFINED_FIELD1");
+        udf3 = cubeDesc.getModel().findColumn("TEST_CATEGORY_GROUPINGS.USER_DEFINED_FIELD3");
+        hostInfo = cubeDesc.getHostInfo(udf1);
+
+        // (LEAF_CATEG_ID, SITE_ID, USER_DEFINED_FIELD1, USER_DEFINED_FIELD3)
+        TblColRef[] pkCols = hostInfo.join.getPrimaryKeyColumns();
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(newRow(pkCols, "1", "0", "a", "x"));
+        rows.add(newRow(pkCols, "2", "0", "b", "y"));
+        rows.add(newRow(pkCols, "3", "0", "c", "x"));
+        rows.add(newRow(pkCols, "4", "0", "a", "z"));
+        String[] keyColumns = new String[pkCols.length];
+        for (int i = 0; i < pkCols.length; i++) {
+            keyColumns[i] = pkCols[i].getName();
+        }
+        lookup = new LookupStringTable(udf1.getColumnDesc().getTable(), keyColumns, new InMemoryTable(rows));
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testLookupPredicate() {
+        // USER_DEFINED_FIELD1 = 'a' AND NOT USER_DEFINED_FIELD3 = 'z'  OR  USER_DEFINED_FIELD3 = 'y'
+        LogicalTupleFilter and = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        and.addChild(eq(udf1, "a"));
+        LogicalTupleFilter not = new LogicalTupleFilter(FilterOperatorEnum.NOT);
+        not.addChild(eq(udf3, "z"));
+        and.addChild(not);
+        LogicalTupleFilter or = new LogicalTupleFilter(FilterOperatorEnum.OR);
+        or.addChild(and);
+        or.addChild(eq(udf3, "y"));
+        Assert.assertTrue(DerivedFilterTranslator.isLookupPredicate(or));
+
+        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, or, 10);
+        Assert.assertFalse(translated.getSecond());
+        // an OR of (LEAF_CATEG_ID, SITE_ID) for keys 1 and 2
+        Assert.assertEquals(FilterOperatorEnum.OR, translated.getFirst().getOperator());
+        Assert.assertEquals(2, translated.getFirst().getChildren().size());
+
+        // over threshold, loosened to a range of host columns
+        translated = DerivedFilterTranslator.translate(lookup, hostInfo, or, 1);
+        Assert.assertTrue(translated.getSecond());
+        Assert.assertEquals(FilterOperatorEnum.AND, translated.getFirst().getOperator());
+
+        // nothing satisfies
+        LogicalTupleFilter none = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        none.addChild(eq(udf1, "b"));
+        none.addChild(eq(udf3, "x"));
+        Assert.assertEquals(ConstantTupleFilter.FALSE, DerivedFilterTranslator.translate(lookup, hostInfo, none, 10).getFirst());
+    }
+
+    @Test
+    public void testNotLookupPredicate() {
+        LogicalTupleFilter or = new LogicalTupleFilter(FilterOperatorEnum.OR);
+        or.addChild(eq(udf1, "a"));
+        or.addChild(ConstantTupleFilter.TRUE);
+        Assert.assertFalse(DerivedFilterTranslator.isLookupPredicate(or));
+    }
+
+    private String[] newRow(TblColRef[] pkCols, String leafCategId, String siteId, String udf1Value, String udf3Value) {
+        TableDesc table = udf1.getColumnDesc().getTable();
+        String[] row = new String[table.getColumnCount()];
+        row[pkCols[0].getColumnDesc().getZeroBasedIndex()] = leafCategId;
+        row[pkCols[1].getColumnDesc().getZeroBasedIndex()] = siteId;
+        row[udf1.getColumnDesc().getZeroBasedIndex()] = udf1Value;
+        row[udf3.getColumnDesc().getZeroBasedIndex()] = udf3Value;
+        return row;
+    }
+
+    private static CompareTupleFilter eq(TblColRef col, String value) {
+        CompareTupleFilter filter = new CompareTupleFilter(FilterOperatorEnum.EQ);
+        filter.addChild(new ColumnTupleFilter(col));
+        filter.addChild(new ConstantTupleFilter(value));
+        return filter;
+    }
+
+    private static class InMemoryTable implements IReadableTable {
+        private final List<String[]> rows;
+
+        InMemoryTable(List<String[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public TableReader getReader() throws IOException {
+            return new TableReader() {
+                int i = -1;
+
+                @Override
+                public boolean next() throws IOException {
+                    return ++i < rows.size();
+                }
+
+                @Override
+                public String[] getRow() {
+                    return rows.get(i);
+                }
+
+                @Override
+                public void close() throws IOException {
+                }
+            };
+        }
+
+        @Override
+        public TableSignature getSignature() throws IOException {
+            return new TableSignature("lookup", rows.size(), 0);
+        }
+
+        @Override
+        public boolean exists() throws IOException {
+            return true;
+        }
+    }
+}
@@ -60,6 +60,9 @@ public class BatchCubingJobBuilder extends JobBuilderSupport {
 
         // Phase 2: Build Dictionary
         result.addTask(createFactDistinctColumnsStep(jobId));
+        if (isGlobalDictDistributedBuild()) {
+            result.addTask(createBuildGlobalDictPartitionsStep(jobId));
+        }
         result.addTask(createBuildDictionaryStep(jobId));
 
         // Phase 3: Build Cube
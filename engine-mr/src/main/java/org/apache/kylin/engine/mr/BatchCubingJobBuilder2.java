@@ -58,6 +58,9 @@ public class BatchCubingJobBuilder2 extends JobBuilderSupport {
 
         // Phase 2: Build Dictionary
         result.addTask(createFactDistinctColumnsStepWithStats(jobId));
+        if (isGlobalDictDistributedBuild()) {
+            result.addTask(createBuildGlobalDictPartitionsStep(jobId));
+        }
         result.addTask(createBuildDictionaryStep(jobId));
         result.addTask(createSaveStatisticsStep(jobId));
         outputSide.addStepPhase2_BuildDictionary(result);
@@ -22,12 +22,15 @@ import java.io.IOException;
 import java.util.List;
 
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.model.DictionaryDesc;
+import org.apache.kylin.dict.GlobalDictionaryBuilder;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.apache.kylin.engine.mr.common.HadoopShellExecutable;
 import org.apache.kylin.engine.mr.common.MapReduceExecutable;
 import org.apache.kylin.engine.mr.steps.CreateDictionaryJob;
 import org.apache.kylin.engine.mr.steps.CubingExecutableUtil;
 import org.apache.kylin.engine.mr.steps.FactDistinctColumnsJob;
+import org.apache.kylin.engine.mr.steps.GlobalDictPartitionJob;
 import org.apache.kylin.engine.mr.steps.MergeDictionaryStep;
 import org.apache.kylin.engine.mr.steps.UpdateCubeInfoAfterBuildStep;
 import org.apache.kylin.engine.mr.steps.UpdateCubeInfoAfterMergeStep;
@@ -95,6 +98,32 @@ public class JobBuilderSupport {
         return buildDictionaryStep;
     }
 
+    public HadoopShellExecutable createBuildGlobalDictPartitionsStep(String jobId) {
+        HadoopShellExecutable result = new HadoopShellExecutable();
+        result.setName(ExecutableConstants.STEP_NAME_BUILD_GLOBAL_DICTIONARY_PARTITIONS);
+        StringBuilder cmd = new StringBuilder();
+        appendExecCmdParameters(cmd, BatchConstants.ARG_CUBE_NAME, seg.getRealization().getName());
+        appendExecCmdParameters(cmd, BatchConstants.ARG_INPUT, getFactDistinctColumnsPath(jobId));
+        appendExecCmdParameters(cmd, BatchConstants.ARG_OUTPUT, getGlobalDictPartitionsPath(jobId));
+
+        result.setJobParams(cmd.toString());
+        result.setJobClass(GlobalDictPartitionJob.class);
+        return result;
+    }
+
+    // global dictionaries are built by MR tasks before the dictionary step, if configured
+    public boolean isGlobalDictDistributedBuild() {
+        if (seg.getConfig().getGlobalDictDistributedBuildPartitions() <= 1 || seg.getCubeDesc().getDictionaries() == null) {
+            return false;
+        }
+        for (DictionaryDesc desc : seg.getCubeDesc().getDictionaries()) {
+            if (GlobalDictionaryBuilder.class.getName().equals(desc.getBuilderClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public UpdateCubeInfoAfterBuildStep createUpdateCubeInfoAfterBuildStep(String jobId) {
         final UpdateCubeInfoAfterBuildStep result = new UpdateCubeInfoAfterBuildStep();
         result.setName(ExecutableConstants.STEP_NAME_UPDATE_CUBE_INFO);
@@ -172,6 +201,10 @@ public class JobBuilderSupport {
         return getRealizationRootPath(jobId) + "/fact_distinct_columns";
     }
 
+    public String getGlobalDictPartitionsPath(String jobId) {
+        return getRealizationRootPath(jobId) + "/global_dict_partitions";
+    }
+
     public String getStatisticsPath(String jobId) {
         return getRealizationRootPath(jobId) + "/fact_distinct_columns/" + BatchConstants.CFG_OUTPUT_STATISTICS;
     }
@@ -62,6 +62,11 @@ public interface BatchConstants {
     String CFG_OUTPUT_STATISTICS = "statistics";
     String CFG_OUTPUT_PARTITION = "partition";
 
+    String CFG_GLOBAL_DICT_RESOURCE_DIR = "global.dict.resource.dir";
+    String CFG_GLOBAL_DICT_BASE_VERSION = "global.dict.base.version";
+    String CFG_GLOBAL_DICT_PARTITIONS = "global.dict.partitions";
+    String CFG_GLOBAL_DICT_FIRST_IDS = "global.dict.first.ids";
+
 
     /**
      * command line ARGuments
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.common;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.ICuboidStatisticsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Reads the cuboid row counts from segment statistics by CubeStatsReader, cached by segment build.
+ */
+public class CuboidStatisticsProvider implements ICuboidStatisticsProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidStatisticsProvider.class);
+
+    // cuboid row estimates by segment, empty if the segment has no statistics
+    private final Cache<String, Map<Long, Long>> segmentStats = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    @Override
+    public Map<Long, Long> getCuboidRowEstimates(final CubeSegment segment) {
+        try {
+            return segmentStats.get(segment.getUuid() + "@" + segment.getLastBuildTime(), new Callable<Map<Long, Long>>() {
+                @Override
+                public Map<Long, Long> call() throws Exception {
+                    try {
+                        return new CubeStatsReader(segment, segment.getConfig()).getCuboidRowEstimatesHLL();
+                    } catch (Exception e) {
+                        logger.warn("No statistics of segment " + segment + ": " + e);
+                        return Collections.emptyMap();
+                    }
+                }
+            });
+        } catch (ExecutionException e) {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.kylin.dict.AppendTrieDictionary;
+import org.apache.kylin.dict.global.AppendTrieDictionaryBuilder;
+import org.apache.kylin.engine.mr.KylinReducer;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the values of a slice range not yet in the global dictionary, and counts them for the id assignment.
+ * The dictionary stays at the base version, as the job driver holds the lock of the dictionary.
+ */
+public class GlobalDictNewValueReducer extends KylinReducer<Text, NullWritable, NullWritable, Text> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalDictNewValueReducer.class);
+
+    private AppendTrieDictionary<String> dict;
+    private int partition;
+    private long values = 0;
+    private long newValues = 0;
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        super.bindCurrentConfiguration(conf);
+        AbstractHadoopJob.loadKylinPropsAndMetadata();
+
+        dict = new AppendTrieDictionary<>();
+        dict.init(AppendTrieDictionaryBuilder.getBaseDir(conf.get(BatchConstants.CFG_GLOBAL_DICT_RESOURCE_DIR)));
+        partition = context.getTaskAttemptID().getTaskID().getId();
+    }
+
+    @Override
+    public void doReduce(Text key, Iterable<NullWritable> ignored, Context context) throws IOException, InterruptedException {
+        values++;
+        try {
+            dict.getIdFromValue(key.toString());
+        } catch (IllegalArgumentException e) {
+            context.write(NullWritable.get(), key);
+            newValues++;
+        }
+    }
+
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        Configuration conf = context.getConfiguration();
+        Path countFile = new Path(conf.get(BatchConstants.CFG_OUTPUT_PATH), String.valueOf(partition));
+        FileSystem fs = countFile.getFileSystem(conf);
+        try (FSDataOutputStream out = fs.create(countFile, true)) {
+            out.writeLong(newValues);
+        }
+        logger.info("Partition {} has {} new values in {} values", partition, newValues, values);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.dict.global.AppendTrieDictionaryBuilder;
+import org.apache.kylin.engine.mr.KylinMapper;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the new values of a slice range into new slices, from the first id assigned to the range.
+ * The input file part-r-0000N holds the new values of range N, see {@link GlobalDictNewValueReducer}.
+ */
+public class GlobalDictPartitionBuildMapper extends KylinMapper<NullWritable, Text, NullWritable, NullWritable> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalDictPartitionBuildMapper.class);
+
+    private AppendTrieDictionaryBuilder builder;
+    private int partition;
+    private long values = 0;
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        super.bindCurrentConfiguration(conf);
+        KylinConfig config = AbstractHadoopJob.loadKylinPropsAndMetadata();
+
+        String fileName = ((FileSplit) context.getInputSplit()).getPath().getName();
+        partition = Integer.parseInt(fileName.substring(fileName.lastIndexOf('-') + 1));
+        int firstId = Integer.parseInt(conf.get(BatchConstants.CFG_GLOBAL_DICT_FIRST_IDS).split(",")[partition]);
+
+        builder = new AppendTrieDictionaryBuilder(conf.get(BatchConstants.CFG_GLOBAL_DICT_RESOURCE_DIR), config.getAppendDictEntrySize(), //
+                GlobalDictPartitionJob.loadPartitions(conf), partition, firstId);
+    }
+
+    @Override
+    public void doMap(NullWritable key, Text value, Context context) throws IOException, InterruptedException {
+        builder.addValue(value.toString());
+        values++;
+    }
+
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        builder.buildPartition();
+        logger.info("Partition {} built with {} new values", partition, values);
+    }
+}
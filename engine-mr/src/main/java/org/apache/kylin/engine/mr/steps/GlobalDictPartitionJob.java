@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.lock.DistributedLock;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.dict.AppendTrieDictionary;
+import org.apache.kylin.dict.DictionaryInfo;
+import org.apache.kylin.dict.DictionaryManager;
+import org.apache.kylin.dict.GlobalDictionaryBuilder;
+import org.apache.kylin.dict.global.AppendTrieDictionaryBuilder;
+import org.apache.kylin.dict.global.GlobalDictHDFSStore;
+import org.apache.kylin.dict.global.GlobalDictPartitions;
+import org.apache.kylin.dict.global.GlobalDictStore;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the global dictionaries of a cube in parallel on the key ranges of their slices, before the dictionary step.
+ *
+ * For each global dictionary column, a first job routes the distinct values of the segment to the slice ranges and
+ * keeps only the values new to the dictionary, counting them by range. Ids are then assigned to the ranges in key
+ * order, after the current max id, so every range gets its own contiguous id block. A second job builds each range
+ * into new slices, and the ranges are committed as the next version of the dictionary. The committed dictionary is
+ * left as the pre-built dict of the column, so the dictionary step doesn't add the values again.
+ *
+ * A dictionary without slices yet, i.e. on its first build, is left to the dictionary step.
+ */
+public class GlobalDictPartitionJob extends AbstractHadoopJob {
+    private static final Logger logger = LoggerFactory.getLogger(GlobalDictPartitionJob.class);
+
+    static final String NEW_VALUES_DIR = "new_values";
+    static final String NEW_VALUE_COUNTS_DIR = "new_value_counts";
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption(OPTION_CUBE_NAME);
+        options.addOption(OPTION_INPUT_PATH);
+        options.addOption(OPTION_OUTPUT_PATH);
+        parseOptions(options, args);
+
+        String cubeName = getOptionValue(OPTION_CUBE_NAME);
+        Path input = new Path(getOptionValue(OPTION_INPUT_PATH));
+        Path output = new Path(getOptionValue(OPTION_OUTPUT_PATH));
+
+        CubeManager cubeMgr = CubeManager.getInstance(KylinConfig.getInstanceFromEnv());
+        CubeInstance cube = cubeMgr.getCube(cubeName);
+        CubeDesc cubeDesc = cube.getDescriptor();
+
+        for (TblColRef col : cubeMgr.getAllDictColumnsOnFact(cubeDesc)) {
+            if (!GlobalDictionaryBuilder.class.getName().equals(cubeDesc.getDictionaryBuilderClass(col))) {
+                continue;
+            }
+            int ret = buildColumn(cube, col, new Path(input, col.getIdentity()), new Path(output, col.getIdentity()));
+            if (ret != 0) {
+                return ret;
+            }
+        }
+        return 0;
+    }
+
+    private int buildColumn(CubeInstance cube, TblColRef col, Path colDir, Path output) throws Exception {
+        KylinConfig config = cube.getConfig();
+        TblColRef srcCol = DictionaryManager.getInstance(config).decideSourceData(cube.getModel(), col);
+        DictionaryInfo dictInfo = new DictionaryInfo(srcCol.getColumnDesc(), col.getDatatype(), null);
+        String resourceDir = dictInfo.getResourceDir();
+        String baseDir = AppendTrieDictionaryBuilder.getBaseDir(resourceDir);
+
+        DistributedLock lock = config.getDistributedLockFactory().lockForCurrentThread();
+        String lockPath = GlobalDictionaryBuilder.getLockPath(dictInfo);
+        lock.lock(lockPath, Long.MAX_VALUE);
+        try {
+            GlobalDictStore store = new GlobalDictHDFSStore(baseDir);
+            Long[] versions = store.listAllVersions();
+            if (versions.length == 0) {
+                logger.info("Global dict of {} has no version yet, leave it to the dictionary step", col);
+                return 0;
+            }
+
+            long baseVersion = versions[versions.length - 1];
+            GlobalDictPartitions partitions = GlobalDictPartitions.create(baseVersion, store.getMetadata(baseVersion), config.getGlobalDictDistributedBuildPartitions());
+            if (partitions.size() < 2) {
+                logger.info("Global dict of {} has too few slices to partition, leave it to the dictionary step", col);
+                return 0;
+            }
+            logger.info("Build global dict of {} in {} partitions on version {}", col, partitions.size(), baseVersion);
+
+            Configuration conf = getConf();
+            Path newValues = new Path(output, NEW_VALUES_DIR);
+            Path newValueCounts = new Path(output, NEW_VALUE_COUNTS_DIR);
+            deletePath(conf, output);
+
+            int ret = runNewValueJob(cube, col, colDir, newValues, newValueCounts, resourceDir, partitions);
+            if (ret != 0) {
+                return ret;
+            }
+
+            long[] counts = readNewValueCounts(newValueCounts, partitions.size());
+            long total = 0;
+            StringBuilder firstIds = new StringBuilder();
+            int nextId = store.getMetadata(baseVersion).maxId + 1;
+            for (int i = 0; i < counts.length; i++) {
+                firstIds.append(i == 0 ? "" : ",").append(nextId);
+                nextId += counts[i];
+                total += counts[i];
+            }
+            if (total == 0) {
+                logger.info("No new value for global dict of {}", col);
+                return 0;
+            }
+            logger.info("{} new values for global dict of {}, first ids of partitions: {}", total, col, firstIds);
+
+            ret = runPartitionBuildJob(cube, col, newValues, resourceDir, partitions, firstIds.toString());
+            if (ret != 0) {
+                return ret;
+            }
+
+            // the same working dir of AppendTrieDictionaryBuilder, guarded by the same lock
+            store.commitPartitions(baseDir + "/working", partitions);
+            writePrebuiltDict(col, colDir, baseDir);
+            return 0;
+        } finally {
+            lock.unlock(lockPath);
+        }
+    }
+
+    private int runNewValueJob(CubeInstance cube, TblColRef col, Path colDir, Path newValues, Path newValueCounts, String resourceDir, GlobalDictPartitions partitions) throws Exception {
+        Job job = Job.getInstance(getConf(), "Kylin_Global_Dict_New_Values_" + cube.getName() + "_" + col.getName());
+        Configuration conf = job.getConfiguration();
+        try {
+            FileSystem fs = HadoopUtil.getWorkingFileSystem();
+            int inputs = 0;
+            for (FileStatus file : fs.listStatus(colDir)) {
+                String name = file.getPath().getName();
+                if (file.isFile() && !name.contains(FactDistinctColumnsReducer.DICT_FILE_POSTFIX) && !name.startsWith("_") && !name.startsWith(".")) {
+                    FileInputFormat.addInputPath(job, file.getPath());
+                    inputs++;
+                }
+            }
+            if (inputs == 0) {
+                logger.info("No distinct value of {} in {}", col, colDir);
+                return 0;
+            }
+
+            setJobClasspath(job, cube.getConfig());
+            setPartitionConf(conf, resourceDir, partitions);
+            conf.set(BatchConstants.CFG_OUTPUT_PATH, newValueCounts.toString());
+            job.setSpeculativeExecution(false);
+
+            job.setInputFormatClass(SequenceFileInputFormat.class);
+            job.setMapperClass(GlobalDictNewValueMapper.class);
+            job.setMapOutputKeyClass(Text.class);
+            job.setMapOutputValueClass(NullWritable.class);
+
+            job.setPartitionerClass(GlobalDictRangePartitioner.class);
+            job.setReducerClass(GlobalDictNewValueReducer.class);
+            job.setNumReduceTasks(partitions.size());
+            job.setOutputKeyClass(NullWritable.class);
+            job.setOutputValueClass(Text.class);
+            FileOutputFormat.setOutputPath(job, newValues);
+            LazyOutputFormat.setOutputFormatClass(job, SequenceFileOutputFormat.class);
+
+            attachCubeMetadata(cube, conf);
+            return waitForCompletion(job);
+        } finally {
+            cleanupTempConfFile(conf);
+        }
+    }
+
+    private int runPartitionBuildJob(CubeInstance cube, TblColRef col, Path newValues, String resourceDir, GlobalDictPartitions partitions, String firstIds) throws Exception {
+        Job job = Job.getInstance(getConf(), "Kylin_Global_Dict_Build_Partitions_" + cube.getName() + "_" + col.getName());
+        Configuration conf = job.getConfiguration();
+        try {
+            setJobClasspath(job, cube.getConfig());
+            setPartitionConf(conf, resourceDir, partitions);
+            conf.set(BatchConstants.CFG_GLOBAL_DICT_FIRST_IDS, firstIds);
+            job.setSpeculativeExecution(false);
+
+            // a mapper for each partition file, which names the partition
+            job.setInputFormatClass(PartitionFileInputFormat.class);
+            FileInputFormat.addInputPath(job, newValues);
+            job.setMapperClass(GlobalDictPartitionBuildMapper.class);
+            job.setNumReduceTasks(0);
+            job.setOutputFormatClass(NullOutputFormat.class);
+
+            attachCubeMetadata(cube, conf);
+            return waitForCompletion(job);
+        } finally {
+            cleanupTempConfFile(conf);
+        }
+    }
+
+    private long[] readNewValueCounts(Path newValueCounts, int partitions) throws IOException {
+        FileSystem fs = HadoopUtil.getWorkingFileSystem();
+        long[] counts = new long[partitions];
+        for (int i = 0; i < partitions; i++) {
+            Path file = new Path(newValueCounts, String.valueOf(i));
+            if (!fs.exists(file)) {
+                throw new IllegalStateException("New value count of partition " + i + " not found: " + file);
+            }
+            try (FSDataInputStream in = fs.open(file)) {
+                counts[i] = in.readLong();
+            }
+        }
+        return counts;
+    }
+
+    // the dictionary step reads the committed dictionary as the pre-built dict of the column, see CreateDictionaryJob
+    private void writePrebuiltDict(TblColRef col, Path colDir, String baseDir) throws IOException {
+        AppendTrieDictionary<String> dict = new AppendTrieDictionary<>();
+        dict.init(baseDir);
+
+        Path dictFile = new Path(colDir, col.getName() + FactDistinctColumnsReducer.DICT_FILE_POSTFIX + "-r-00000");
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(baos)) {
+            out.writeUTF(dict.getClass().getName());
+            dict.write(out);
+            out.flush();
+
+            try (SequenceFile.Writer writer = SequenceFile.createWriter(HadoopUtil.getCurrentConfiguration(), SequenceFile.Writer.file(dictFile), //
+                    SequenceFile.Writer.keyClass(NullWritable.class), SequenceFile.Writer.valueClass(BytesWritable.class))) {
+                writer.append(NullWritable.get(), new BytesWritable(baos.toByteArray()));
+            }
+        }
+        logger.info("Global dict of {} written as pre-built dict: {}", col, dictFile);
+    }
+
+    private static void setPartitionConf(Configuration conf, String resourceDir, GlobalDictPartitions partitions) {
+        conf.set(BatchConstants.CFG_GLOBAL_DICT_RESOURCE_DIR, resourceDir);
+        conf.setLong(BatchConstants.CFG_GLOBAL_DICT_BASE_VERSION, partitions.getBaseVersion());
+        conf.setInt(BatchConstants.CFG_GLOBAL_DICT_PARTITIONS, partitions.size());
+    }
+
+    /**
+     * @return the partitions of the global dictionary, the same as the job driver decides
+     */
+    static GlobalDictPartitions loadPartitions(Configuration conf) throws IOException {
+        String baseDir = AppendTrieDictionaryBuilder.getBaseDir(conf.get(BatchConstants.CFG_GLOBAL_DICT_RESOURCE_DIR));
+        long baseVersion = conf.getLong(BatchConstants.CFG_GLOBAL_DICT_BASE_VERSION, -1);
+        GlobalDictStore store = new GlobalDictHDFSStore(baseDir);
+        return GlobalDictPartitions.create(baseVersion, store.getMetadata(baseVersion), conf.getInt(BatchConstants.CFG_GLOBAL_DICT_PARTITIONS, 1));
+    }
+
+    public static class PartitionFileInputFormat extends SequenceFileInputFormat<NullWritable, Text> {
+        @Override
+        protected boolean isSplitable(JobContext context, Path filename) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitCode = ToolRunner.run(new GlobalDictPartitionJob(), args);
+        System.exit(exitCode);
+    }
+}
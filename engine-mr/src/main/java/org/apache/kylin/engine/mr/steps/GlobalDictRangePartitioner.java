@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.kylin.dict.global.GlobalDictPartitions;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+
+/**
+ * Routes a value to the reducer of the slice range it falls in, see {@link GlobalDictPartitions}.
+ */
+public class GlobalDictRangePartitioner extends Partitioner<Text, NullWritable> implements Configurable {
+
+    private Configuration conf;
+    private GlobalDictPartitions partitions;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        try {
+            AbstractHadoopJob.loadKylinPropsAndMetadata();
+            partitions = GlobalDictPartitionJob.loadPartitions(conf);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load global dict partitions", e);
+        }
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(Text key, NullWritable value, int numPartitions) {
+        return partitions.partitionOf(key.toString());
+    }
+}
@@ -241,6 +241,10 @@ public class KylinKryoRegistrator implements KryoRegistrator {
         kyroClasses.add(org.apache.kylin.measure.raw.RawAggregator.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawSerializer.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaSketch.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaSketchAggregator.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaSketchMeasureType.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaSketchSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.topn.Counter.class);
         kyroClasses.add(org.apache.kylin.measure.topn.DoubleDeltaSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.topn.TopNAggregator.class);
@@ -52,6 +52,11 @@ public interface IRemoteClient extends Closeable {
     /**
      * Execute query remotely and get back result.
      */
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException;
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, String queryId) throws IOException;
+
+    /**
+     * Stop the query of given id running remotely, nothing happens if it is not running.
+     */
+    public void stopQuery(String queryId) throws IOException;
 
 }
@@ -41,6 +41,7 @@ import org.apache.calcite.avatica.ColumnMetaData.ScalarType;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -48,6 +49,7 @@ import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.kylin.jdbc.KylinMeta.KMetaCatalog;
 import org.apache.kylin.jdbc.KylinMeta.KMetaColumn;
@@ -78,7 +80,8 @@ public class KylinClient implements IRemoteClient {
     public KylinClient(KylinConnection conn) {
         this.conn = conn;
         this.connProps = conn.getConnectionProperties();
-        this.httpClient = new DefaultHttpClient();
+        // pooled, as a statement may be cancelled while another one is running
+        this.httpClient = new DefaultHttpClient(new PoolingClientConnectionManager());
         this.jsonMapper = new ObjectMapper();
 
         // trust all certificates
@@ -321,9 +324,9 @@ public class KylinClient implements IRemoteClient {
     }
 
     @Override
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException {
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, String queryId) throws IOException {
 
-        SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues), queryToggles);
+        SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues), queryToggles, queryId);
         if (queryResp.getIsException())
             throw new IOException(queryResp.getExceptionMessage());
 
@@ -346,7 +349,7 @@ public class KylinClient implements IRemoteClient {
         return result;
     }
 
-    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles, String queryId) throws IOException {
         String url = baseUrl() + "/kylin/api/query";
         String project = conn.getProject();
 
@@ -361,6 +364,7 @@ public class KylinClient implements IRemoteClient {
         request.setSql(sql);
         request.setProject(project);
         request.setBackdoorToggles(queryToggles);
+        request.setQueryId(queryId);
 
         HttpPost post = new HttpPost(url);
         addHttpHeaders(post);
@@ -381,6 +385,24 @@ public class KylinClient implements IRemoteClient {
         return stub;
     }
 
+    @Override
+    public void stopQuery(String queryId) throws IOException {
+        HttpPut put = new HttpPut(baseUrl() + "/kylin/api/query/" + queryId + "/stop");
+        addHttpHeaders(put);
+
+        try {
+            HttpResponse response = httpClient.execute(put);
+
+            // 404 if the query has finished already
+            int code = response.getStatusLine().getStatusCode();
+            if (code != 200 && code != 404) {
+                throw asIOException(put, response);
+            }
+        } finally {
+            put.releaseConnection();
+        }
+    }
+
     private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
         List<ColumnMetaData> metas = new ArrayList<ColumnMetaData>();
         for (int i = 0; i < queryResp.getColumnMetas().size(); i++) {
@@ -26,6 +26,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.calcite.avatica.AvaticaConnection;
 import org.apache.calcite.avatica.AvaticaParameter;
@@ -46,6 +49,8 @@ public class KylinConnection extends AvaticaConnection {
     private final String baseUrl;
     private final String project;
     private final IRemoteClient remoteClient;
+    // statement -> id of the query it is running, to stop the query when the statement is cancelled
+    private final ConcurrentMap<AvaticaStatement, String> runningQueries = new ConcurrentHashMap<>();
 
     protected KylinConnection(UnregisteredDriver driver, KylinJdbcFactory factory, String url, Properties info) throws SQLException {
         super(driver, factory, url, info);
@@ -129,6 +134,31 @@ public class KylinConnection extends AvaticaConnection {
         return remoteClient;
     }
 
+    String startQuery(AvaticaStatement statement) {
+        String queryId = UUID.randomUUID().toString();
+        runningQueries.put(statement, queryId);
+        return queryId;
+    }
+
+    void endQuery(AvaticaStatement statement) {
+        runningQueries.remove(statement);
+    }
+
+    /**
+     * Stops the query the statement is running on server, if any.
+     */
+    void cancelQuery(AvaticaStatement statement) throws SQLException {
+        String queryId = runningQueries.get(statement);
+        if (queryId == null) {
+            return;
+        }
+        try {
+            remoteClient.stopQuery(queryId);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
     @Override
     public void close() throws SQLException {
         super.close();
@@ -50,6 +50,13 @@ public class KylinPreparedStatement extends AvaticaPreparedStatement {
         return jdbcValues;
     }
 
+    // stops the query on server first, as super.cancel() is blocked until the statement finishes executing
+    @Override
+    public void cancel() throws SQLException {
+        ((KylinConnection) connection).cancelQuery(this);
+        super.cancel();
+    }
+
     // ============================================================================
 
     public void setRowId(int parameterIndex, RowId x) throws SQLException {
@@ -58,17 +58,21 @@ public class KylinResultSet extends AvaticaResultSet {
             paramValues = ((KylinPreparedStatement) statement).getParameterJDBCValues();
         }
 
-        IRemoteClient client = ((KylinConnection) statement.connection).getRemoteClient();
+        KylinConnection connection = (KylinConnection) statement.connection;
+        IRemoteClient client = connection.getRemoteClient();
 
         Map<String, String> queryToggles = new HashMap<>();
         int maxRows = statement.getMaxRows();
         queryToggles.put("ATTR_STATEMENT_MAX_ROWS", String.valueOf(maxRows));
 
         QueryResult result;
+        String queryId = connection.startQuery(statement);
         try {
-            result = client.executeQuery(sql, params, paramValues, queryToggles);
+            result = client.executeQuery(sql, params, paramValues, queryToggles, queryId);
         } catch (IOException e) {
             throw new SQLException(e);
+        } finally {
+            connection.endQuery(statement);
         }
 
         columnMetaDataList.clear();
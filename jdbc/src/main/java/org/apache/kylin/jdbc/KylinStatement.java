@@ -18,6 +18,8 @@
 
 package org.apache.kylin.jdbc;
 
+import java.sql.SQLException;
+
 import org.apache.calcite.avatica.AvaticaConnection;
 import org.apache.calcite.avatica.AvaticaStatement;
 import org.apache.calcite.avatica.Meta.StatementHandle;
@@ -28,4 +30,11 @@ public class KylinStatement extends AvaticaStatement {
         super(connection, h, resultSetType, resultSetConcurrency, resultSetHoldability);
     }
 
+    // stops the query on server first, as super.cancel() is blocked until the statement finishes executing
+    @Override
+    public void cancel() throws SQLException {
+        ((KylinConnection) connection).cancelQuery(this);
+        super.cancel();
+    }
+
 }
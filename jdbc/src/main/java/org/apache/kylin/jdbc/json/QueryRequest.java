@@ -24,6 +24,7 @@ public class QueryRequest {
     private String sql;
     private String project;
     private boolean acceptPartial = false;
+    private String queryId;
 
     private Map<String, String> backdoorToggles;
 
@@ -51,6 +52,14 @@ public class QueryRequest {
         this.acceptPartial = acceptPartial;
     }
 
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
     public Map<String, String> getBackdoorToggles() {
         return backdoorToggles;
     }
@@ -19,6 +19,8 @@
 package org.apache.kylin.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -27,6 +29,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.calcite.avatica.DriverVersion;
 import org.junit.Assert;
@@ -128,6 +131,41 @@ public class DriverTest {
         conn.close();
     }
 
+    @Test
+    public void testCancel() throws Exception {
+        Driver driver = new DummyDriver();
+
+        Connection conn = driver.connect("jdbc:kylin://test_url/test_db", null);
+        final Statement state = conn.createStatement();
+        // nothing running to stop
+        state.cancel();
+        assertTrue(DummyClient.stoppedQueries.isEmpty());
+
+        final SQLException[] error = new SQLException[1];
+        Thread executor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    state.executeQuery("select slow");
+                } catch (SQLException e) {
+                    error[0] = e;
+                }
+            }
+        };
+        executor.start();
+
+        // the running query is stopped on server by its id
+        String queryId = DummyClient.slowQueries.poll(10, TimeUnit.SECONDS);
+        assertNotNull(queryId);
+        state.cancel();
+        executor.join();
+        assertNotNull(error[0]);
+        assertTrue(error[0].getMessage().contains("Query " + queryId + " is stopped"));
+
+        state.close();
+        conn.close();
+    }
+
     @Ignore("require dev sandbox")
     @Test
     public void testWithCubeData() throws Exception {
@@ -23,6 +23,9 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
@@ -37,6 +40,10 @@ import org.apache.kylin.jdbc.KylinMeta.KMetaTable;
  */
 public class DummyClient implements IRemoteClient {
 
+    // a query of "select slow" blocks until it is stopped
+    static final BlockingQueue<String> slowQueries = new LinkedBlockingQueue<String>();
+    static final BlockingQueue<String> stoppedQueries = new LinkedBlockingQueue<String>();
+
     public DummyClient(KylinConnection conn) {
     }
 
@@ -64,7 +71,19 @@ public class DummyClient implements IRemoteClient {
     }
 
     @Override
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException {
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, String queryId) throws IOException {
+        if ("select slow".equals(sql)) {
+            slowQueries.add(queryId);
+            try {
+                if (!queryId.equals(stoppedQueries.poll(10, TimeUnit.SECONDS))) {
+                    throw new IOException("Query " + queryId + " is not stopped");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw new IOException("Query " + queryId + " is stopped");
+        }
+
         List<Object> data = new ArrayList<Object>();
         Object[] row = new Object[] { "foo", "bar", "tool" };
         data.add(row);
@@ -77,6 +96,11 @@ public class DummyClient implements IRemoteClient {
         return new QueryResult(meta, data);
     }
 
+    @Override
+    public void stopQuery(String queryId) throws IOException {
+        stoppedQueries.add(queryId);
+    }
+
     @Override
     public void close() throws IOException {
     }
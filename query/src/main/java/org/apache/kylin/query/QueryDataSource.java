@@ -18,20 +18,16 @@
 
 package org.apache.kylin.query;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
 import org.apache.calcite.jdbc.Driver;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.dbcp.BasicDataSourceFactory;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.query.schema.OLAPSchemaFactory;
@@ -43,8 +39,10 @@ public class QueryDataSource {
 
     private static final Logger logger = Logger.getLogger(QueryDataSource.class);
 
-    private ConcurrentMap<String, DataSource> olapDataSources = new ConcurrentHashMap<String, DataSource>();
-    private List<File> usedFiles = Lists.newLinkedList();
+    // identifies the generation of cached data sources, whose connections share the same schemas
+    private static final AtomicLong cacheKeySeq = new AtomicLong();
+
+    private ConcurrentMap<String, WrappedDataSource> olapDataSources = new ConcurrentHashMap<String, WrappedDataSource>();
 
     /**
      * Get available data source
@@ -72,26 +70,28 @@ public class QueryDataSource {
             throw new IllegalArgumentException("project should not be null");
         }
         
-        DataSource ds = olapDataSources.get(project);
-        if (ds != null) {
-            return ds;
+        WrappedDataSource wrappedDS = olapDataSources.get(project);
+        if (wrappedDS != null) {
+            return wrappedDS.getDataSource();
         }
         
-        WrappedDataSource wrappedDS = getWrapped(project, config, props);
-        ds = wrappedDS.getDataSource();
-        olapDataSources.putIfAbsent(project, ds);
-        usedFiles.add(wrappedDS.getOlapFile());
-        return ds;
+        wrappedDS = getWrapped(project, config, props, project + "_" + cacheKeySeq.incrementAndGet());
+        WrappedDataSource existing = olapDataSources.putIfAbsent(project, wrappedDS);
+        return existing == null ? wrappedDS.getDataSource() : existing.getDataSource();
     }
 
     public DataSource removeCache(String project) {
-        return olapDataSources.remove(project);
+        WrappedDataSource wrappedDS = olapDataSources.remove(project);
+        if (wrappedDS == null) {
+            return null;
+        }
+        OLAPSchemaFactory.removeSharedSchemas(wrappedDS.getCacheKey());
+        return wrappedDS.getDataSource();
     }
 
     public void clearCache() {
-        olapDataSources.clear();
-        for (File usedFile : usedFiles) {
-            FileUtils.deleteQuietly(usedFile);
+        for (String project : Lists.newArrayList(olapDataSources.keySet())) {
+            removeCache(project);
         }
     }
 
@@ -115,18 +115,14 @@ public class QueryDataSource {
      * @return
      */
     public static DataSource create(String project, KylinConfig config, Properties props) {
-        return getWrapped(project, config, props).getDataSource();
+        return getWrapped(project, config, props, null).getDataSource();
     }
 
-    private static WrappedDataSource getWrapped(String project, KylinConfig config, Properties props) {
-        File olapTmp = OLAPSchemaFactory.createTempOLAPJson(project, config);
+    private static WrappedDataSource getWrapped(String project, KylinConfig config, Properties props, String cacheKey) {
+        // the model is inlined in the connect string, no temp file is needed
+        String olapModel = OLAPSchemaFactory.createOLAPModel(project, config, cacheKey);
         if (logger.isDebugEnabled()) {
-            try {
-                String text = FileUtils.readFileToString(olapTmp, Charset.defaultCharset());
-                logger.debug("The new temp olap json is :" + text);
-            } catch (IOException e) {
-                // logging failure is not critical
-            }
+            logger.debug("The new olap model of project " + project + " is :" + olapModel);
         }
 
         BasicDataSource ds = null;
@@ -140,28 +136,28 @@ public class QueryDataSource {
             ds = new BasicDataSource();
             ds.setMaxActive(-1);
         }
-        ds.setUrl("jdbc:calcite:model=" + olapTmp.getAbsolutePath());
+        ds.setUrl("jdbc:calcite:model=inline:" + olapModel);
         ds.setDriverClassName(Driver.class.getName());
 
-        WrappedDataSource wrappedDS = new WrappedDataSource(ds, olapTmp);
+        WrappedDataSource wrappedDS = new WrappedDataSource(ds, cacheKey);
         return wrappedDS;
     }
 
     private static class WrappedDataSource {
         private DataSource ds;
-        private File tempOlap;
+        private String cacheKey;
 
-        private WrappedDataSource(DataSource dataSource, File olapModel) {
+        private WrappedDataSource(DataSource dataSource, String cacheKey) {
             this.ds = dataSource;
-            this.tempOlap = olapModel;
+            this.cacheKey = cacheKey;
         }
 
         public DataSource getDataSource() {
             return ds;
         }
 
-        public File getOlapFile() {
-            return tempOlap;
+        public String getCacheKey() {
+            return cacheKey;
         }
     }
 }
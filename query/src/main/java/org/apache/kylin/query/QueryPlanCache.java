@@ -0,0 +1,434 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.DBUtils;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.project.ProjectInstance;
+import org.apache.kylin.metadata.project.ProjectManager;
+import org.apache.kylin.metadata.realization.RealizationType;
+import org.apache.kylin.query.relnode.OLAPContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Lists;
+
+/**
+ * Caches prepared query plans by (project, SQL template, metadata version).
+ *
+ * Preparing a statement parses, validates and optimizes the SQL, realizes the OLAP contexts and compiles
+ * the Enumerable code. A cached plan keeps the prepared calcite statement, which holds the compiled bindable,
+ * together with the OLAP contexts of its OLAPRel tree, and is executed again with new parameter values.
+ * A statement serves one query at a time, so each SQL template keeps a few idle plans to borrow from.
+ * Idle plans hold open connections and statements, so their total number is capped and the plans of
+ * a SQL template not used for a while are closed.
+ *
+ * Plans of a project are dropped when cube, model or project metadata changes, as notified by the Broadcaster.
+ */
+public class QueryPlanCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanCache.class);
+
+    // static cached instances
+    private static final ConcurrentMap<KylinConfig, QueryPlanCache> CACHE = new ConcurrentHashMap<KylinConfig, QueryPlanCache>();
+
+    public static QueryPlanCache getInstance(KylinConfig config) {
+        QueryPlanCache r = CACHE.get(config);
+        if (r == null) {
+            synchronized (QueryPlanCache.class) {
+                r = CACHE.get(config);
+                if (r == null) {
+                    r = new QueryPlanCache(config);
+                    CACHE.put(config, r);
+                    if (CACHE.size() > 1) {
+                        logger.warn("More than one singleton exist");
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    public static void clearCache() {
+        synchronized (QueryPlanCache.class) {
+            for (QueryPlanCache r : CACHE.values()) {
+                r.invalidateAll();
+            }
+            CACHE.clear();
+        }
+    }
+
+    // ============================================================================
+
+    private final KylinConfig config;
+    private final int maxIdlePerEntry;
+    private final int maxIdle;
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Cache<PlanKey, Queue<CachedPlan>> idlePlans;
+    private final Cache<PlanKey, Boolean> uncacheables;
+    private final ConcurrentMap<String, AtomicLong> metadataVersions = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private QueryPlanCache(KylinConfig config) {
+        this.config = config;
+        this.maxIdlePerEntry = config.getQueryPlanCacheMaxIdlePerEntry();
+        this.maxIdle = config.getQueryPlanCacheMaxIdle();
+        this.idlePlans = CacheBuilder.newBuilder().maximumSize(config.getQueryPlanCacheMaxEntries()).expireAfterAccess(config.getQueryPlanCacheExpireSeconds(), TimeUnit.SECONDS).removalListener(new RemovalListener<PlanKey, Queue<CachedPlan>>() {
+            @Override
+            public void onRemoval(RemovalNotification<PlanKey, Queue<CachedPlan>> notification) {
+                Queue<CachedPlan> plans = notification.getValue();
+                if (plans != null) {
+                    for (CachedPlan plan = plans.poll(); plan != null; plan = plans.poll()) {
+                        closeIdle(plan);
+                    }
+                }
+            }
+        }).build();
+        this.uncacheables = CacheBuilder.newBuilder().maximumSize(config.getQueryPlanCacheMaxEntries()).build();
+
+        Broadcaster.getInstance(config).registerListener(new PlanCacheSyncListener(), "project", "cube", "data_model");
+    }
+
+    private class PlanCacheSyncListener extends Broadcaster.Listener {
+        @Override
+        public void onClearAll(Broadcaster broadcaster) throws IOException {
+            clearCache();
+        }
+
+        @Override
+        public void onProjectSchemaChange(Broadcaster broadcaster, String project) throws IOException {
+            invalidate(project);
+        }
+
+        @Override
+        public void onProjectDataChange(Broadcaster broadcaster, String project) throws IOException {
+            invalidate(project);
+        }
+
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey) throws IOException {
+            ProjectManager prjMgr = ProjectManager.getInstance(config);
+            if ("project".equals(entity)) {
+                invalidate(cacheKey);
+            } else if ("cube".equals(entity)) {
+                invalidate(prjMgr.findProjects(RealizationType.CUBE, cacheKey));
+            } else if ("data_model".equals(entity)) {
+                invalidate(prjMgr.findProjectsByModel(cacheKey));
+            }
+        }
+    }
+
+    public PlanKey newKey(String project, String sql) {
+        project = ProjectInstance.getNormalizedProjectName(project);
+        return new PlanKey(project, sql, getMetadataVersion(project).get());
+    }
+
+    private AtomicLong getMetadataVersion(String project) {
+        AtomicLong version = metadataVersions.get(project);
+        if (version == null) {
+            metadataVersions.putIfAbsent(project, new AtomicLong());
+            version = metadataVersions.get(project);
+        }
+        return version;
+    }
+
+    /**
+     * @return an idle plan taken out of the cache, or null if there is none; the plan must be returned
+     * by {@link #giveBack(CachedPlan)} or closed after use
+     */
+    public CachedPlan borrow(PlanKey key) {
+        Queue<CachedPlan> plans = idlePlans.getIfPresent(key);
+        CachedPlan plan = plans == null ? null : plans.poll();
+        if (plan == null) {
+            missCount.incrementAndGet();
+        } else {
+            idleCount.decrementAndGet();
+            hitCount.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Creates a plan from a statement just prepared on current thread, before it is executed.
+     *
+     * @return null if the plan cannot be reused, the caller keeps the ownership of the statement then
+     */
+    public CachedPlan capture(PlanKey key, Connection connection, PreparedStatement statement) {
+        Collection<OLAPContext> contexts = OLAPContext.getThreadLocalContexts();
+        List<OLAPContext> ctxList = Lists.newArrayList();
+        List<TupleFilter> unboundFilters = Lists.newArrayList();
+        if (contexts != null) {
+            for (OLAPContext ctx : contexts) {
+                if (!isCopyable(ctx.filter)) {
+                    logger.debug("Filter of OLAPContext " + ctx.id + " cannot be reused, not caching plan of " + key);
+                    markUncacheable(key);
+                    return null;
+                }
+                ctxList.add(ctx);
+                unboundFilters.add(copyUnbound(ctx.filter));
+            }
+        }
+        return new CachedPlan(key, connection, statement, ctxList, unboundFilters);
+    }
+
+    public void giveBack(final CachedPlan plan) {
+        PlanKey key = plan.key;
+        if (key.version != getMetadataVersion(key.project).get()) {
+            plan.close();
+            return;
+        }
+
+        Queue<CachedPlan> plans;
+        try {
+            plans = idlePlans.get(key, new Callable<Queue<CachedPlan>>() {
+                @Override
+                public Queue<CachedPlan> call() throws Exception {
+                    return new ConcurrentLinkedQueue<CachedPlan>();
+                }
+            });
+        } catch (ExecutionException e) {
+            plan.close();
+            return;
+        }
+
+        if (plans.size() >= maxIdlePerEntry) {
+            plan.close();
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            plan.close();
+            return;
+        }
+        plans.offer(plan);
+
+        // metadata could have changed, or the entry been evicted, in between
+        if (key.version != getMetadataVersion(key.project).get() || idlePlans.asMap().get(key) != plans) {
+            if (plans.remove(plan)) {
+                closeIdle(plan);
+            }
+        }
+    }
+
+    private void closeIdle(CachedPlan plan) {
+        idleCount.decrementAndGet();
+        plan.close();
+    }
+
+    public boolean isUncacheable(PlanKey key) {
+        return uncacheables.getIfPresent(key) != null;
+    }
+
+    public void markUncacheable(PlanKey key) {
+        uncacheables.put(key, Boolean.TRUE);
+    }
+
+    public void invalidate(String project) {
+        if (project == null) {
+            return;
+        }
+
+        project = ProjectInstance.getNormalizedProjectName(project);
+        getMetadataVersion(project).incrementAndGet();
+        for (PlanKey key : Lists.newArrayList(idlePlans.asMap().keySet())) {
+            if (key.project.equals(project)) {
+                idlePlans.invalidate(key);
+            }
+        }
+        for (PlanKey key : Lists.newArrayList(uncacheables.asMap().keySet())) {
+            if (key.project.equals(project)) {
+                uncacheables.invalidate(key);
+            }
+        }
+        logger.info("Query plans of project " + project + " are invalidated");
+    }
+
+    private void invalidate(List<ProjectInstance> projects) {
+        for (ProjectInstance project : projects) {
+            invalidate(project.getName());
+        }
+    }
+
+    public void invalidateAll() {
+        for (AtomicLong version : metadataVersions.values()) {
+            version.incrementAndGet();
+        }
+        idlePlans.invalidateAll();
+        uncacheables.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getIdleCount() {
+        idlePlans.cleanUp();
+        return idleCount.get();
+    }
+
+    // ============================================================================
+
+    // the dynamic variables are bound into the filter during execution, a reused plan needs an unbound copy
+    private static boolean isCopyable(TupleFilter filter) {
+        if (filter == null || !hasVariables(filter) || filter instanceof CompareTupleFilter) {
+            return true;
+        }
+        if (!(filter instanceof LogicalTupleFilter)) {
+            return false;
+        }
+        for (TupleFilter child : filter.getChildren()) {
+            if (!isCopyable(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasVariables(TupleFilter filter) {
+        if (filter instanceof CompareTupleFilter && !((CompareTupleFilter) filter).getVariables().isEmpty()) {
+            return true;
+        }
+        for (TupleFilter child : filter.getChildren()) {
+            if (hasVariables(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TupleFilter copyUnbound(TupleFilter filter) {
+        if (filter == null || !hasVariables(filter)) {
+            return filter;
+        }
+        if (filter instanceof CompareTupleFilter) {
+            return filter.copy(); // children are column, constant or dynamic filters, not changed by binding
+        }
+
+        LogicalTupleFilter copy = new LogicalTupleFilter(filter.getOperator());
+        for (TupleFilter child : filter.getChildren()) {
+            copy.addChild(copyUnbound(child));
+        }
+        return copy;
+    }
+
+    public static class PlanKey {
+        private final String project;
+        private final String sql;
+        private final long version;
+
+        private PlanKey(String project, String sql, long version) {
+            this.project = project;
+            this.sql = sql;
+            this.version = version;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(project, sql, version);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            PlanKey other = (PlanKey) obj;
+            return version == other.version && project.equals(other.project) && sql.equals(other.sql);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + project + ", v" + version + "] " + sql;
+        }
+    }
+
+    public static class CachedPlan {
+        private final PlanKey key;
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final List<OLAPContext> contexts;
+        private final List<TupleFilter> unboundFilters;
+
+        private CachedPlan(PlanKey key, Connection connection, PreparedStatement statement, List<OLAPContext> contexts, List<TupleFilter> unboundFilters) {
+            this.key = key;
+            this.connection = connection;
+            this.statement = statement;
+            this.contexts = contexts;
+            this.unboundFilters = unboundFilters;
+        }
+
+        public PlanKey getKey() {
+            return key;
+        }
+
+        public PreparedStatement getStatement() {
+            return statement;
+        }
+
+        /**
+         * Registers the OLAP contexts of the plan to current thread, ready for the next execution.
+         */
+        public void activate() {
+            OLAPContext.clearThreadLocalContexts();
+            for (int i = 0; i < contexts.size(); i++) {
+                OLAPContext ctx = contexts.get(i);
+                ctx.resetForReuse(copyUnbound(unboundFilters.get(i)));
+                OLAPContext.registerContext(ctx);
+            }
+        }
+
+        public void close() {
+            DBUtils.closeQuietly(statement);
+            DBUtils.closeQuietly(connection);
+        }
+    }
+}
@@ -106,10 +106,23 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
     }
 
     private ITupleIterator queryStorage() {
+        StoragePrefetcher prefetcher = StoragePrefetcher.current();
+        ITupleIterator prefetched = prefetcher.take(olapContext);
+        if (prefetched != null) {
+            logger.debug("return prefetched TupleIterator...");
+            return prefetched;
+        }
+
+        // start the other contexts of the query while this one is scanned
+        prefetcher.prefetchOthers(olapContext, optiqContext);
+        return queryStorage(olapContext, optiqContext);
+    }
+
+    static ITupleIterator queryStorage(OLAPContext olapContext, DataContext optiqContext) {
         logger.debug("query storage...");
 
         // bind dynamic variables
-        bindVariable(olapContext.filter);
+        bindVariable(olapContext.filter, optiqContext);
 
         // cube don't have correct result for simple query without group by, but let's try to return something makes sense
         olapContext.resetSQLDigest();
@@ -125,13 +138,13 @@ public class OLAPEnumerator implements Enumerator<Object[]> {
         return iterator;
     }
 
-    private void bindVariable(TupleFilter filter) {
+    private static void bindVariable(TupleFilter filter, DataContext optiqContext) {
         if (filter == null) {
             return;
         }
 
         for (TupleFilter childFilter : filter.getChildren()) {
-            bindVariable(childFilter);
+            bindVariable(childFilter, optiqContext);
         }
 
         if (filter instanceof CompareTupleFilter && optiqContext != null) {
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query.enumerator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.calcite.DataContext;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.LoggableCachedThreadPool;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.query.relnode.OLAPContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs the storage scans of the independent OLAP contexts in a query concurrently, e.g. the fact sides of
+ * a join or the branches of a union, which are otherwise scanned one after another as Calcite enumerates them.
+ *
+ * When the first context queries storage, the other contexts are submitted to a shared pool, up to
+ * kylin.query.parallel-contexts-max in total. A worker buffers the rows of its context up to a limit, and the
+ * enumerator of the context later takes the buffered rows and continues on the storage iterator.
+ * Prefetches not taken by the end of the query are cancelled and closed.
+ */
+public class StoragePrefetcher implements QueryContext.QueryStopListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoragePrefetcher.class);
+
+    private static final ExecutorService executorService = new LoggableCachedThreadPool();
+
+    private static final ThreadLocal<StoragePrefetcher> prefetchers = new ThreadLocal<StoragePrefetcher>();
+
+    /**
+     * @return the prefetcher of the query running in current thread
+     */
+    public static StoragePrefetcher current() {
+        QueryContext queryContext = QueryContext.current();
+        StoragePrefetcher prefetcher = prefetchers.get();
+        if (prefetcher == null || prefetcher.queryContext != queryContext) {
+            prefetcher = new StoragePrefetcher(queryContext, KylinConfig.getInstanceFromEnv());
+            prefetchers.set(prefetcher);
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Releases the prefetcher of current thread when the query ends, the pooled thread may not serve another query soon.
+     */
+    public static void clearCurrent() {
+        prefetchers.remove();
+    }
+
+    private final QueryContext queryContext;
+    private final KylinConfig config;
+    private final Map<Integer, Future<ITupleIterator>> prefetches = Maps.newHashMap();
+    // the prefetch being waited for in take(), cancelled if the query is stopped meanwhile
+    private Future<ITupleIterator> taking;
+    private boolean started = false;
+    private volatile boolean stopped = false;
+
+    StoragePrefetcher(QueryContext queryContext, KylinConfig config) {
+        this.queryContext = queryContext;
+        this.config = config;
+    }
+
+    /**
+     * @return the prefetched storage result of the context, or null if it is not prefetched
+     */
+    public ITupleIterator take(OLAPContext context) {
+        Future<ITupleIterator> future;
+        synchronized (this) {
+            future = prefetches.remove(context.id);
+            if (future == null) {
+                return null;
+            }
+            taking = future;
+        }
+
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            queryContext.checkStopped();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when waiting for storage result of context " + context.id, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            synchronized (this) {
+                taking = null;
+            }
+        }
+    }
+
+    /**
+     * Starts the storage scans of the other contexts, once per query.
+     */
+    public void prefetchOthers(OLAPContext current, DataContext optiqContext) {
+        int maxContexts = config.getQueryParallelContextsMax();
+        synchronized (this) {
+            if (started || stopped || maxContexts <= 1) {
+                return;
+            }
+            started = true;
+        }
+
+        List<OLAPContext> others = Lists.newArrayList();
+        for (OLAPContext context : OLAPContext.getThreadLocalContexts()) {
+            if (context != current && isPrefetchable(context)) {
+                others.add(context);
+            }
+        }
+        if (others.isEmpty()) {
+            return;
+        }
+
+        if (others.size() > maxContexts - 1) {
+            others = others.subList(0, maxContexts - 1);
+        }
+        logger.info("Prefetch storage result of {} contexts in parallel with context {}", others.size(), current.id);
+
+        queryContext.addQueryStopListener(this);
+        int bufferRows = config.getQueryParallelContextsBufferRows();
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            for (OLAPContext context : others) {
+                prefetches.put(context.id, executorService.submit(new PrefetchTask(context, optiqContext, bufferRows)));
+            }
+        }
+    }
+
+    // only the contexts that query storage by OLAPEnumerator, see OLAPTableScan.genExecFunc()
+    static boolean isPrefetchable(OLAPContext context) {
+        return context.realization != null && context.firstTableScan != null //
+                && !context.realization.getModel().isLookupTable(context.firstTableScan.getTableName());
+    }
+
+    @Override
+    public void stop(QueryContext query) {
+        List<Future<ITupleIterator>> remaining;
+        synchronized (this) {
+            stopped = true;
+            remaining = Lists.newArrayList(prefetches.values());
+            prefetches.clear();
+            // wakes up take(); if the prefetch is done already, the iterator is taken and closed by its enumerator
+            if (taking != null) {
+                taking.cancel(true);
+            }
+        }
+
+        for (Future<ITupleIterator> future : remaining) {
+            // a cancelled task closes its own iterator, see PrefetchTask
+            if (!future.cancel(true)) {
+                try {
+                    future.get().close();
+                } catch (Exception e) {
+                    logger.debug("Prefetch not taken ended with error", e);
+                }
+            }
+        }
+    }
+
+    private class PrefetchTask implements Callable<ITupleIterator> {
+        private final OLAPContext context;
+        private final DataContext optiqContext;
+        private final int bufferRows;
+        private final Map<String, String> toggles;
+        private final KylinConfig threadConfig;
+
+        PrefetchTask(OLAPContext context, DataContext optiqContext, int bufferRows) {
+            this.context = context;
+            this.optiqContext = optiqContext;
+            this.bufferRows = bufferRows;
+            this.toggles = BackdoorToggles.getToggles();
+            this.threadConfig = KylinConfig.getInstanceFromEnv();
+        }
+
+        @Override
+        public ITupleIterator call() throws Exception {
+            QueryContext.bind(queryContext);
+            BackdoorToggles.setToggles(toggles);
+            KylinConfig.setKylinConfigThreadLocal(threadConfig);
+
+            long startTime = System.currentTimeMillis();
+            ITupleIterator iterator = null;
+            try {
+                iterator = OLAPEnumerator.queryStorage(context, optiqContext);
+                List<ITuple> buffer = Lists.newArrayList();
+                while (buffer.size() < bufferRows && !stopped && iterator.hasNext()) {
+                    buffer.add(iterator.next().makeCopy());
+                }
+
+                boolean drained = !iterator.hasNext();
+                logger.info("Prefetched {} rows of context {} in {} ms{}", buffer.size(), context.id, System.currentTimeMillis() - startTime, drained ? "" : ", the rest left in storage");
+                if (stopped) {
+                    iterator.close();
+                    return ITupleIterator.EMPTY_TUPLE_ITERATOR;
+                }
+                if (drained) {
+                    iterator.close();
+                    iterator = null;
+                }
+                return new PrefetchedTupleIterator(buffer, iterator);
+            } catch (Exception e) {
+                if (iterator != null) {
+                    iterator.close();
+                }
+                throw e;
+            } finally {
+                KylinConfig.setKylinConfigThreadLocal(null);
+                BackdoorToggles.cleanToggles();
+                QueryContext.reset();
+            }
+        }
+    }
+
+    /**
+     * The buffered rows followed by the rest of the storage iterator, if not drained.
+     */
+    static class PrefetchedTupleIterator implements ITupleIterator {
+        private final List<ITuple> buffer;
+        private final ITupleIterator rest;
+        private int index = 0;
+
+        PrefetchedTupleIterator(List<ITuple> buffer, ITupleIterator rest) {
+            this.buffer = buffer;
+            this.rest = rest;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < buffer.size() || (rest != null && rest.hasNext());
+        }
+
+        @Override
+        public ITuple next() {
+            if (index < buffer.size()) {
+                ITuple tuple = buffer.get(index);
+                buffer.set(index++, null); // release consumed rows
+                return tuple;
+            }
+            if (rest == null) {
+                throw new NoSuchElementException();
+            }
+            return rest.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (rest != null) {
+                rest.close();
+            }
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class OLAPContext {
 
     public static final String PRM_ACCEPT_PARTIAL_RESULT = "AcceptPartialResult";
     public static final String PRM_USER_AUTHEN_INFO = "UserAuthenInfo";
+    public static final String PRM_SAMPLE_RATIO = "SampleRatio";
 
     private static final ThreadLocal<Map<String, String>> _localPrarameters = new ThreadLocal<Map<String, String>>();
 
@@ -97,6 +98,10 @@ public class OLAPContext {
             if (acceptPartialResult != null) {
                 this.storageContext.setAcceptPartialResult(Boolean.parseBoolean(acceptPartialResult));
             }
+            String sampleRatio = parameters.get(PRM_SAMPLE_RATIO);
+            if (sampleRatio != null) {
+                this.storageContext.setSampleRatio(Double.parseDouble(sampleRatio));
+            }
             String acceptUserInfo = parameters.get(PRM_USER_AUTHEN_INFO);
             if (null != acceptUserInfo)
                 this.olapAuthen.parseUserInfo(acceptUserInfo);
@@ -169,6 +174,26 @@ public class OLAPContext {
         this.sqlDigest = null;
     }
 
+    /**
+     * Prepares the context for another execution of the same query plan, see QueryPlanCache.
+     * The filter is replaced as the previous execution has bound its dynamic variables.
+     */
+    public void resetForReuse(TupleFilter unboundFilter) {
+        this.filter = unboundFilter;
+        this.storageContext.resetRuntimeState();
+        resetSQLDigest();
+
+        Map<String, String> parameters = _localPrarameters.get();
+        if (parameters != null) {
+            String acceptPartialResult = parameters.get(PRM_ACCEPT_PARTIAL_RESULT);
+            if (acceptPartialResult != null) {
+                this.storageContext.setAcceptPartialResult(Boolean.parseBoolean(acceptPartialResult));
+            }
+            String sampleRatio = parameters.get(PRM_SAMPLE_RATIO);
+            this.storageContext.setSampleRatio(sampleRatio == null ? 1 : Double.parseDouble(sampleRatio));
+        }
+    }
+
     public boolean belongToContextTables(TblColRef tblColRef) {
         for (OLAPTableScan olapTableScan : this.allTableScans) {
             if (olapTableScan.getColumnRowType().getAllColumns().contains(tblColRef)) {
@@ -55,6 +55,7 @@ public class Candidate implements Comparable<Candidate> {
     SQLDigest sqlDigest;
     int priority;
     CapabilityResult capability;
+    long scanRows = -1; // estimated rows to scan, -1 if not estimated
 
     public Candidate(IRealization realization, SQLDigest sqlDigest) {
         this.realization = realization;
@@ -82,6 +83,14 @@ public class Candidate implements Comparable<Candidate> {
         this.capability = capability;
     }
 
+    public long getScanRows() {
+        return scanRows;
+    }
+
+    public void setScanRows(long scanRows) {
+        this.scanRows = scanRows;
+    }
+
     @Override
     public int compareTo(Candidate o) {
         int comp = this.priority - o.priority;
@@ -89,6 +98,12 @@ public class Candidate implements Comparable<Candidate> {
             return comp;
         }
 
+        // an unknown estimate goes after any known one, so the order stays transitive
+        comp = Long.compare(this.scanRows < 0 ? Long.MAX_VALUE : this.scanRows, o.scanRows < 0 ? Long.MAX_VALUE : o.scanRows);
+        if (comp != 0) {
+            return comp;
+        }
+
         comp = this.capability.cost - o.capability.cost;
         if (comp != 0) {
             return comp;
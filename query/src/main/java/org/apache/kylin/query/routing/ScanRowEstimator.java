@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query.routing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ClassUtil;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.ICuboidStatisticsProvider;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.metadata.model.PartitionDesc;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.realization.IRealization;
+import org.apache.kylin.metadata.realization.SQLDigest;
+import org.apache.kylin.storage.cache.TsConditionExtractor;
+import org.apache.kylin.storage.hybrid.HybridInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
+
+/**
+ * Estimates the rows a query is going to scan on a realization, before the storage query plans it.
+ *
+ * The cuboid is approximated by the group by and filter columns of the SQL digest, with derived columns replaced by
+ * their host columns and then adjusted to a valid cuboid of the aggregation groups. The rows are the cuboid row
+ * estimates from the statistics, summed over the ready segments that overlap the time condition in filter. A segment
+ * without statistics counts its input records.
+ */
+public class ScanRowEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanRowEstimator.class);
+
+    private static final ConcurrentMap<String, ICuboidStatisticsProvider> PROVIDERS = Maps.newConcurrentMap();
+
+    private final ICuboidStatisticsProvider statsProvider;
+
+    public ScanRowEstimator(KylinConfig config) {
+        this(getStatisticsProvider(config.getCuboidStatisticsProvider()));
+    }
+
+    public ScanRowEstimator(ICuboidStatisticsProvider statsProvider) {
+        this.statsProvider = statsProvider;
+    }
+
+    private static ICuboidStatisticsProvider getStatisticsProvider(String clsName) {
+        if (clsName == null || clsName.isEmpty()) {
+            return null;
+        }
+        ICuboidStatisticsProvider provider = PROVIDERS.get(clsName);
+        if (provider == null) {
+            try {
+                provider = (ICuboidStatisticsProvider) ClassUtil.newInstance(clsName);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to create cuboid statistics provider " + clsName + ", using input records as estimate", e);
+                return null;
+            }
+            ICuboidStatisticsProvider existing = PROVIDERS.putIfAbsent(clsName, provider);
+            provider = existing != null ? existing : provider;
+        }
+        return provider;
+    }
+
+    /**
+     * @return the estimated rows to scan, or -1 if the realization is not supported
+     */
+    public long estimateScanRows(IRealization realization, SQLDigest digest) {
+        if (realization instanceof HybridInstance) {
+            long rows = 0;
+            for (IRealization member : ((HybridInstance) realization).getRealizations()) {
+                long memberRows = estimateScanRows(member, digest);
+                if (memberRows < 0) {
+                    return -1;
+                }
+                rows += memberRows;
+            }
+            return rows;
+        }
+        if (!(realization instanceof CubeInstance)) {
+            return -1;
+        }
+
+        CubeInstance cube = (CubeInstance) realization;
+        long cuboidId = identifyCuboid(digest, cube.getDescriptor());
+        Range<Long> tsRange = extractTsRange(cube, digest);
+        if (tsRange == null) {
+            return 0; // conflicting time condition, no segment is hit
+        }
+
+        long rows = 0;
+        for (CubeSegment seg : cube.getSegments(SegmentStatusEnum.READY)) {
+            if (!isSegmentHit(seg, tsRange)) {
+                continue;
+            }
+            Map<Long, Long> stats = statsProvider == null ? Collections.<Long, Long> emptyMap() : statsProvider.getCuboidRowEstimates(seg);
+            Long cuboidRows = stats.get(cuboidId);
+            rows += cuboidRows != null ? cuboidRows : seg.getInputRecords();
+        }
+        return rows;
+    }
+
+    private long identifyCuboid(SQLDigest digest, CubeDesc cubeDesc) {
+        Set<TblColRef> rowkeyCols = Sets.newHashSet(cubeDesc.listDimensionColumnsExcludingDerived(true));
+        Set<TblColRef> columns = Sets.newHashSet();
+        columns.addAll(digest.groupbyColumns);
+        columns.addAll(digest.filterColumns);
+        columns.addAll(digest.subqueryJoinParticipants);
+
+        long cuboidId = 0;
+        for (TblColRef col : columns) {
+            if (cubeDesc.hasHostColumn(col)) {
+                for (TblColRef host : cubeDesc.getHostInfo(col).columns) {
+                    if (rowkeyCols.contains(host)) {
+                        cuboidId |= 1L << cubeDesc.getRowkey().getColumnBitIndex(host);
+                    }
+                }
+            } else if (rowkeyCols.contains(col)) {
+                cuboidId |= 1L << cubeDesc.getRowkey().getColumnBitIndex(col);
+            }
+        }
+
+        try {
+            return Cuboid.findById(cubeDesc, cuboidId).getId();
+        } catch (RuntimeException e) {
+            return Cuboid.getBaseCuboidId(cubeDesc);
+        }
+    }
+
+    private Range<Long> extractTsRange(CubeInstance cube, SQLDigest digest) {
+        PartitionDesc partitionDesc = cube.getModel().getPartitionDesc();
+        if (partitionDesc == null || !partitionDesc.isPartitioned() || partitionDesc.getPartitionDateColumnRef() == null) {
+            return Range.all();
+        }
+        try {
+            return TsConditionExtractor.extractTsCondition(partitionDesc.getPartitionDateColumnRef(), digest.filter);
+        } catch (RuntimeException e) {
+            // the time condition is not in a recognized format
+            return Range.all();
+        }
+    }
+
+    private boolean isSegmentHit(CubeSegment seg, Range<Long> tsRange) {
+        long start = seg.getDateRangeStart();
+        long end = seg.getDateRangeEnd();
+        if (end <= start) {
+            return true;
+        }
+        Range<Long> segRange = Range.closedOpen(start, end);
+        return tsRange.isConnected(segRange) && !tsRange.intersection(segRange).isEmpty();
+    }
+}
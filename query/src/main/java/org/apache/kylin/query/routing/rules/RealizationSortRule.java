@@ -21,8 +21,10 @@ package org.apache.kylin.query.routing.rules;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.query.routing.Candidate;
 import org.apache.kylin.query.routing.RoutingRule;
+import org.apache.kylin.query.routing.ScanRowEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,9 +35,16 @@ public class RealizationSortRule extends RoutingRule {
 
     @Override
     public void apply(List<Candidate> candidates) {
+        if (candidates.size() > 1 && KylinConfig.getInstanceFromEnv().isQueryRouteByScanRowsEnabled()) {
+            ScanRowEstimator estimator = new ScanRowEstimator(KylinConfig.getInstanceFromEnv());
+            for (Candidate candidate : candidates) {
+                candidate.setScanRows(estimator.estimateScanRows(candidate.getRealization(), candidate.getSqlDigest()));
+            }
+        }
+
         StringBuilder sb = new StringBuilder();
         for (Candidate candidate : candidates) {
-            sb.append(candidate.getRealization().getCanonicalName() + " priority " + candidate.getPriority() + " cost " + candidate.getCapability().cost + ". ");
+            sb.append(candidate.getRealization().getCanonicalName() + " priority " + candidate.getPriority() + " cost " + candidate.getCapability().cost + " scan rows " + candidate.getScanRows() + ". ");
         }
         logger.info(sb.toString());
 
@@ -45,6 +45,8 @@ public class OLAPSchema extends AbstractSchema {
     private String starSchemaUrl;
     private String starSchemaUser;
     private String starSchemaPassword;
+    private boolean cacheTables;
+    private volatile Map<String, Table> tableMap;
 
     private void init() {
         this.config = KylinConfig.getInstanceFromEnv();
@@ -55,19 +57,31 @@ public class OLAPSchema extends AbstractSchema {
     }
 
     public OLAPSchema(String project, String schemaName) {
+        this(project, schemaName, false);
+    }
+
+    public OLAPSchema(String project, String schemaName, boolean cacheTables) {
         this.projectName = ProjectInstance.getNormalizedProjectName(project);
         this.schemaName = schemaName;
+        this.cacheTables = cacheTables;
         init();
     }
 
     /**
-     * It is intended to skip caching, because underlying project/tables might change.
+     * By default it is intended to skip caching, because underlying project/tables might change.
+     * A schema shared by a cached data source caches the tables, the data source is dropped on metadata change.
      *
      * @return
      */
     @Override
     protected Map<String, Table> getTableMap() {
-        return buildTableMap();
+        if (!cacheTables) {
+            return buildTableMap();
+        }
+        if (tableMap == null) {
+            tableMap = buildTableMap();
+        }
+        return tableMap;
     }
 
     private Map<String, Table> buildTableMap() {
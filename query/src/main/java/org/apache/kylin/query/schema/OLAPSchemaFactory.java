@@ -18,22 +18,20 @@
 
 package org.apache.kylin.query.schema;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
-import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.util.ConversionUtil;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.measure.MeasureTypeFactory;
 import org.apache.kylin.metadata.model.DatabaseDesc;
@@ -43,6 +41,9 @@ import org.apache.kylin.metadata.project.ProjectManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -69,15 +70,47 @@ public class OLAPSchemaFactory implements SchemaFactory {
     }
 
     private final static String SCHEMA_PROJECT = "project";
+    private final static String SCHEMA_CACHE_KEY = "cacheKey";
+
+    // schemas shared by the connections of a cached data source, see QueryDataSource
+    private static final Cache<String, Schema> sharedSchemas = CacheBuilder.newBuilder().weakValues().build();
 
     @Override
     public Schema create(SchemaPlus parentSchema, String schemaName, Map<String, Object> operand) {
-        String project = (String) operand.get(SCHEMA_PROJECT);
-        Schema newSchema = new OLAPSchema(project, schemaName);
-        return newSchema;
+        final String project = (String) operand.get(SCHEMA_PROJECT);
+        String cacheKey = (String) operand.get(SCHEMA_CACHE_KEY);
+        if (cacheKey == null) {
+            return new OLAPSchema(project, schemaName);
+        }
+
+        final String name = schemaName;
+        try {
+            return sharedSchemas.get(cacheKey + "/" + schemaName, new Callable<Schema>() {
+                @Override
+                public Schema call() throws Exception {
+                    return new OLAPSchema(project, name, true);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
     }
 
-    public static File createTempOLAPJson(String project, KylinConfig config) {
+    public static void removeSharedSchemas(String cacheKey) {
+        for (String key : Lists.newArrayList(sharedSchemas.asMap().keySet())) {
+            if (key.startsWith(cacheKey + "/")) {
+                sharedSchemas.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Generates the calcite JSON model of a project.
+     *
+     * @param cacheKey if not null, the connections created from this model share the same schema instances, which
+     *                 cache their tables and must be dropped by {@link #removeSharedSchemas(String)} on metadata change
+     */
+    public static String createOLAPModel(String project, KylinConfig config, String cacheKey) {
         project = ProjectInstance.getNormalizedProjectName(project);
 
         Set<TableDesc> tables = ProjectManager.getInstance(config).listExposedTables(project);
@@ -102,9 +135,7 @@ public class OLAPSchemaFactory implements SchemaFactory {
         }
 
         try {
-            File tmp = File.createTempFile("olap_model_", ".json");
-
-            FileWriter out = new FileWriter(tmp);
+            StringWriter out = new StringWriter();
             out.write("{\n");
             out.write("    \"version\": \"1.0\",\n");
             out.write("    \"defaultSchema\": \"" + majoritySchemaName + "\",\n");
@@ -117,6 +148,9 @@ public class OLAPSchemaFactory implements SchemaFactory {
                 out.write("            \"name\": \"" + schemaName + "\",\n");
                 out.write("            \"factory\": \"org.apache.kylin.query.schema.OLAPSchemaFactory\",\n");
                 out.write("            \"operand\": {\n");
+                if (cacheKey != null) {
+                    out.write("                \"" + SCHEMA_CACHE_KEY + "\": \"" + cacheKey + "\",\n");
+                }
                 out.write("                \"" + SCHEMA_PROJECT + "\": \"" + project + "\"\n");
                 out.write("            },\n");
                 createOLAPSchemaFunctions(out);
@@ -130,11 +164,8 @@ public class OLAPSchemaFactory implements SchemaFactory {
             out.write("    ]\n");
             out.write("}\n");
             out.close();
-            tmp.deleteOnExit();
-
-            logger.info("Schema json:" + StringUtils.join(FileUtils.readLines(tmp, Charset.defaultCharset()), "\n"));
 
-            return tmp;
+            return out.toString();
 
         } catch (IOException e) {
             throw new RuntimeException(e);
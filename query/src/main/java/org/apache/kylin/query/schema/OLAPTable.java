@@ -94,7 +94,7 @@ public class OLAPTable extends AbstractQueryableTable implements TranslatableTab
 
     private final OLAPSchema olapSchema;
     private final TableDesc sourceTable;
-    private RelDataType rowType;
+    private volatile RelDataType rowType; // published after exposedColumns, the table can be shared by connections
     private List<ColumnDesc> exposedColumns;
 
     public OLAPTable(OLAPSchema schema, TableDesc tableDesc) {
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query.util;
+
+import java.math.BigDecimal;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCharStringLiteral;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A SQL whose filter literals are replaced by dynamic parameters, e.g.
+ * "select sum(price) from fact where part_dt = ? and seller_id in (?, ?)".
+ *
+ * Queries that differ only in filter values share one template, thus one prepared plan. Only string and
+ * numeric literals compared directly with a column in WHERE are replaced, other literals (select list,
+ * group by, date literals etc.) stay as they are and become part of the template.
+ */
+public class SqlTemplate {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlTemplate.class);
+
+    // larger IN lists are expanded by calcite into a join with values, which does not take dynamic parameters
+    private static final int MAX_IN_LIST_SIZE = 20;
+
+    private static final Set<SqlKind> COMPARISONS = EnumSet.of(SqlKind.EQUALS, SqlKind.NOT_EQUALS, SqlKind.LESS_THAN, SqlKind.LESS_THAN_OR_EQUAL, SqlKind.GREATER_THAN, SqlKind.GREATER_THAN_OR_EQUAL);
+
+    /**
+     * @return the template of given SQL, or null if the SQL cannot be parsed or has dynamic parameters already
+     */
+    public static SqlTemplate parameterize(String sql) {
+        SqlNode node;
+        try {
+            node = SqlParser.create(sql).parseQuery();
+        } catch (SqlParseException e) {
+            logger.debug("Cannot parse SQL into template, " + e.getMessage());
+            return null;
+        }
+
+        LiteralCollector collector = new LiteralCollector();
+        node.accept(collector);
+        if (collector.hasDynamicParam) {
+            return null;
+        }
+
+        List<Replacement> replacements = Lists.newArrayList();
+        for (SqlLiteral literal : collector.literals) {
+            Replacement r = locate(sql, literal);
+            if (r != null) {
+                replacements.add(r);
+            }
+        }
+        Collections.sort(replacements, new Comparator<Replacement>() {
+            @Override
+            public int compare(Replacement r1, Replacement r2) {
+                return Integer.compare(r1.start, r2.start);
+            }
+        });
+
+        StringBuilder buf = new StringBuilder(sql.length());
+        List<Object> values = Lists.newArrayListWithCapacity(replacements.size());
+        int last = 0;
+        for (Replacement r : replacements) {
+            if (r.start < last) {
+                return null; // overlapping, should not happen
+            }
+            buf.append(sql, last, r.start).append('?');
+            values.add(r.value);
+            last = r.end;
+        }
+        buf.append(sql, last, sql.length());
+
+        return new SqlTemplate(buf.toString(), values);
+    }
+
+    // find the literal in SQL text and double check the text really is the literal
+    private static Replacement locate(String sql, SqlLiteral literal) {
+        SqlParserPos pos = literal.getParserPosition();
+        int start = toIndex(sql, pos.getLineNum(), pos.getColumnNum());
+        int end = toIndex(sql, pos.getEndLineNum(), pos.getEndColumnNum()) + 1;
+        if (start < 0 || end > sql.length() || start >= end) {
+            return null;
+        }
+
+        String text = sql.substring(start, end);
+        try {
+            if (literal instanceof SqlCharStringLiteral) {
+                String value = literal.toValue();
+                if (text.length() < 2 || text.charAt(0) != '\'' || text.charAt(text.length() - 1) != '\'' //
+                        || !text.substring(1, text.length() - 1).replace("''", "'").equals(value)) {
+                    return null;
+                }
+                return new Replacement(start, end, value);
+            } else {
+                BigDecimal value = literal.bigDecimalValue();
+                if (new BigDecimal(text).compareTo(value) != 0) {
+                    return null;
+                }
+                return new Replacement(start, end, value);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // line and column are 1-based as reported by the parser
+    private static int toIndex(String sql, int line, int column) {
+        int index = 0;
+        for (int i = 1; i < line; i++) {
+            index = sql.indexOf('\n', index);
+            if (index < 0) {
+                return -1;
+            }
+            index++;
+        }
+        return index + column - 1;
+    }
+
+    private static class Replacement {
+        final int start;
+        final int end;
+        final Object value;
+
+        Replacement(int start, int end, Object value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private static class LiteralCollector extends SqlBasicVisitor<Void> {
+        final List<SqlLiteral> literals = Lists.newArrayList();
+        boolean hasDynamicParam = false;
+        boolean inWhere = false;
+
+        @Override
+        public Void visit(SqlCall call) {
+            if (call instanceof SqlSelect) {
+                SqlNode where = ((SqlSelect) call).getWhere();
+                boolean outer = inWhere;
+                for (SqlNode operand : call.getOperandList()) {
+                    if (operand != null) {
+                        inWhere = (operand == where);
+                        operand.accept(this);
+                    }
+                }
+                inWhere = outer;
+                return null;
+            }
+
+            if (inWhere) {
+                collect(call);
+            }
+            return super.visit(call);
+        }
+
+        private void collect(SqlCall call) {
+            List<SqlNode> operands = call.getOperandList();
+            if (COMPARISONS.contains(call.getKind()) && operands.size() == 2) {
+                if (operands.get(0) instanceof SqlIdentifier && isParameterizable(operands.get(1))) {
+                    literals.add((SqlLiteral) operands.get(1));
+                } else if (operands.get(1) instanceof SqlIdentifier && isParameterizable(operands.get(0))) {
+                    literals.add((SqlLiteral) operands.get(0));
+                }
+            } else if (call.getKind() == SqlKind.IN && operands.size() == 2 // NOT IN is of kind IN as well
+                    && operands.get(0) instanceof SqlIdentifier && operands.get(1) instanceof SqlNodeList) {
+                SqlNodeList list = (SqlNodeList) operands.get(1);
+                if (list.size() > MAX_IN_LIST_SIZE) {
+                    return;
+                }
+                for (SqlNode item : list) {
+                    if (!isParameterizable(item)) {
+                        return;
+                    }
+                }
+                for (SqlNode item : list) {
+                    literals.add((SqlLiteral) item);
+                }
+            }
+        }
+
+        private boolean isParameterizable(SqlNode node) {
+            return node instanceof SqlCharStringLiteral || node instanceof SqlNumericLiteral;
+        }
+
+        @Override
+        public Void visit(SqlDynamicParam param) {
+            hasDynamicParam = true;
+            return null;
+        }
+    }
+
+    // ============================================================================
+
+    private final String sql;
+    private final List<Object> values;
+
+    private SqlTemplate(String sql, List<Object> values) {
+        this.sql = sql;
+        this.values = values;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Sets the literal values as parameters of a statement prepared from the template.
+     *
+     * @return false if a value does not convert to the parameter type inferred by calcite, e.g. a string compared with
+     * a date column; such template shall not be used
+     */
+    public boolean bind(PreparedStatement statement) throws SQLException {
+        ParameterMetaData meta = statement.getParameterMetaData();
+        if (meta.getParameterCount() != values.size()) {
+            return false;
+        }
+
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                int index = i + 1;
+                switch (meta.getParameterType(index)) {
+                case Types.CHAR:
+                case Types.VARCHAR:
+                    statement.setString(index, toString(value));
+                    break;
+                case Types.TINYINT:
+                    statement.setByte(index, toBigDecimal(value).byteValueExact());
+                    break;
+                case Types.SMALLINT:
+                    statement.setShort(index, toBigDecimal(value).shortValueExact());
+                    break;
+                case Types.INTEGER:
+                    statement.setInt(index, toBigDecimal(value).intValueExact());
+                    break;
+                case Types.BIGINT:
+                    statement.setLong(index, toBigDecimal(value).longValueExact());
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    statement.setBigDecimal(index, toBigDecimal(value));
+                    break;
+                case Types.DOUBLE:
+                    statement.setDouble(index, toBigDecimal(value).doubleValue());
+                    break;
+                default:
+                    return false;
+                }
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static String toString(Object value) {
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString().trim());
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + values;
+    }
+}
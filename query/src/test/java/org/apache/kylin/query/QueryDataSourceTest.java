@@ -24,11 +24,13 @@ import java.util.Properties;
 
 import javax.sql.DataSource;
 
+import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.Driver;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.DBUtils;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.query.schema.OLAPSchema;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -87,6 +89,40 @@ public class QueryDataSourceTest extends LocalFileMetadataTestCase {
         dsCache.clearCache();
     }
 
+    @Test
+    public void testSharedSchema() throws SQLException {
+        QueryDataSource dsCache = new QueryDataSource();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        DataSource ds = dsCache.get("default", config);
+        Connection conn1 = ds.getConnection();
+        Connection conn2 = ds.getConnection();
+        try {
+            OLAPSchema schema1 = getSchema(conn1, "DEFAULT");
+            Assert.assertSame(schema1, getSchema(conn2, "DEFAULT"));
+            Assert.assertNotNull(schema1.getTable("STREAMING_TABLE"));
+            Assert.assertSame(schema1.getTable("STREAMING_TABLE"), schema1.getTable("STREAMING_TABLE"));
+        } finally {
+            DBUtils.closeQuietly(conn1);
+            DBUtils.closeQuietly(conn2);
+        }
+
+        dsCache.removeCache("default");
+        Connection conn3 = dsCache.get("default", config).getConnection();
+        Connection conn4 = QueryDataSource.create("default", config).getConnection();
+        try {
+            Assert.assertNotSame(getSchema(conn3, "DEFAULT"), getSchema(conn4, "DEFAULT"));
+        } finally {
+            DBUtils.closeQuietly(conn3);
+            DBUtils.closeQuietly(conn4);
+        }
+
+        dsCache.clearCache();
+    }
+
+    private OLAPSchema getSchema(Connection conn, String name) throws SQLException {
+        return conn.unwrap(CalciteConnection.class).getRootSchema().getSubSchema(name).unwrap(OLAPSchema.class);
+    }
+
     @Test(timeout=10000)
     public void testMaxConnLimit() throws SQLException {
         KylinConfig config = KylinConfig.getInstanceFromEnv();
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.query.QueryPlanCache.CachedPlan;
+import org.apache.kylin.query.QueryPlanCache.PlanKey;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryPlanCacheTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        QueryPlanCache.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMaxIdle() {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.query.plan-cache-max-idle", "2");
+        QueryPlanCache cache = QueryPlanCache.getInstance(config);
+
+        for (int i = 0; i < 3; i++) {
+            PlanKey key = cache.newKey("default", "select " + i);
+            cache.giveBack(cache.capture(key, null, null));
+        }
+        Assert.assertEquals(2, cache.getIdleCount());
+
+        CachedPlan plan = cache.borrow(cache.newKey("default", "select 0"));
+        Assert.assertNotNull(plan);
+        Assert.assertEquals(1, cache.getIdleCount());
+        cache.giveBack(plan);
+        Assert.assertEquals(2, cache.getIdleCount());
+
+        cache.invalidate("default");
+        Assert.assertEquals(0, cache.getIdleCount());
+    }
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.query.plan-cache-expire-seconds", "1");
+        QueryPlanCache cache = QueryPlanCache.getInstance(config);
+
+        PlanKey key = cache.newKey("default", "select 1");
+        cache.giveBack(cache.capture(key, null, null));
+        Assert.assertEquals(1, cache.getIdleCount());
+
+        Thread.sleep(1500);
+        Assert.assertEquals(0, cache.getIdleCount());
+        Assert.assertNull(cache.borrow(key));
+    }
+}
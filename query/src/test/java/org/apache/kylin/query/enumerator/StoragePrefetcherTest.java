@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query.enumerator;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.query.relnode.OLAPContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class StoragePrefetcherTest {
+
+    @Test
+    public void testPrefetchedTupleIterator() {
+        List<ITuple> buffer = Lists.newArrayList(newTuple(), newTuple());
+        ListTupleIterator rest = new ListTupleIterator(Lists.newArrayList(newTuple()));
+
+        StoragePrefetcher.PrefetchedTupleIterator iterator = new StoragePrefetcher.PrefetchedTupleIterator(buffer, rest);
+        int count = 0;
+        while (iterator.hasNext()) {
+            Assert.assertNotNull(iterator.next());
+            count++;
+        }
+        Assert.assertEquals(3, count);
+        iterator.close();
+        Assert.assertTrue(rest.closed);
+
+        // storage drained when prefetched
+        iterator = new StoragePrefetcher.PrefetchedTupleIterator(Lists.newArrayList(newTuple()), null);
+        Assert.assertTrue(iterator.hasNext());
+        iterator.next();
+        Assert.assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    @Test
+    public void testNotPrefetchable() {
+        // no realization, like a context of values
+        Assert.assertFalse(StoragePrefetcher.isPrefetchable(new OLAPContext(0)));
+    }
+
+    private static ITuple newTuple() {
+        return new Tuple(new TupleInfo());
+    }
+
+    private static class ListTupleIterator implements ITupleIterator {
+        private final Iterator<ITuple> iterator;
+        private boolean closed = false;
+
+        ListTupleIterator(List<ITuple> tuples) {
+            this.iterator = tuples.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public ITuple next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
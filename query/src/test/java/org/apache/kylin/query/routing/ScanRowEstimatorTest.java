@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.query.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.ICuboidStatisticsProvider;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.realization.CapabilityResult;
+import org.apache.kylin.metadata.realization.SQLDigest;
+import org.apache.kylin.metadata.realization.SQLDigest.SQLCall;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class ScanRowEstimatorTest extends LocalFileMetadataTestCase {
+
+    private CubeInstance cube;
+    private TblColRef calDt;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("test_kylin_cube_with_slr_ready_2_segments");
+        calDt = cube.getModel().findColumn("TEST_KYLIN_FACT.CAL_DT");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testEstimateScanRows() {
+        ScanRowEstimator estimator = new ScanRowEstimator(new FakeStatisticsProvider());
+
+        // both segments
+        Assert.assertEquals(1100, estimator.estimateScanRows(cube, newDigest(null)));
+        // the second segment starts 2013-11-12
+        Assert.assertEquals(1000, estimator.estimateScanRows(cube, newDigest(compare(FilterOperatorEnum.GTE, "2013-12-01"))));
+        // before the first segment
+        Assert.assertEquals(0, estimator.estimateScanRows(cube, newDigest(compare(FilterOperatorEnum.LT, "2013-11-01"))));
+
+        // no statistics, counts the input records
+        ScanRowEstimator noStats = new ScanRowEstimator((ICuboidStatisticsProvider) null);
+        long inputRecords = 0;
+        for (CubeSegment seg : cube.getSegments()) {
+            inputRecords += seg.getInputRecords();
+        }
+        Assert.assertEquals(inputRecords, noStats.estimateScanRows(cube, newDigest(null)));
+    }
+
+    @Test
+    public void testCandidateOrder() {
+        Candidate c1 = new Candidate(cube, newDigest(null));
+        Candidate c2 = new Candidate(cube, newDigest(null));
+        c1.setCapability(newCapability(10));
+        c2.setCapability(newCapability(20));
+        Assert.assertTrue(c1.compareTo(c2) < 0);
+
+        // rows to scan go before the static cost
+        c1.setScanRows(2000);
+        c2.setScanRows(1000);
+        Assert.assertTrue(c1.compareTo(c2) > 0);
+
+        // not estimated goes after estimated, then by the static cost
+        c2.setScanRows(-1);
+        Assert.assertTrue(c1.compareTo(c2) < 0);
+        Candidate c3 = new Candidate(cube, newDigest(null));
+        c3.setCapability(newCapability(5));
+        Assert.assertTrue(c1.compareTo(c3) < 0);
+        Assert.assertTrue(c3.compareTo(c2) < 0);
+
+        List<Candidate> candidates = Lists.newArrayList(c2, c3, c1);
+        Collections.sort(candidates);
+        Assert.assertEquals(Lists.newArrayList(c1, c3, c2), candidates);
+    }
+
+    private SQLDigest newDigest(TupleFilter filter) {
+        List<TblColRef> groups = Lists.newArrayList(calDt);
+        return new SQLDigest("DEFAULT.TEST_KYLIN_FACT", Sets.newHashSet(calDt), null, //
+                groups, Sets.<TblColRef> newHashSet(), //
+                Collections.<TblColRef> emptySet(), new ArrayList<FunctionDesc>(), Collections.<SQLCall> emptyList(), //
+                filter == null ? Collections.<TblColRef> emptySet() : Sets.newHashSet(calDt), filter, null, //
+                new ArrayList<TblColRef>(), new ArrayList<SQLDigest.OrderEnum>(), false);
+    }
+
+    private TupleFilter compare(FilterOperatorEnum op, String value) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(calDt));
+        filter.addChild(new ConstantTupleFilter(value));
+        return filter;
+    }
+
+    private static CapabilityResult newCapability(int cost) {
+        CapabilityResult result = new CapabilityResult();
+        result.capable = true;
+        result.cost = cost;
+        return result;
+    }
+
+    // 100 rows of any cuboid in the first segment, and 1000 in the second
+    private static class FakeStatisticsProvider implements ICuboidStatisticsProvider {
+        @Override
+        public Map<Long, Long> getCuboidRowEstimates(CubeSegment segment) {
+            final long rows = segment.getUuid().startsWith("1") ? 100 : 1000;
+            return new HashMap<Long, Long>() {
+                @Override
+                public Long get(Object key) {
+                    return rows;
+                }
+            };
+        }
+    }
+}
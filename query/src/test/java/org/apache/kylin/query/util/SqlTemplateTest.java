@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.query.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlTemplateTest {
+
+    @Test
+    public void testParameterizeWhere() {
+        String sql = "select lstg_format_name, sum(price) from test_kylin_fact\nwhere cal_dt = '2012-01-01' and seller_id > 10 group by lstg_format_name";
+        SqlTemplate template = SqlTemplate.parameterize(sql);
+        Assert.assertEquals("select lstg_format_name, sum(price) from test_kylin_fact\nwhere cal_dt = ? and seller_id > ? group by lstg_format_name", template.getSql());
+        Assert.assertEquals(Arrays.<Object> asList("2012-01-01", new BigDecimal("10")), template.getValues());
+    }
+
+    @Test
+    public void testSameTemplate() {
+        SqlTemplate t1 = SqlTemplate.parameterize("select count(*) from test_kylin_fact where lstg_format_name in ('ABIN', 'Auction') and 'O''Neil' = seller_name");
+        SqlTemplate t2 = SqlTemplate.parameterize("select count(*) from test_kylin_fact where lstg_format_name in ('FP-GTC', 'Others') and 'Smith' = seller_name");
+        Assert.assertEquals("select count(*) from test_kylin_fact where lstg_format_name in (?, ?) and ? = seller_name", t1.getSql());
+        Assert.assertEquals(t1.getSql(), t2.getSql());
+        Assert.assertEquals(Arrays.<Object> asList("ABIN", "Auction", "O'Neil"), t1.getValues());
+    }
+
+    @Test
+    public void testKeepOtherLiterals() {
+        String sql = "select 1, sum(price) from test_kylin_fact where cal_dt > date '2012-01-01' and price * 2 > 100 group by 1";
+        SqlTemplate template = SqlTemplate.parameterize(sql);
+        Assert.assertEquals(sql, template.getSql());
+        Assert.assertTrue(template.getValues().isEmpty());
+    }
+
+    @Test
+    public void testSubQuery() {
+        String sql = "select * from (select seller_id from test_kylin_fact where seller_id = 3) t where t.seller_id <> 4";
+        SqlTemplate template = SqlTemplate.parameterize(sql);
+        Assert.assertEquals("select * from (select seller_id from test_kylin_fact where seller_id = ?) t where t.seller_id <> ?", template.getSql());
+    }
+
+    @Test
+    public void testNotApplicable() {
+        Assert.assertNull(SqlTemplate.parameterize("select count(*) from test_kylin_fact where seller_id = ?"));
+        Assert.assertNull(SqlTemplate.parameterize("select from where"));
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.kylin.rest.controller;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,7 +27,9 @@ import java.util.List;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.kylin.rest.exception.BadRequestException;
 import org.apache.kylin.rest.exception.InternalErrorException;
+import org.apache.kylin.rest.exception.NotFoundException;
 import org.apache.kylin.rest.model.Query;
 import org.apache.kylin.rest.model.SelectedColumnMeta;
 import org.apache.kylin.rest.model.TableMeta;
@@ -34,8 +37,10 @@ import org.apache.kylin.rest.request.MetaRequest;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.request.SaveSqlRequest;
+import org.apache.kylin.rest.response.RunningQueryResponse;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.service.QueryService;
+import org.apache.kylin.rest.util.ResultRowWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,6 +56,8 @@ import org.supercsv.io.CsvListWriter;
 import org.supercsv.io.ICsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
+import com.google.common.base.Charsets;
+
 /**
  * Handle query requests.
  * 
@@ -78,6 +85,20 @@ public class QueryController extends BasicController {
         return queryService.doQueryWithCache(sqlRequest);
     }
 
+    @RequestMapping(value = "/query/running", method = RequestMethod.GET, produces = { "application/json" })
+    @ResponseBody
+    public List<RunningQueryResponse> getRunningQueries() {
+        return queryService.getRunningQueries();
+    }
+
+    @RequestMapping(value = "/query/{queryId}/stop", method = RequestMethod.PUT, produces = { "application/json" })
+    @ResponseBody
+    public void stopQuery(@PathVariable String queryId) {
+        if (!queryService.stopQuery(queryId)) {
+            throw new NotFoundException("Query " + queryId + " is not running");
+        }
+    }
+
     @RequestMapping(value = "/saved_queries", method = RequestMethod.POST, produces = { "application/json" })
     @ResponseBody
     public void saveQuery(@RequestBody SaveSqlRequest sqlRequest) throws IOException {
@@ -131,6 +152,31 @@ public class QueryController extends BasicController {
         }
     }
 
+    /**
+     * Streams query result as "csv" or "jsonl" (one JSON array per line) while the rows are fetched, for results too
+     * large to be returned by "/query" in one response. A failure after output started ends the stream with an
+     * error line, see {@link ResultRowWriter}.
+     */
+    @RequestMapping(value = "/query/stream/{format}", method = RequestMethod.POST)
+    @ResponseBody
+    public void streamQuery(@PathVariable String format, @RequestBody SQLRequest sqlRequest, HttpServletResponse response) {
+        if (!ResultRowWriter.isSupported(format)) {
+            throw new BadRequestException("Unsupported result format " + format);
+        }
+
+        response.setContentType(ResultRowWriter.getContentType(format) + ";charset=utf-8");
+        ResultRowWriter rowWriter = null;
+        try {
+            // not response.getWriter(), which is a PrintWriter that swallows the IOException of client disconnect
+            rowWriter = ResultRowWriter.newWriter(format, new OutputStreamWriter(response.getOutputStream(), Charsets.UTF_8));
+            queryService.doStreamQuery(sqlRequest, rowWriter);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        } finally {
+            IOUtils.closeQuietly(rowWriter);
+        }
+    }
+
     @RequestMapping(value = "/tables_and_columns", method = RequestMethod.GET, produces = { "application/json" })
     @ResponseBody
     public List<TableMeta> getMetadata(MetaRequest metaRequest) {
@@ -47,6 +47,14 @@ public class QueryMetrics {
     @Metric
     MutableCounterLong cacheHitCount;
     MutableQuantiles[] cacheHitCountQuantiles;
+    @Metric
+    MutableCounterLong planCacheHitCount;
+    @Metric
+    MutableCounterLong planCacheMissCount;
+    @Metric
+    MutableCounterLong admissionRejectCount;
+    @Metric
+    MutableCounterLong coalescedQueryCount;
 
     @Metric
     MutableRate queryLatency;
@@ -60,11 +68,16 @@ public class QueryMetrics {
     MutableRate resultRowCount;
     MutableQuantiles[] resultRowCountQuantiles;
 
+    @Metric
+    MutableRate admissionWaitTime;
+    MutableQuantiles[] admissionWaitTimeQuantiles;
+
     public QueryMetrics(int[] intervals) {
         queryLatencyTimeMillisQuantiles = new MutableQuantiles[intervals.length];
         scanRowCountQuantiles = new MutableQuantiles[intervals.length];
         resultRowCountQuantiles = new MutableQuantiles[intervals.length];
         cacheHitCountQuantiles = new MutableQuantiles[intervals.length];
+        admissionWaitTimeQuantiles = new MutableQuantiles[intervals.length];
 
         for (int i = 0; i < intervals.length; i++) {
             int interval = intervals[i];
@@ -73,11 +86,13 @@ public class QueryMetrics {
             scanRowCountQuantiles[i] = registry.newQuantiles("ScanRowCount" + interval + "s", "Scan row count in milli second", "ops", "", interval);
             resultRowCountQuantiles[i] = registry.newQuantiles("ResultRowCount" + interval + "s", "Result row count in milli second", "ops", "", interval);
             cacheHitCountQuantiles[i] = registry.newQuantiles("CacheHitCount" + interval + "s", "Cache Hit Count in milli second", "ops", "", interval);
+            admissionWaitTimeQuantiles[i] = registry.newQuantiles("AdmissionWaitTime" + interval + "s", "Admission wait time in milli second", "ops", "", interval);
         }
 
         queryLatency = registry.newRate("QueryLatency", "", true);
         scanRowCount = registry.newRate("ScanRowCount", "", true);
         resultRowCount = registry.newRate("ResultRowCount", "", true);
+        admissionWaitTime = registry.newRate("AdmissionWaitTime", "", true);
     }
 
     public void shutdown() {
@@ -124,6 +139,29 @@ public class QueryMetrics {
         }
     }
 
+    public void incrPlanCacheHitCount() {
+        planCacheHitCount.incr();
+    }
+
+    public void incrPlanCacheMissCount() {
+        planCacheMissCount.incr();
+    }
+
+    public void addAdmissionWaitTime(long waitTime) {
+        admissionWaitTime.add(waitTime);
+        for (MutableQuantiles m : admissionWaitTimeQuantiles) {
+            m.add(waitTime);
+        }
+    }
+
+    public void incrAdmissionRejectCount() {
+        admissionRejectCount.incr();
+    }
+
+    public void incrCoalescedQueryCount() {
+        coalescedQueryCount.incr();
+    }
+
     public QueryMetrics registerWith(String name) {
         return DefaultMetricsSystem.instance().register(name, "Query", this);
     }
@@ -67,11 +67,18 @@ public class QueryMetricsFacade {
         try {
             incrQueryCount(queryMetrics, sqlResponse);
             incrCacheHitCount(queryMetrics, sqlResponse);
+            incrPlanCacheCount(queryMetrics, sqlResponse);
+            if (sqlResponse.isCoalesced()) {
+                queryMetrics.incrCoalescedQueryCount();
+            }
 
             if (!sqlResponse.getIsException()) {
                 queryMetrics.addQueryLatency(sqlResponse.getDuration());
                 queryMetrics.addScanRowCount(sqlResponse.getTotalScanCount());
                 queryMetrics.addResultRowCount(sqlResponse.getResults().size());
+                queryMetrics.addAdmissionWaitTime(sqlResponse.getAdmissionWaitTime());
+            } else if (sqlResponse.isAdmissionRejected()) {
+                queryMetrics.incrAdmissionRejectCount();
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
@@ -94,6 +101,17 @@ public class QueryMetricsFacade {
         }
     }
 
+    private static void incrPlanCacheCount(QueryMetrics queryMetrics, SQLResponse sqlResponse) {
+        if (sqlResponse.getPlanCacheHit() == null) {
+            return;
+        }
+        if (sqlResponse.getPlanCacheHit()) {
+            queryMetrics.incrPlanCacheHitCount();
+        } else {
+            queryMetrics.incrPlanCacheMissCount();
+        }
+    }
+
     private static QueryMetrics getQueryMetrics(String name) {
         KylinConfig config = KylinConfig.getInstanceFromEnv();
         int[] intervals = config.getQueryMetricsPercentilesIntervals();
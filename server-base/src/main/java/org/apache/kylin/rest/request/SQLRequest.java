@@ -31,8 +31,17 @@ public class SQLRequest implements Serializable {
     private Integer limit = 0;
     private boolean acceptPartial = false;
 
+    // approximate mode, scans a sample of storage and scales up the additive measures
+    private boolean approximate = false;
+
+    // priority class in query admission, "interactive" (default) or "batch"; not part of equals() as results are the same
+    private String priority;
+
     private Map<String, String> backdoorToggles;
 
+    // id of the query given by client to stop it, e.g. by the JDBC driver; not part of equals()
+    private String queryId;
+
     public SQLRequest() {
     }
 
@@ -84,6 +93,30 @@ public class SQLRequest implements Serializable {
         this.acceptPartial = acceptPartial;
     }
 
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -95,6 +128,8 @@ public class SQLRequest implements Serializable {
 
         if (acceptPartial != that.acceptPartial)
             return false;
+        if (approximate != that.approximate)
+            return false;
         if (sql != null ? !sql.equals(that.sql) : that.sql != null)
             return false;
         if (project != null ? !project.equals(that.project) : that.project != null)
@@ -114,6 +149,7 @@ public class SQLRequest implements Serializable {
         result = 31 * result + (offset != null ? offset.hashCode() : 0);
         result = 31 * result + (limit != null ? limit.hashCode() : 0);
         result = 31 * result + (acceptPartial ? 1 : 0);
+        result = 31 * result + (approximate ? 1 : 0);
         result = 31 * result + (backdoorToggles != null ? backdoorToggles.hashCode() : 0);
         return result;
     }
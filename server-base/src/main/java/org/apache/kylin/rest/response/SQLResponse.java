@@ -20,6 +20,7 @@ package org.apache.kylin.rest.response;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.kylin.rest.model.SelectedColumnMeta;
 
@@ -61,6 +62,33 @@ public class SQLResponse implements Serializable {
 
     protected boolean storageCacheUsed = false;
 
+    // whether the query plan is reused from plan cache, null if plan cache is not involved
+    protected Boolean planCacheHit;
+
+    // time in milliseconds the query waited for admission
+    protected long admissionWaitTime;
+
+    protected boolean admissionRejected = false;
+
+    // whether the response is shared from an identical query in flight
+    protected boolean coalesced = false;
+
+    // whether the result is estimated from a sample of storage
+    protected boolean approximate = false;
+
+    // fraction of the storage records read, if approximate
+    protected double sampleRatio = 1;
+
+    // half width of the 95% confidence interval of the scaled record count, relative to the estimate, if approximate;
+    // -1 if unknown. The error of the scaled SUM and COUNT measures is not bounded
+    protected double rowCountErrorBound = 0;
+
+    // segments scanned fully though the query asks for a sample, as they have too few shards to sample
+    protected int unsampledSegments = 0;
+
+    // milliseconds to scan each member of the hybrid realizations queried
+    protected Map<String, Long> realizationScanTimes;
+
     public SQLResponse() {
     }
 
@@ -175,4 +203,76 @@ public class SQLResponse implements Serializable {
     public void setStorageCacheUsed(boolean storageCacheUsed) {
         this.storageCacheUsed = storageCacheUsed;
     }
+
+    public Boolean getPlanCacheHit() {
+        return planCacheHit;
+    }
+
+    public void setPlanCacheHit(Boolean planCacheHit) {
+        this.planCacheHit = planCacheHit;
+    }
+
+    public long getAdmissionWaitTime() {
+        return admissionWaitTime;
+    }
+
+    public void setAdmissionWaitTime(long admissionWaitTime) {
+        this.admissionWaitTime = admissionWaitTime;
+    }
+
+    public boolean isAdmissionRejected() {
+        return admissionRejected;
+    }
+
+    public void setAdmissionRejected(boolean admissionRejected) {
+        this.admissionRejected = admissionRejected;
+    }
+
+    public boolean isCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(boolean coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    public void setSampleRatio(double sampleRatio) {
+        this.sampleRatio = sampleRatio;
+    }
+
+    public double getRowCountErrorBound() {
+        return rowCountErrorBound;
+    }
+
+    public void setRowCountErrorBound(double rowCountErrorBound) {
+        this.rowCountErrorBound = rowCountErrorBound;
+    }
+
+    public int getUnsampledSegments() {
+        return unsampledSegments;
+    }
+
+    public void setUnsampledSegments(int unsampledSegments) {
+        this.unsampledSegments = unsampledSegments;
+    }
+
+    public Map<String, Long> getRealizationScanTimes() {
+        return realizationScanTimes;
+    }
+
+    public void setRealizationScanTimes(Map<String, Long> realizationScanTimes) {
+        this.realizationScanTimes = realizationScanTimes;
+    }
 }
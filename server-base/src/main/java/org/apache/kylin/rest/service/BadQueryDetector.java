@@ -24,17 +24,21 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.metadata.badquery.BadQueryHistoryManager;
 import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.RunningQueryResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class BadQueryDetector extends Thread {
@@ -113,6 +117,39 @@ public class BadQueryDetector extends Thread {
         runningQueries.remove(thread);
     }
 
+    public List<RunningQueryResponse> getRunningQueries() {
+        ArrayList<Entry> entries = new ArrayList<Entry>(runningQueries.values());
+        Collections.sort(entries);
+
+        List<RunningQueryResponse> result = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry e : entries) {
+            result.add(new RunningQueryResponse(e.queryContext.getQueryId(), e.sqlRequest.getProject(), e.sqlRequest.getSql(), //
+                    e.user, e.thread.getName(), e.startTime, e.queryContext.isStopped()));
+        }
+        return result;
+    }
+
+    /**
+     * @return false if no such query is running
+     */
+    public boolean stopQuery(String queryId, String reason) {
+        return stopQuery(queryId, null, reason);
+    }
+
+    /**
+     * @param user the user running the query, or null for any user
+     * @return false if no such query is running
+     */
+    public boolean stopQuery(String queryId, String user, String reason) {
+        for (Entry e : runningQueries.values()) {
+            if (e.queryContext.getQueryId().equals(queryId) && (user == null || user.equals(e.user))) {
+                e.queryContext.stopQuery(reason);
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void run() {
         while (true) {
             try {
@@ -231,9 +268,11 @@ public class BadQueryDetector extends Thread {
         final long startTime;
         final Thread thread;
         final String user;
+        final QueryContext queryContext;
 
         Entry(SQLRequest sqlRequest, String user, Thread thread) {
             this.sqlRequest = sqlRequest;
+            this.queryContext = QueryContext.current();
             this.startTime = System.currentTimeMillis();
             this.thread = thread;
             this.user = user;
@@ -27,6 +27,7 @@ import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.query.QueryDataSource;
+import org.apache.kylin.storage.gtrecord.SegmentResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -127,6 +128,7 @@ public class CacheService extends BasicService {
         } else {
             logger.warn("skip cleaning all storage cache");
         }
+        SegmentResultCache.clearCache();
     }
 
     private void removeOLAPDataSource(String project) {
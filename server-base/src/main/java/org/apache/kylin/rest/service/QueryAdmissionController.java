@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Limits the concurrent queries by weighted slots, globally and per project.
+ *
+ * A query that does not get its slots waits in a bounded queue, ordered by priority class and then arrival.
+ * Queries blocked only by the limit of their own project do not hold back the others. A query is rejected
+ * immediately when the queue is full, or when it has waited longer than the max wait time. A waiting query
+ * that is stopped leaves the queue at once.
+ */
+public class QueryAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryAdmissionController.class);
+
+    public enum Priority {
+        INTERACTIVE, BATCH;
+
+        public static Priority of(String name) {
+            return name == null || name.isEmpty() ? INTERACTIVE : valueOf(name.toUpperCase());
+        }
+    }
+
+    public static class RejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final int globalSlots;
+    private final int projectSlots;
+    private final int queueSize;
+    private final long maxWaitMillis;
+    private final int maxWeight;
+
+    private int usedGlobalSlots = 0;
+    private final Map<String, Integer> usedProjectSlots = Maps.newHashMap();
+    private final TreeSet<Ticket> waiting = new TreeSet<Ticket>(new Comparator<Ticket>() {
+        @Override
+        public int compare(Ticket t1, Ticket t2) {
+            int c = t1.priority.compareTo(t2.priority);
+            return c != 0 ? c : Long.compare(t1.seq, t2.seq);
+        }
+    });
+    private long seq = 0;
+
+    // wakes up the waiting queries to check whether they are stopped
+    private final QueryContext.QueryStopListener wakeUpOnStop = new QueryContext.QueryStopListener() {
+        @Override
+        public void stop(QueryContext query) {
+            synchronized (QueryAdmissionController.this) {
+                QueryAdmissionController.this.notifyAll();
+            }
+        }
+    };
+
+    public QueryAdmissionController(KylinConfig config) {
+        this(config.getQueryAdmissionGlobalSlots(), config.getQueryAdmissionProjectSlots(), config.getQueryAdmissionQueueSize(), config.getQueryAdmissionMaxWaitMillis(), config.getQueryAdmissionMaxWeight());
+    }
+
+    public QueryAdmissionController(int globalSlots, int projectSlots, int queueSize, long maxWaitMillis, int maxWeight) {
+        this.globalSlots = globalSlots;
+        this.projectSlots = Math.min(projectSlots, globalSlots);
+        this.queueSize = queueSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxWeight = Math.max(1, Math.min(maxWeight, this.projectSlots));
+    }
+
+    public Permit admit(String project, Priority priority, int weight) throws InterruptedException {
+        return admit(QueryContext.current(), project, priority, weight);
+    }
+
+    /**
+     * Blocks until the query gets its slots, which are given back by closing the returned permit.
+     *
+     * @throws RejectedException if the wait queue is full or the query waits too long
+     * @throws org.apache.kylin.common.exceptions.QueryStoppedException if the query is stopped while waiting
+     */
+    public Permit admit(QueryContext query, String project, Priority priority, int weight) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Ticket ticket;
+        synchronized (this) {
+            ticket = new Ticket(project, priority, Math.max(1, Math.min(weight, maxWeight)), seq++);
+            waiting.add(ticket);
+            dispatch();
+            if (!ticket.granted && waiting.size() > queueSize) {
+                waiting.remove(ticket);
+                dispatch();
+                throw new RejectedException("Query rejected as " + queueSize + " queries are waiting already");
+            }
+
+            try {
+                if (!ticket.granted) {
+                    query.addQueryStopListener(wakeUpOnStop);
+                }
+                long deadline = startTime + maxWaitMillis;
+                while (!ticket.granted) {
+                    query.checkStopped();
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new RejectedException("Query rejected after waiting " + maxWaitMillis + " ms for a slot");
+                    }
+                    wait(remaining);
+                }
+            } finally {
+                if (!ticket.granted) {
+                    waiting.remove(ticket);
+                    // the ticket may have blocked the lighter ones behind it
+                    dispatch();
+                }
+            }
+        }
+
+        long waitTime = System.currentTimeMillis() - startTime;
+        if (waitTime > 0) {
+            logger.info("Query of project {} admitted with weight {} after waiting {} ms", project, ticket.weight, waitTime);
+        }
+        return new Permit(ticket, waitTime);
+    }
+
+    // grant slots to waiting queries by priority; stops at the first one that exceeds the global limit so that
+    // heavy queries are not starved by light ones, but skips the ones limited by their project only
+    private void dispatch() {
+        boolean granted = false;
+        for (Iterator<Ticket> iter = waiting.iterator(); iter.hasNext();) {
+            Ticket t = iter.next();
+            if (usedGlobalSlots + t.weight > globalSlots) {
+                break;
+            }
+            if (getUsedProjectSlots(t.project) + t.weight > projectSlots) {
+                continue;
+            }
+            usedGlobalSlots += t.weight;
+            usedProjectSlots.put(t.project, getUsedProjectSlots(t.project) + t.weight);
+            t.granted = true;
+            iter.remove();
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    private synchronized void release(Ticket ticket) {
+        usedGlobalSlots -= ticket.weight;
+        int used = getUsedProjectSlots(ticket.project) - ticket.weight;
+        if (used > 0) {
+            usedProjectSlots.put(ticket.project, used);
+        } else {
+            usedProjectSlots.remove(ticket.project);
+        }
+        dispatch();
+    }
+
+    private int getUsedProjectSlots(String project) {
+        Integer used = usedProjectSlots.get(project);
+        return used == null ? 0 : used;
+    }
+
+    public synchronized int getUsedGlobalSlots() {
+        return usedGlobalSlots;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    private static class Ticket {
+        final String project;
+        final Priority priority;
+        final int weight;
+        final long seq;
+        boolean granted = false;
+
+        Ticket(String project, Priority priority, int weight, long seq) {
+            this.project = project;
+            this.priority = priority;
+            this.weight = weight;
+            this.seq = seq;
+        }
+    }
+
+    public class Permit implements Closeable {
+        private final Ticket ticket;
+        private final long waitTime;
+        private boolean released = false;
+
+        private Permit(Ticket ticket, long waitTime) {
+            this.ticket = ticket;
+            this.waitTime = waitTime;
+        }
+
+        public int getWeight() {
+            return ticket.weight;
+        }
+
+        public long getWaitTime() {
+            return waitTime;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(ticket);
+            }
+        }
+    }
+}
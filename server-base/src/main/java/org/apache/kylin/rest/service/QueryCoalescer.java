@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Runs identical queries in flight at the same time only once, a.k.a. single flight.
+ *
+ * The first request of a query key executes it, and the requests of the same key arriving before it finishes wait
+ * for it and share its response, or its exception. Requests are identical when they are equal as query cache keys.
+ */
+public class QueryCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCoalescer.class);
+
+    private final ConcurrentMap<SQLRequest, SettableFuture<SQLResponse>> inFlights = Maps.newConcurrentMap();
+
+    /**
+     * @return the response of the query, which is a copy marked as coalesced if the query is executed by another request
+     */
+    public SQLResponse execute(SQLRequest sqlRequest, Callable<SQLResponse> query) throws Exception {
+        SettableFuture<SQLResponse> future = SettableFuture.create();
+        SettableFuture<SQLResponse> inFlight = inFlights.putIfAbsent(sqlRequest, future);
+        if (inFlight != null) {
+            logger.info("Identical query is in flight, waiting for its response");
+            return coalescedCopy(await(inFlight));
+        }
+
+        try {
+            SQLResponse response = query.call();
+            future.set(response);
+            return response;
+        } catch (Throwable e) {
+            future.setException(e);
+            throw e;
+        } finally {
+            inFlights.remove(sqlRequest, future);
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlights.size();
+    }
+
+    private SQLResponse await(SettableFuture<SQLResponse> inFlight) throws Exception {
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    // the executing request goes on updating its response, so the waiting ones get their own
+    private static SQLResponse coalescedCopy(SQLResponse response) {
+        SQLResponse copy = new SQLResponse(response.getColumnMetas(), response.getResults(), response.getCube(), response.getAffectedRowCount(), response.getIsException(), response.getExceptionMessage(), response.isPartial());
+        copy.setTotalScanCount(response.getTotalScanCount());
+        copy.setTotalScanBytes(response.getTotalScanBytes());
+        copy.setApproximate(response.isApproximate());
+        copy.setSampleRatio(response.getSampleRatio());
+        copy.setRowCountErrorBound(response.getRowCountErrorBound());
+        copy.setUnsampledSegments(response.getUnsampledSegments());
+        copy.setRealizationScanTimes(response.getRealizationScanTimes());
+        copy.setCoalesced(true);
+        return copy;
+    }
+}
@@ -41,6 +41,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
@@ -64,10 +67,14 @@ import org.apache.kylin.common.util.SetThreadName;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.metadata.project.RealizationEntry;
 import org.apache.kylin.metadata.realization.RealizationType;
+import org.apache.kylin.query.QueryPlanCache;
+import org.apache.kylin.query.enumerator.StoragePrefetcher;
 import org.apache.kylin.query.relnode.OLAPContext;
 import org.apache.kylin.query.util.QueryUtil;
+import org.apache.kylin.query.util.SqlTemplate;
 import org.apache.kylin.rest.constant.Constant;
 import org.apache.kylin.rest.exception.InternalErrorException;
 import org.apache.kylin.rest.metrics.QueryMetricsFacade;
@@ -77,9 +84,11 @@ import org.apache.kylin.rest.model.SelectedColumnMeta;
 import org.apache.kylin.rest.model.TableMeta;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.RunningQueryResponse;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.util.AclUtil;
 import org.apache.kylin.rest.util.Serializer;
+import org.apache.kylin.rest.util.ResultRowWriter;
 import org.apache.kylin.rest.util.TableauInterceptor;
 import org.apache.kylin.storage.hbase.HBaseConnection;
 import org.apache.kylin.storage.hybrid.HybridInstance;
@@ -88,12 +97,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -114,8 +126,17 @@ public class QueryService extends BasicService {
     public static final String SUCCESS_QUERY_CACHE = "StorageCache";
     public static final String EXCEPTION_QUERY_CACHE = "ExceptionQueryCache";
 
+    // hint of approximate query, like "/*+ APPROXIMATE */" or "/*+ APPROXIMATE(0.05) */"
+    private static final Pattern APPROXIMATE_HINT = Pattern.compile("/\\*\\+\\s*APPROXIMATE\\s*(\\(\\s*([0-9.]+)\\s*\\))?\\s*\\*/", Pattern.CASE_INSENSITIVE);
+
+    // the cached plan in use by the query of current thread
+    private static final ThreadLocal<QueryPlanCache.CachedPlan> borrowedPlans = new ThreadLocal<QueryPlanCache.CachedPlan>();
+
     private final Serializer<Query[]> querySerializer = new Serializer<Query[]>(Query[].class);
     protected final BadQueryDetector badQueryDetector = new BadQueryDetector();
+    private final QueryAdmissionController admissionController;
+    private final QueryWeightEstimator queryWeightEstimator;
+    private final QueryCoalescer queryCoalescer = new QueryCoalescer();
 
     private final StorageURL hbaseUrl;
     private final String userTableName;
@@ -139,6 +160,8 @@ public class QueryService extends BasicService {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         hbaseUrl = kylinConfig.getMetadataUrl();
         userTableName = hbaseUrl.getIdentifier() + USER_TABLE_NAME;
+        admissionController = kylinConfig.isQueryAdmissionEnabled() ? new QueryAdmissionController(kylinConfig) : null;
+        queryWeightEstimator = new QueryWeightEstimator(kylinConfig);
 
         badQueryDetector.start();
     }
@@ -148,17 +171,42 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse query(SQLRequest sqlRequest) throws Exception {
+        return query(sqlRequest, null);
+    }
+
+    private SQLResponse query(SQLRequest sqlRequest, ResultRowWriter rowWriter) throws Exception {
         try {
             final String user = SecurityContextHolder.getContext().getAuthentication().getName();
             badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
 
-            return queryWithSqlMassage(sqlRequest);
+            return queryWithSqlMassage(sqlRequest, rowWriter);
 
         } finally {
             badQueryDetector.queryEnd(Thread.currentThread());
         }
     }
 
+    @PreAuthorize(Constant.ACCESS_HAS_ROLE_ADMIN)
+    public List<RunningQueryResponse> getRunningQueries() {
+        return badQueryDetector.getRunningQueries();
+    }
+
+    /**
+     * Stops a running query, cancelling its coprocessor calls in flight. Admins can stop any query, other users
+     * only their own, like a JDBC statement cancelled.
+     *
+     * @return false if no such query of the user is running
+     */
+    public boolean stopQuery(String queryId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String user = authentication.getName();
+        boolean isAdmin = false;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            isAdmin |= Constant.ROLE_ADMIN.equals(authority.getAuthority());
+        }
+        return badQueryDetector.stopQuery(queryId, isAdmin ? null : user, "stopped by " + user);
+    }
+
     public void saveQuery(final String creator, final Query query) throws IOException {
         List<Query> queries = getQueries(creator);
         queries.add(query);
@@ -275,6 +323,9 @@ public class QueryService extends BasicService {
         stringBuilder.append("Project: ").append(request.getProject()).append(newLine);
         stringBuilder.append("Realization Names: ").append(realizationNames).append(newLine);
         stringBuilder.append("Cuboid Ids: ").append(cuboidIds).append(newLine);
+        if (response.getRealizationScanTimes() != null) {
+            stringBuilder.append("Hybrid member scan ms: ").append(response.getRealizationScanTimes()).append(newLine);
+        }
         stringBuilder.append("Total scan count: ").append(response.getTotalScanCount()).append(newLine);
         stringBuilder.append("Total scan bytes: ").append(response.getTotalScanBytes()).append(newLine);
         stringBuilder.append("Result row count: ").append(resultRowCount).append(newLine);
@@ -322,18 +373,16 @@ public class QueryService extends BasicService {
 
     public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
-        String serverMode = kylinConfig.getServerMode();
-        if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
-            throw new InternalErrorException("Query is not allowed in " + serverMode + " mode.");
-        }
-        if (StringUtils.isBlank(sqlRequest.getProject())) {
-            throw new InternalErrorException("Project cannot be empty. Please select a project.");
-        }
+        checkQueryRequest(kylinConfig, sqlRequest);
 
         if (sqlRequest.getBackdoorToggles() != null)
             BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
 
         final QueryContext queryContext = QueryContext.current();
+        if (StringUtils.isNotEmpty(sqlRequest.getQueryId())) {
+            // the client may name the query, to stop it later, see stopQuery()
+            queryContext.setQueryId(sqlRequest.getQueryId());
+        }
 
         try (SetThreadName ignored = new SetThreadName("Query %s", queryContext.getQueryId())) {
             String sql = sqlRequest.getSql();
@@ -357,24 +406,11 @@ public class QueryService extends BasicService {
             }
 
             try {
-                if (null == sqlResponse) {
-                    sqlResponse = query(sqlRequest);
-
-                    long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
-                    long scanCountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
-                    long scanBytesThreshold = kylinConfig.getQueryScanBytesCacheThreshold();
-                    sqlResponse.setDuration(System.currentTimeMillis() - startTime);
-                    logger.info("Stats of SQL response: isException: {}, duration: {}, total scan count {}", //
-                            String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()));
-                    if (checkCondition(queryCacheEnabled, "query cache is disabled") //
-                            && checkCondition(!sqlResponse.getIsException(), "query has exception") //
-                            && checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scanCountThreshold || sqlResponse.getTotalScanBytes() > scanBytesThreshold, //
-                                    "query is too lightweight with duration: {} (threshold {}), scan count: {} (threshold {}), scan bytes: {} (threshold {})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scanCountThreshold, sqlResponse.getTotalScanBytes(), scanBytesThreshold)
-                            && checkCondition(sqlResponse.getResults().size() < kylinConfig.getLargeQueryThreshold(), "query response is too large: {} ({})", sqlResponse.getResults().size(), kylinConfig.getLargeQueryThreshold())) {
-                        cacheManager.getCache(SUCCESS_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
-                    }
-
-                } else {
+                boolean cacheMissed = null == sqlResponse;
+                if (cacheMissed) {
+                    sqlResponse = queryAndCache(kylinConfig, sqlRequest, queryCacheEnabled, startTime);
+                }
+                if (!cacheMissed || sqlResponse.isCoalesced()) {
                     sqlResponse.setDuration(System.currentTimeMillis() - startTime);
                     sqlResponse.setTotalScanCount(0);
                     sqlResponse.setTotalScanBytes(0);
@@ -389,6 +425,7 @@ public class QueryService extends BasicService {
                 sqlResponse = new SQLResponse(null, null, 0, true, errMsg);
                 sqlResponse.setTotalScanCount(queryContext.getScannedRows());
                 sqlResponse.setTotalScanBytes(queryContext.getScannedBytes());
+                sqlResponse.setAdmissionRejected(e instanceof QueryAdmissionController.RejectedException);
 
                 if (queryCacheEnabled && e.getCause() != null && e.getCause() instanceof ResourceLimitExceededException) {
                     Cache exceptionCache = cacheManager.getCache(EXCEPTION_QUERY_CACHE);
@@ -406,11 +443,144 @@ public class QueryService extends BasicService {
             return sqlResponse;
 
         } finally {
+            // cancel the storage work still in flight, e.g. other segments on exception or timeout
+            queryContext.endQuery();
+            releaseBorrowedPlan();
+            StoragePrefetcher.clearCurrent();
             BackdoorToggles.cleanToggles();
             QueryContext.reset();
         }
     }
 
+    /**
+     * Executes the query and writes the result rows to the writer while they are fetched from storage, so a large
+     * result does not need to fit in memory. Query cache is not involved.
+     *
+     * The writer blocks when the client reads slowly, and then storage is not pulled any further. An IOException
+     * from the writer, e.g. on client disconnect, aborts the query and closes the storage scanners. A failure before
+     * any output throws InternalErrorException; after that the response is committed, and the stream ends with an
+     * error line written by the writer instead.
+     *
+     * @return response with the query statistics but without result rows
+     */
+    public SQLResponse doStreamQuery(SQLRequest sqlRequest, ResultRowWriter rowWriter) {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        checkQueryRequest(kylinConfig, sqlRequest);
+
+        if (sqlRequest.getBackdoorToggles() != null)
+            BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
+
+        final QueryContext queryContext = QueryContext.current();
+        if (StringUtils.isNotEmpty(sqlRequest.getQueryId())) {
+            // the client may name the query, to stop it later, see stopQuery()
+            queryContext.setQueryId(sqlRequest.getQueryId());
+        }
+
+        try (SetThreadName ignored = new SetThreadName("Query %s", queryContext.getQueryId())) {
+            String sql = sqlRequest.getSql();
+            logger.info("Using project: " + sqlRequest.getProject());
+            logger.info("The original streaming query:  " + sql);
+
+            if (!sql.toLowerCase().contains("select")) {
+                logger.debug("Directly return exception as not supported");
+                throw new InternalErrorException("Not Supported SQL.");
+            }
+
+            long startTime = System.currentTimeMillis();
+
+            SQLResponse sqlResponse;
+            try {
+                sqlResponse = query(sqlRequest, rowWriter);
+                sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+                rowWriter.flush();
+            } catch (Throwable e) { // calcite may throw AssertError
+                logger.error("Exception when execute sql", e);
+                String errMsg = QueryUtil.makeErrorMsgUserFriendly(e);
+
+                sqlResponse = new SQLResponse(null, null, 0, true, errMsg);
+                sqlResponse.setTotalScanCount(queryContext.getScannedRows());
+                sqlResponse.setTotalScanBytes(queryContext.getScannedBytes());
+                sqlResponse.setAdmissionRejected(e instanceof QueryAdmissionController.RejectedException);
+            }
+
+            logQuery(sqlRequest, sqlResponse);
+
+            QueryMetricsFacade.updateMetrics(sqlRequest, sqlResponse);
+
+            if (sqlResponse.getIsException()) {
+                // the response is committed once output started, end the stream with an error line instead
+                if (!rowWriter.isStarted())
+                    throw new InternalErrorException(sqlResponse.getExceptionMessage());
+                writeStreamError(rowWriter, sqlResponse.getExceptionMessage());
+            }
+
+            return sqlResponse;
+
+        } finally {
+            // cancel the storage work still in flight, e.g. other segments on exception or timeout
+            queryContext.endQuery();
+            releaseBorrowedPlan();
+            StoragePrefetcher.clearCurrent();
+            BackdoorToggles.cleanToggles();
+            QueryContext.reset();
+        }
+    }
+
+    private void writeStreamError(ResultRowWriter rowWriter, String errMsg) {
+        try {
+            rowWriter.writeError(errMsg);
+            rowWriter.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to write error to the result stream, the client may have disconnected", e);
+        }
+    }
+
+    /**
+     * Executes the query and puts the response into query cache if it qualifies. With query cache, the identical
+     * queries in flight at the same time are coalesced into one execution.
+     */
+    protected SQLResponse queryAndCache(final KylinConfig kylinConfig, final SQLRequest sqlRequest, final boolean queryCacheEnabled, final long startTime) throws Exception {
+        if (!queryCacheEnabled || !kylinConfig.isQueryCoalesceEnabled()) {
+            return doQueryAndCache(kylinConfig, sqlRequest, queryCacheEnabled, startTime);
+        }
+
+        return queryCoalescer.execute(sqlRequest, new Callable<SQLResponse>() {
+            @Override
+            public SQLResponse call() throws Exception {
+                return doQueryAndCache(kylinConfig, sqlRequest, queryCacheEnabled, startTime);
+            }
+        });
+    }
+
+    private SQLResponse doQueryAndCache(KylinConfig kylinConfig, SQLRequest sqlRequest, boolean queryCacheEnabled, long startTime) throws Exception {
+        SQLResponse sqlResponse = query(sqlRequest);
+
+        long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
+        long scanCountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
+        long scanBytesThreshold = kylinConfig.getQueryScanBytesCacheThreshold();
+        sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+        logger.info("Stats of SQL response: isException: {}, duration: {}, total scan count {}", //
+                String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()));
+        if (checkCondition(queryCacheEnabled, "query cache is disabled") //
+                && checkCondition(!sqlResponse.getIsException(), "query has exception") //
+                && checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scanCountThreshold || sqlResponse.getTotalScanBytes() > scanBytesThreshold, //
+                        "query is too lightweight with duration: {} (threshold {}), scan count: {} (threshold {}), scan bytes: {} (threshold {})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scanCountThreshold, sqlResponse.getTotalScanBytes(), scanBytesThreshold)
+                && checkCondition(sqlResponse.getResults().size() < kylinConfig.getLargeQueryThreshold(), "query response is too large: {} ({})", sqlResponse.getResults().size(), kylinConfig.getLargeQueryThreshold())) {
+            cacheManager.getCache(SUCCESS_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
+        }
+        return sqlResponse;
+    }
+
+    private void checkQueryRequest(KylinConfig kylinConfig, SQLRequest sqlRequest) {
+        String serverMode = kylinConfig.getServerMode();
+        if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
+            throw new InternalErrorException("Query is not allowed in " + serverMode + " mode.");
+        }
+        if (StringUtils.isBlank(sqlRequest.getProject())) {
+            throw new InternalErrorException("Project cannot be empty. Please select a project.");
+        }
+    }
+
     public SQLResponse searchQueryInCache(SQLRequest sqlRequest) {
         SQLResponse response = null;
         Cache exceptionCache = cacheManager.getCache(EXCEPTION_QUERY_CACHE);
@@ -437,7 +607,7 @@ public class QueryService extends BasicService {
         }
     }
 
-    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, ResultRowWriter rowWriter) throws Exception {
         String userInfo = SecurityContextHolder.getContext().getAuthentication().getName();
         final Collection<? extends GrantedAuthority> grantedAuthorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
         for (GrantedAuthority grantedAuthority : grantedAuthorities) {
@@ -463,11 +633,12 @@ public class QueryService extends BasicService {
         Map<String, String> parameters = new HashMap<String, String>();
         parameters.put(OLAPContext.PRM_USER_AUTHEN_INFO, userInfo);
         parameters.put(OLAPContext.PRM_ACCEPT_PARTIAL_RESULT, String.valueOf(sqlRequest.isAcceptPartial()));
+        parameters.put(OLAPContext.PRM_SAMPLE_RATIO, String.valueOf(getSampleRatio(sqlRequest)));
         OLAPContext.setParameters(parameters);
         // force clear the query context before a new query
         OLAPContext.clearThreadLocalContexts();
 
-        return execute(correctedSql, sqlRequest);
+        return execute(correctedSql, sqlRequest, rowWriter);
 
     }
 
@@ -540,10 +711,25 @@ public class QueryService extends BasicService {
      * @return
      * @throws Exception
      */
-    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
+    protected SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
+        return execute(correctedSql, sqlRequest, null);
+    }
+
+    /**
+     * @param rowWriter if not null, the result rows are written to it instead of being returned in the response
+     */
+    protected SQLResponse execute(String correctedSql, SQLRequest sqlRequest, ResultRowWriter rowWriter) throws Exception {
+        if (isPlanCacheApplicable(sqlRequest)) {
+            SQLResponse response = executeWithPlanCache(correctedSql, sqlRequest, rowWriter);
+            if (response != null) {
+                return response;
+            }
+        }
+
         Connection conn = null;
         Statement stat = null;
         ResultSet resultSet = null;
+        QueryAdmissionController.Permit permit = null;
 
         List<List<String>> results = Lists.newArrayList();
         List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
@@ -551,14 +737,19 @@ public class QueryService extends BasicService {
         try {
             conn = cacheService.getOLAPDataSource(sqlRequest.getProject()).getConnection();
 
-            if (sqlRequest instanceof PrepareSqlRequest) {
+            // with admission control, prepare first, so the OLAPContexts are realized to estimate the weight before execution
+            if (sqlRequest instanceof PrepareSqlRequest || admissionController != null) {
                 PreparedStatement preparedState = conn.prepareStatement(correctedSql);
+                stat = preparedState;
                 processStatementAttr(preparedState, sqlRequest);
 
-                for (int i = 0; i < ((PrepareSqlRequest) sqlRequest).getParams().length; i++) {
-                    setParam(preparedState, i + 1, ((PrepareSqlRequest) sqlRequest).getParams()[i]);
+                if (sqlRequest instanceof PrepareSqlRequest) {
+                    for (int i = 0; i < ((PrepareSqlRequest) sqlRequest).getParams().length; i++) {
+                        setParam(preparedState, i + 1, ((PrepareSqlRequest) sqlRequest).getParams()[i]);
+                    }
                 }
 
+                permit = admit(sqlRequest);
                 resultSet = preparedState.executeQuery();
             } else {
                 stat = conn.createStatement();
@@ -566,34 +757,236 @@ public class QueryService extends BasicService {
                 resultSet = stat.executeQuery(correctedSql);
             }
 
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int columnCount = metaData.getColumnCount();
+            fetchResults(resultSet, columnMetas, results, rowWriter);
+        } finally {
+            close(resultSet, stat, conn);
+            IOUtils.closeQuietly(permit);
+        }
+
+        SQLResponse response = buildSQLResponse(columnMetas, results);
+        response.setAdmissionWaitTime(permit == null ? 0 : permit.getWaitTime());
+        return response;
+    }
+
+    private QueryAdmissionController.Permit admit(SQLRequest sqlRequest) throws InterruptedException {
+        if (admissionController == null) {
+            return null;
+        }
+        int weight = queryWeightEstimator.estimateWeight(OLAPContext.getThreadLocalContexts());
+        String project = ProjectInstance.getNormalizedProjectName(sqlRequest.getProject());
+        return admissionController.admit(project, QueryAdmissionController.Priority.of(sqlRequest.getPriority()), weight);
+    }
 
-            // Fill in selected column meta
-            for (int i = 1; i <= columnCount; ++i) {
-                columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
+    private boolean isPlanCacheApplicable(SQLRequest sqlRequest) {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        // filters added by the access controller are user specific, while backdoor toggles may affect the plan
+        return kylinConfig.isQueryPlanCacheEnabled() && StringUtils.isEmpty(kylinConfig.getQueryAccessController()) //
+                && (sqlRequest.getBackdoorToggles() == null || sqlRequest.getBackdoorToggles().isEmpty());
+    }
+
+    /**
+     * Executes the SQL template on a cached plan, or prepares and caches a new plan.
+     *
+     * @return null if the query cannot run on a cached plan, then it shall be executed normally
+     */
+    private SQLResponse executeWithPlanCache(String correctedSql, SQLRequest sqlRequest, ResultRowWriter rowWriter) throws Exception {
+        SqlTemplate template = null;
+        String sql = correctedSql;
+        if (!(sqlRequest instanceof PrepareSqlRequest)) {
+            template = SqlTemplate.parameterize(correctedSql);
+            if (template == null) {
+                return null;
+            }
+            sql = template.getSql();
+        }
+
+        QueryPlanCache planCache = QueryPlanCache.getInstance(KylinConfig.getInstanceFromEnv());
+        QueryPlanCache.PlanKey key = planCache.newKey(sqlRequest.getProject(), sql);
+        if (planCache.isUncacheable(key)) {
+            return null;
+        }
+
+        QueryPlanCache.CachedPlan plan = planCache.borrow(key);
+        boolean planCacheHit = (plan != null);
+        if (planCacheHit) {
+            plan.activate();
+        } else {
+            Connection conn = cacheService.getOLAPDataSource(sqlRequest.getProject()).getConnection();
+            PreparedStatement statement;
+            try {
+                statement = conn.prepareStatement(sql);
+            } catch (SQLException e) {
+                // e.g. calcite cannot infer the type of a parameter, running the original SQL reports the real problem if any
+                logger.info("Not able to prepare plan for SQL template, " + e.getMessage());
+                DBUtils.closeQuietly(conn);
+                planCache.markUncacheable(key);
+                OLAPContext.clearThreadLocalContexts();
+                return null;
+            }
+
+            plan = planCache.capture(key, conn, statement);
+            if (plan == null) {
+                DBUtils.closeQuietly(statement);
+                DBUtils.closeQuietly(conn);
+                OLAPContext.clearThreadLocalContexts();
+                return null;
             }
+        }
 
-            // fill in results
-            while (resultSet.next()) {
-                List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
-                for (int i = 0; i < columnCount; i++) {
-                    oneRow.add((resultSet.getString(i + 1)));
+        List<List<String>> results = Lists.newArrayList();
+        List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
+        PreparedStatement statement = plan.getStatement();
+        ResultSet resultSet = null;
+        QueryAdmissionController.Permit permit = null;
+        boolean success = false;
+        try {
+            if (template == null) {
+                for (int i = 0; i < ((PrepareSqlRequest) sqlRequest).getParams().length; i++) {
+                    setParam(statement, i + 1, ((PrepareSqlRequest) sqlRequest).getParams()[i]);
+                }
+            } else if (!template.bind(statement)) {
+                logger.info("Literals do not fit the parameter types of SQL template: " + template);
+                if (planCacheHit) {
+                    planCache.giveBack(plan);
+                } else {
+                    planCache.markUncacheable(key);
+                    plan.close();
                 }
+                plan = null;
+                OLAPContext.clearThreadLocalContexts();
+                return null;
+            }
+            processStatementAttr(statement, sqlRequest);
+
+            permit = admit(sqlRequest);
+            resultSet = statement.executeQuery();
+            fetchResults(resultSet, columnMetas, results, rowWriter);
+            success = true;
+        } finally {
+            OLAPContext.clearParameter();
+            DBUtils.closeQuietly(resultSet);
+            IOUtils.closeQuietly(permit);
+            if (plan != null) {
+                if (success) {
+                    // the OLAPContexts of the plan are still read until the query ends
+                    borrowedPlans.set(plan);
+                } else {
+                    plan.close();
+                }
+            }
+        }
+
+        SQLResponse response = buildSQLResponse(columnMetas, results);
+        response.setPlanCacheHit(planCacheHit);
+        response.setAdmissionWaitTime(permit == null ? 0 : permit.getWaitTime());
+        return response;
+    }
+
+    /**
+     * Returns the plan used by the query of current thread to the plan cache.
+     */
+    protected void releaseBorrowedPlan() {
+        QueryPlanCache.CachedPlan plan = borrowedPlans.get();
+        if (plan != null) {
+            borrowedPlans.remove();
+            QueryPlanCache.getInstance(KylinConfig.getInstanceFromEnv()).giveBack(plan);
+        }
+    }
+
+    private void fetchResults(ResultSet resultSet, List<SelectedColumnMeta> columnMetas, List<List<String>> results, ResultRowWriter rowWriter) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        // Fill in selected column meta
+        for (int i = 1; i <= columnCount; ++i) {
+            columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
+        }
+
+        if (rowWriter != null) {
+            // rows are sent before the query ends, thus authorization cannot wait till then as checkQueryAuth() does
+            checkStreamingQueryAuth();
+            rowWriter.writeHeader(columnMetas);
+        }
+
+        // fill in results
+        while (resultSet.next()) {
+            List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                oneRow.add((resultSet.getString(i + 1)));
+            }
 
+            if (rowWriter != null) {
+                rowWriter.writeRow(oneRow);
+            } else {
                 results.add(oneRow);
             }
-        } finally {
-            close(resultSet, stat, conn);
         }
+    }
+
+    private void checkStreamingQueryAuth() throws AccessDeniedException {
+        if (!KylinConfig.getInstanceFromEnv().isQuerySecureEnabled() || OLAPContext.getThreadLocalContexts() == null) {
+            return;
+        }
+        for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+            if (ctx.realization != null) {
+                checkAuthorization(ctx.realization.getName());
+            }
+        }
+    }
+
+    /**
+     * @return the fraction of storage to scan, from the approximate hint in SQL or the approximate flag of request,
+     * 1 for an exact query
+     */
+    protected double getSampleRatio(SQLRequest sqlRequest) {
+        double ratio = 1;
+        Matcher hint = APPROXIMATE_HINT.matcher(sqlRequest.getSql());
+        if (hint.find()) {
+            ratio = hint.group(2) != null ? parseSampleRatio(hint.group(2)) : KylinConfig.getInstanceFromEnv().getQueryApproximateSampleRatio();
+        } else if (sqlRequest.isApproximate()) {
+            ratio = KylinConfig.getInstanceFromEnv().getQueryApproximateSampleRatio();
+        }
+        if (ratio <= 0 || ratio > 1) {
+            throw new IllegalArgumentException("Sample ratio of approximate query must be in (0, 1], but is " + ratio);
+        }
+        return ratio;
+    }
 
+    private static double parseSampleRatio(String ratio) {
+        try {
+            return Double.parseDouble(ratio);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sample ratio in approximate hint: " + ratio, e);
+        }
+    }
+
+    private SQLResponse buildSQLResponse(List<SelectedColumnMeta> columnMetas, List<List<String>> results) {
         boolean isPartialResult = false;
+        boolean isApproximate = false;
+        double sampleRatio = 1;
+        double rowCountErrorBound = 0;
+        int unsampledSegments = 0;
+        Map<String, Long> realizationScanTimes = null;
         String cube = "";
         StringBuilder sb = new StringBuilder("Processed rows for each storageContext: ");
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
                 if (ctx.realization != null) {
                     isPartialResult |= ctx.storageContext.isPartialResultReturned();
+                    if (ctx.storageContext.isSampled()) {
+                        isApproximate = true;
+                        sampleRatio = Math.min(sampleRatio, ctx.storageContext.getEffectiveSampleRatio());
+                        double bound = ctx.storageContext.getSampleRowCountErrorBound();
+                        rowCountErrorBound = bound < 0 || rowCountErrorBound < 0 ? -1 : Math.max(rowCountErrorBound, bound);
+                    }
+                    unsampledSegments += ctx.storageContext.getUnsampledSegmentCount();
+                    for (Map.Entry<String, Long> entry : ctx.storageContext.getRealizationScanTimes().entrySet()) {
+                        if (realizationScanTimes == null) {
+                            realizationScanTimes = Maps.newTreeMap();
+                        }
+                        Long existing = realizationScanTimes.get(entry.getKey());
+                        realizationScanTimes.put(entry.getKey(), existing == null ? entry.getValue() : Math.max(existing, entry.getValue()));
+                    }
                     cube = ctx.realization.getName();
                     sb.append(ctx.storageContext.getProcessedRowCount()).append(" ");
                 }
@@ -604,6 +997,11 @@ public class QueryService extends BasicService {
         SQLResponse response = new SQLResponse(columnMetas, results, cube, 0, false, null, isPartialResult);
         response.setTotalScanCount(QueryContext.current().getScannedRows());
         response.setTotalScanBytes(QueryContext.current().getScannedBytes());
+        response.setApproximate(isApproximate);
+        response.setSampleRatio(sampleRatio);
+        response.setRowCountErrorBound(rowCountErrorBound);
+        response.setUnsampledSegments(unsampledSegments);
+        response.setRealizationScanTimes(realizationScanTimes);
 
         return response;
     }
@@ -613,7 +1011,7 @@ public class QueryService extends BasicService {
      * @param param
      * @throws SQLException
      */
-    private void setParam(PreparedStatement preparedState, int index, PrepareSqlRequest.StateParam param) throws SQLException {
+    protected void setParam(PreparedStatement preparedState, int index, PrepareSqlRequest.StateParam param) throws SQLException {
         boolean isNull = (null == param.getValue());
 
         Class<?> clazz;
@@ -23,13 +23,8 @@ import static org.apache.kylin.common.util.CheckUtil.checkCondition;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -39,7 +34,6 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
-import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.QueryContext;
@@ -53,6 +47,7 @@ import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.ModelDimensionDesc;
 import org.apache.kylin.metadata.model.TableRef;
 import org.apache.kylin.metadata.project.ProjectInstance;
+import org.apache.kylin.query.enumerator.StoragePrefetcher;
 import org.apache.kylin.query.relnode.OLAPContext;
 import org.apache.kylin.query.util.QueryUtil;
 import org.apache.kylin.rest.constant.Constant;
@@ -60,11 +55,9 @@ import org.apache.kylin.rest.exception.BadRequestException;
 import org.apache.kylin.rest.exception.InternalErrorException;
 import org.apache.kylin.rest.metrics.QueryMetricsFacade;
 import org.apache.kylin.rest.model.ColumnMetaWithType;
-import org.apache.kylin.rest.model.SelectedColumnMeta;
 import org.apache.kylin.rest.model.TableMetaWithType;
 import org.apache.kylin.rest.msg.Message;
 import org.apache.kylin.rest.msg.MsgPicker;
-import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.util.TableauInterceptor;
@@ -76,7 +69,6 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
-import com.google.common.collect.Lists;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
@@ -112,6 +104,10 @@ public class QueryServiceV2 extends QueryService {
             BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
 
         final QueryContext queryContext = QueryContext.current();
+        if (StringUtils.isNotEmpty(sqlRequest.getQueryId())) {
+            // the client may name the query, to stop it later, see stopQuery()
+            queryContext.setQueryId(sqlRequest.getQueryId());
+        }
 
         try (SetThreadName ignored = new SetThreadName("Query %s", queryContext.getQueryId())) {
             String sql = sqlRequest.getSql();
@@ -135,24 +131,11 @@ public class QueryServiceV2 extends QueryService {
             }
 
             try {
-                if (null == sqlResponse) {
-                    sqlResponse = query(sqlRequest);
-
-                    long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
-                    long scanCountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
-                    long scanBytesThreshold = kylinConfig.getQueryScanBytesCacheThreshold();
-                    sqlResponse.setDuration(System.currentTimeMillis() - startTime);
-                    logger.info("Stats of SQL response: isException: {}, duration: {}, total scan count {}", //
-                            String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()));
-                    if (checkCondition(queryCacheEnabled, "query cache is disabled") //
-                            && checkCondition(!sqlResponse.getIsException(), "query has exception") //
-                            && checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scanCountThreshold || sqlResponse.getTotalScanBytes() > scanBytesThreshold, //
-                            "query is too lightweight with duration: {} (threshold {}), scan count: {} (threshold {}), scan bytes: {} (threshold {})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scanCountThreshold, sqlResponse.getTotalScanBytes(), scanBytesThreshold)
-                            && checkCondition(sqlResponse.getResults().size() < kylinConfig.getLargeQueryThreshold(), "query response is too large: {} ({})", sqlResponse.getResults().size(), kylinConfig.getLargeQueryThreshold())) {
-                        cacheManager.getCache(SUCCESS_QUERY_CACHE).put(new Element(sqlRequest, sqlResponse));
-                    }
-
-                } else {
+                boolean cacheMissed = null == sqlResponse;
+                if (cacheMissed) {
+                    sqlResponse = queryAndCache(kylinConfig, sqlRequest, queryCacheEnabled, startTime);
+                }
+                if (!cacheMissed || sqlResponse.isCoalesced()) {
                     sqlResponse.setDuration(System.currentTimeMillis() - startTime);
                     sqlResponse.setTotalScanCount(0);
                     sqlResponse.setTotalScanBytes(0);
@@ -184,6 +167,10 @@ public class QueryServiceV2 extends QueryService {
             return sqlResponse;
 
         } finally {
+            // cancel the storage work still in flight, e.g. other segments on exception or timeout
+            queryContext.endQuery();
+            releaseBorrowedPlan();
+            StoragePrefetcher.clearCurrent();
             BackdoorToggles.cleanToggles();
             QueryContext.reset();
         }
@@ -227,6 +214,7 @@ public class QueryServiceV2 extends QueryService {
         Map<String, String> parameters = new HashMap<String, String>();
         parameters.put(OLAPContext.PRM_USER_AUTHEN_INFO, userInfo);
         parameters.put(OLAPContext.PRM_ACCEPT_PARTIAL_RESULT, String.valueOf(sqlRequest.isAcceptPartial()));
+        parameters.put(OLAPContext.PRM_SAMPLE_RATIO, String.valueOf(getSampleRatio(sqlRequest)));
         OLAPContext.setParameters(parameters);
         // force clear the query context before a new query
         OLAPContext.clearThreadLocalContexts();
@@ -235,146 +223,6 @@ public class QueryServiceV2 extends QueryService {
 
     }
 
-    /**
-     * @param correctedSql
-     * @param sqlRequest
-     * @return
-     * @throws Exception
-     */
-    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
-        Connection conn = null;
-        Statement stat = null;
-        ResultSet resultSet = null;
-
-        List<List<String>> results = Lists.newArrayList();
-        List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
-
-        try {
-            conn = cacheService.getOLAPDataSource(sqlRequest.getProject()).getConnection();
-
-            if (sqlRequest instanceof PrepareSqlRequest) {
-                PreparedStatement preparedState = conn.prepareStatement(correctedSql);
-                processStatementAttr(preparedState, sqlRequest);
-
-                for (int i = 0; i < ((PrepareSqlRequest) sqlRequest).getParams().length; i++) {
-                    setParam(preparedState, i + 1, ((PrepareSqlRequest) sqlRequest).getParams()[i]);
-                }
-
-                resultSet = preparedState.executeQuery();
-            } else {
-                stat = conn.createStatement();
-                processStatementAttr(stat, sqlRequest);
-                resultSet = stat.executeQuery(correctedSql);
-            }
-
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            // Fill in selected column meta
-            for (int i = 1; i <= columnCount; ++i) {
-                columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
-            }
-
-            // fill in results
-            while (resultSet.next()) {
-                List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
-                for (int i = 0; i < columnCount; i++) {
-                    oneRow.add((resultSet.getString(i + 1)));
-                }
-
-                results.add(oneRow);
-            }
-        } finally {
-            close(resultSet, stat, conn);
-        }
-
-        boolean isPartialResult = false;
-        String cube = "";
-        StringBuilder sb = new StringBuilder("Processed rows for each storageContext: ");
-        if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
-            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
-                if (ctx.realization != null) {
-                    isPartialResult |= ctx.storageContext.isPartialResultReturned();
-                    cube = ctx.realization.getName();
-                    sb.append(ctx.storageContext.getProcessedRowCount()).append(" ");
-                }
-            }
-        }
-        logger.info(sb.toString());
-
-        SQLResponse response = new SQLResponse(columnMetas, results, cube, 0, false, null, isPartialResult);
-        response.setTotalScanCount(QueryContext.current().getScannedRows());
-        response.setTotalScanBytes(QueryContext.current().getScannedBytes());
-
-        return response;
-    }
-
-    /**
-     * @param preparedState
-     * @param param
-     * @throws SQLException
-     */
-    private void setParam(PreparedStatement preparedState, int index, PrepareSqlRequest.StateParam param) throws SQLException {
-        boolean isNull = (null == param.getValue());
-
-        Class<?> clazz;
-        try {
-            clazz = Class.forName(param.getClassName());
-        } catch (ClassNotFoundException e) {
-            throw new InternalErrorException(e);
-        }
-
-        ColumnMetaData.Rep rep = ColumnMetaData.Rep.of(clazz);
-
-        switch (rep) {
-            case PRIMITIVE_CHAR:
-            case CHARACTER:
-            case STRING:
-                preparedState.setString(index, isNull ? null : String.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_INT:
-            case INTEGER:
-                preparedState.setInt(index, isNull ? 0 : Integer.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_SHORT:
-            case SHORT:
-                preparedState.setShort(index, isNull ? 0 : Short.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_LONG:
-            case LONG:
-                preparedState.setLong(index, isNull ? 0 : Long.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_FLOAT:
-            case FLOAT:
-                preparedState.setFloat(index, isNull ? 0 : Float.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_DOUBLE:
-            case DOUBLE:
-                preparedState.setDouble(index, isNull ? 0 : Double.valueOf(param.getValue()));
-                break;
-            case PRIMITIVE_BOOLEAN:
-            case BOOLEAN:
-                preparedState.setBoolean(index, !isNull && Boolean.parseBoolean(param.getValue()));
-                break;
-            case PRIMITIVE_BYTE:
-            case BYTE:
-                preparedState.setByte(index, isNull ? 0 : Byte.valueOf(param.getValue()));
-                break;
-            case JAVA_UTIL_DATE:
-            case JAVA_SQL_DATE:
-                preparedState.setDate(index, isNull ? null : java.sql.Date.valueOf(param.getValue()));
-                break;
-            case JAVA_SQL_TIME:
-                preparedState.setTime(index, isNull ? null : Time.valueOf(param.getValue()));
-                break;
-            case JAVA_SQL_TIMESTAMP:
-                preparedState.setTimestamp(index, isNull ? null : Timestamp.valueOf(param.getValue()));
-                break;
-            default:
-                preparedState.setObject(index, isNull ? null : param.getValue());
-        }
-    }
-
     public List<TableMetaWithType> getMetadataV2(String project) throws SQLException, IOException {
         return getMetadataV2(getCubeManager(), project, true);
     }
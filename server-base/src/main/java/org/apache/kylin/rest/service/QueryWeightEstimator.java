@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import java.util.Collection;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.query.relnode.OLAPContext;
+import org.apache.kylin.query.routing.ScanRowEstimator;
+
+/**
+ * Estimates the weight of a query for admission control, by the rows its OLAP contexts are going to scan.
+ *
+ * The rows of a context are estimated by ScanRowEstimator from the cuboid statistics of its realization.
+ */
+public class QueryWeightEstimator {
+
+    private final KylinConfig config;
+    private final ScanRowEstimator scanRowEstimator;
+
+    public QueryWeightEstimator(KylinConfig config) {
+        this.config = config;
+        this.scanRowEstimator = new ScanRowEstimator(config);
+    }
+
+    public int estimateWeight(Collection<OLAPContext> contexts) {
+        if (contexts == null) {
+            return 1;
+        }
+
+        long rows = 0;
+        for (OLAPContext ctx : contexts) {
+            if (ctx.realization != null) {
+                rows += Math.max(0, scanRowEstimator.estimateScanRows(ctx.realization, ctx.getSQLDigest()));
+            }
+        }
+        long weight = 1 + rows / Math.max(1, config.getQueryAdmissionRowsPerWeight());
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
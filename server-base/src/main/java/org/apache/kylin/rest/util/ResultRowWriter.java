@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.common.util.JsonUtil;
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+import org.supercsv.io.CsvListWriter;
+import org.supercsv.io.ICsvListWriter;
+import org.supercsv.prefs.CsvPreference;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes query result row by row, for streaming query.
+ *
+ * Supported formats are "csv", and "jsonl" that writes each row as a JSON array in one line. The header
+ * comes first and holds the column labels in both formats.
+ *
+ * If the query fails after output has started, the stream ends with an error line instead, so the client can tell
+ * a truncated result from a complete one: a JSON object {"error": message} in jsonl, or a single cell starting
+ * with "#ERROR:" in csv.
+ */
+public abstract class ResultRowWriter implements Closeable {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_JSON_LINES = "jsonl";
+
+    public static boolean isSupported(String format) {
+        return FORMAT_CSV.equals(format) || FORMAT_JSON_LINES.equals(format);
+    }
+
+    public static String getContentType(String format) {
+        return FORMAT_CSV.equals(format) ? "text/csv" : "application/x-ndjson";
+    }
+
+    public static ResultRowWriter newWriter(String format, Writer out) {
+        if (FORMAT_CSV.equals(format)) {
+            return new CsvRowWriter(out);
+        } else if (FORMAT_JSON_LINES.equals(format)) {
+            return new JsonLinesRowWriter(out);
+        } else {
+            throw new IllegalArgumentException("Unsupported result format " + format);
+        }
+    }
+
+    public static final String CSV_ERROR_PREFIX = "#ERROR:";
+
+    private boolean started = false;
+
+    public void writeHeader(List<SelectedColumnMeta> columnMetas) throws IOException {
+        started = true;
+        doWriteHeader(columnMetas);
+    }
+
+    public void writeRow(List<String> row) throws IOException {
+        started = true;
+        doWriteRow(row);
+    }
+
+    /**
+     * @return whether any output has been written, after which the response can no longer turn into an error
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    public abstract void writeError(String message) throws IOException;
+
+    public abstract void flush() throws IOException;
+
+    protected abstract void doWriteHeader(List<SelectedColumnMeta> columnMetas) throws IOException;
+
+    protected abstract void doWriteRow(List<String> row) throws IOException;
+
+    protected static List<String> getLabels(List<SelectedColumnMeta> columnMetas) {
+        List<String> labels = Lists.newArrayListWithCapacity(columnMetas.size());
+        for (SelectedColumnMeta column : columnMetas) {
+            labels.add(column.getLabel());
+        }
+        return labels;
+    }
+
+    private static class CsvRowWriter extends ResultRowWriter {
+        private final ICsvListWriter csvWriter;
+
+        CsvRowWriter(Writer out) {
+            this.csvWriter = new CsvListWriter(out, CsvPreference.STANDARD_PREFERENCE);
+        }
+
+        @Override
+        protected void doWriteHeader(List<SelectedColumnMeta> columnMetas) throws IOException {
+            List<String> labels = getLabels(columnMetas);
+            csvWriter.writeHeader(labels.toArray(new String[labels.size()]));
+        }
+
+        @Override
+        protected void doWriteRow(List<String> row) throws IOException {
+            csvWriter.write(row);
+        }
+
+        @Override
+        public void writeError(String message) throws IOException {
+            csvWriter.write(Collections.singletonList(CSV_ERROR_PREFIX + " " + message));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            csvWriter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            csvWriter.close();
+        }
+    }
+
+    private static class JsonLinesRowWriter extends ResultRowWriter {
+        private final Writer out;
+
+        JsonLinesRowWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        protected void doWriteHeader(List<SelectedColumnMeta> columnMetas) throws IOException {
+            doWriteRow(getLabels(columnMetas));
+        }
+
+        @Override
+        protected void doWriteRow(List<String> row) throws IOException {
+            out.write(JsonUtil.writeValueAsString(row));
+            out.write('\n');
+        }
+
+        @Override
+        public void writeError(String message) throws IOException {
+            out.write(JsonUtil.writeValueAsString(Collections.singletonMap("error", message)));
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
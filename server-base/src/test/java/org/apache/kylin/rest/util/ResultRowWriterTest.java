@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResultRowWriterTest {
+
+    private List<SelectedColumnMeta> columnMetas = Arrays.asList(newColumn("SELLER"), newColumn("GMV"));
+
+    @Test
+    public void testCsv() throws IOException {
+        StringWriter out = new StringWriter();
+        ResultRowWriter writer = ResultRowWriter.newWriter(ResultRowWriter.FORMAT_CSV, out);
+        writer.writeHeader(columnMetas);
+        writer.writeRow(Arrays.asList("a,b", "1.5"));
+        writer.writeRow(Arrays.asList("c", null));
+        writer.close();
+
+        Assert.assertEquals("SELLER,GMV\r\n\"a,b\",1.5\r\nc,\r\n", out.toString());
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        StringWriter out = new StringWriter();
+        ResultRowWriter writer = ResultRowWriter.newWriter(ResultRowWriter.FORMAT_JSON_LINES, out);
+        writer.writeHeader(columnMetas);
+        writer.writeRow(Arrays.asList("a\"b", "1.5"));
+        writer.writeRow(Arrays.asList("c", null));
+        writer.close();
+
+        Assert.assertEquals("[\"SELLER\",\"GMV\"]\n[\"a\\\"b\",\"1.5\"]\n[\"c\",null]\n", out.toString());
+    }
+
+    @Test
+    public void testError() throws IOException {
+        StringWriter out = new StringWriter();
+        ResultRowWriter writer = ResultRowWriter.newWriter(ResultRowWriter.FORMAT_CSV, out);
+        Assert.assertFalse(writer.isStarted());
+        writer.writeHeader(columnMetas);
+        Assert.assertTrue(writer.isStarted());
+        writer.writeError("scan failed, retry");
+        writer.close();
+        Assert.assertEquals("SELLER,GMV\r\n\"#ERROR: scan failed, retry\"\r\n", out.toString());
+
+        out = new StringWriter();
+        writer = ResultRowWriter.newWriter(ResultRowWriter.FORMAT_JSON_LINES, out);
+        writer.writeHeader(columnMetas);
+        writer.writeRow(Arrays.asList("c", null));
+        writer.writeError("scan failed");
+        writer.close();
+        Assert.assertEquals("[\"SELLER\",\"GMV\"]\n[\"c\",null]\n{\"error\":\"scan failed\"}\n", out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedFormat() {
+        Assert.assertFalse(ResultRowWriter.isSupported("xml"));
+        ResultRowWriter.newWriter("xml", new StringWriter());
+    }
+
+    private static SelectedColumnMeta newColumn(String label) {
+        return new SelectedColumnMeta(false, false, false, false, 1, true, 256, label, label, null, null, null, 256, 0, Types.VARCHAR, "VARCHAR", true, false, false);
+    }
+}
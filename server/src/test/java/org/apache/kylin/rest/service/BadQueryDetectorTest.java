@@ -20,11 +20,19 @@ package org.apache.kylin.rest.service;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.exceptions.QueryStoppedException;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.RunningQueryResponse;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -77,4 +85,56 @@ public class BadQueryDetectorTest extends LocalFileMetadataTestCase {
         // second check founds a Slow
         assertArrayEquals(new String[] { "Slow", mockSql }, alerts.get(0));
     }
+
+    @Test
+    public void testStopQuery() {
+        BadQueryDetector badQueryDetector = new BadQueryDetector(1000, 100, 60);
+        SQLRequest sqlRequest = new SQLRequest();
+        sqlRequest.setSql("select * from just_a_test");
+        sqlRequest.setProject("default");
+
+        QueryContext queryContext = QueryContext.current();
+        final AtomicInteger stops = new AtomicInteger();
+        queryContext.addQueryStopListener(new QueryContext.QueryStopListener() {
+            @Override
+            public void stop(QueryContext query) {
+                stops.incrementAndGet();
+            }
+        });
+
+        try {
+            badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, "user");
+
+            List<RunningQueryResponse> running = badQueryDetector.getRunningQueries();
+            assertEquals(1, running.size());
+            assertEquals(queryContext.getQueryId(), running.get(0).getQueryId());
+            assertEquals("user", running.get(0).getUser());
+            assertFalse(running.get(0).isStopped());
+
+            assertFalse(badQueryDetector.stopQuery("not-a-query", "test"));
+            // a user can stop only the own queries
+            assertFalse(badQueryDetector.stopQuery(queryContext.getQueryId(), "other", "test"));
+            assertFalse(badQueryDetector.getRunningQueries().get(0).isStopped());
+            assertTrue(badQueryDetector.stopQuery(queryContext.getQueryId(), "test"));
+            assertTrue(badQueryDetector.getRunningQueries().get(0).isStopped());
+            assertEquals(1, stops.get());
+
+            // stopped only once
+            queryContext.stopQuery("again");
+            assertEquals(1, stops.get());
+            assertEquals("test", queryContext.getStopReason());
+
+            try {
+                queryContext.checkStopped();
+                fail("stopped query should throw");
+            } catch (QueryStoppedException e) {
+                // expected
+            }
+
+            badQueryDetector.queryEnd(Thread.currentThread());
+            assertTrue(badQueryDetector.getRunningQueries().isEmpty());
+        } finally {
+            QueryContext.reset();
+        }
+    }
 }
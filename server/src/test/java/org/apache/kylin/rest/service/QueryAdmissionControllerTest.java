@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.exceptions.QueryStoppedException;
+import org.apache.kylin.rest.service.QueryAdmissionController.Permit;
+import org.apache.kylin.rest.service.QueryAdmissionController.Priority;
+import org.apache.kylin.rest.service.QueryAdmissionController.RejectedException;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class QueryAdmissionControllerTest {
+
+    @Test
+    public void testProjectLimit() throws InterruptedException {
+        QueryAdmissionController controller = new QueryAdmissionController(4, 2, 10, 100, 4);
+        Permit p1 = controller.admit("a", Priority.INTERACTIVE, 1);
+        Permit p2 = controller.admit("a", Priority.INTERACTIVE, 1);
+
+        // project "a" is full, while project "b" is not blocked by it
+        Permit p3 = controller.admit("b", Priority.INTERACTIVE, 5);
+        assertEquals(2, p3.getWeight());
+        assertEquals(4, controller.getUsedGlobalSlots());
+
+        try {
+            controller.admit("a", Priority.INTERACTIVE, 1);
+            fail("should time out");
+        } catch (RejectedException e) {
+            // expected
+        }
+        assertEquals(0, controller.getWaitingCount());
+
+        p1.close();
+        p1.close(); // closing twice releases once
+        assertEquals(3, controller.getUsedGlobalSlots());
+        controller.admit("a", Priority.INTERACTIVE, 1).close();
+        p2.close();
+        p3.close();
+        assertEquals(0, controller.getUsedGlobalSlots());
+    }
+
+    @Test
+    public void testQueueFull() throws InterruptedException {
+        final QueryAdmissionController controller = new QueryAdmissionController(1, 1, 1, 10000, 1);
+        Permit p1 = controller.admit("a", Priority.INTERACTIVE, 1);
+
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    controller.admit("a", Priority.INTERACTIVE, 1).close();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        waiter.start();
+        while (controller.getWaitingCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            controller.admit("a", Priority.INTERACTIVE, 1);
+            fail("should be rejected as the queue is full");
+        } catch (RejectedException e) {
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+
+        p1.close();
+        waiter.join();
+        assertEquals(0, controller.getUsedGlobalSlots());
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        final QueryAdmissionController controller = new QueryAdmissionController(1, 1, 10, 10000, 1);
+        Permit p1 = controller.admit("a", Priority.INTERACTIVE, 1);
+
+        final List<Priority> admitted = Lists.newArrayList();
+        final CountDownLatch done = new CountDownLatch(2);
+        for (final Priority priority : new Priority[] { Priority.BATCH, Priority.INTERACTIVE }) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Permit p = controller.admit("a", priority, 1);
+                        synchronized (admitted) {
+                            admitted.add(priority);
+                        }
+                        p.close();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+            int expectedWaiting = priority == Priority.BATCH ? 1 : 2;
+            while (controller.getWaitingCount() < expectedWaiting) {
+                Thread.sleep(10);
+            }
+        }
+
+        p1.close();
+        done.await();
+        assertEquals(Lists.newArrayList(Priority.INTERACTIVE, Priority.BATCH), admitted);
+        assertEquals(Priority.BATCH, Priority.of("batch"));
+        assertEquals(Priority.INTERACTIVE, Priority.of(null));
+    }
+
+    @Test
+    public void testHeadTimeout() throws InterruptedException {
+        final QueryAdmissionController controller = new QueryAdmissionController(4, 4, 10, 1000, 4);
+        Permit p1 = controller.admit("a", Priority.INTERACTIVE, 3);
+
+        final CountDownLatch headDone = new CountDownLatch(1);
+        final boolean[] headRejected = new boolean[1];
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    controller.admit("a", Priority.INTERACTIVE, 4).close();
+                } catch (RejectedException e) {
+                    headRejected[0] = true;
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    headDone.countDown();
+                }
+            }
+        }.start();
+        while (controller.getWaitingCount() == 0) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(300);
+
+        // the light query is blocked behind the heavy head, and admitted as soon as the head times out
+        Permit p2 = controller.admit("a", Priority.INTERACTIVE, 1);
+        headDone.await();
+        assertTrue(headRejected[0]);
+        assertTrue(p2.getWaitTime() < 1000);
+        assertEquals(4, controller.getUsedGlobalSlots());
+
+        p2.close();
+        p1.close();
+        assertEquals(0, controller.getUsedGlobalSlots());
+    }
+
+    @Test
+    public void testStopWhileWaiting() throws InterruptedException {
+        final QueryAdmissionController controller = new QueryAdmissionController(1, 1, 10, 60000, 1);
+        Permit p1 = controller.admit("a", Priority.INTERACTIVE, 1);
+
+        final QueryContext[] waiting = new QueryContext[1];
+        final boolean[] stopped = new boolean[1];
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                waiting[0] = QueryContext.current();
+                try {
+                    controller.admit("a", Priority.INTERACTIVE, 1).close();
+                } catch (QueryStoppedException e) {
+                    stopped[0] = true;
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        waiter.start();
+        while (controller.getWaitingCount() == 0) {
+            Thread.sleep(10);
+        }
+
+        // the stopped query leaves the queue long before the max wait time
+        long start = System.currentTimeMillis();
+        waiting[0].stopQuery("test");
+        waiter.join();
+        assertTrue(stopped[0]);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(0, controller.getWaitingCount());
+
+        p1.close();
+        assertEquals(0, controller.getUsedGlobalSlots());
+    }
+}
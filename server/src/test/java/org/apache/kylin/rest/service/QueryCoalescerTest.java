@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class QueryCoalescerTest {
+
+    @Test
+    public void testCoalesce() throws Exception {
+        final QueryCoalescer coalescer = new QueryCoalescer();
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final SQLResponse response = new SQLResponse(null, Collections.<List<String>> emptyList(), "cube", 0, false, null);
+        response.setTotalScanCount(100);
+
+        final Callable<SQLResponse> query = new Callable<SQLResponse>() {
+            @Override
+            public SQLResponse call() throws Exception {
+                executions.incrementAndGet();
+                release.await();
+                return response;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<SQLResponse>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(new Callable<SQLResponse>() {
+                @Override
+                public SQLResponse call() throws Exception {
+                    return coalescer.execute(newRequest("select count(*) from test_kylin_fact"), query);
+                }
+            }));
+        }
+        while (executions.get() == 0) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        int coalesced = 0;
+        for (Future<SQLResponse> future : futures) {
+            SQLResponse r = future.get();
+            assertEquals("cube", r.getCube());
+            assertEquals(100, r.getTotalScanCount());
+            if (r.isCoalesced()) {
+                coalesced++;
+                assertTrue(r != response);
+            } else {
+                assertTrue(r == response);
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(4, executions.get() + coalesced);
+        assertEquals(0, coalescer.getInFlightCount());
+        assertFalse(response.isCoalesced());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        try {
+            coalescer.execute(newRequest("select 1"), new Callable<SQLResponse>() {
+                @Override
+                public SQLResponse call() throws Exception {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail("exception of query should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    private static SQLRequest newRequest(String sql) {
+        SQLRequest request = new SQLRequest();
+        request.setSql(sql);
+        request.setProject("default");
+        return request;
+    }
+}
@@ -21,10 +21,12 @@ package org.apache.kylin.storage.hbase.common.coprocessor;
 import java.util.Collection;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.cube.kv.RowKeyColumnIO;
 import org.apache.kylin.dict.BuiltInFunctionTransformer;
 import org.apache.kylin.dict.DictCodeSystem;
+import org.apache.kylin.dimension.DictionaryDimEnc;
 import org.apache.kylin.dimension.DimensionEncoding;
 import org.apache.kylin.dimension.IDimensionEncodingMap;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
@@ -77,12 +79,7 @@ public class FilterDecorator implements TupleFilterSerializer.Decorator {
         switch (newCompareFilter.getOperator()) {
         case EQ:
         case IN:
-            Set<String> newValues = Sets.newHashSet();
-            for (String value : constValues) {
-                v = translate(col, value, 0);
-                if (!isDictNull(v))
-                    newValues.add(v);
-            }
+            Set<String> newValues = translateAll(col, constValues);
             if (newValues.isEmpty()) {
                 result = ConstantTupleFilter.FALSE;
             } else {
@@ -91,12 +88,7 @@ public class FilterDecorator implements TupleFilterSerializer.Decorator {
             }
             break;
         case NOTIN:
-            Set<String> notInValues = Sets.newHashSet();
-            for (String value : constValues) {
-                v = translate(col, value, 0);
-                if (!isDictNull(v))
-                    notInValues.add(v);
-            }
+            Set<String> notInValues = translateAll(col, constValues);
             if (notInValues.isEmpty()) {
                 result = ConstantTupleFilter.TRUE;
             } else {
@@ -155,6 +147,27 @@ public class FilterDecorator implements TupleFilterSerializer.Decorator {
         return result;
     }
 
+    // translates the constants of an IN filter, a long list on a dictionary column by a batch lookup
+    private Set<String> translateAll(TblColRef col, Collection<String> values) {
+        Set<String> result = Sets.newHashSet();
+        DimensionEncoding dimEnc = dimEncMap.get(col);
+        if (dimEnc instanceof DictionaryDimEnc && values.size() >= KylinConfig.getInstanceFromEnv().getQueryInListBatchTranslationThreshold()) {
+            for (byte[] code : ((DictionaryDimEnc) dimEnc).encodeAll(values)) {
+                String v = Dictionary.dictIdToString(code, 0, code.length);
+                if (!isDictNull(v))
+                    result.add(v);
+            }
+            return result;
+        }
+
+        for (String value : values) {
+            String v = translate(col, value, 0);
+            if (!isDictNull(v))
+                result.add(v);
+        }
+        return result;
+    }
+
     private boolean isDictNull(String v) {
         return DictCodeSystem.INSTANCE.isNull(v);
     }
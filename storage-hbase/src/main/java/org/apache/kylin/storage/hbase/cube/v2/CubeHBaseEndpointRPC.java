@@ -23,6 +23,8 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.DataFormatException;
 
@@ -33,7 +35,9 @@ import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.apache.hadoop.hbase.ipc.BlockingRpcCallback;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.common.exceptions.QueryStoppedException;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesSerializer;
@@ -107,7 +111,8 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
     @Override
     public IGTScanner getGTScanner(final GTScanRequest scanRequest) throws IOException {
         Pair<Short, Short> shardNumAndBaseShard = getShardNumAndBaseShard();
-        short shardNum = shardNumAndBaseShard.getFirst();
+        // an approximate query scans a subset of the shards
+        short shardNum = storageContext.sampleShards(cubeSeg.getUuid(), shardNumAndBaseShard.getFirst());
         short cuboidBaseShard = shardNumAndBaseShard.getSecond();
         int totalShards = cubeSeg.getTotalShards(cuboid.getId());
 
@@ -164,8 +169,10 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         builder.setSpillEnabled(cubeSeg.getConfig().getQueryCoprocessorSpillEnabled());
         builder.setMaxScanBytes(cubeSeg.getConfig().getPartitionMaxScanBytes());
 
-        for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
-            executorService.submit(new Runnable() {
+        final List<Pair<byte[], byte[]>> epRanges = getEPKeyRanges(cuboidBaseShard, shardNum, totalShards);
+        final List<Future<?>> epFutures = Lists.newArrayListWithCapacity(epRanges.size());
+        for (final Pair<byte[], byte[]> epRange : epRanges) {
+            epFutures.add(executorService.submit(new Runnable() {
                 @Override
                 public void run() {
 
@@ -203,6 +210,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                                         Stats stats = result.getStats();
                                         queryContext.addAndGetScannedRows(stats.getScannedRowCount());
                                         queryContext.addAndGetScannedBytes(stats.getScannedBytes());
+                                        storageContext.addSampledShardRows(cubeSeg.getUuid(), stats.getScannedRowCount());
 
                                         // if any other region has responded with error, skip further processing
                                         if (regionErrorHolder.get() != null) {
@@ -243,12 +251,64 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         epResultItr.notifyCoprocException(exception);
                     }
                 }
-            });
+            }));
         }
 
+        queryContext.addQueryStopListener(new QueryContext.QueryStopListener() {
+            final AtomicBoolean stopped = new AtomicBoolean();
+
+            @Override
+            public void stop(QueryContext query) {
+                if (!stopped.compareAndSet(false, true)) {
+                    return;
+                }
+                epResultItr.notifyCoprocException(new QueryStoppedException("Query " + queryId + " is stopped: " + query.getStopReason()));
+
+                boolean allDone = true;
+                for (Future<?> future : epFutures) {
+                    allDone &= future.isDone();
+                    future.cancel(true);
+                }
+                if (!allDone && !queryId.isEmpty()) {
+                    sendKillSignal(conn, epRanges, queryId);
+                }
+            }
+        });
+
         return new StorageResponseGTScatter(scanRequest, new DummyPartitionStreamer(epResultItr), storageContext);
     }
 
+    /**
+     * Tells the coprocessors still scanning for the query to abort, by a request that carries only the query id.
+     * Cancelling the futures only abandons the client side, the region servers would keep scanning until timeout.
+     */
+    private void sendKillSignal(final Connection conn, List<Pair<byte[], byte[]>> epRanges, final String queryId) {
+        final CubeVisitRequest killRequest = CubeVisitRequest.newBuilder().setGtScanRequest(ByteString.EMPTY).setHbaseRawScan(ByteString.EMPTY)//
+                .setRowkeyPreambleSize(0).setKylinProperties("").setQueryId(queryId).build();
+
+        for (final Pair<byte[], byte[]> epRange : epRanges) {
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Table table = conn.getTable(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()), HBaseConnection.getCoprocessorPool());
+                        table.coprocessorService(CubeVisitService.class, epRange.getFirst(), epRange.getSecond(), //
+                                new Batch.Call<CubeVisitService, CubeVisitResponse>() {
+                                    public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
+                                        ServerRpcController controller = new ServerRpcController();
+                                        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+                                        rowsService.visitCube(controller, killRequest, rpcCallback);
+                                        return rpcCallback.get();
+                                    }
+                                });
+                    } catch (Throwable ex) {
+                        logger.warn("Error when sending kill signal of query " + queryId + " to coprocessors", ex);
+                    }
+                }
+            });
+        }
+    }
+
     private ByteString serializeGTScanReq(GTScanRequest scanRequest) {
         ByteString scanRequestByteString;
         int scanRequestBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
@@ -94,6 +94,9 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
     }
 
     public void notifyCoprocException(Throwable ex) {
-        coprocException = ex;
+        // keep the first one, e.g. the stop reason rather than the interruption it causes
+        if (coprocException == null) {
+            coprocException = ex;
+        }
     }
 }
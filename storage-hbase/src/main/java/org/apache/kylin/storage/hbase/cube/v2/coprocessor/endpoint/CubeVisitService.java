@@ -26,6 +26,7 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
@@ -42,6 +43,7 @@ import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.common.exceptions.QueryStoppedException;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
@@ -64,6 +66,8 @@ import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.Cub
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.protobuf.HBaseZeroCopyByteString;
@@ -80,6 +84,9 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
     //TODO limit memory footprint
     private static final int MEMORY_LIMIT = 500 * 1024 * 1024;
 
+    // ids of the queries killed by client, scans of them abort at the next termination check
+    private static final Cache<String, Boolean> killedQueries = CacheBuilder.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).build();
+
     private RegionCoprocessorEnvironment env;
 
     private long serviceStartTime;
@@ -145,17 +152,19 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         private final long bytesLimit;
         private final long timeout;
         private final long deadline;
+        private final String queryId;
 
         private long rowCount;
         private long rowBytes;
 
         ResourceTrackingCellListIterator(Iterator<List<Cell>> delegate,
-                                         long rowCountLimit, long bytesLimit, long timeout) {
+                                         long rowCountLimit, long bytesLimit, long timeout, String queryId) {
             this.delegate = delegate;
             this.rowCountLimit = rowCountLimit;
             this.bytesLimit = bytesLimit;
             this.timeout = timeout;
             this.deadline = System.currentTimeMillis() + timeout;
+            this.queryId = queryId;
         }
 
         @Override
@@ -166,8 +175,13 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             if (rowBytes > bytesLimit) {
                 throw new ResourceLimitExceededException("scanned bytes " + rowBytes + " exceeds threshold " + bytesLimit);
             }
-            if ((rowCount % GTScanRequest.terminateCheckInterval == 1) && System.currentTimeMillis() > deadline) {
-                throw new KylinTimeoutException("coprocessor timeout after " + timeout + " ms");
+            if (rowCount % GTScanRequest.terminateCheckInterval == 1) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new KylinTimeoutException("coprocessor timeout after " + timeout + " ms");
+                }
+                if (queryId != null && killedQueries.getIfPresent(queryId) != null) {
+                    throw new QueryStoppedException("query " + queryId + " is killed by client");
+                }
             }
             return delegate.hasNext();
         }
@@ -231,6 +245,15 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         CubeVisitProtos.CubeVisitResponse.ErrorInfo errorInfo = null;
 
         String queryId = request.hasQueryId() ? request.getQueryId() : "UnknownId";
+
+        // a request of only query id is the signal to kill the query, see CubeHBaseEndpointRPC.sendKillSignal()
+        if (request.getGtScanRequest().isEmpty() && request.hasQueryId()) {
+            logger.info("Query {} is killed by client", queryId);
+            killedQueries.put(queryId, Boolean.TRUE);
+            done.run(CubeVisitProtos.CubeVisitResponse.newBuilder().setCompressedRows(HBaseZeroCopyByteString.wrap(new byte[0]))//
+                    .setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder().setNormalComplete(1).build()).build());
+            return;
+        }
         try (SetThreadName ignored = new SetThreadName("Query %s", queryId)) {
             this.serviceStartTime = System.currentTimeMillis();
 
@@ -294,7 +317,8 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                     allCellLists,
                     scanReq.getStorageScanRowNumThreshold(), // for old client (scan threshold)
                     !request.hasMaxScanBytes() ? Long.MAX_VALUE : request.getMaxScanBytes(), // for new client
-                    scanReq.getTimeout());
+                    scanReq.getTimeout(),
+                    request.hasQueryId() ? request.getQueryId() : null);
 
             IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn());
 
@@ -333,6 +357,12 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                         .setType(CubeVisitProtos.CubeVisitResponse.ErrorType.TIMEOUT)
                         .setMessage(e.getMessage())
                         .build();
+            } catch (QueryStoppedException e) {
+                logger.info("Abort scan: {}", e.getMessage());
+                errorInfo = CubeVisitProtos.CubeVisitResponse.ErrorInfo.newBuilder()
+                        .setType(CubeVisitProtos.CubeVisitResponse.ErrorType.UNKNOWN_TYPE)
+                        .setMessage(e.getMessage())
+                        .build();
             } catch (ResourceLimitExceededException e) {
                 logger.info("Abort scan: {}", e.getMessage());
                 errorInfo = CubeVisitProtos.CubeVisitResponse.ErrorInfo.newBuilder()
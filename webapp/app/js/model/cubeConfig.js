@@ -50,6 +50,8 @@ KylinApp.constant('cubeConfig', {
     {name: 'Error Rate < 2.44%', value: 'hllc(14)'},
     {name: 'Error Rate < 1.72%', value: 'hllc(15)'},
     {name: 'Error Rate < 1.22%', value: 'hllc(16)'},
+    {name: 'Theta Sketch, Error Rate < 1.56% (Intersect/Difference Supported)', value: 'theta(12)'},
+    {name: 'Theta Sketch, Error Rate < 0.78% (Intersect/Difference Supported)', value: 'theta(14)'},
     {name: 'Precisely (More Memory And Storage Needed)', value: 'bitmap'}
   ],
   topNTypes: [